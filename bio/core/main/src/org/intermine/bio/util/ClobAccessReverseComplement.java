@@ -12,7 +12,9 @@ package org.intermine.bio.util;
 
 import static org.intermine.objectstore.query.Clob.CLOB_PAGE_SIZE;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
 
 import org.intermine.objectstore.query.ClobAccess;
 
@@ -38,6 +40,7 @@ public class ClobAccessReverseComplement extends ClobAccess
         originalClobAccess = ca;
         os = ca.getOs();
         results = ca.getResultsWithoutInit();
+        pageVersion = ca.getPageVersionWithoutInit();
         clob = ca.getClob();
         offset = ca.getOffset();
         length = ca.getLengthWithoutInit();
@@ -136,7 +139,7 @@ public class ClobAccessReverseComplement extends ClobAccess
         int lowestPage = offset / CLOB_PAGE_SIZE;
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
         for (int page = highestPage; page >= lowestPage; page--) {
-            String pageText = (String) results.get(page);
+            String pageText = getPage(page);
             if (page == highestPage) {
                 pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
             }
@@ -161,7 +164,7 @@ public class ClobAccessReverseComplement extends ClobAccess
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
         for (int page = highestPage; page >= lowestPage; page--) {
             StringBuilder retval = new StringBuilder();
-            String pageText = (String) results.get(page);
+            String pageText = getPage(page);
             if (page == highestPage) {
                 pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
             }
@@ -176,6 +179,49 @@ public class ClobAccessReverseComplement extends ClobAccess
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        init();
+        if ((srcBegin < 0) || (srcEnd > length) || (srcBegin > srcEnd)) {
+            throw new IndexOutOfBoundsException("Cannot copy characters " + srcBegin + " to "
+                    + srcEnd + " of a Clob of length " + length);
+        }
+        // copy the bases in the original order, then reverse and complement them in place
+        super.getChars(length - srcEnd, length - srcBegin, dst, dstBegin);
+        for (int i = dstBegin, j = dstBegin + srcEnd - srcBegin - 1; i <= j; i++, j--) {
+            char c = dst[i];
+            dst[i] = translate(dst[j]);
+            dst[j] = translate(c);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void drainToWriter(Writer out) throws IOException {
+        init();
+        if (length > 0) {
+            int lowestPage = offset / CLOB_PAGE_SIZE;
+            int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
+            char[] buffer = new char[CLOB_PAGE_SIZE];
+            for (int page = highestPage; page >= lowestPage; page--) {
+                String pageText = getPage(page);
+                int from = (page == lowestPage ? offset - page * CLOB_PAGE_SIZE : 0);
+                int to = (page == highestPage ? offset + length - page * CLOB_PAGE_SIZE
+                        : pageText.length());
+                int count = 0;
+                for (int cNo = to - 1; cNo >= from; cNo--) {
+                    buffer[count++] = translate(pageText.charAt(cNo));
+                }
+                out.write(buffer, 0, count);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,429 @@
+package org.intermine.bio.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.intermine.modelproduction.MetadataManager;
+import org.intermine.sql.Database;
+
+/**
+ * A precomputed index of the number of features of each class located on each chromosome of each
+ * organism, used to draw feature density tracks without running a count query per bin.
+ *
+ * For each (organism, chromosome, class) track, the index holds two arrays over the bin
+ * boundaries 0, resolution, 2 * resolution, ... - the number of features that start before each
+ * boundary, and the number of features that end at or before it. The number of features that
+ * overlap the region between any two boundaries is then the difference of two entries, so one
+ * array answers every coarser resolution exactly. Regions that do not start and end on a
+ * boundary are rounded to the nearest one, which is only done for regions that are many bins
+ * wide.
+ *
+ * The index is written to a file by a Writer, and the file is memory-mapped for reading.
+ * Coordinates are interbase, as used by the JBrowse endpoint, so a Location from start to end
+ * covers the region [start - 1, end).
+ */
+public final class FeatureDensityIndex
+{
+    private static final Logger LOG = Logger.getLogger(FeatureDensityIndex.class);
+
+    /**
+     * The number of bins that a region which does not start and end on bin boundaries must
+     * cover for it to be counted from the index. The count may be out by the features in the
+     * bins at each end of the region.
+     */
+    public static final int MIN_BINS = 10;
+
+    private static final int MAGIC = 0x494d4644;
+    private static final int FORMAT_VERSION = 1;
+    private static final long MAX_MAPPING = Integer.MAX_VALUE;
+
+    private final Map<String, Track> tracks = new HashMap<String, Track>();
+    private final File file;
+
+    private FeatureDensityIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Memory-maps an index file written by a Writer.
+     *
+     * @param file the file
+     * @return a FeatureDensityIndex
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    public static FeatureDensityIndex open(File file) throws IOException {
+        FeatureDensityIndex index = new FeatureDensityIndex(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long fileLength = raf.length();
+            if ((fileLength < 16) || (raf.readInt() != MAGIC)) {
+                throw new IOException(file + " is not a feature density index");
+            }
+            int version = raf.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported feature density index version " + version
+                        + " in " + file);
+            }
+            raf.seek(fileLength - 8);
+            long directoryOffset = raf.readLong();
+            raf.seek(directoryOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(raf.getFD())));
+            int trackCount = in.readInt();
+            List<Track> ordered = new ArrayList<Track>();
+            for (int i = 0; i < trackCount; i++) {
+                Track track = new Track(in.readInt(), in.readUTF(), in.readUTF(), in.readInt(),
+                        in.readInt(), in.readInt(), in.readInt());
+                track.offset = in.readLong();
+                ordered.add(track);
+                index.tracks.put(key(track.taxonId, track.chromosome, track.className), track);
+            }
+            // Tracks are in file order. Map them in as few regions as will fit in a buffer.
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer region = null;
+            long regionStart = 0;
+            for (Track track : ordered) {
+                long trackBytes = 8L * track.boundaries;
+                if ((region == null) || (track.offset + trackBytes - regionStart > MAX_MAPPING)) {
+                    regionStart = track.offset;
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                            Math.min(MAX_MAPPING, directoryOffset - regionStart));
+                }
+                int position = (int) (track.offset - regionStart);
+                region.limit(position + (int) trackBytes);
+                region.position(position);
+                track.startsBefore = region.slice().asIntBuffer();
+                region.limit(region.capacity());
+                track.endsBefore = track.startsBefore.duplicate();
+                track.endsBefore.position(track.boundaries);
+                track.endsBefore = track.endsBefore.slice();
+            }
+        } finally {
+            // Mappings remain valid after the file is closed
+            raf.close();
+        }
+        return index;
+    }
+
+    /**
+     * Reads the index stored in the metadata of a database, and memory-maps it from a temporary
+     * file.
+     *
+     * @param db the Database of the production ObjectStore
+     * @return a FeatureDensityIndex, or null if no index has been stored
+     * @throws SQLException if the index cannot be read from the database
+     * @throws IOException if the temporary file cannot be written
+     */
+    public static FeatureDensityIndex retrieve(Database db) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        InputStream is = MetadataManager.readLargeBinary(db,
+                MetadataManager.FEATURE_DENSITY_INDEX);
+        if (is == null) {
+            return null;
+        }
+        File file = File.createTempFile("featuredensity", ".idx");
+        file.deleteOnExit();
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                copy(is, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            is.close();
+        }
+        FeatureDensityIndex index = open(file);
+        LOG.info("Read feature density index with " + index.tracks.size() + " tracks ("
+                + file.length() + " bytes) in " + (System.currentTimeMillis() - start) + " ms");
+        return index;
+    }
+
+    /**
+     * Stores an index file in the metadata of a database, replacing any index already there.
+     *
+     * @param db the Database of the production ObjectStore
+     * @param file a file written by a Writer
+     * @throws SQLException if the index cannot be written to the database
+     * @throws IOException if the file cannot be read
+     */
+    public static void store(Database db, File file) throws SQLException, IOException {
+        OutputStream out = MetadataManager.storeLargeBinary(db,
+                MetadataManager.FEATURE_DENSITY_INDEX);
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                copy(in, out);
+            } finally {
+                in.close();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Returns the counts for a class of feature on a chromosome.
+     *
+     * @param taxonId the taxon id of the organism
+     * @param chromosome the primaryIdentifier of the chromosome
+     * @param className the unqualified name of the class of feature, including subclasses
+     * @return a Track, or null if the class is not indexed on the chromosome
+     */
+    public Track getTrack(int taxonId, String chromosome, String className) {
+        return tracks.get(key(taxonId, chromosome, className));
+    }
+
+    /**
+     * Returns the file that this index was read from.
+     *
+     * @return a File
+     */
+    public File getFile() {
+        return file;
+    }
+
+    private static String key(int taxonId, String chromosome, String className) {
+        return taxonId + "\t" + chromosome + "\t" + className;
+    }
+
+    /**
+     * The counts for one class of feature on one chromosome.
+     */
+    public static final class Track
+    {
+        private final int taxonId;
+        private final String chromosome;
+        private final String className;
+        private final int resolution;
+        private final int length;
+        private final int featureCount;
+        private final int boundaries;
+        private long offset;
+        private IntBuffer startsBefore;
+        private IntBuffer endsBefore;
+
+        private Track(int taxonId, String chromosome, String className, int resolution,
+                int length, int featureCount, int boundaries) {
+            this.taxonId = taxonId;
+            this.chromosome = chromosome;
+            this.className = className;
+            this.resolution = resolution;
+            this.length = length;
+            this.featureCount = featureCount;
+            this.boundaries = boundaries;
+        }
+
+        /**
+         * Returns the width of the bins that the counts were made at.
+         *
+         * @return a number of bases
+         */
+        public int getResolution() {
+            return resolution;
+        }
+
+        /**
+         * Returns the length of the chromosome.
+         *
+         * @return a number of bases
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Returns the number of features located on the chromosome.
+         *
+         * @return a count
+         */
+        public int getFeatureCount() {
+            return featureCount;
+        }
+
+        /**
+         * Returns whether count() can be used for a region. It can if the region starts and
+         * ends on bin boundaries, or is at least MIN_BINS bins wide.
+         *
+         * @param start the interbase start of the region
+         * @param end the interbase end of the region
+         * @return true if the region can be counted from the index
+         */
+        public boolean canCount(int start, int end) {
+            if (end <= start) {
+                return false;
+            }
+            return (isBoundary(start) && isBoundary(end))
+                || ((long) end - start >= (long) MIN_BINS * resolution);
+        }
+
+        private boolean isBoundary(int position) {
+            return (position % resolution == 0)
+                || ((long) position >= (long) (boundaries - 1) * resolution);
+        }
+
+        /**
+         * Returns the number of features that overlap a region, with the ends of the region
+         * rounded to the nearest bin boundary.
+         *
+         * @param start the interbase start of the region
+         * @param end the interbase end of the region
+         * @return the number of features
+         */
+        public int count(int start, int end) {
+            int from = boundary(start);
+            int to = boundary(end);
+            if (to <= from) {
+                return 0;
+            }
+            return Math.max(0, startsBefore.get(to) - endsBefore.get(from));
+        }
+
+        private int boundary(int position) {
+            long rounded = ((long) position + resolution / 2) / resolution;
+            return (int) Math.max(0, Math.min(boundaries - 1, rounded));
+        }
+    }
+
+    /**
+     * Writes an index file, one track at a time. The tracks are written as they are added, and
+     * the directory of tracks is written when the Writer is closed.
+     */
+    public static final class Writer
+    {
+        private final int resolution;
+        private final DataOutputStream out;
+        private final List<Track> written = new ArrayList<Track>();
+        private long position = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param file the file to write the index to
+         * @param resolution the width of the bins to count features in
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(File file, int resolution) throws IOException {
+            if (resolution < 1) {
+                throw new IllegalArgumentException("resolution must be at least 1");
+            }
+            this.resolution = resolution;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                        65536));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            position = 8;
+        }
+
+        /**
+         * Adds the counts for one class of feature on one chromosome.
+         *
+         * @param taxonId the taxon id of the organism
+         * @param chromosome the primaryIdentifier of the chromosome
+         * @param className the unqualified name of the class of feature
+         * @param length the length of the chromosome, or 0 if it is not known
+         * @param starts the interbase start of each feature
+         * @param ends the interbase end of each feature
+         * @param count the number of features in starts and ends
+         * @throws IOException if the file cannot be written
+         */
+        public void addTrack(int taxonId, String chromosome, String className, int length,
+                int[] starts, int[] ends, int count) throws IOException {
+            long extent = Math.max(length, 1);
+            for (int i = 0; i < count; i++) {
+                extent = Math.max(extent, ends[i]);
+            }
+            int bins = (int) ((extent + resolution - 1) / resolution);
+            // startBins[k] counts features starting in bin k, endBins[k] features whose end
+            // rounds up to boundary k
+            int[] startBins = new int[bins + 1];
+            int[] endBins = new int[bins + 1];
+            for (int i = 0; i < count; i++) {
+                startBins[Math.max(0, starts[i]) / resolution]++;
+                endBins[(int) ((Math.max(0L, ends[i]) + resolution - 1) / resolution)]++;
+            }
+            int sum = 0;
+            for (int k = 0; k <= bins; k++) {
+                out.writeInt(sum);
+                sum += startBins[k];
+            }
+            sum = 0;
+            for (int k = 0; k <= bins; k++) {
+                sum += endBins[k];
+                out.writeInt(sum);
+            }
+            Track track = new Track(taxonId, chromosome, className, resolution, length, count,
+                    bins + 1);
+            track.offset = position;
+            written.add(track);
+            position += 8L * (bins + 1);
+        }
+
+        /**
+         * Writes the directory of tracks and closes the file.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        public void close() throws IOException {
+            long directoryOffset = position;
+            out.writeInt(written.size());
+            for (Track track : written) {
+                out.writeInt(track.taxonId);
+                out.writeUTF(track.chromosome);
+                out.writeUTF(track.className);
+                out.writeInt(track.resolution);
+                out.writeInt(track.length);
+                out.writeInt(track.featureCount);
+                out.writeInt(track.boundaries);
+                out.writeLong(track.offset);
+            }
+            out.writeLong(directoryOffset);
+            out.close();
+        }
+
+        /**
+         * Returns the number of tracks added so far.
+         *
+         * @return a count
+         */
+        public int getTrackCount() {
+            return written.size();
+        }
+    }
+}
@@ -1,21 +1,23 @@
 package org.intermine.bio.util;
 
+import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import junit.framework.TestCase;
 
-import org.intermine.objectstore.ObjectStore;
-import org.intermine.objectstore.ObjectStoreFactory;
+import org.intermine.objectstore.dummy.ObjectStoreDummyImpl;
 import org.intermine.objectstore.query.Clob;
 import org.intermine.objectstore.query.ClobAccess;
+import org.intermine.objectstore.query.ResultsRow;
 
 public class ClobAccessReverseComplementTest extends TestCase
 {
-    private ObjectStore os;
+    private ObjectStoreDummyImpl os;
 
     public void setUp() throws Exception {
-        os = ObjectStoreFactory.getObjectStore("os.bio-test");
+        os = new ObjectStoreDummyImpl();
     }
 
     public void testTranslate() throws Exception {
@@ -67,4 +69,98 @@ public class ClobAccessReverseComplementTest extends TestCase
 
     }
 
+    public void testGetChars() throws Exception {
+        String sequence = createClob(Clob.CLOB_PAGE_SIZE * 2 + 500);
+        ClobAccessReverseComplement carc =
+            new ClobAccessReverseComplement(new ClobAccess(os, new Clob(1)));
+        String expected = reverseComplement(sequence);
+        assertEquals(expected.length(), carc.length());
+
+        char[] chars = new char[expected.length()];
+        carc.getChars(0, expected.length(), chars, 0);
+        assertEquals(expected, new String(chars));
+
+        // across each page boundary of the original clob, including an odd number of characters
+        int[][] ranges = new int[][] {{490, 510}, {Clob.CLOB_PAGE_SIZE + 495,
+            Clob.CLOB_PAGE_SIZE + 506}, {0, 1}, {expected.length() - 1, expected.length()},
+            {10, 10}};
+        for (int[] range : ranges) {
+            chars = new char[range[1] - range[0] + 3];
+            carc.getChars(range[0], range[1], chars, 3);
+            assertEquals(expected.substring(range[0], range[1]),
+                    new String(chars, 3, range[1] - range[0]));
+        }
+
+        try {
+            carc.getChars(0, expected.length() + 1, chars, 0);
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // as expected
+        }
+    }
+
+    public void testGetCharsOfSubSequence() throws Exception {
+        String sequence = createClob(Clob.CLOB_PAGE_SIZE * 2 + 500);
+        ClobAccess sub = new ClobAccess(os, new Clob(1)).subSequence(Clob.CLOB_PAGE_SIZE - 100,
+                Clob.CLOB_PAGE_SIZE * 2 + 100);
+        ClobAccessReverseComplement carc = new ClobAccessReverseComplement(sub);
+        String expected = reverseComplement(sequence.substring(Clob.CLOB_PAGE_SIZE - 100,
+                Clob.CLOB_PAGE_SIZE * 2 + 100));
+
+        char[] chars = new char[expected.length()];
+        carc.getChars(0, expected.length(), chars, 0);
+        assertEquals(expected, new String(chars));
+        carc.getChars(95, 106, chars, 0);
+        assertEquals(expected.substring(95, 106), new String(chars, 0, 11));
+        assertEquals(expected, carc.toString());
+    }
+
+    public void testDrainToWriter() throws Exception {
+        String sequence = createClob(Clob.CLOB_PAGE_SIZE * 2 + 500);
+        ClobAccess ca = new ClobAccess(os, new Clob(1));
+
+        StringWriter out = new StringWriter();
+        new ClobAccessReverseComplement(ca).drainToWriter(out);
+        assertEquals(reverseComplement(sequence), out.toString());
+
+        out = new StringWriter();
+        new ClobAccessReverseComplement(ca.subSequence(300, Clob.CLOB_PAGE_SIZE + 300))
+            .drainToWriter(out);
+        assertEquals(reverseComplement(sequence.substring(300, Clob.CLOB_PAGE_SIZE + 300)),
+                out.toString());
+
+        out = new StringWriter();
+        new ClobAccessReverseComplement(ca.subSequence(20, 20)).drainToWriter(out);
+        assertEquals("", out.toString());
+    }
+
+    /**
+     * Sets the dummy ObjectStore up to return the pages of a clob of the given length, and
+     * returns the contents of the clob.
+     */
+    private String createClob(int length) {
+        StringBuilder sequence = new StringBuilder();
+        String bases = "acgtnACGTN";
+        for (int i = 0; i < length; i++) {
+            sequence.append(bases.charAt((i * 7 + i / 13) % bases.length()));
+        }
+        int pages = 0;
+        for (int i = 0; i < length; i += Clob.CLOB_PAGE_SIZE) {
+            os.addRow(new ResultsRow<Object>(Collections.singletonList(sequence.substring(i,
+                    Math.min(i + Clob.CLOB_PAGE_SIZE, length)))));
+            pages++;
+        }
+        os.setResultsSize(pages);
+        return sequence.toString();
+    }
+
+    private String reverseComplement(String sequence) {
+        ClobAccessReverseComplement carc =
+            new ClobAccessReverseComplement(new ClobAccess(os, new Clob(1)));
+        StringBuilder retval = new StringBuilder();
+        for (int i = sequence.length() - 1; i >= 0; i--) {
+            retval.append(carc.translate(sequence.charAt(i)));
+        }
+        return retval.toString();
+    }
 }
@@ -0,0 +1,92 @@
+package org.intermine.bio.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FeatureDensityIndexTest extends TestCase
+{
+    private File file;
+    private int[] starts, ends;
+
+    public FeatureDensityIndexTest(String arg) {
+        super(arg);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        file = File.createTempFile("featuredensitytest", ".idx");
+        Random random = new Random(42);
+        starts = new int[5000];
+        ends = new int[5000];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = random.nextInt(1000000);
+            ends[i] = starts[i] + 1 + random.nextInt(i % 10 == 0 ? 50000 : 2000);
+        }
+        FeatureDensityIndex.Writer writer = new FeatureDensityIndex.Writer(file, 1000);
+        writer.addTrack(7227, "2L", "Gene", 1000000, starts, ends, starts.length);
+        writer.addTrack(7227, "X", "Gene", 500, new int[] {0, 100, 200}, new int[] {10, 150, 900},
+                3);
+        writer.close();
+    }
+
+    @Override
+    public void tearDown() {
+        file.delete();
+    }
+
+    private int overlapping(int start, int end) {
+        int count = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if ((starts[i] < end) && (ends[i] > start)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void testAlignedCounts() throws Exception {
+        FeatureDensityIndex index = FeatureDensityIndex.open(file);
+        FeatureDensityIndex.Track track = index.getTrack(7227, "2L", "Gene");
+        assertEquals(1000, track.getResolution());
+        assertEquals(1000000, track.getLength());
+        assertEquals(5000, track.getFeatureCount());
+        int[][] regions = new int[][] {{0, 1000}, {5000, 6000}, {0, 1000000}, {123000, 456000},
+            {999000, 1100000}, {2000000, 3000000}};
+        for (int[] region : regions) {
+            assertTrue(track.canCount(region[0], region[1]));
+            assertEquals(overlapping(region[0], region[1]), track.count(region[0], region[1]));
+        }
+    }
+
+    public void testUnalignedCounts() throws Exception {
+        FeatureDensityIndex.Track track = FeatureDensityIndex.open(file)
+            .getTrack(7227, "2L", "Gene");
+        assertFalse(track.canCount(1500, 2500));
+        assertFalse(track.canCount(2000, 2000));
+        assertTrue(track.canCount(1400, 11500));
+        // Rounded to the nearest boundaries
+        assertEquals(overlapping(1000, 12000), track.count(1400, 11500));
+    }
+
+    public void testShortChromosome() throws Exception {
+        FeatureDensityIndex index = FeatureDensityIndex.open(file);
+        FeatureDensityIndex.Track track = index.getTrack(7227, "X", "Gene");
+        assertEquals(3, track.getFeatureCount());
+        assertEquals(3, track.count(0, 1000));
+        assertFalse(track.canCount(0, 900));
+        assertNull(index.getTrack(7227, "X", "Exon"));
+        assertNull(index.getTrack(9606, "X", "Gene"));
+    }
+}
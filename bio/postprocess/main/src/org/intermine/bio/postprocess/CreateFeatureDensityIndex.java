@@ -0,0 +1,187 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+import org.intermine.bio.util.FeatureDensityIndex;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.model.bio.Chromosome;
+import org.intermine.model.bio.Location;
+import org.intermine.model.bio.Organism;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.query.ConstraintOp;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.ContainsConstraint;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
+import org.intermine.sql.Database;
+
+/**
+ * Counts the located features of every SequenceFeature class on each chromosome, and stores the
+ * counts in the database as a FeatureDensityIndex, for the JBrowse endpoint to draw density
+ * tracks from.
+ */
+public class CreateFeatureDensityIndex
+{
+    private static final Logger LOG = Logger.getLogger(CreateFeatureDensityIndex.class);
+
+    /**
+     * The default width of the bins that features are counted in.
+     */
+    public static final int DEFAULT_RESOLUTION = 10000;
+
+    private final ObjectStore os;
+    private final int resolution;
+
+    /**
+     * Constructor.
+     *
+     * @param os the ObjectStore to count features in
+     * @param resolution the width of the bins to count features in
+     */
+    public CreateFeatureDensityIndex(ObjectStore os, int resolution) {
+        this.os = os;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Counts the features and stores the index in the database.
+     *
+     * @throws ObjectStoreException if a query fails
+     * @throws SQLException if the index cannot be stored
+     * @throws IOException if the temporary index file cannot be written
+     */
+    public void createIndex() throws ObjectStoreException, SQLException, IOException {
+        if (!(os instanceof ObjectStoreInterMineImpl)) {
+            throw new RuntimeException("cannot create feature density index - ObjectStore must "
+                    + "be an instance of ObjectStoreInterMineImpl");
+        }
+        Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+        Model model = os.getModel();
+        ClassDescriptor sequenceFeature = model.getClassDescriptorByName("SequenceFeature");
+        // Subclasses are counted along with their superclasses, as the endpoint's queries do
+        Set<String> classNames = new TreeSet<String>();
+        classNames.add(sequenceFeature.getName());
+        for (ClassDescriptor cld : model.getAllSubs(sequenceFeature)) {
+            classNames.add(cld.getName());
+        }
+
+        File file = File.createTempFile("featuredensity", ".idx");
+        try {
+            FeatureDensityIndex.Writer writer = new FeatureDensityIndex.Writer(file, resolution);
+            for (String className : classNames) {
+                long start = System.currentTimeMillis();
+                int before = writer.getTrackCount();
+                addTracks(writer, model.getClassDescriptorByName(className));
+                LOG.info("Counted " + className + " features on " + (writer.getTrackCount()
+                            - before) + " chromosomes in " + (System.currentTimeMillis() - start)
+                        + " ms");
+            }
+            writer.close();
+            LOG.info("Storing feature density index with " + writer.getTrackCount()
+                    + " tracks (" + file.length() + " bytes)");
+            FeatureDensityIndex.store(db, file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void addTracks(FeatureDensityIndex.Writer writer, ClassDescriptor cld)
+        throws ObjectStoreException, IOException {
+        Query q = new Query();
+        QueryClass qcFeature = new QueryClass(cld.getType());
+        QueryClass qcLoc = new QueryClass(Location.class);
+        QueryClass qcChr = new QueryClass(Chromosome.class);
+        QueryClass qcOrg = new QueryClass(Organism.class);
+        q.addFrom(qcFeature);
+        q.addFrom(qcLoc);
+        q.addFrom(qcChr);
+        q.addFrom(qcOrg);
+        QueryField qfTaxonId = new QueryField(qcOrg, "taxonId");
+        QueryField qfChrId = new QueryField(qcChr, "primaryIdentifier");
+        q.addToSelect(qfTaxonId);
+        q.addToSelect(qfChrId);
+        q.addToSelect(new QueryField(qcChr, "length"));
+        q.addToSelect(new QueryField(qcLoc, "start"));
+        q.addToSelect(new QueryField(qcLoc, "end"));
+        q.addToOrderBy(qfTaxonId);
+        q.addToOrderBy(qfChrId);
+        ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+        cs.addConstraint(new ContainsConstraint(new QueryObjectReference(qcFeature,
+                        "chromosomeLocation"), ConstraintOp.CONTAINS, qcLoc));
+        cs.addConstraint(new ContainsConstraint(new QueryObjectReference(qcLoc, "locatedOn"),
+                    ConstraintOp.CONTAINS, qcChr));
+        cs.addConstraint(new ContainsConstraint(new QueryObjectReference(qcFeature, "organism"),
+                    ConstraintOp.CONTAINS, qcOrg));
+        q.setConstraint(cs);
+
+        String className = cld.getUnqualifiedName();
+        Integer taxonId = null;
+        String chromosome = null;
+        int length = 0;
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        int count = 0;
+        ResultsStream rows = os.stream(q);
+        try {
+            while (rows.hasNext()) {
+                ResultsRow<Object> row = rows.next();
+                Integer rowTaxonId = (Integer) row.get(0);
+                String rowChromosome = (String) row.get(1);
+                if ((rowTaxonId == null) || (rowChromosome == null)
+                        || (row.get(3) == null) || (row.get(4) == null)) {
+                    continue;
+                }
+                if (!rowTaxonId.equals(taxonId) || !rowChromosome.equals(chromosome)) {
+                    if (count > 0) {
+                        writer.addTrack(taxonId.intValue(), chromosome, className, length,
+                                starts, ends, count);
+                    }
+                    taxonId = rowTaxonId;
+                    chromosome = rowChromosome;
+                    Integer rowLength = (Integer) row.get(2);
+                    length = (rowLength == null ? 0 : rowLength.intValue());
+                    count = 0;
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                int start = ((Integer) row.get(3)).intValue();
+                int end = ((Integer) row.get(4)).intValue();
+                // Base to interbase co-ordinates
+                starts[count] = Math.min(start, end) - 1;
+                ends[count] = Math.max(start, end);
+                count++;
+            }
+        } finally {
+            rows.close();
+        }
+        if (count > 0) {
+            writer.addTrack(taxonId.intValue(), chromosome, className, length, starts, ends,
+                    count);
+        }
+    }
+}
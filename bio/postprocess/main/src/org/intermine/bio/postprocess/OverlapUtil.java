@@ -10,12 +10,19 @@ package org.intermine.bio.postprocess;
  *
  */
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.log4j.Logger;
 import org.intermine.metadata.Model;
@@ -46,6 +53,9 @@ import org.intermine.util.DynamicUtil;
 public abstract class OverlapUtil
 {
     private static final Logger LOG = Logger.getLogger(OverlapUtil.class);
+    // number of overlapping pairs passed from a finder to the storing thread at once
+    private static final int CHUNK_SIZE = 10000;
+    private static final int QUEUE_CHUNKS = 16;
 
     private OverlapUtil() {
       //disable external instantiation
@@ -72,6 +82,34 @@ public abstract class OverlapUtil
             List<?> classNamesToIgnore, boolean ignoreSelfMatches, ObjectStoreWriter osw,
             Map<String, Integer> summary)
         throws ObjectStoreException, ClassNotFoundException {
+        createOverlaps(os, Collections.singletonList(subject), classNamesToIgnore,
+                ignoreSelfMatches, osw, summary, 1);
+    }
+
+    /**
+     * Creates OverlapRelations for overlapping SequenceFeature objects that are located on any
+     * of the given subjects (generally Chromosomes). The locations on each subject are read and
+     * compared by one of a number of threads, and the overlaps found are stored by the calling
+     * thread, which is the only one to use the ObjectStoreWriter.
+     *
+     * @param os the ObjectStore to query
+     * @param subjects the SequenceFeatures (eg. Chromosomes) where the LSFs are located
+     * @param classNamesToIgnore a List of the names of those classes that should be ignored when
+     * searching for overlaps.  Sub classes to these classes are ignored too. In addition, an
+     * entry can be of the form class=class, which specifies that the particular combination should
+     * be ignored. Hence an entry of the form class is equivalent to class=InterMineObject
+     * @param ignoreSelfMatches if true, don't create OverlapRelations between two objects of the
+     * same class
+     * @param osw the ObjectStoreWriter to use to write to the database
+     * @param summary a Map, to which summary data will be added
+     * @param threads the number of subjects to read at once
+     * @throws ObjectStoreException if an error occurs while writing
+     * @throws ClassNotFoundException if there is an ObjectStore problem
+     */
+    public static void createOverlaps(final ObjectStore os,
+            Collection<? extends SequenceFeature> subjects, List<?> classNamesToIgnore,
+            boolean ignoreSelfMatches, ObjectStoreWriter osw, Map<String, Integer> summary,
+            int threads) throws ObjectStoreException, ClassNotFoundException {
         Model model = os.getModel();
 
         Map<Class<?>, Set<Class<?>>> classesToIgnore = new HashMap<Class<?>, Set<Class<?>>>();
@@ -106,108 +144,360 @@ public abstract class OverlapUtil
             }
         }
 
-        Query q = new Query();
-        ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
-        q.setConstraint(cs);
+        // Overlaps found by the finders are passed to this thread in chunks, followed by a
+        // SubjectOverlaps once each subject is finished
+        BlockingQueue<Object> found = new ArrayBlockingQueue<Object>(QUEUE_CHUNKS);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        int count = 0;
+        try {
+            for (SequenceFeature subject : subjects) {
+                pool.execute(new OverlapFinder(os, subject, classesToIgnore, ignoreSelfMatches,
+                            found));
+            }
+            int remaining = subjects.size();
+            while (remaining > 0) {
+                Object next = found.take();
+                if (next instanceof int[]) {
+                    int[] pairs = (int[]) next;
+                    for (int i = 0; i < pairs.length; i += 2) {
+                        Integer id1 = new Integer(pairs[i]);
+                        Integer id2 = new Integer(pairs[i + 1]);
+                        osw.addToCollection(id1, SequenceFeature.class, "overlappingFeatures",
+                                id2);
+                        osw.addToCollection(id2, SequenceFeature.class, "overlappingFeatures",
+                                id1);
+                    }
+                } else {
+                    SubjectOverlaps done = (SubjectOverlaps) next;
+                    remaining--;
+                    if (done.error instanceof ObjectStoreException) {
+                        throw (ObjectStoreException) done.error;
+                    } else if (done.error instanceof RuntimeException) {
+                        throw (RuntimeException) done.error;
+                    } else if (done.error != null) {
+                        throw new RuntimeException("Error finding overlaps on feature id "
+                                + done.subject.getId(), done.error);
+                    }
+                    LOG.info("Stored " + done.count + " overlaps for " + done.features
+                            + " features on feature id " + done.subject.getId()
+                            + ", identifier: " + done.subject.getSecondaryIdentifier());
+                    count += done.count;
+                    for (Map.Entry<String, Integer> entry : done.summary.entrySet()) {
+                        Integer summaryCount = summary.get(entry.getKey());
+                        summary.put(entry.getKey(), new Integer(entry.getValue().intValue()
+                                    + (summaryCount == null ? 0 : summaryCount.intValue())));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new ObjectStoreException("Interrupted while storing overlaps", e);
+        } finally {
+            // stops the finders if this thread failed to store their overlaps
+            pool.shutdownNow();
+        }
+        Integer summaryCount = summary.get("total");
+        if (summaryCount == null) {
+            summaryCount = new Integer(0);
+        }
+        summary.put("total", new Integer(summaryCount.intValue() + count));
+    }
 
-        QueryClass qcLoc = new QueryClass(Location.class);
-        q.addFrom(qcLoc);
-        q.addToSelect(qcLoc);
+    /**
+     * Finds all the pairs of overlapping intervals, by sweeping along the sequence keeping the
+     * intervals that the sweep is inside in a heap ordered by end. Each interval is compared
+     * only to the intervals that it overlaps, and the intervals that end before it starts are
+     * taken off the heap in logarithmic time, so the time taken is proportional to the number
+     * of overlaps rather than to the square of the number of intervals.
+     *
+     * @param starts the starts of the intervals, in ascending order
+     * @param ends the ends of the intervals, which are inclusive
+     * @param size the number of intervals in the arrays
+     * @param handler called for each pair of overlapping intervals with their indexes, the later
+     * interval first
+     * @throws InterruptedException if the handler is interrupted
+     */
+    static void findOverlaps(int[] starts, int[] ends, int size, OverlapHandler handler)
+        throws InterruptedException {
+        int[] heap = new int[Math.max(1, size)];
+        int heapSize = 0;
+        for (int i = 0; i < size; i++) {
+            int start = starts[i];
+            while ((heapSize > 0) && (ends[heap[0]] < start)) {
+                heapSize--;
+                heap[0] = heap[heapSize];
+                siftDown(heap, heapSize, ends);
+            }
+            for (int j = 0; j < heapSize; j++) {
+                handler.overlap(i, heap[j]);
+            }
+            int pos = heapSize++;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (ends[heap[parent]] <= ends[i]) {
+                    break;
+                }
+                heap[pos] = heap[parent];
+                pos = parent;
+            }
+            heap[pos] = i;
+        }
+    }
 
-        q.setDistinct(false);
-        QueryClass qcObj = new QueryClass(SequenceFeature.class);
-        q.addFrom(qcObj);
-        q.addToSelect(qcObj);
+    private static void siftDown(int[] heap, int heapSize, int[] ends) {
+        if (heapSize == 0) {
+            return;
+        }
+        int pos = 0;
+        int value = heap[0];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if ((child + 1 < heapSize) && (ends[heap[child + 1]] < ends[heap[child]])) {
+                child++;
+            }
+            if (ends[value] <= ends[heap[child]]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = value;
+    }
 
-        QueryObjectReference ref1 = new QueryObjectReference(qcLoc, "feature");
-        ContainsConstraint cc1 = new ContainsConstraint(ref1, ConstraintOp.CONTAINS, qcObj);
-        cs.addConstraint(cc1);
+    /**
+     * Receives the pairs of overlapping intervals found by findOverlaps().
+     */
+    interface OverlapHandler
+    {
+        /**
+         * Called for a pair of overlapping intervals.
+         *
+         * @param i the index of the later interval
+         * @param j the index of the earlier interval
+         * @throws InterruptedException if interrupted while handling the pair
+         */
+        void overlap(int i, int j) throws InterruptedException;
+    }
 
-        QueryObjectReference ref2 = new QueryObjectReference(qcLoc, "locatedOn");
-        ContainsConstraint subjectIdConstraint = new ContainsConstraint(ref2, ConstraintOp.CONTAINS,
-                subject);
-        cs.addConstraint(subjectIdConstraint);
+    /**
+     * Reads the locations on one subject into arrays and finds the overlaps between them.
+     */
+    private static class OverlapFinder implements Runnable, OverlapHandler
+    {
+        private final ObjectStore os;
+        private final SequenceFeature subject;
+        private final Map<Class<?>, Set<Class<?>>> classesToIgnore;
+        private final boolean ignoreSelfMatches;
+        private final BlockingQueue<Object> found;
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+        private final Map<Class<?>, Integer> classIndexes = new HashMap<Class<?>, Integer>();
+        private int[] starts = new int[1024];
+        private int[] ends = new int[1024];
+        private int[] ids = new int[1024];
+        private int[] classOf = new int[1024];
+        // whether overlaps between two classes are stored, and how many have been
+        private boolean[][] wanted = new boolean[0][0];
+        private int[][] counts = new int[0][0];
+        private int[] chunk = new int[CHUNK_SIZE * 2];
+        private int chunkSize = 0;
+        private int count = 0;
+
+        OverlapFinder(ObjectStore os, SequenceFeature subject,
+                Map<Class<?>, Set<Class<?>>> classesToIgnore, boolean ignoreSelfMatches,
+                BlockingQueue<Object> found) {
+            this.os = os;
+            this.subject = subject;
+            this.classesToIgnore = classesToIgnore;
+            this.ignoreSelfMatches = ignoreSelfMatches;
+            this.found = found;
+        }
 
-        q.addToOrderBy(new QueryField(qcLoc, "start"));
+        public void run() {
+            SubjectOverlaps done = new SubjectOverlaps(subject);
+            try {
+                done.features = readLocations();
+                findOverlaps(starts, ends, done.features, this);
+                if (chunkSize > 0) {
+                    int[] last = new int[chunkSize];
+                    System.arraycopy(chunk, 0, last, 0, chunkSize);
+                    found.put(last);
+                }
+                done.count = count;
+                for (int i = 0; i < classes.size(); i++) {
+                    for (int j = 0; j <= i; j++) {
+                        if (counts[i][j] > 0) {
+                            String classname1 = DynamicUtil.getFriendlyName(classes.get(i));
+                            String classname2 = DynamicUtil.getFriendlyName(classes.get(j));
+                            String summaryLine = classname1.compareTo(classname2) > 0
+                                ? classname2 + " - " + classname1 : classname1 + " - "
+                                + classname2;
+                            Integer summaryCount = done.summary.get(summaryLine);
+                            done.summary.put(summaryLine, new Integer(counts[i][j]
+                                        + (summaryCount == null ? 0 : summaryCount.intValue())));
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // the storing thread has given up
+                return;
+            } catch (Throwable t) {
+                done.error = t;
+            }
+            try {
+                found.put(done);
+            } catch (InterruptedException e) {
+                // the storing thread has given up
+            }
+        }
 
-        try {
-            ((ObjectStoreInterMineImpl) os).goFaster(q);
-            Results results = os.execute(q);
-            Map<Location, SequenceFeature> currentLocations
-                = new HashMap<Location, SequenceFeature>();
-            int count = 0;
-            Iterator<?> resIter = results.iterator();
+        /**
+         * Reads the locations on the subject, ordered by start, into the arrays.
+         *
+         * @return the number of locations read
+         */
+        private int readLocations() throws ObjectStoreException {
+            Query q = new Query();
+            ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+            q.setConstraint(cs);
+
+            QueryClass qcLoc = new QueryClass(Location.class);
+            q.addFrom(qcLoc);
+            q.addToSelect(qcLoc);
+
+            q.setDistinct(false);
+            QueryClass qcObj = new QueryClass(SequenceFeature.class);
+            q.addFrom(qcObj);
+            q.addToSelect(qcObj);
+
+            QueryObjectReference ref1 = new QueryObjectReference(qcLoc, "feature");
+            ContainsConstraint cc1 = new ContainsConstraint(ref1, ConstraintOp.CONTAINS, qcObj);
+            cs.addConstraint(cc1);
+
+            QueryObjectReference ref2 = new QueryObjectReference(qcLoc, "locatedOn");
+            ContainsConstraint subjectIdConstraint = new ContainsConstraint(ref2,
+                    ConstraintOp.CONTAINS, subject);
+            cs.addConstraint(subjectIdConstraint);
+
+            q.addToOrderBy(new QueryField(qcLoc, "start"));
+
+            int size = 0;
+            try {
+                ((ObjectStoreInterMineImpl) os).goFaster(q);
+                Results results = os.execute(q);
+                Iterator<?> resIter = results.iterator();
+                while (resIter.hasNext()) {
+                    ResultsRow<?> rr = (ResultsRow<?>) resIter.next();
 
-            while (resIter.hasNext()) {
-                ResultsRow<?> rr = (ResultsRow<?>) resIter.next();
+                    Location location = (Location) rr.get(0);
 
-                Location location = (Location) rr.get(0);
+                    if (location.getStart() == null || location.getEnd() == null) {
+                        continue;
+                    }
 
-                if (location.getStart() == null || location.getEnd() == null) {
-                    continue;
-                }
+                    SequenceFeature lsf = (SequenceFeature) rr.get(1);
 
-                SequenceFeature lsf = (SequenceFeature) rr.get(1);
+                    int classIndex = getClassIndex(lsf.getClass());
+                    if (classIndex == -1) {
+                        continue;
+                    }
 
-                if (isAClassToIgnore(classesToIgnore, lsf.getClass())) {
-                    continue;
+                    if (size == starts.length) {
+                        starts = grow(starts);
+                        ends = grow(ends);
+                        ids = grow(ids);
+                        classOf = grow(classOf);
+                    }
+                    starts[size] = location.getStart().intValue();
+                    ends[size] = location.getEnd().intValue();
+                    ids[size] = lsf.getId().intValue();
+                    classOf[size] = classIndex;
+                    size++;
                 }
+            } finally {
+                ((ObjectStoreInterMineImpl) os).releaseGoFaster(q);
+            }
+            return size;
+        }
 
-                int start = location.getStart().intValue();
-
-                // Okay, first we compare this location to all the currentLocations.
-                Iterator<?> currIter = currentLocations.entrySet().iterator();
-                while (currIter.hasNext()) {
-                    Map.Entry<Location, SequenceFeature> currEntry = (Map.Entry<Location,
-                            SequenceFeature>) currIter.next();
-                    Location currLoc = currEntry.getKey();
-                    SequenceFeature currLsf = currEntry.getValue();
-                    if (currLoc.getEnd().intValue() < start) {
-                        currIter.remove();
-                    } else {
-                        // They overlap, so check to see if we have configured them out.
-                        if ((!ignoreSelfMatches)
-                                || (!lsf.getClass().equals(currLsf.getClass()))) {
-                            if (!(ignoreCombination(classesToIgnore, lsf.getClass(),
-                                            currLsf.getClass())
-                                    || ignoreCombination(classesToIgnore, currLsf.getClass(),
-                                        lsf.getClass()))) {
-                                ++count;
-                                osw.addToCollection(lsf.getId(), SequenceFeature.class,
-                                        "overlappingFeatures", currLsf.getId());
-                                osw.addToCollection(currLsf.getId(), SequenceFeature.class,
-                                        "overlappingFeatures", lsf.getId());
-
-                                // Log it, for the summary.
-                                String classname1 = DynamicUtil.getFriendlyName(lsf.getClass());
-                                String classname2 = DynamicUtil.getFriendlyName(currLsf
-                                        .getClass());
-
-                                String summaryLine = classname1.compareTo(classname2) > 0
-                                    ? classname2 + " - " + classname1 : classname1 + " - "
-                                    + classname2;
-                                Integer summaryCount = summary.get(summaryLine);
-                                if (summaryCount == null) {
-                                    summaryCount = new Integer(0);
-                                }
-                                summary.put(summaryLine, new Integer(summaryCount.intValue()
-                                            + 1));
-                            }
-                        }
+        /**
+         * Returns the index of a class in the tables of wanted overlaps, adding it if it is new.
+         *
+         * @return the index, or -1 if objects of the class are ignored
+         */
+        private int getClassIndex(Class<?> c) {
+            Integer index = classIndexes.get(c);
+            if (index == null) {
+                if (isAClassToIgnore(classesToIgnore, c)) {
+                    index = new Integer(-1);
+                } else {
+                    int n = classes.size();
+                    classes.add(c);
+                    boolean[][] newWanted = new boolean[n + 1][n + 1];
+                    int[][] newCounts = new int[n + 1][n + 1];
+                    for (int i = 0; i < n; i++) {
+                        System.arraycopy(wanted[i], 0, newWanted[i], 0, n);
+                        System.arraycopy(counts[i], 0, newCounts[i], 0, n);
+                    }
+                    for (int i = 0; i <= n; i++) {
+                        Class<?> other = classes.get(i);
+                        boolean pairWanted = ((!ignoreSelfMatches) || (!c.equals(other)))
+                            && !(ignoreCombination(classesToIgnore, c, other)
+                                    || ignoreCombination(classesToIgnore, other, c));
+                        newWanted[n][i] = pairWanted;
+                        newWanted[i][n] = pairWanted;
                     }
+                    wanted = newWanted;
+                    counts = newCounts;
+                    index = new Integer(n);
                 }
-                currentLocations.put(location, lsf);
+                classIndexes.put(c, index);
             }
-            LOG.info("Stored " + count + " overlaps for " + results.size()
-                    + " features on feature id " + subject.getId() + ", identifier: "
-                     + subject.getSecondaryIdentifier());
-            Integer summaryCount = summary.get("total");
-            if (summaryCount == null) {
-                summaryCount = new Integer(0);
+            return index.intValue();
+        }
+
+        public void overlap(int i, int j) throws InterruptedException {
+            int class1 = classOf[i];
+            int class2 = classOf[j];
+            if (!wanted[class1][class2]) {
+                return;
             }
-            summary.put("total", new Integer(summaryCount.intValue() + count));
-        } finally {
-            ((ObjectStoreInterMineImpl) os).releaseGoFaster(q);
+            count++;
+            if (class1 >= class2) {
+                counts[class1][class2]++;
+            } else {
+                counts[class2][class1]++;
+            }
+            chunk[chunkSize++] = ids[i];
+            chunk[chunkSize++] = ids[j];
+            if (chunkSize == chunk.length) {
+                found.put(chunk);
+                chunk = new int[CHUNK_SIZE * 2];
+                chunkSize = 0;
+            }
+        }
+
+        private static int[] grow(int[] array) {
+            int[] retval = new int[array.length * 2];
+            System.arraycopy(array, 0, retval, 0, array.length);
+            return retval;
+        }
+    }
+
+    /**
+     * The result of finding the overlaps on one subject.
+     */
+    private static class SubjectOverlaps
+    {
+        private final SequenceFeature subject;
+        private final Map<String, Integer> summary = new HashMap<String, Integer>();
+        private int features = 0;
+        private int count = 0;
+        private Throwable error = null;
+
+        SubjectOverlaps(SequenceFeature subject) {
+            this.subject = subject;
         }
     }
 
@@ -15,16 +15,23 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.apache.tools.ant.BuildException;
 
 
 import org.intermine.api.config.ClassKeyHelper;
+import org.intermine.metadata.ClassDescriptor;
 import org.intermine.metadata.FieldDescriptor;
+import org.intermine.metadata.Model;
 import org.intermine.modelproduction.MetadataManager;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreSummary;
@@ -48,6 +55,56 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
 {
     private static final Logger LOGGER = Logger.getLogger(PostProcessOperationsTask.class);
 
+    // The data that each operation reads and writes, used to find the operations that can run
+    // at the same time.  Objects are named by the most general class that the operation reads or
+    // changes, a collection by Class.collection, and "*" stands for all objects.  Names with a
+    // colon are other things in the database, which only clash with the same name.  Operations
+    // that are not declared here are never run at the same time as another operation.
+    private static final Map<String, Set<String>> READS = new HashMap<String, Set<String>>();
+    private static final Map<String, Set<String>> WRITES = new HashMap<String, Set<String>>();
+    private static Model model = null;
+
+    static {
+        declare("create-chromosome-locations-and-lengths", "Location SequenceFeature",
+                "SequenceFeature");
+        declare("set-missing-chromosome-locations", "Location SequenceFeature",
+                "SequenceFeature");
+        declare("create-references", "BioEntity", "BioEntity");
+        declare("create-utr-references", "MRNA UTR", "MRNA");
+        declare("transfer-sequences", "Location Sequence SequenceFeature",
+                "Sequence SequenceFeature");
+        declare("transfer-sequences-located-sequence-feature", "Location Sequence SequenceFeature",
+                "Sequence SequenceFeature");
+        declare("transfer-sequences-transcripts", "Location Sequence SequenceFeature",
+                "Sequence SequenceFeature");
+        declare("make-spanning-locations", "Location SequenceFeature", "Location");
+        declare("create-intergenic-region-features", "Location SequenceFeature DataSet",
+                "Location SequenceFeature DataSet DataSource");
+        declare("create-gene-flanking-features", "Location SequenceFeature Organism DataSet",
+                "Location SequenceFeature DataSet DataSource");
+        declare("create-intron-features", "Location SequenceFeature Organism DataSet",
+                "Location SequenceFeature DataSet DataSource");
+        declare("create-overlap-relations-flymine", "Location SequenceFeature",
+                "SequenceFeature.overlappingFeatures");
+        declare("summarise-objectstore", "*", "metadata:summary");
+        declare("precompute-queries", "*", "precompute:queries");
+        declare("create-lucene-index", "*", "metadata:autocomplete");
+        declare("create-autocomplete-index", "*", "metadata:autocomplete");
+        declare("create-search-index", "*", "metadata:search");
+        declare("create-overlap-view", "Location", "SequenceFeature.overlappingFeatures");
+        declare("create-bioseg-location-index", "Location", "index:location");
+        declare("create-feature-density-index", "Location SequenceFeature Organism",
+                "metadata:featureDensity");
+        declare("link-ins", "BioEntity", "");
+        declare("populate-child-features", "SequenceFeature OntologyTerm", "SequenceFeature");
+    }
+
+    private static void declare(String operation, String reads, String writes) {
+        READS.put(operation, new HashSet<String>(Arrays.asList(reads.split(" "))));
+        WRITES.put(operation, "".equals(writes) ? Collections.<String>emptySet()
+                : new HashSet<String>(Arrays.asList(writes.split(" "))));
+    }
+
     protected String operation, objectStoreWriter, ensemblDb, organisms = null;
     protected File outputFile;
     protected ObjectStoreWriter osw;
@@ -88,6 +145,77 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
         this.ensemblDb = ensemblDb;
     }
 
+    /**
+     * Return true if the given operations must not run at the same time, because one of them
+     * changes data that the other reads or changes, or because it is not known what one of them
+     * does.  Called by PostProcessTask, which runs the post-processes in project.xml.
+     *
+     * @param operation1 the name of an operation
+     * @param operation2 the name of another operation
+     * @return true if the operations must be run one after the other
+     */
+    public static boolean operationsConflict(String operation1, String operation2) {
+        if (!READS.containsKey(operation1) || !READS.containsKey(operation2)) {
+            return true;
+        }
+        return clash(WRITES.get(operation1), WRITES.get(operation2))
+            || clash(WRITES.get(operation1), READS.get(operation2))
+            || clash(READS.get(operation1), WRITES.get(operation2));
+    }
+
+    private static boolean clash(Set<String> names1, Set<String> names2) {
+        for (String name1 : names1) {
+            for (String name2 : names2) {
+                if (clash(name1, name2)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean clash(String name1, String name2) {
+        if (name1.indexOf(':') != -1 || name2.indexOf(':') != -1) {
+            return name1.equals(name2);
+        }
+        if ("*".equals(name1) || "*".equals(name2)) {
+            return true;
+        }
+        int dot1 = name1.indexOf('.');
+        int dot2 = name2.indexOf('.');
+        String field1 = (dot1 == -1 ? null : name1.substring(dot1 + 1));
+        String field2 = (dot2 == -1 ? null : name2.substring(dot2 + 1));
+        if (field1 != null && field2 != null && !field1.equals(field2)) {
+            return false;
+        }
+        String class1 = (dot1 == -1 ? name1 : name1.substring(0, dot1));
+        String class2 = (dot2 == -1 ? name2 : name2.substring(0, dot2));
+        Model genomicModel = getModel();
+        if (genomicModel == null) {
+            return true;
+        }
+        ClassDescriptor cld1 = genomicModel.getClassDescriptorByName(class1);
+        ClassDescriptor cld2 = genomicModel.getClassDescriptorByName(class2);
+        if (cld1 == null || cld2 == null) {
+            // a class missing from this mine's model has no data to clash over
+            return false;
+        }
+        return cld1.getType().isAssignableFrom(cld2.getType())
+            || cld2.getType().isAssignableFrom(cld1.getType());
+    }
+
+    private static synchronized Model getModel() {
+        if (model == null) {
+            try {
+                model = Model.getInstanceByName("genomic");
+            } catch (RuntimeException e) {
+                LOGGER.warn("Can't read the genomic model, running post-processes one at a time",
+                        e);
+            }
+        }
+        return model;
+    }
+
     private ObjectStoreWriter getObjectStoreWriter() throws Exception {
         if (objectStoreWriter == null) {
             throw new BuildException("objectStoreWriter attribute is not set");
@@ -130,6 +258,7 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
             } else if ("transfer-sequences".equals(operation)) {
                 TransferSequences ts = new TransferSequences(getObjectStoreWriter());
                 ts = new TransferSequences(getObjectStoreWriter());
+                configureDynamicAttributes(ts);
                 LOGGER.info("Starting TransferSequences.transferToLocatedSequenceFeatures()");
                 ts.transferToLocatedSequenceFeatures();
 
@@ -138,6 +267,7 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
                 ts.transferToTranscripts();
             } else if ("transfer-sequences-located-sequence-feature".equals(operation)) {
                 TransferSequences ts = new TransferSequences(getObjectStoreWriter());
+                configureDynamicAttributes(ts);
                 LOGGER.info("Starting TransferSequences.transferToLocatedSequenceFeatures()");
                 ts.transferToLocatedSequenceFeatures();
             } else if ("transfer-sequences-transcripts".equals(operation)) {
@@ -181,6 +311,7 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
                 }
 
                 CalculateLocations cl = new CalculateLocations(getObjectStoreWriter());
+                configureDynamicAttributes(cl);
                 cl.createOverlapRelations(classNamesToIgnoreList, false);
             } else if ("set-collection-counts".equals(operation)) {
                 SetCollectionCounts setCounts = new SetCollectionCounts(getObjectStoreWriter());
@@ -276,6 +407,12 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
             } else if ("create-bioseg-location-index".equals(operation)) {
                 BiosegIndexTask bit = new BiosegIndexTask(getObjectStoreWriter());
                 bit.createIndex();
+            } else if ("create-feature-density-index".equals(operation)) {
+                CreateFeatureDensityIndex cfdi = new CreateFeatureDensityIndex(
+                        getObjectStoreWriter().getObjectStore(),
+                        CreateFeatureDensityIndex.DEFAULT_RESOLUTION);
+                LOGGER.info("Starting CreateFeatureDensityIndex.createIndex()");
+                cfdi.createIndex();
             } else if ("link-ins".equals(operation)) {
                 CreateFlyBaseLinkIns.createLinkInFile(getObjectStoreWriter().getObjectStore());
             } else if ("modmine-metadata-cache".equals(operation)) {
@@ -10,10 +10,20 @@ package org.intermine.bio.postprocess;
  *
  */
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.intermine.bio.util.ClobAccessReverseComplement;
@@ -30,6 +40,7 @@ import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
 import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.objectstore.query.Clob;
 import org.intermine.objectstore.query.ClobAccess;
 import org.intermine.objectstore.query.ConstraintOp;
 import org.intermine.objectstore.query.ConstraintSet;
@@ -39,6 +50,8 @@ import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryCollectionReference;
 import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryForeignKey;
+import org.intermine.objectstore.query.QueryFunction;
 import org.intermine.objectstore.query.QueryNode;
 import org.intermine.objectstore.query.QueryObjectReference;
 import org.intermine.objectstore.query.QueryValue;
@@ -47,6 +60,7 @@ import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.objectstore.query.SingletonResults;
 import org.intermine.util.DynamicUtil;
+import org.intermine.util.Util;
 
 /**
  * Transfer sequences from the Assembly objects to the other objects that are located on the
@@ -59,6 +73,11 @@ public class TransferSequences
 {
     protected ObjectStoreWriter osw;
     private Model model;
+    private int transferThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    // ids of features located on more than one chromosome, which several threads may find
+    private Set<Integer> sharedFeatures = Collections.emptySet();
+    // ids of shared features that a thread has taken, so that no other thread transfers them
+    private Set<Integer> claimedFeatures = Collections.emptySet();
     private static final Logger LOG = Logger.getLogger(TransferSequences.class);
 
     /**
@@ -70,12 +89,24 @@ public class TransferSequences
         this.model = osw.getModel();
     }
 
-    private void storeNewSequence(SequenceFeature feature, ClobAccess sequenceString)
+    /**
+     * Set the number of chromosomes to transfer sequences for at once, each with its own
+     * ObjectStoreWriter.  Called by DynamicAttributeTask from the transfer.threads property.
+     *
+     * @param transferThreads the number of threads, as a String
+     */
+    public void setTransferThreads(String transferThreads) {
+        this.transferThreads = Math.max(1, Integer.parseInt(transferThreads.trim()));
+    }
+
+    private void storeNewSequence(SequenceFeature feature, String residues)
         throws ObjectStoreException {
+        ClobAccess sequenceString = new PendingClob(residues);
         Sequence sequence =
             (Sequence) DynamicUtil.createObject(Collections.singleton(Sequence.class));
         sequence.setResidues(sequenceString);
         sequence.setLength(sequenceString.length());
+        sequence.setMd5checksum(Util.getMd5checksum(residues));
         osw.store(sequence);
         feature.proxySequence(new ProxyReference(osw.getObjectStore(),
                                                  sequence.getId(), Sequence.class));
@@ -86,8 +117,9 @@ public class TransferSequences
     /**
      * Use the Location relations to copy the sequence from the Chromosomes to every
      * SequenceFeature that is located on a Chromosome and which doesn't already have a
-     * sequence (ie. don't copy to Assembly).  Uses the ObjectStoreWriter that was passed to the
-     * constructor.
+     * sequence (ie. don't copy to Assembly).  The chromosomes are shared between a number of
+     * threads, each with a new ObjectStoreWriter on the ObjectStore of the one that was passed to
+     * the constructor, which is used instead if there is only one thread.
      *
      * @throws Exception if there are problems with the transfer
      */
@@ -116,23 +148,113 @@ public class TransferSequences
         LOG.info("Found " + chromosomes.size() + " chromosomes with sequence, took "
                 + (System.currentTimeMillis() - startTime) + " ms.");
 
-        for (Chromosome chr : chromosomes) {
-            String organism = "";
-            if (chr.getOrganism() != null) {
-                organism = chr.getOrganism().getShortName();
+        if (transferThreads > 1) {
+            // a transaction doesn't see features given sequences by other threads before they
+            // commit, so features on several chromosomes are claimed by the first thread to
+            // reach them, as the first chromosome to be done used to take them
+            sharedFeatures = findFeaturesOnSeveralChromosomes();
+            claimedFeatures = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+            LOG.info("Found " + sharedFeatures.size() + " features located on more than one "
+                    + "chromosome.");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(transferThreads);
+        try {
+            List<Future<Integer>> transfers = new ArrayList<Future<Integer>>();
+            for (final Chromosome chr : chromosomes) {
+                transfers.add(pool.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        return new Integer(transferForChromosome(chr));
+                    }
+                }));
             }
-            LOG.info("Starting transfer for " + organism + " chromosome "
-                    + chr.getPrimaryIdentifier());
-            transferForChromosome(chr);
+            int total = 0;
+            for (Future<Integer> transfer : transfers) {
+                try {
+                    total += transfer.get().intValue();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+            LOG.info("Set " + total + " feature sequences using " + transferThreads
+                    + " threads, took " + (System.currentTimeMillis() - startTime) + " ms.");
+        } finally {
+            pool.shutdownNow();
         }
     }
 
+    /**
+     * Return the ids of the features that are located on more than one chromosome with a
+     * sequence.
+     *
+     * @return a Set of feature ids
+     */
+    private Set<Integer> findFeaturesOnSeveralChromosomes() {
+        Query q = new Query();
+        q.setDistinct(false);
+        QueryClass qcLoc = new QueryClass(Location.class);
+        q.addFrom(qcLoc);
+        QueryClass qcChr = new QueryClass(Chromosome.class);
+        q.addFrom(qcChr);
+        QueryForeignKey qfFeature = new QueryForeignKey(qcLoc, "feature");
+        q.addToSelect(qfFeature);
+        q.addToSelect(new QueryFunction());
+        q.addToGroupBy(qfFeature);
 
-    private void transferForChromosome(Chromosome chr) throws Exception {
+        ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+        cs.addConstraint(new ContainsConstraint(new QueryObjectReference(qcLoc, "locatedOn"),
+                    ConstraintOp.CONTAINS, qcChr));
+        cs.addConstraint(new ContainsConstraint(new QueryObjectReference(qcChr, "sequence"),
+                    ConstraintOp.IS_NOT_NULL));
+        q.setConstraint(cs);
+
+        Set<Integer> retval = new HashSet<Integer>();
+        Results results = osw.getObjectStore().execute(q, 10000, true, false, false);
+        for (Object row : results) {
+            ResultsRow<?> rr = (ResultsRow<?>) row;
+            if (((Number) rr.get(1)).intValue() > 1) {
+                retval.add((Integer) rr.get(0));
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Transfer the sequences for the features on one chromosome, with a new ObjectStoreWriter
+     * unless there is only one thread.
+     *
+     * @return the number of features given sequences
+     */
+    private int transferForChromosome(Chromosome chr) throws Exception {
+        String organism = "";
+        if (chr.getOrganism() != null) {
+            organism = chr.getOrganism().getShortName();
+        }
+        LOG.info("Starting transfer for " + organism + " chromosome "
+                + chr.getPrimaryIdentifier());
+        ObjectStoreWriter writer = (transferThreads == 1 ? osw
+                : osw.getObjectStore().getNewWriter());
+        try {
+            return transferForChromosome(chr, writer);
+        } finally {
+            if (writer.isInTransaction()) {
+                writer.abortTransaction();
+            }
+            if (writer != osw) {
+                writer.close();
+            }
+        }
+    }
+
+    private int transferForChromosome(Chromosome chr, ObjectStoreWriter writer)
+        throws Exception {
 
         long startTime = System.currentTimeMillis();
 
-        ObjectStore os = osw.getObjectStore();
+        ObjectStore os = writer.getObjectStore();
         Query q = new Query();
         q.setDistinct(false);
         QueryClass qcChr = new QueryClass(Chromosome.class);
@@ -148,11 +270,12 @@ public class TransferSequences
         q.addFrom(qcSub);
         q.addToSelect(qcSub);
 
-        q.addToOrderBy(qcSub);
-
         QueryClass qcLoc = new QueryClass(Location.class);
         q.addFrom(qcLoc);
         q.addToSelect(qcLoc);
+        // in order of start, so that the chromosome sequence is read once, from start to end
+        q.addToOrderBy(new QueryField(qcLoc, "start"));
+        q.addToOrderBy(qcSub);
         QueryObjectReference ref1 = new QueryObjectReference(qcLoc, "locatedOn");
         ContainsConstraint cc1 = new ContainsConstraint(ref1, ConstraintOp.CONTAINS, qcChr);
         cs.addConstraint(cc1);
@@ -167,7 +290,7 @@ public class TransferSequences
 
         q.setConstraint(cs);
 
-        osw.beginTransaction();
+        writer.beginTransaction();
 
         Set<QueryNode> indexesToCreate = new HashSet<QueryNode>();
         indexesToCreate.add(qcLoc);
@@ -178,6 +301,7 @@ public class TransferSequences
 
         @SuppressWarnings("unchecked") Iterator<ResultsRow> resIter = (Iterator) results.iterator();
 
+        SequenceWindow window = new SequenceWindow(chr.getSequence().getResidues());
         long start = System.currentTimeMillis();
         int i = 0;
         while (resIter.hasNext()) {
@@ -212,20 +336,28 @@ public class TransferSequences
                     continue;
                 }
 
+                if (sharedFeatures.contains(feature.getId())
+                        && !claimedFeatures.add(feature.getId())) {
+                    // given a sequence from another chromosome
+                    continue;
+                }
+
                 Sequence sequence =
                     (Sequence) DynamicUtil.createObject(Collections.singleton(Sequence.class));
                 sequence.setResidues(featureSeq);
                 sequence.setLength(featureSeq.length());
-                osw.store(sequence);
+                sequence.setMd5checksum(window.getMd5checksum(featureSeq));
+                writer.store(sequence);
                 SequenceFeature cloneLsf = PostProcessUtil.cloneInterMineObject(feature);
                 cloneLsf.setSequence(sequence);
                 cloneLsf.setLength(new Integer(featureSeq.length()));
-                osw.store(cloneLsf);
+                writer.store(cloneLsf);
                 i++;
                 if (i % 1000 == 0) {
                     long now = System.currentTimeMillis();
-                    LOG.info("Set sequences for " + i + " features"
-                             + " (avg = " + ((60000L * i) / (now - start)) + " per minute)");
+                    LOG.info("Set sequences for " + i + " features on chromosome "
+                            + chr.getPrimaryIdentifier() + " (avg = "
+                            + ((60000L * i) / Math.max(1, now - start)) + " per minute)");
                 }
             } catch (Exception e) {
                 Exception e2 = new Exception("Exception while processing SequenceFeature "
@@ -235,7 +367,7 @@ public class TransferSequences
             }
         }
 
-        osw.commitTransaction();
+        writer.commitTransaction();
 
         String organism = "";
         if (chr.getOrganism() != null) {
@@ -243,7 +375,111 @@ public class TransferSequences
         }
         LOG.info("Finished setting " + i + " feature sequences for " + organism + " chromosome "
                 + chr.getPrimaryIdentifier() + " - took "
-                + (System.currentTimeMillis() - startTime) + " ms.");
+                + (System.currentTimeMillis() - startTime) + " ms, reading "
+                + window.getPagesRead() + " pages of sequence.");
+        return i;
+    }
+
+    /**
+     * The pages of a chromosome sequence that are needed for the features being transferred.
+     * The features must be passed in order of start, so that pages before the current feature
+     * can be dropped and each page is only read from the database once.  At most MAX_PAGES pages
+     * are kept, so pages of long features beyond that are read without being kept.
+     */
+    private static class SequenceWindow
+    {
+        private static final int MAX_PAGES = ClobAccess.READ_AHEAD_PAGES;
+
+        private final ClobAccess residues;
+        private final List<String> pages = new ArrayList<String>();
+        private final char[] buffer = new char[Clob.CLOB_PAGE_SIZE];
+        private int firstPage = 0;
+        private int pagesRead = 0;
+
+        SequenceWindow(ClobAccess residues) {
+            this.residues = residues;
+            // reads the number of pages
+            residues.length();
+        }
+
+        /**
+         * Return the MD5 checksum of a subsequence of the chromosome sequence.  The digest is fed
+         * a page at a time, walking the pages backwards and complementing them for a reverse
+         * complemented subsequence, so no more than a page of the feature is held at once.
+         *
+         * @param featureSeq a subsequence of the chromosome sequence, possibly reverse
+         * complemented
+         * @return the checksum, or null if the sequence can't be reverse complemented
+         */
+        String getMd5checksum(ClobAccess featureSeq) {
+            MessageDigest md5;
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            }
+            int length = featureSeq.length();
+            if (length == 0) {
+                return Util.getMd5checksum(md5);
+            }
+            int offset = featureSeq.getOffset();
+            int lowestPage = offset / Clob.CLOB_PAGE_SIZE;
+            int highestPage = (offset + length - 1) / Clob.CLOB_PAGE_SIZE;
+            if (lowestPage > firstPage) {
+                pages.subList(0, Math.min(pages.size(), lowestPage - firstPage)).clear();
+                firstPage = lowestPage;
+            }
+            ClobAccessReverseComplement reverse = null;
+            if (featureSeq instanceof ClobAccessReverseComplement) {
+                reverse = (ClobAccessReverseComplement) featureSeq;
+            }
+            for (int i = 0; i <= highestPage - lowestPage; i++) {
+                int page = (reverse == null ? lowestPage + i : highestPage - i);
+                String pageText = getPage(page);
+                int from = Math.max(offset - page * Clob.CLOB_PAGE_SIZE, 0);
+                int to = Math.min(offset + length - page * Clob.CLOB_PAGE_SIZE,
+                        pageText.length());
+                if (reverse == null) {
+                    md5.update(pageText.substring(from, to).getBytes());
+                } else {
+                    try {
+                        int count = 0;
+                        for (int c = to - 1; c >= from; c--) {
+                            buffer[count++] = reverse.translate(pageText.charAt(c));
+                        }
+                        md5.update(new String(buffer, 0, count).getBytes());
+                    } catch (IllegalArgumentException e) {
+                        LOG.warn("Not setting md5checksum: " + e.getMessage());
+                        return null;
+                    }
+                }
+            }
+            return Util.getMd5checksum(md5);
+        }
+
+        private String getPage(int page) {
+            if ((page < firstPage) || (page - firstPage >= MAX_PAGES)) {
+                // the features were not in order of start, or the feature is too long to keep
+                // all of its pages, so read the page without keeping it
+                pagesRead++;
+                return (String) residues.getResultsWithoutInit().get(page);
+            }
+            while (pages.size() <= page - firstPage) {
+                pages.add((String) residues.getResultsWithoutInit().get(firstPage
+                            + pages.size()));
+                pagesRead++;
+            }
+            return pages.get(page - firstPage);
+        }
+
+        /**
+         * Return the number of pages read from the database.
+         *
+         * @return an int
+         */
+        int getPagesRead() {
+            return pagesRead;
+        }
     }
 
     private ClobAccess getSubSequence(Sequence chromosomeSequence, Location locationOnChr) {
@@ -380,8 +616,7 @@ public class TransferSequences
 
             if (currentTranscript == null || !transcript.equals(currentTranscript)) {
                 if (currentTranscript != null) {
-                    storeNewSequence(currentTranscript,
-                            new PendingClob(currentTranscriptBases.toString()));
+                    storeNewSequence(currentTranscript, currentTranscriptBases.toString());
                     i++;
                     if (i % 100 == 0) {
                         long now = System.currentTimeMillis();
@@ -404,7 +639,7 @@ public class TransferSequences
         if (currentTranscript == null) {
             LOG.error("in transferToTranscripts(): no Transcripts found");
         } else {
-            storeNewSequence(currentTranscript, new PendingClob(currentTranscriptBases.toString()));
+            storeNewSequence(currentTranscript, currentTranscriptBases.toString());
         }
 
         LOG.info("Finished setting " + i + " Trascript sequences - took "
@@ -0,0 +1,65 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class OverlapUtilTest extends TestCase
+{
+    public OverlapUtilTest(String arg) {
+        super(arg);
+    }
+
+    public void testFindOverlaps() throws Exception {
+        int[] starts = new int[] {1, 5, 5, 10, 20, 21};
+        int[] ends = new int[] {10, 6, 5, 15, 20, 30};
+        Set<String> expected = new HashSet<String>(Arrays.asList("1-0", "2-0", "2-1", "3-0"));
+        assertEquals(expected, findOverlaps(starts, ends, starts.length));
+    }
+
+    public void testFindOverlapsRandom() throws Exception {
+        Random random = new Random(42);
+        int size = 2000;
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = random.nextInt(100000);
+        }
+        Arrays.sort(starts);
+        for (int i = 0; i < size; i++) {
+            ends[i] = starts[i] + random.nextInt(random.nextBoolean() ? 100 : 5000);
+        }
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < i; j++) {
+                if (ends[j] >= starts[i]) {
+                    expected.add(i + "-" + j);
+                }
+            }
+        }
+        assertEquals(expected, findOverlaps(starts, ends, size));
+    }
+
+    private Set<String> findOverlaps(int[] starts, int[] ends, int size) throws Exception {
+        final Set<String> found = new HashSet<String>();
+        OverlapUtil.findOverlaps(starts, ends, size, new OverlapUtil.OverlapHandler() {
+            public void overlap(int i, int j) {
+                assertTrue(found.add(i + "-" + j));
+            }
+        });
+        return found;
+    }
+}
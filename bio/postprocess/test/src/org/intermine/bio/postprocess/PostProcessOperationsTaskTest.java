@@ -0,0 +1,80 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+import org.intermine.metadata.Model;
+
+/**
+ * Tests for the declarations that PostProcessOperationsTask uses to decide which operations may
+ * run at the same time, checked against the genomic model.
+ */
+public class PostProcessOperationsTaskTest extends TestCase
+{
+    public PostProcessOperationsTaskTest(String arg) {
+        super(arg);
+    }
+
+    public void testModelAvailable() throws Exception {
+        // Without the model every pair clashes, which would make the tests below meaningless
+        Model model = Model.getInstanceByName("genomic");
+        assertNotNull(model.getClassDescriptorByName("SequenceFeature"));
+        assertNotNull(model.getClassDescriptorByName("MRNA"));
+    }
+
+    public void testKnownConflicts() throws Exception {
+        // transfer-sequences changes the features that the overlaps are calculated from
+        assertConflict("transfer-sequences", "create-overlap-relations-flymine");
+        // create-references writes BioEntity, a superclass of what transfer-sequences reads
+        assertConflict("create-references", "transfer-sequences");
+        // both write the same collection
+        assertConflict("create-overlap-relations-flymine", "create-overlap-view");
+        // a write to a whole class clashes with a write to one of its collections
+        assertConflict("populate-child-features", "create-overlap-relations-flymine");
+        // MRNA is a SequenceFeature
+        assertConflict("create-utr-references", "create-intron-features");
+        // both write the same metadata entry
+        assertConflict("create-lucene-index", "create-autocomplete-index");
+        // reading every object clashes with any write to objects
+        assertConflict("summarise-objectstore", "create-references");
+        assertConflict("create-search-index", "make-spanning-locations");
+    }
+
+    public void testKnownIndependent() throws Exception {
+        assertIndependent("create-search-index", "create-autocomplete-index");
+        assertIndependent("summarise-objectstore", "precompute-queries");
+        assertIndependent("create-bioseg-location-index", "create-feature-density-index");
+        assertIndependent("create-overlap-view", "create-bioseg-location-index");
+        assertIndependent("create-utr-references", "create-bioseg-location-index");
+        assertIndependent("link-ins", "create-search-index");
+    }
+
+    public void testUndeclaredConflictsWithEverything() throws Exception {
+        assertConflict("do-sources", "create-search-index");
+        assertConflict("my-own-postprocess", "link-ins");
+        assertConflict("my-own-postprocess", "my-own-postprocess");
+    }
+
+    private static void assertConflict(String op1, String op2) {
+        assertTrue(op1 + " and " + op2 + " should conflict",
+                PostProcessOperationsTask.operationsConflict(op1, op2));
+        assertTrue(op2 + " and " + op1 + " should conflict",
+                PostProcessOperationsTask.operationsConflict(op2, op1));
+    }
+
+    private static void assertIndependent(String op1, String op2) {
+        assertFalse(op1 + " and " + op2 + " should not conflict",
+                PostProcessOperationsTask.operationsConflict(op1, op2));
+        assertFalse(op2 + " and " + op1 + " should not conflict",
+                PostProcessOperationsTask.operationsConflict(op2, op1));
+    }
+}
@@ -15,6 +15,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import junit.framework.Assert;
@@ -27,15 +28,22 @@ import org.intermine.model.bio.Chromosome;
 import org.intermine.model.bio.Exon;
 import org.intermine.model.bio.Location;
 import org.intermine.model.bio.Sequence;
+import org.intermine.model.bio.SequenceFeature;
 import org.intermine.model.bio.Transcript;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
+import org.intermine.objectstore.query.Clob;
+import org.intermine.objectstore.query.ConstraintOp;
 import org.intermine.objectstore.query.PendingClob;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryValue;
+import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.objectstore.query.SingletonResults;
 import org.intermine.util.DynamicUtil;
+import org.intermine.util.Util;
 
 /**
  * Tests for the TransferSequences class
@@ -213,7 +221,155 @@ public class TransferSequencesTest extends TestCase
         CDS resCDS = (CDS) os.getObjectById(storedCDS.getId());
         assertNull(resCDS.getSequence());
     }
-    
+
+    /**
+     * Features that cross clob page boundaries, on both strands, must get the same residues and
+     * checksum from the chromosome's page window as from reading their own ClobAccess.
+     */
+    public void testFeaturesAcrossPages() throws Exception {
+        String residues = randomSequence(3 * Clob.CLOB_PAGE_SIZE + 100);
+        Chromosome chr =
+            (Chromosome) DynamicUtil.createObject(Collections.singleton(Chromosome.class));
+        chr.setLength(new Integer(residues.length()));
+        chr.setPrimaryIdentifier("paged_chromosome");
+        Sequence chrSequence =
+            (Sequence) DynamicUtil.createObject(Collections.singleton(Sequence.class));
+        chrSequence.setResidues(new PendingClob(residues).subSequence(0, residues.length()));
+        chr.setSequence(chrSequence);
+
+        int page = Clob.CLOB_PAGE_SIZE;
+        // start, end, strand: crossing each boundary, spanning several pages, and within a page
+        int[][] locations = new int[][] {
+            {1, 20, 1},
+            {page - 10, page + 10, 1},
+            {page - 5, page + 5, -1},
+            {page + 1, page + 1, -1},
+            {page * 2 - 50, page * 3 + 50, -1},
+            {page * 2 - 50, page * 3 + 50, 1},
+            {page * 3 - 1, page * 3 + 2, -1},
+            {10, page * 3 + 100, 1}
+        };
+        Exon[] exons = new Exon[locations.length];
+
+        osw.beginTransaction();
+        osw.store(chrSequence);
+        osw.store(chr);
+        for (int i = 0; i < locations.length; i++) {
+            exons[i] = (Exon) DynamicUtil.createObject(Collections.singleton(Exon.class));
+            exons[i].setPrimaryIdentifier("paged_exon_" + i);
+            Location loc = createLocation(chr, exons[i], Integer.toString(locations[i][2]),
+                    locations[i][0], locations[i][1]);
+            exons[i].setChromosomeLocation(loc);
+            osw.store(loc);
+            osw.store(exons[i]);
+        }
+        osw.commitTransaction();
+
+        TransferSequences ts = new TransferSequences(osw);
+        ts.transferToLocatedSequenceFeatures();
+        osw.flushObjectById();
+
+        ObjectStore os = osw.getObjectStore();
+        for (int i = 0; i < locations.length; i++) {
+            String expected = residues.substring(locations[i][0] - 1, locations[i][1]);
+            if (locations[i][2] < 0) {
+                expected = reverseComplement(expected);
+            }
+            Exon resExon = (Exon) os.getObjectById(exons[i].getId());
+            Sequence resSequence = resExon.getSequence();
+            String actual = resSequence.getResidues().toString();
+            assertEquals("residues of exon " + i, expected, actual);
+            assertEquals("md5checksum of exon " + i, Util.getMd5checksum(actual),
+                    resSequence.getMd5checksum());
+        }
+    }
+
+    /**
+     * A feature located on two chromosomes that are transferred at the same time must be given
+     * one sequence, from one of them.
+     */
+    public void testFeatureOnTwoChromosomes() throws Exception {
+        String[] residues = new String[] {"aaaaaccccc", "gggggttttt"};
+        Exon exon = (Exon) DynamicUtil.createObject(Collections.singleton(Exon.class));
+        exon.setPrimaryIdentifier("two_chromosome_exon");
+        osw.beginTransaction();
+        for (int i = 0; i < residues.length; i++) {
+            Chromosome chr =
+                (Chromosome) DynamicUtil.createObject(Collections.singleton(Chromosome.class));
+            chr.setLength(new Integer(residues[i].length()));
+            chr.setPrimaryIdentifier("two_chromosome_" + i);
+            Sequence chrSequence =
+                (Sequence) DynamicUtil.createObject(Collections.singleton(Sequence.class));
+            chrSequence.setResidues(new PendingClob(residues[i]).subSequence(0,
+                        residues[i].length()));
+            chr.setSequence(chrSequence);
+            osw.store(chrSequence);
+            osw.store(chr);
+            osw.store(createLocation(chr, exon, "1", 1, 10));
+        }
+        osw.store(exon);
+        osw.commitTransaction();
+
+        TransferSequences ts = new TransferSequences(osw);
+        ts.setTransferThreads("2");
+        ts.transferToLocatedSequenceFeatures();
+        osw.flushObjectById();
+
+        ObjectStore os = osw.getObjectStore();
+        Query q = new Query();
+        QueryClass qcExon = new QueryClass(Exon.class);
+        q.addFrom(qcExon);
+        q.addToSelect(qcExon);
+        q.setConstraint(new SimpleConstraint(new QueryField(qcExon, "primaryIdentifier"),
+                    ConstraintOp.EQUALS, new QueryValue("two_chromosome_exon")));
+        SingletonResults exons = os.executeSingleton(q);
+        assertEquals(1, exons.size());
+        Sequence resSequence = ((Exon) exons.get(0)).getSequence();
+        assertTrue(Arrays.asList(residues).contains(resSequence.getResidues().toString()));
+
+        // no Sequence was stored for the copy that lost
+        q = new Query();
+        QueryClass qcSequence = new QueryClass(Sequence.class);
+        q.addFrom(qcSequence);
+        q.addToSelect(qcSequence);
+        Set<Integer> referenced = new HashSet<Integer>();
+        QueryClass qcFeature = new QueryClass(SequenceFeature.class);
+        Query featureQuery = new Query();
+        featureQuery.addFrom(qcFeature);
+        featureQuery.addToSelect(qcFeature);
+        for (Object o : os.executeSingleton(featureQuery)) {
+            Sequence sequence = ((SequenceFeature) o).getSequence();
+            if (sequence != null) {
+                referenced.add(sequence.getId());
+            }
+        }
+        for (Object o : os.executeSingleton(q)) {
+            Sequence sequence = (Sequence) o;
+            if (!referenced.contains(sequence.getId())) {
+                assertFalse("orphan Sequence " + sequence.getResidues(),
+                        Arrays.asList(residues).contains(sequence.getResidues().toString()));
+            }
+        }
+    }
+
+    private static String randomSequence(int length) {
+        Random random = new Random(42);
+        String bases = "acgt";
+        StringBuilder retval = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            retval.append(bases.charAt(random.nextInt(bases.length())));
+        }
+        return retval.toString();
+    }
+
+    private static String reverseComplement(String sequence) {
+        StringBuilder retval = new StringBuilder(sequence.length());
+        for (int i = sequence.length() - 1; i >= 0; i--) {
+            retval.append("tgca".charAt("acgt".indexOf(sequence.charAt(i))));
+        }
+        return retval.toString();
+    }
+
     public void checkExonSequences() throws Exception {
         osw.flushObjectById();
 
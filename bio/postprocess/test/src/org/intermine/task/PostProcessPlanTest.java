@@ -0,0 +1,78 @@
+package org.intermine.task;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.intermine.bio.postprocess.PostProcessOperationsTask;
+
+/**
+ * Tests for PostProcessPlan, using the conflicts that PostProcessOperationsTask declares for the
+ * genomic model.
+ */
+public class PostProcessPlanTest extends TestCase
+{
+    private static final PostProcessPlan.Conflicts CONFLICTS = new PostProcessPlan.Conflicts() {
+        public boolean conflict(String name1, String name2) {
+            return PostProcessOperationsTask.operationsConflict(name1, name2);
+        }
+    };
+
+    public PostProcessPlanTest(String arg) {
+        super(arg);
+    }
+
+    public void testPlan() throws Exception {
+        List<String> names = Arrays.asList("create-references", "transfer-sequences",
+                "create-overlap-relations-flymine", "create-bioseg-location-index",
+                "create-search-index", "create-autocomplete-index", "summarise-objectstore");
+        PostProcessPlan plan = new PostProcessPlan(names, CONFLICTS);
+        assertEquals(7, plan.size());
+        assertEquals("transfer-sequences", plan.getName(1));
+        assertEquals(bits(), plan.getDependencies(0));
+        assertEquals(bits(0), plan.getDependencies(1));
+        // create-references is implied by transfer-sequences, so is not listed again
+        assertEquals(bits(1), plan.getDependencies(2));
+        // the location index only reads locations, which nothing before it writes
+        assertEquals(bits(), plan.getDependencies(3));
+        // the indexes read everything, so wait for the last step that writes objects, but
+        // not for each other
+        assertEquals(bits(2), plan.getDependencies(4));
+        assertEquals(bits(2), plan.getDependencies(5));
+        assertEquals(bits(2), plan.getDependencies(6));
+        assertTrue(plan.toString(), plan.toString().contains(
+                "4. create-bioseg-location-index (can start at once)"));
+        assertTrue(plan.toString(), plan.toString().contains(
+                "7. summarise-objectstore (after 3)"));
+    }
+
+    public void testUndeclaredRunsAlone() throws Exception {
+        List<String> names = Arrays.asList("create-search-index", "create-autocomplete-index",
+                "my-own-postprocess", "summarise-objectstore");
+        PostProcessPlan plan = new PostProcessPlan(names, CONFLICTS);
+        assertEquals(bits(), plan.getDependencies(0));
+        assertEquals(bits(), plan.getDependencies(1));
+        assertEquals(bits(0, 1), plan.getDependencies(2));
+        assertEquals(bits(2), plan.getDependencies(3));
+    }
+
+    private static BitSet bits(int... set) {
+        BitSet retval = new BitSet();
+        for (int i : set) {
+            retval.set(i);
+        }
+        return retval;
+    }
+}
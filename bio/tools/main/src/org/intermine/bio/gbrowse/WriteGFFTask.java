@@ -643,9 +643,11 @@ public class WriteGFFTask extends Task
 
                 // code from BioJava's FastaFormat class:
                 int length = residues.length();
+                char[] line = new char[60];
                 for (int pos = 0; pos < length; pos += 60) {
                     int end = Math.min(pos + 60, length);
-                    printStream.println(residues.subSequence(pos, end).toString());
+                    residues.getChars(pos, end, line, 0);
+                    printStream.println(new String(line, 0, end - pos));
                 }
 
                 printStream.close();
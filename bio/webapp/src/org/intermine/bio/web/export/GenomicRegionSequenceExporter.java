@@ -5,14 +5,11 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.collections.keyvalue.MultiKey;
 import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.seq.Sequence;
 import org.biojava.bio.seq.io.FastaFormat;
@@ -34,8 +31,6 @@ public class GenomicRegionSequenceExporter
 {
     private ObjectStore os;
     private OutputStream out;
-    // Map to hold DNA sequence of a whole chromosome in memory
-    private static Map<MultiKey, String> chromosomeSequenceMap = new HashMap<MultiKey, String>();
 
     /**
      * Instructor
@@ -70,19 +65,6 @@ public class GenomicRegionSequenceExporter
             chr = (Chromosome) os.getObjectByExample(chr,
                         new HashSet<String>(Arrays.asList("primaryIdentifier", "organism")));
 
-            String chrResidueString;
-            if (chromosomeSequenceMap.get(new MultiKey(gr.getChr(), gr
-                    .getOrganism())) == null) {
-                chrResidueString = chr.getSequence().getResidues()
-                        .toString();
-                chromosomeSequenceMap.put(
-                        new MultiKey(gr.getChr(), gr.getOrganism()), chr
-                                .getSequence().getResidues().toString());
-            } else {
-                chrResidueString = chromosomeSequenceMap.get(new MultiKey(
-                        gr.getChr(), gr.getOrganism()));
-            }
-
             int chrLength = chr.getLength();
             int start;
             int end;
@@ -108,9 +90,10 @@ public class GenomicRegionSequenceExporter
                     + start + "_" + end + "_"
                     + gr.getOrganism().replace("\\. ", "_");
 
-            Sequence chrSeg = DNATools.createDNASequence(
-                chrResidueString.substring(start - 1, end),
-                seqName);
+            // read only the pages of the chromosome sequence that are needed
+            char[] residues = new char[end - start + 1];
+            chr.getSequence().getResidues().getChars(start - 1, end, residues, 0);
+            Sequence chrSeg = DNATools.createDNASequence(new String(residues), seqName);
             chrSeg.getAnnotation().setProperty(
                     FastaFormat.PROPERTY_DESCRIPTIONLINE, header);
 
@@ -15,12 +15,10 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.collections.keyvalue.MultiKey;
 import org.apache.log4j.Logger;
 import org.biojava.bio.Annotation;
 import org.biojava.bio.seq.DNATools;
@@ -67,8 +65,6 @@ public class SequenceExporter implements Exporter
     private final Map<String, List<FieldDescriptor>> classKeys;
 
     private int extension; // must > 0
-    // Map to hold DNA sequence of a whole chromosome in memory
-    private static Map<MultiKey, String> chromosomeSequenceMap = new HashMap<MultiKey, String>();
     private List<Path> paths = Collections.emptyList();
 
     /**
@@ -237,16 +233,6 @@ public class SequenceExporter implements Exporter
         int end = feature.getChromosomeLocation().getEnd();
         String org = feature.getOrganism().getShortName();
 
-        String chrResidueString;
-        if (chromosomeSequenceMap.get(new MultiKey(chrName, org)) == null) {
-            chrResidueString = chr.getSequence().getResidues()
-                    .toString();
-            chromosomeSequenceMap.put(
-                    new MultiKey(chrName, org), chr.getSequence().getResidues().toString());
-        } else {
-            chrResidueString = chromosomeSequenceMap.get(new MultiKey(chrName, org));
-        }
-
         if (extension > 0) {
             start = start - extension;
             end = end + extension;
@@ -259,7 +245,10 @@ public class SequenceExporter implements Exporter
                 + start + "_" + end + "_"
                 + org.replace("\\. ", "_");
 
-        Sequence seq = DNATools.createDNASequence(chrResidueString.substring(start - 1, end),
+        // read only the pages of the chromosome sequence that are needed
+        char[] residues = new char[end - start + 1];
+        chr.getSequence().getResidues().getChars(start - 1, end, residues, 0);
+        Sequence seq = DNATools.createDNASequence(new String(residues),
                         seqName);
 
         makeHeader(header, object, row, unionPathCollection, newPathCollection);
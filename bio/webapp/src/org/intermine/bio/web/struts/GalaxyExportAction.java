@@ -229,6 +229,8 @@ class ResultManipulater extends HttpExporterBase
             }
         } catch (Exception ex) {
             throw new ExportException("Export failed", ex);
+        } finally {
+            resultIt.releaseGoFaster();
         }
 
         return orgNameMap;
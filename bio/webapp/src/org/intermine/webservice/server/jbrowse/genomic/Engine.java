@@ -3,6 +3,8 @@ package org.intermine.webservice.server.jbrowse.genomic;
 import static java.lang.String.format;
 import static org.intermine.pathquery.Constraints.eq;
 
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -11,6 +13,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -22,11 +25,13 @@ import org.apache.commons.collections.keyvalue.MultiKey;
 import org.apache.log4j.Logger;
 import org.intermine.api.InterMineAPI;
 import org.intermine.api.query.MainHelper;
+import org.intermine.bio.util.FeatureDensityIndex;
 import org.intermine.metadata.ClassDescriptor;
 import org.intermine.metadata.Model;
 import org.intermine.model.FastPathObject;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
 import org.intermine.objectstore.query.ConstraintOp;
 import org.intermine.objectstore.query.ConstraintSet;
 import org.intermine.objectstore.query.ContainsConstraint;
@@ -74,6 +79,9 @@ public class Engine extends CommandRunner {
     private final Model model;
     private static final Map<Command, Map<String, Object>> STATS_CACHE =
             new CacheMap<Command, Map<String, Object>>("jbrowse.genomic.engine.STATS_CACHE");
+    // The precomputed feature counts for each objectstore, or null if there are none.
+    private static final Map<ObjectStore, FeatureDensityIndex> DENSITY_INDEXES =
+            new WeakHashMap<ObjectStore, FeatureDensityIndex>();
 
     public Engine(InterMineAPI api) {
         super(api);
@@ -82,7 +90,11 @@ public class Engine extends CommandRunner {
 
     @Override
     public void stats(Command command) {
-        Map<String, Object> stats;
+        Map<String, Object> stats = getIndexedStats(command);
+        if (stats != null) {
+            sendMap(stats);
+            return;
+        }
         Query q = getStatsQuery(command);
         // Stats can be expensive to calculate, so they are independently cached.
         synchronized(STATS_CACHE) {
@@ -178,22 +190,12 @@ public class Engine extends CommandRunner {
     @Override
     public void densities(Command command) {
         final int nSlices = getNumberOfSlices(command);
-        List<PathQuery> segmentQueries = getSliceQueries(command, nSlices);
-        List<Future<Integer>> pending = countInParallel(segmentQueries);
-        List<Integer> results = new ArrayList<Integer>();
+        List<Integer> results = countSlices(command, nSlices);
 
         int max = 0, sum = 0;
-        for (Future<Integer> future: pending) {
-            try {
-                Integer r = future.get();
-                if (r != null && r > max) max = r;
-                sum += r;
-                results.add(r);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            } catch (ExecutionException e) {
-                throw new RuntimeException(e);
-            }
+        for (Integer r: results) {
+            if (r != null && r > max) max = r;
+            sum += r;
         }
         double mean = Double.valueOf(sum) / results.size();
 
@@ -237,6 +239,106 @@ public class Engine extends CommandRunner {
         return width / numBPB;
     }
 
+    // Count the features in each slice, from the density index if it has the counts.
+    private List<Integer> countSlices(Command command, final int nSlices) {
+        FeatureDensityIndex.Track track = getDensityTrack(command);
+        if (track != null) {
+            List<Segment> slices = sliceUp(nSlices, command.getSegment());
+            List<Integer> counts = new ArrayList<Integer>();
+            for (Segment s: slices) {
+                if (!track.canCount(s.getStart(), s.getEnd())) {
+                    counts = null;
+                    break;
+                }
+                counts.add(track.count(s.getStart(), s.getEnd()));
+            }
+            if (counts != null) {
+                return counts;
+            }
+        }
+        List<Integer> counts = new ArrayList<Integer>();
+        for (Future<Integer> future: countInParallel(getSliceQueries(command, nSlices))) {
+            try {
+                counts.add(future.get());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return counts;
+    }
+
+    // Stats for a chromosome or a region of one, from the density index if it has the counts.
+    private Map<String, Object> getIndexedStats(Command command) {
+        FeatureDensityIndex.Track track = getDensityTrack(command);
+        if (track == null) {
+            return null;
+        }
+        Segment seg = command.getSegment();
+        int count, length;
+        if (seg.getStart() == null && seg.getEnd() == null) {
+            count = track.getFeatureCount();
+            length = track.getLength();
+        } else if (seg.getWidth() != null && track.canCount(seg.getStart(), seg.getEnd())) {
+            count = track.count(seg.getStart(), seg.getEnd());
+            length = seg.getWidth();
+        } else {
+            return null;
+        }
+        if (length <= 0) {
+            return null;
+        }
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("featureDensity", Double.valueOf(count) / length);
+        stats.put("featureCount", count);
+        return stats;
+    }
+
+    // The density index track for the feature type on the command's chromosome, if there is one.
+    private FeatureDensityIndex.Track getDensityTrack(Command command) {
+        Segment seg = command.getSegment();
+        if (seg == null || seg == Segment.NEGATIVE_SEGMENT || seg == Segment.GLOBAL_SEGMENT
+                || seg.getSection() == null) {
+            return null;
+        }
+        FeatureDensityIndex index = getDensityIndex(getAPI().getObjectStore());
+        if (index == null) {
+            return null;
+        }
+        int taxonId;
+        try {
+            taxonId = Integer.parseInt(command.getDomain());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return index.getTrack(taxonId, seg.getSection(), command.getType("SequenceFeature"));
+    }
+
+    private static FeatureDensityIndex getDensityIndex(ObjectStore os) {
+        synchronized (DENSITY_INDEXES) {
+            if (!DENSITY_INDEXES.containsKey(os)) {
+                FeatureDensityIndex index = null;
+                if (os instanceof ObjectStoreInterMineImpl) {
+                    try {
+                        index = FeatureDensityIndex.retrieve(
+                                ((ObjectStoreInterMineImpl) os).getDatabase());
+                    } catch (SQLException e) {
+                        LOG.warn("Could not read the feature density index", e);
+                    } catch (IOException e) {
+                        LOG.warn("Could not read the feature density index", e);
+                    }
+                }
+                if (index == null) {
+                    LOG.info("No feature density index - densities will be counted in the"
+                            + " database");
+                }
+                DENSITY_INDEXES.put(os, index);
+            }
+            return DENSITY_INDEXES.get(os);
+        }
+    }
+
     private List<PathQuery> getSliceQueries(Command command, final int nSlices) {
         if (command.getSegment() == Segment.NEGATIVE_SEGMENT)
             return Collections.emptyList();
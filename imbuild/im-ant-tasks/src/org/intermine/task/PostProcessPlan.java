@@ -0,0 +1,120 @@
+package org.intermine.task;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The order in which the post-processes of a project.xml may run.  Each post-process must wait
+ * for every earlier post-process in the list that conflicts with it, but may run at the same time
+ * as the others.
+ */
+final class PostProcessPlan
+{
+    private final List<String> names;
+    private final List<BitSet> dependencies = new ArrayList<BitSet>();
+
+    /**
+     * Decides whether two post-processes must be run one after the other.
+     */
+    interface Conflicts
+    {
+        /**
+         * Return true if the post-processes must not run at the same time.
+         *
+         * @param name1 the name of the earlier post-process
+         * @param name2 the name of the later post-process
+         * @return a boolean
+         */
+        boolean conflict(String name1, String name2);
+    }
+
+    /**
+     * Create a plan for running some post-processes.
+     *
+     * @param names the names of the post-processes, in the order in which they are listed
+     * @param conflicts decides which post-processes must wait for each other
+     */
+    PostProcessPlan(List<String> names, Conflicts conflicts) {
+        this.names = names;
+        // the post-processes that each one waits for, directly or through another
+        List<BitSet> before = new ArrayList<BitSet>();
+        for (int i = 0; i < names.size(); i++) {
+            BitSet waitsFor = new BitSet();
+            BitSet deps = new BitSet();
+            for (int j = i - 1; j >= 0; j--) {
+                if (!waitsFor.get(j) && conflicts.conflict(names.get(j), names.get(i))) {
+                    // everything that j waits for is implied, so only j itself is a dependency
+                    deps.set(j);
+                    waitsFor.set(j);
+                    waitsFor.or(before.get(j));
+                }
+            }
+            before.add(waitsFor);
+            dependencies.add(deps);
+        }
+    }
+
+    /**
+     * Return the number of post-processes in the plan.
+     *
+     * @return the number of post-processes
+     */
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * Return the name of a post-process.
+     *
+     * @param step the position of the post-process in the list
+     * @return the name
+     */
+    String getName(int step) {
+        return names.get(step);
+    }
+
+    /**
+     * Return the post-processes that must finish before the given one starts, not counting those
+     * that they in turn wait for.
+     *
+     * @param step the position of the post-process in the list
+     * @return the positions of the post-processes to wait for
+     */
+    BitSet getDependencies(int step) {
+        return dependencies.get(step);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < names.size(); i++) {
+            sb.append("  ").append(i + 1).append(". ").append(names.get(i));
+            BitSet deps = dependencies.get(i);
+            if (deps.isEmpty()) {
+                sb.append(" (can start at once)");
+            } else {
+                sb.append(" (after");
+                for (int j = deps.nextSetBit(0); j >= 0; j = deps.nextSetBit(j + 1)) {
+                    sb.append(" ").append(j + 1);
+                }
+                sb.append(")");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
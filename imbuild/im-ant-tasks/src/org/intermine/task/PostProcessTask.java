@@ -12,8 +12,18 @@ package org.intermine.task;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
@@ -36,6 +46,11 @@ import org.intermine.task.project.UserProperty;
  * If there is a do-source postprocess all the sources included in the project.xml will
  * be examined to see if they have a post process step of their own, if so, it will be called.
  *
+ * If more than one thread is allowed, a post-process is started as soon as every earlier
+ * post-process that it conflicts with has finished, each with its own ObjectStoreWriter.  Which
+ * post-processes conflict is decided by PostProcessOperationsTask.operationsConflict().  The
+ * do-sources step, and post-processes that set properties, always run on their own.
+ *
  * @author Peter McLaren
  */
 public class PostProcessTask extends Task
@@ -45,10 +60,15 @@ public class PostProcessTask extends Task
      */
     public static final String POSTPROCESSOR_CLASS = "postprocessor.class";
 
+    private static final String OPERATIONS_TASK_CLASS =
+        "org.intermine.bio.postprocess.PostProcessOperationsTask";
+
     private Reference classPathRef;
     private File projectXml;
     private Project project;
     private String action;
+    private int threads = 1;
+    private boolean dryRun = false;
 
     /**
      * Set the classpath to use for post processing.
@@ -81,6 +101,22 @@ public class PostProcessTask extends Task
         this.action = action;
     }
 
+    /**
+     * Set the number of post-processes that may run at the same time.
+     * @param threads the number of post-processes
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * If true, print the order in which the post-processes would run without running them.
+     * @param dryRun whether to only print the plan
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -103,30 +139,152 @@ public class PostProcessTask extends Task
 
         // Default - do it all
         if ("".equals(action)) {
-            for (String name: project.getPostProcesses().keySet()) {
-                System.out.print(" executing post process: " + name + "\n");
-
-                if (DO_SOURCES.equals(name)) {
-                    doAllSourcePostProcessing();
-                } else {
-                    doCorePostProcess(name);
-                }
-            }
+            runPostProcesses(new ArrayList<String>(project.getPostProcesses().keySet()));
 
         // ok - do a specific task only
         } else {
-            if (DO_SOURCES.equals(action)) {
-                doAllSourcePostProcessing();
-            } else if (project.getPostProcesses().containsKey(action)) {
-                doCorePostProcess(action);
+            if (DO_SOURCES.equals(action)
+                    || project.getPostProcesses().containsKey(action)) {
+                runPostProcesses(Collections.singletonList(action));
             } else if (project.getSources().containsKey(action)) {
-                doSourcePostProcess(action);
+                if (dryRun) {
+                    System.out.print("Would perform postprocess on source: " + action + "\n");
+                } else {
+                    doSourcePostProcess(action);
+                }
             } else {
                 throw new BuildException("No postprocess/source found for: " + action);
             }
         }
     }
 
+    /**
+     * Run some post-processes, using up to the given number of threads, and print how long each
+     * one took.
+     */
+    private void runPostProcesses(List<String> names) {
+        final PostProcessPlan plan = new PostProcessPlan(names, getConflicts());
+        System.out.print("Post-processes will run in this order, on up to " + threads
+                + " threads:\n" + plan);
+        if (dryRun) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        final long[] times = new long[plan.size()];
+        boolean[] started = new boolean[plan.size()];
+        BitSet finished = new BitSet();
+        int running = 0;
+        BuildException failure = null;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Integer> done = new ExecutorCompletionService<Integer>(pool);
+        try {
+            while (true) {
+                for (int i = 0; (failure == null) && (i < plan.size()); i++) {
+                    BitSet waiting = (BitSet) plan.getDependencies(i).clone();
+                    waiting.andNot(finished);
+                    if (!started[i] && waiting.isEmpty()) {
+                        started[i] = true;
+                        running++;
+                        final int step = i;
+                        done.submit(new Callable<Integer>() {
+                            public Integer call() {
+                                long stepStart = System.currentTimeMillis();
+                                runPostProcess(plan.getName(step));
+                                times[step] = System.currentTimeMillis() - stepStart;
+                                System.err.print("Finished postprocess: " + plan.getName(step)
+                                        + " in " + formatTime(times[step]) + "\n");
+                                return new Integer(step);
+                            }
+                        });
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+                try {
+                    finished.set(done.take().get().intValue());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = (e.getCause() instanceof BuildException
+                                ? (BuildException) e.getCause() : new BuildException(e.getCause()));
+                        System.err.print("A postprocess failed, waiting for the running"
+                                + " postprocesses to finish\n");
+                    }
+                }
+                running--;
+            }
+        } catch (InterruptedException e) {
+            failure = new BuildException("interrupted while running postprocesses", e);
+        } finally {
+            pool.shutdown();
+        }
+        StringBuffer summary = new StringBuffer("Postprocess times:\n");
+        for (int i = 0; i < plan.size(); i++) {
+            summary.append("  ").append(plan.getName(i)).append(": ")
+                .append(finished.get(i) ? formatTime(times[i]) : "not finished").append("\n");
+        }
+        summary.append("  total: ").append(formatTime(System.currentTimeMillis() - startTime))
+            .append("\n");
+        System.out.print(summary);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void runPostProcess(String name) {
+        System.out.print(" executing post process: " + name + "\n");
+        if (DO_SOURCES.equals(name)) {
+            doAllSourcePostProcessing();
+        } else {
+            doCorePostProcess(name);
+        }
+    }
+
+    private static String formatTime(long millis) {
+        return (millis / 1000) + "." + ((millis % 1000) / 100) + "s";
+    }
+
+    /**
+     * Return the Conflicts of the post-processes.  do-sources and post-processes with properties
+     * conflict with everything, as do all post-processes if PostProcessOperationsTask can't say
+     * which of them conflict.
+     */
+    private PostProcessPlan.Conflicts getConflicts() {
+        Method method = null;
+        if (threads > 1 || dryRun) {
+            try {
+                ClassLoader cl = ClasspathUtils.getClassLoaderForPath(getProject(), classPathRef);
+                Class<?> cls = Class.forName(OPERATIONS_TASK_CLASS, true, cl);
+                method = cls.getMethod("operationsConflict", new Class[] {String.class,
+                    String.class});
+            } catch (Exception e) {
+                System.err.print("Can't tell which postprocesses conflict, running them one"
+                        + " at a time: " + e + "\n");
+            }
+        }
+        final Method conflictMethod = method;
+        return new PostProcessPlan.Conflicts() {
+            public boolean conflict(String name1, String name2) {
+                if (conflictMethod == null || isExclusive(name1) || isExclusive(name2)) {
+                    return true;
+                }
+                try {
+                    return ((Boolean) conflictMethod.invoke(null, new Object[] {name1, name2}))
+                        .booleanValue();
+                } catch (Exception e) {
+                    throw new BuildException("error checking postprocesses " + name1 + " and "
+                            + name2, e);
+                }
+            }
+        };
+    }
+
+    private boolean isExclusive(String name) {
+        // properties are set on the shared ant project, so would be seen by other postprocesses
+        return DO_SOURCES.equals(name)
+            || !project.getPostProcesses().get(name).getUserProperties().isEmpty();
+    }
+
     private void doCorePostProcess (String postProcessName) {
         System.err.print("Performing postprocess: " + postProcessName + "\n");
 
@@ -217,9 +375,8 @@ public class PostProcessTask extends Task
 
     private Task newPostProcessTask() {
         ClassLoader cl = ClasspathUtils.getClassLoaderForPath(getProject(), classPathRef);
-        String className = "org.intermine.bio.postprocess.PostProcessOperationsTask";
         // use reflection to avoid depending on the bio/postprocess project
-        Object pp = ClasspathUtils.newInstance(className, cl);
+        Object pp = ClasspathUtils.newInstance(OPERATIONS_TASK_CLASS, cl);
 
         try {
             setProperty(pp, "objectStoreWriter", "osw.production");
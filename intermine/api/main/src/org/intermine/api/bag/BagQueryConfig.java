@@ -28,6 +28,7 @@ public class BagQueryConfig
     private final Map<String, List<BagQuery>> preDefaultBagQueries;
     private Map<String, Set<AdditionalConverter>> additionalConverters;
     private boolean matchOnFirst = true;
+    private boolean useIndex = false;
 
     /**
      * Create a new BagQueryConfig object.
@@ -152,4 +153,24 @@ public class BagQueryConfig
     public boolean getMatchOnFirst() {
         return matchOnFirst;
     }
+
+    /**
+     * If flag is true, bagqueryrunner resolves identifiers using in-memory indexes of the values
+     * each bag query can match, built in the background, and only runs the queries in the
+     * database until the indexes are ready.
+     * @param useIndex the flag to set
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    /**
+     * If flag is true, bagqueryrunner resolves identifiers using in-memory indexes of the values
+     * each bag query can match, built in the background, and only runs the queries in the
+     * database until the indexes are ready.
+     * @return the useIndex flag
+     */
+    public boolean getUseIndex() {
+        return useIndex;
+    }
 }
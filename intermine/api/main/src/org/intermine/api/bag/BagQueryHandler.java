@@ -96,6 +96,10 @@ public class BagQueryHandler extends DefaultHandler
                 matchOnFirst = ("false".equalsIgnoreCase(matchOnFirstStr) ? false : true);
             }
             bagQueryConfig.setMatchOnFirst(matchOnFirst);
+            String useIndexStr = attrs.getValue("useIndex");
+            if (StringUtils.isNotEmpty(useIndexStr)) {
+                bagQueryConfig.setUseIndex("true".equalsIgnoreCase(useIndexStr));
+            }
         }
         if ("query".equals(qName)) {
             message = attrs.getValue("message");
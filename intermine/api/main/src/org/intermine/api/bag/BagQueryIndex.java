@@ -0,0 +1,225 @@
+package org.intermine.api.bag;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
+
+/**
+ * An in-memory index of all the identifiers that a BagQuery can match, so that identifiers can be
+ * resolved without running the query. The index is built from the results of the query for the
+ * wildcard "*", which match every object the query can find, with the object id in the first
+ * column and the identifier fields in the other columns. Identifiers are indexed in lower case,
+ * as the query compares them in lower case, and the original values are kept for
+ * case-sensitive lookups.
+ *
+ * An index records the sequence of the tables it was built from, so that it can tell when the
+ * data in the objectstore has changed.
+ */
+public class BagQueryIndex
+{
+    private final Map<String, Match> matches = new HashMap<String, Match>();
+    private String[] sortedKeys = null;
+    private Map<Object, Integer> sequence = null;
+    private int size = 0;
+
+    /**
+     * Creates an empty index, to be filled by calling add() and then finish().
+     */
+    protected BagQueryIndex() {
+    }
+
+    /**
+     * Builds an index from a Query that returns object ids and identifiers.
+     *
+     * @param os the ObjectStore to run the query in
+     * @param q the Query, as returned by BagQuery.getQueryForWildcards() for "*"
+     * @return a new BagQueryIndex
+     * @throws ObjectStoreException if the query fails
+     */
+    public static BagQueryIndex build(ObjectStore os, Query q) throws ObjectStoreException {
+        BagQueryIndex index = new BagQueryIndex();
+        // Fetch the sequence first, so that changes made while reading make the index stale
+        index.sequence = os.getSequence(os.getComponentsForQuery(q));
+        ResultsStream rows = os.stream(q);
+        try {
+            while (rows.hasNext()) {
+                ResultsRow<Object> row = rows.next();
+                Integer id = (Integer) row.get(0);
+                for (int i = 1; i < row.size(); i++) {
+                    Object value = row.get(i);
+                    if (value != null) {
+                        index.add(id.intValue(), String.valueOf(value));
+                    }
+                }
+            }
+        } finally {
+            rows.close();
+        }
+        index.finish();
+        return index;
+    }
+
+    /**
+     * Adds an identifier to the index.
+     *
+     * @param id the id of the object with the identifier
+     * @param value the identifier
+     */
+    protected void add(int id, String value) {
+        String key = value.toLowerCase();
+        Match existing = matches.get(key);
+        for (Match m = existing; m != null; m = m.next) {
+            if ((m.id == id) && value.equals(m.getValue(key))) {
+                return;
+            }
+        }
+        // Share the key string when the value is already in lower case
+        matches.put(key, new Match(id, key.equals(value) ? null : value, existing));
+        size++;
+    }
+
+    /**
+     * Prepares the index for wildcard lookups, once all identifiers have been added.
+     */
+    protected void finish() {
+        sortedKeys = matches.keySet().toArray(new String[matches.size()]);
+        Arrays.sort(sortedKeys);
+    }
+
+    /**
+     * Returns whether the data this index was built from is unchanged.
+     *
+     * @param os the ObjectStore the index was built from
+     * @return true if the index is up to date
+     */
+    public boolean isCurrent(ObjectStore os) {
+        return (sequence == null) || sequence.equals(os.getSequence(sequence.keySet()));
+    }
+
+    /**
+     * Returns the ids of the objects with an identifier.
+     *
+     * @param input the identifier
+     * @param caseSensitive true if the identifier must match case too
+     * @return a Set of object ids, empty if there are none
+     */
+    public Set<Integer> getIds(String input, boolean caseSensitive) {
+        String key = input.toLowerCase();
+        Match m = matches.get(key);
+        if (m == null) {
+            return Collections.emptySet();
+        }
+        Set<Integer> retval = new LinkedHashSet<Integer>();
+        for (; m != null; m = m.next) {
+            if (!caseSensitive || input.equals(m.getValue(key))) {
+                retval.add(new Integer(m.id));
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the ids of the objects with each of a collection of identifiers. When case does not
+     * matter, inputs that differ only in case are folded onto the first of them, as
+     * BagQueryRunner does for the SQL queries, so that an object is not matched twice.
+     *
+     * @param inputs the identifiers
+     * @param caseSensitive true if the identifiers must match case too
+     * @return a Map from input identifier to the ids of the objects it matched, containing only
+     * the identifiers that matched something
+     */
+    public Map<String, Set<Integer>> getIds(Collection<String> inputs, boolean caseSensitive) {
+        Map<String, Set<Integer>> retval = new LinkedHashMap<String, Set<Integer>>();
+        Set<String> seen = new HashSet<String>();
+        for (String input : inputs) {
+            if (seen.add(caseSensitive ? input : input.toLowerCase())) {
+                Set<Integer> ids = getIds(input, caseSensitive);
+                if (!ids.isEmpty()) {
+                    retval.put(input, ids);
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the ids of the objects with an identifier that matches a wildcard. Only identifiers
+     * that start with the text before the first "*" are considered.
+     *
+     * @param wildcard the wildcard, with "*" matching any text
+     * @param pattern the wildcard as a Pattern that matches lower case identifiers
+     * @return a Set of object ids, empty if there are none
+     */
+    public Set<Integer> getWildcardIds(String wildcard, Pattern pattern) {
+        String prefix = wildcard.toLowerCase();
+        int star = prefix.indexOf('*');
+        if (star != -1) {
+            prefix = prefix.substring(0, star);
+        }
+        int start = Arrays.binarySearch(sortedKeys, prefix);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        Set<Integer> retval = new LinkedHashSet<Integer>();
+        for (int i = start; (i < sortedKeys.length) && sortedKeys[i].startsWith(prefix); i++) {
+            if (pattern.matcher(sortedKeys[i]).matches()) {
+                for (Match m = matches.get(sortedKeys[i]); m != null; m = m.next) {
+                    retval.add(new Integer(m.id));
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the number of identifiers in the index.
+     *
+     * @return the number of distinct (object, identifier) pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * An object id and the identifier it was found with, in a list of matches for a key.
+     */
+    private static final class Match
+    {
+        final int id;
+        final String value;
+        final Match next;
+
+        Match(int id, String value, Match next) {
+            this.id = id;
+            this.value = value;
+            this.next = next;
+        }
+
+        String getValue(String key) {
+            return (value == null ? key : value);
+        }
+    }
+}
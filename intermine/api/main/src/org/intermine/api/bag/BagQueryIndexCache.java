@@ -0,0 +1,140 @@
+package org.intermine.api.bag;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.query.Query;
+
+/**
+ * Holds the BagQueryIndexes for an ObjectStore, keyed by the query they were built from. Indexes
+ * are built in a background thread the first time they are asked for, and callers should run
+ * the query in the database until the index is ready. An index is rebuilt in the same way when
+ * the data in the objectstore changes, for instance when a new release is loaded.
+ */
+public final class BagQueryIndexCache
+{
+    private static final Logger LOG = Logger.getLogger(BagQueryIndexCache.class);
+    private static final Map<ObjectStore, BagQueryIndexCache> INSTANCES
+        = new WeakHashMap<ObjectStore, BagQueryIndexCache>();
+    private static ExecutorService builder = null;
+
+    private final ConcurrentMap<String, BagQueryIndex> indexes
+        = new ConcurrentHashMap<String, BagQueryIndex>();
+    private final Set<String> building
+        = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> failed
+        = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private BagQueryIndexCache() {
+    }
+
+    /**
+     * Returns the BagQueryIndexCache for an ObjectStore, creating it if necessary.
+     *
+     * @param os an ObjectStore
+     * @return a BagQueryIndexCache
+     */
+    public static synchronized BagQueryIndexCache getInstance(ObjectStore os) {
+        BagQueryIndexCache retval = INSTANCES.get(os);
+        if (retval == null) {
+            retval = new BagQueryIndexCache();
+            INSTANCES.put(os, retval);
+        }
+        return retval;
+    }
+
+    private static synchronized ExecutorService getBuilder() {
+        if (builder == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "BagQueryIndex builder");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            builder = executor;
+        }
+        return builder;
+    }
+
+    /**
+     * Returns the index for a query if it is ready and up to date. Otherwise, the index is
+     * scheduled to be built, and null is returned.
+     *
+     * @param os the ObjectStore to run the query in
+     * @param q the Query, as returned by BagQuery.getQueryForWildcards() for "*"
+     * @return a BagQueryIndex, or null if the caller should run the query instead
+     */
+    public BagQueryIndex getIndex(ObjectStore os, Query q) {
+        String key = q.toString();
+        BagQueryIndex index = indexes.get(key);
+        if (index != null) {
+            if (index.isCurrent(os)) {
+                return index;
+            }
+            LOG.info("Data has changed - rebuilding bag query index for " + key);
+            indexes.remove(key, index);
+        }
+        build(os, q, key);
+        return null;
+    }
+
+    /**
+     * Schedules the index for a query to be built, if it is not already present.
+     *
+     * @param os the ObjectStore to run the query in
+     * @param q the Query, as returned by BagQuery.getQueryForWildcards() for "*"
+     */
+    public void prebuild(ObjectStore os, Query q) {
+        String key = q.toString();
+        if (!indexes.containsKey(key)) {
+            build(os, q, key);
+        }
+    }
+
+    private void build(final ObjectStore os, final Query q, final String key) {
+        if (failed.contains(key) || !building.add(key)) {
+            return;
+        }
+        getBuilder().execute(new Runnable() {
+            public void run() {
+                try {
+                    long start = System.currentTimeMillis();
+                    BagQueryIndex index = BagQueryIndex.build(os, q);
+                    indexes.put(key, index);
+                    LOG.info("Built bag query index with " + index.size() + " identifiers in "
+                            + (System.currentTimeMillis() - start) + " ms for " + key);
+                } catch (Exception e) {
+                    // Don't keep trying - the query will be run in the database instead
+                    failed.add(key);
+                    LOG.error("Failed to build bag query index for " + key, e);
+                } finally {
+                    building.remove(key);
+                }
+            }
+        });
+    }
+}
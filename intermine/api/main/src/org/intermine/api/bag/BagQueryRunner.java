@@ -12,6 +12,7 @@ package org.intermine.api.bag;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -153,9 +154,26 @@ public class BagQueryRunner
         boolean matchOnFirst = bagQueryConfig.getMatchOnFirst();
 
         for (BagQuery bq : queries) {
+            BagQueryIndex index = null;
+            try {
+                index = getIndex(bq, extraFieldValue);
+            } catch (IllegalArgumentException e) {
+                // Query couldn't handle extra value
+            }
             // run the next query on identifiers not yet resolved
             // OR all identifiers if matchOnFirst = FALSE
-            if (!unresolved.isEmpty() || !matchOnFirst) {
+            if ((!unresolved.isEmpty() || !matchOnFirst) && (index != null)) {
+                Map<String, Set<Integer>> resMap = new HashMap<String, Set<Integer>>();
+                Set<String> toProcess = (matchOnFirst) ? unresolved : unresolvedOriginal;
+                for (Map.Entry<String, Set<Integer>> entry
+                        : index.getIds(new ArrayList<String>(toProcess), caseSensitive).entrySet()) {
+                    for (Integer id : entry.getValue()) {
+                        processMatch(resMap, unresolved, id, entry.getKey());
+                    }
+                }
+                addResults(resMap, unresolved, bqr, bq.getMessage(), typeCls, false,
+                            matchOnFirst, bq.matchesAreIssues());
+            } else if (!unresolved.isEmpty() || !matchOnFirst) {
                 Map<String, Set<Integer>> resMap = new HashMap<String, Set<Integer>>();
                 try {
                     Set<String> toProcess = (matchOnFirst) ? unresolved : unresolvedOriginal;
@@ -192,26 +210,38 @@ public class BagQueryRunner
             if (!wildcardInput.isEmpty()) {
                 Map<String, Set<Integer>> resMap = new HashMap<String, Set<Integer>>();
                 try {
-                    Query q = bq.getQueryForWildcards(wildcardInput, extraFieldValue);
-                    Results res = os.execute(q, ResultsBatches.DEFAULT_BATCH_SIZE, true, true,
-                            false);
-                    for (Object rowObj : res) {
-                        ResultsRow<?> row = (ResultsRow<?>) rowObj;
-                        Integer id = (Integer) row.get(0);
-                        for (int i = 1; i < row.size(); i++) {
-                            String field = "" + row.get(i);
-                            String lowerField = field.toLowerCase();
-                            for (String wildcard : wildcardInput) {
-                                Pattern pattern = patterns.get(wildcard);
-                                if (pattern.matcher(lowerField).matches()) {
-                                    Set<Integer> ids = resMap.get(wildcard);
-                                    if (ids == null) {
-                                        ids = new LinkedHashSet<Integer>();
-                                        resMap.put(wildcard, ids);
+                    if (index != null) {
+                        for (String wildcard : wildcardInput) {
+                            Set<Integer> ids = index.getWildcardIds(wildcard,
+                                    patterns.get(wildcard));
+                            if (!ids.isEmpty()) {
+                                resMap.put(wildcard, ids);
+                                // we have matched at least once with wildcard
+                                wildcardUnresolved.remove(wildcard);
+                            }
+                        }
+                    } else {
+                        Query q = bq.getQueryForWildcards(wildcardInput, extraFieldValue);
+                        Results res = os.execute(q, ResultsBatches.DEFAULT_BATCH_SIZE, true, true,
+                                false);
+                        for (Object rowObj : res) {
+                            ResultsRow<?> row = (ResultsRow<?>) rowObj;
+                            Integer id = (Integer) row.get(0);
+                            for (int i = 1; i < row.size(); i++) {
+                                String field = "" + row.get(i);
+                                String lowerField = field.toLowerCase();
+                                for (String wildcard : wildcardInput) {
+                                    Pattern pattern = patterns.get(wildcard);
+                                    if (pattern.matcher(lowerField).matches()) {
+                                        Set<Integer> ids = resMap.get(wildcard);
+                                        if (ids == null) {
+                                            ids = new LinkedHashSet<Integer>();
+                                            resMap.put(wildcard, ids);
+                                        }
+                                        ids.add(id);
+                                        // we have matched at least once with wildcard
+                                        wildcardUnresolved.remove(wildcard);
                                     }
-                                    ids.add(id);
-                                    // we have matched at least once with wildcard
-                                    wildcardUnresolved.remove(wildcard);
                                 }
                             }
                         }
@@ -430,6 +460,21 @@ public class BagQueryRunner
         }
     }
 
+    /**
+     * Returns the in-memory index for a bag query if indexes are enabled and it is ready, so that
+     * the query need not be run in the database.
+     *
+     * @throws IllegalArgumentException if the query can't handle the extra value
+     */
+    private BagQueryIndex getIndex(BagQuery bq, String extraFieldValue)
+        throws ClassNotFoundException {
+        if (!bagQueryConfig.getUseIndex()) {
+            return null;
+        }
+        Query q = bq.getQueryForWildcards(Collections.singleton("*"), extraFieldValue);
+        return BagQueryIndexCache.getInstance(os).getIndex(os, q);
+    }
+
     // temporary method - will be replaced by BagQueryHelper method
     private List<BagQuery> getBagQueriesForType(BagQueryConfig config, String type) {
         List<BagQuery> queries = new ArrayList<BagQuery>();
@@ -33,6 +33,7 @@ import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.pathquery.PathQuery;
 
 /**
@@ -128,6 +129,41 @@ public class PathQueryExecutor extends QueryExecutor
         return new ResultIterator(pathQuery, q, results, pathToQueryNode, start, limit);
     }
 
+    /**
+     * Executes object store query and streams the results as an iterator over rows, reading the
+     * whole result set with a single database query rather than batch by batch. This suits full
+     * exports. The iterator holds database resources, so it must be read to the end, or closed
+     * with close() or releaseGoFaster().
+     *
+     * @param pathQuery path query to be executed
+     * @return results
+     * @throws ObjectStoreException if the query cannot be run
+     */
+    public ExportResultsIterator stream(PathQuery pathQuery) throws ObjectStoreException {
+        return stream(pathQuery, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Executes object store query and streams the results as an iterator over rows, as
+     * stream(PathQuery), returning only rows in the given range.
+     *
+     * @param pathQuery path query to be executed
+     * @param start index of first result which will be retrieved. Rows before it are read and
+     * thrown away.
+     * @param limit maximum number of results
+     * @return results
+     * @throws ObjectStoreException if the query cannot be run
+     */
+    public ExportResultsIterator stream(PathQuery pathQuery, final int start,
+            final int limit) throws ObjectStoreException {
+        Map<String, QuerySelectable> pathToQueryNode = new HashMap<String, QuerySelectable>();
+        Map<String, BagQueryResult> returnBagQueryResults = new HashMap<String, BagQueryResult>();
+
+        Query q = makeQuery(pathQuery, returnBagQueryResults, pathToQueryNode);
+        ResultsStream stream = os.stream(q, batchSize, true);
+        return new ResultIterator(pathQuery, q, stream, pathToQueryNode, start, limit);
+    }
+
     private Query makeQuery(PathQuery pathQuery, Map<String, BagQueryResult> pathToBagQueryResult,
             Map<String, QuerySelectable> pathToQueryNode) throws ObjectStoreException {
 
@@ -259,6 +295,26 @@ class ResultIterator extends ExportResultsIterator
         this.start = start;
     }
 
+    /**
+     * Constructor for a ResultIterator that reads from a ResultsStream.
+     *
+     * @param pathQuery a PathQuery to run.
+     * @param q The object-store query this path-query corresponds to.
+     * @param stream the stream created when executing the query
+     * @param pathToQueryNode a map from path in pathQuery to QuerySelectable in the generated
+     * ObjectStore query
+     * @param start the first row of results to be returned
+     * @param limit the number of result rows to return
+     * @throws ObjectStoreException if something goes wrong executing the query
+     */
+    public ResultIterator(PathQuery pathQuery, Query q, ResultsStream stream,
+            Map<String, QuerySelectable> pathToQueryNode, int start, int limit)
+        throws ObjectStoreException {
+        super(pathQuery, q, stream, pathToQueryNode);
+        this.limit = limit;
+        this.start = start;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -273,7 +329,8 @@ class ResultIterator extends ExportResultsIterator
             }
         }
 
-        if (counter >= (limit + start)) {
+        if (counter - start >= limit) {
+            close();
             return false;
         } else {
             return super.hasNext();
@@ -28,6 +28,7 @@ import org.intermine.objectstore.query.QueryCollectionPathExpression;
 import org.intermine.objectstore.query.QueryObjectPathExpression;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.pathquery.Path;
 import org.intermine.pathquery.PathException;
 import org.intermine.pathquery.PathQuery;
@@ -50,6 +51,7 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     private final Query query;
     private int columnCount;
     protected final Results results;
+    protected final ResultsStream stream;
     private boolean isGoingFaster = false;
     protected final PathQuery originatingQuery;
 
@@ -66,6 +68,28 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     public ExportResultsIterator(PathQuery pathQuery, Query q, Results results,
             Map<String, QuerySelectable> pathToQueryNode) throws ObjectStoreException {
         this.results = results;
+        this.stream = null;
+        this.originatingQuery = pathQuery;
+        this.query = q;
+        init(pathQuery, pathToQueryNode);
+    }
+
+    /**
+     * Constructor for ExportResultsIterator that reads the rows from a ResultsStream rather than
+     * a Results object. The stream is closed when it has been read to the end, or when close()
+     * or releaseGoFaster() is called.
+     *
+     * @param pathQuery a PathQuery to run
+     * @param q the ObjectStore query the PathQuery was translated into
+     * @param stream the stream created when executing the query
+     * @param pathToQueryNode a map from path in pathQuery to QuerySelectable in the generated
+     * ObjectStore query
+     * @throws ObjectStoreException if something goes wrong executing the query
+     */
+    public ExportResultsIterator(PathQuery pathQuery, Query q, ResultsStream stream,
+            Map<String, QuerySelectable> pathToQueryNode) throws ObjectStoreException {
+        this.results = null;
+        this.stream = stream;
         this.originatingQuery = pathQuery;
         this.query = q;
         init(pathQuery, pathToQueryNode);
@@ -80,7 +104,11 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     }
 
     private void init(PathQuery pq, Map<String, QuerySelectable> pathToQueryNode) {
-        osIter = ((List) results).iterator();
+        if (stream != null) {
+            osIter = (Iterator) stream;
+        } else {
+            osIter = ((List) results).iterator();
+        }
       
         List<List<ResultElement>> empty = Collections.emptyList();
         subIter = empty.iterator();
@@ -135,6 +163,10 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
      * @throws RuntimeException if something goes wrong
      */
     public void goFaster()  {
+        if (results == null) {
+            // A stream runs the query only once, so precomputing it would not help.
+            return;
+        }
         try {
             if ((!results.isSingleBatch()) && (!isGoingFaster)) {
                 ((ObjectStoreInterMineImpl) results.getObjectStore()).goFaster(results.getQuery());
@@ -146,11 +178,13 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     }
 
     /**
-     * Switches off the goFaster mode in the objectstore for this query.
+     * Switches off the goFaster mode in the objectstore for this query, and closes the stream
+     * if the rows are being streamed.
      *
      * @throws RuntimeException if something goes wrong
      */
     public void releaseGoFaster() {
+        close();
         try {
             if (isGoingFaster) {
                 ((ObjectStoreInterMineImpl) results.getObjectStore()).releaseGoFaster(results
@@ -161,6 +195,16 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
         }
     }
 
+    /**
+     * Releases the database resources held by a streaming iterator. This does nothing if the
+     * rows are read from a Results object.
+     */
+    public void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
     /** Analyses the select list to predict what the structure of the results will be. It produces
      *  a list with a disjoint type of element.
      *  
@@ -0,0 +1,51 @@
+package org.intermine.model.userprofile;
+
+import org.intermine.model.FastPathObject;
+import org.intermine.model.FastPathObjectFactory;
+
+public class ModelObjectFactory implements FastPathObjectFactory
+{
+    public FastPathObject newInstance(final Class<?> clazz) {
+        String name = clazz.getName();
+        switch (name.hashCode()) {
+            case -2050248978:
+                if (org.intermine.model.userprofile.TemplateSummary.class == clazz) {
+                    return new org.intermine.model.userprofile.TemplateSummary();
+                }
+                break;
+            case -1903874935:
+                if (org.intermine.model.userprofile.PermanentToken.class == clazz) {
+                    return new org.intermine.model.userprofile.PermanentToken();
+                }
+                break;
+            case -767099617:
+                if (org.intermine.model.userprofile.SavedBag.class == clazz) {
+                    return new org.intermine.model.userprofile.SavedBag();
+                }
+                break;
+            case 321153221:
+                if (org.intermine.model.userprofile.SavedTemplateQuery.class == clazz) {
+                    return new org.intermine.model.userprofile.SavedTemplateQuery();
+                }
+                break;
+            case 506084284:
+                if (org.intermine.model.userprofile.Tag.class == clazz) {
+                    return new org.intermine.model.userprofile.Tag();
+                }
+                break;
+            case 680764800:
+                if (org.intermine.model.userprofile.UserProfile.class == clazz) {
+                    return new org.intermine.model.userprofile.UserProfile();
+                }
+                break;
+            case 1566093343:
+                if (org.intermine.model.userprofile.SavedQuery.class == clazz) {
+                    return new org.intermine.model.userprofile.SavedQuery();
+                }
+                break;
+            default:
+                break;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,224 @@
+package org.intermine.model.userprofile;
+
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.intermine.NotXmlParser;
+import org.intermine.objectstore.intermine.NotXmlRenderer;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.util.StringConstructor;
+import org.intermine.util.TypeUtil;
+
+public class SavedQuery implements org.intermine.model.InterMineObject
+{
+    // Attr: org.intermine.model.userprofile.SavedQuery.query
+    protected java.lang.String query;
+    public java.lang.String getQuery() { return query; }
+    public void setQuery(final java.lang.String query) { this.query = query; }
+
+    // Ref: org.intermine.model.userprofile.SavedQuery.userProfile
+    protected org.intermine.model.InterMineObject userProfile;
+    public org.intermine.model.userprofile.UserProfile getUserProfile() { if (userProfile instanceof org.intermine.objectstore.proxy.ProxyReference) { return ((org.intermine.model.userprofile.UserProfile) ((org.intermine.objectstore.proxy.ProxyReference) userProfile).getObject()); }; return (org.intermine.model.userprofile.UserProfile) userProfile; }
+    public void setUserProfile(final org.intermine.model.userprofile.UserProfile userProfile) { this.userProfile = userProfile; }
+    public void proxyUserProfile(final org.intermine.objectstore.proxy.ProxyReference userProfile) { this.userProfile = userProfile; }
+    public org.intermine.model.InterMineObject proxGetUserProfile() { return userProfile; }
+
+    // Attr: org.intermine.model.InterMineObject.id
+    protected java.lang.Integer id;
+    public java.lang.Integer getId() { return id; }
+    public void setId(final java.lang.Integer id) { this.id = id; }
+
+    @Override public boolean equals(Object o) { return (o instanceof SavedQuery && id != null) ? id.equals(((SavedQuery)o).getId()) : this == o; }
+    @Override public int hashCode() { return (id != null) ? id.hashCode() : super.hashCode(); }
+    @Override public String toString() { return "SavedQuery [id=\"" + id + "\", query=\"" + query + "\", userProfile=" + (userProfile == null ? "null" : (userProfile.getId() == null ? "no id" : userProfile.getId().toString())) + "]"; }
+    public Object getFieldValue(final String fieldName) throws IllegalAccessException {
+        switch (fieldName.hashCode()) {
+            case -611292322:
+                if ("userProfile".equals(fieldName)) {
+                    if (userProfile instanceof ProxyReference) {
+                        return ((ProxyReference) userProfile).getObject();
+                    }
+                    return userProfile;
+                }
+                break;
+            case 3355:
+                if ("id".equals(fieldName)) {
+                    return id;
+                }
+                break;
+            case 107944136:
+                if ("query".equals(fieldName)) {
+                    return query;
+                }
+                break;
+            default:
+                break;
+        }
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            return TypeUtil.getFieldValue(this, fieldName);
+        }
+        throw new IllegalArgumentException("Unknown field " + fieldName);
+    }
+    public Object getFieldProxy(final String fieldName) throws IllegalAccessException {
+        switch (fieldName.hashCode()) {
+            case -611292322:
+                if ("userProfile".equals(fieldName)) {
+                    return userProfile;
+                }
+                break;
+            case 3355:
+                if ("id".equals(fieldName)) {
+                    return id;
+                }
+                break;
+            case 107944136:
+                if ("query".equals(fieldName)) {
+                    return query;
+                }
+                break;
+            default:
+                break;
+        }
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            return TypeUtil.getFieldProxy(this, fieldName);
+        }
+        throw new IllegalArgumentException("Unknown field " + fieldName);
+    }
+    public void setFieldValue(final String fieldName, final Object value) {
+        switch (fieldName.hashCode()) {
+            case -611292322:
+                if ("userProfile".equals(fieldName)) {
+                    userProfile = (org.intermine.model.InterMineObject) value;
+                    return;
+                }
+                break;
+            case 3355:
+                if ("id".equals(fieldName)) {
+                    id = (java.lang.Integer) value;
+                    return;
+                }
+                break;
+            case 107944136:
+                if ("query".equals(fieldName)) {
+                    query = (java.lang.String) value;
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            TypeUtil.setFieldValue(this, fieldName, value);
+            return;
+        }
+        throw new IllegalArgumentException("Unknown field " + fieldName);
+    }
+    public Class<?> getFieldType(final String fieldName) {
+        switch (fieldName.hashCode()) {
+            case -611292322:
+                if ("userProfile".equals(fieldName)) {
+                    return org.intermine.model.userprofile.UserProfile.class;
+                }
+                break;
+            case 3355:
+                if ("id".equals(fieldName)) {
+                    return java.lang.Integer.class;
+                }
+                break;
+            case 107944136:
+                if ("query".equals(fieldName)) {
+                    return java.lang.String.class;
+                }
+                break;
+            default:
+                break;
+        }
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            return TypeUtil.getFieldType(org.intermine.model.userprofile.SavedQuery.class, fieldName);
+        }
+        throw new IllegalArgumentException("Unknown field " + fieldName);
+    }
+    public StringConstructor getoBJECT() {
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            return NotXmlRenderer.render(this);
+        }
+        StringConstructor sb = new StringConstructor();
+        sb.append("$_^org.intermine.model.userprofile.SavedQuery");
+        if (query != null) {
+            sb.append("$_^aquery$_^");
+            String string = query;
+            while (string != null) {
+                int delimPosition = string.indexOf("$_^");
+                if (delimPosition == -1) {
+                    sb.append(string);
+                    string = null;
+                } else {
+                    sb.append(string.substring(0, delimPosition + 3));
+                    sb.append("d");
+                    string = string.substring(delimPosition + 3);
+                }
+            }
+        }
+        if (userProfile != null) {
+            sb.append("$_^ruserProfile$_^").append(userProfile.getId());
+        }
+        if (id != null) {
+            sb.append("$_^aid$_^").append(id);
+        }
+        return sb;
+    }
+    public void setoBJECT(String notXml, ObjectStore os) {
+        setoBJECT(NotXmlParser.SPLITTER.split(notXml), os);
+    }
+    public void setoBJECT(final String[] notXml, final ObjectStore os) {
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            throw new IllegalStateException("Class " + getClass().getName() + " does not match code (org.intermine.model.userprofile.SavedQuery)");
+        }
+        for (int i = 2; i < notXml.length;) {
+            int startI = i;
+            if ((i < notXml.length) && "aquery".equals(notXml[i])) {
+                i++;
+                StringBuilder string = null;
+                while ((i + 1 < notXml.length) && (notXml[i + 1].charAt(0) == 'd')) {
+                    if (string == null) string = new StringBuilder(notXml[i]);
+                    i++;
+                    string.append("$_^").append(notXml[i].substring(1));
+                }
+                query = string == null ? notXml[i] : string.toString();
+                i++;
+            }
+            if ((i < notXml.length) &&"ruserProfile".equals(notXml[i])) {
+                i++;
+                userProfile = new ProxyReference(os, Integer.valueOf(notXml[i]), org.intermine.model.userprofile.UserProfile.class);
+                i++;
+            };
+            if ((i < notXml.length) && "aid".equals(notXml[i])) {
+                i++;
+                id = Integer.valueOf(notXml[i]);
+                i++;
+            }
+            if (startI == i) {
+                throw new IllegalArgumentException("Unknown field " + notXml[i]);
+            }
+        }
+    }
+    public void addCollectionElement(final String fieldName, final org.intermine.model.InterMineObject element) {
+        switch (fieldName.hashCode()) {
+            default:
+                break;
+        }
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            TypeUtil.addCollectionElement(this, fieldName, element);
+            return;
+        }
+        throw new IllegalArgumentException("Unknown collection " + fieldName);
+    }
+    public Class<?> getElementType(final String fieldName) {
+        switch (fieldName.hashCode()) {
+            default:
+                break;
+        }
+        if (!org.intermine.model.userprofile.SavedQuery.class.equals(getClass())) {
+            return TypeUtil.getElementType(org.intermine.model.userprofile.SavedQuery.class, fieldName);
+        }
+        throw new IllegalArgumentException("Unknown field " + fieldName);
+    }
+}
@@ -0,0 +1,87 @@
+package org.intermine.api.bag;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+public class BagQueryIndexTest extends TestCase
+{
+    private BagQueryIndex index;
+
+    public BagQueryIndexTest(String arg) {
+        super(arg);
+    }
+
+    @Override
+    public void setUp() {
+        index = new BagQueryIndex();
+        index.add(1, "EmployeeA1");
+        index.add(1, "ea1");
+        index.add(2, "EmployeeA2");
+        index.add(3, "employeea1");
+        index.add(4, "EmployeeB1");
+        index.add(4, "EmployeeB1");
+        index.add(5, "Other");
+        index.finish();
+    }
+
+    private static Set<Integer> ids(Integer... ids) {
+        return new HashSet<Integer>(Arrays.asList(ids));
+    }
+
+    private static Pattern pattern(String wildcard) {
+        return Pattern.compile(wildcard.toLowerCase().replaceAll("\\*", "\\.\\*"));
+    }
+
+    public void testGetIds() throws Exception {
+        assertEquals(ids(1, 3), index.getIds("EMPLOYEEA1", false));
+        assertEquals(ids(1), index.getIds("EA1", false));
+        assertEquals(ids(4), index.getIds("employeeb1", false));
+        assertTrue(index.getIds("EmployeeC1", false).isEmpty());
+        assertEquals(6, index.size());
+    }
+
+    public void testGetIdsCaseSensitive() throws Exception {
+        assertEquals(ids(1), index.getIds("EmployeeA1", true));
+        assertEquals(ids(3), index.getIds("employeea1", true));
+        assertTrue(index.getIds("EMPLOYEEA1", true).isEmpty());
+    }
+
+    public void testGetIdsFoldsCase() throws Exception {
+        List<String> input = Arrays.asList("EmployeeA1", "EMPLOYEEA1", "ea1", "employeea1", "Z");
+        Map<String, Set<Integer>> expected = new HashMap<String, Set<Integer>>();
+        expected.put("EmployeeA1", ids(1, 3));
+        expected.put("ea1", ids(1));
+        assertEquals(expected, index.getIds(input, false));
+
+        expected.clear();
+        expected.put("EmployeeA1", ids(1));
+        expected.put("ea1", ids(1));
+        expected.put("employeea1", ids(3));
+        assertEquals(expected, index.getIds(input, true));
+    }
+
+    public void testGetWildcardIds() throws Exception {
+        assertEquals(ids(1, 2, 3), index.getWildcardIds("EmployeeA*", pattern("EmployeeA*")));
+        assertEquals(ids(1, 3, 4), index.getWildcardIds("Emp*1", pattern("Emp*1")));
+        assertEquals(ids(1, 3, 4), index.getWildcardIds("*1", pattern("*1")));
+        assertEquals(ids(1, 2, 3, 4, 5), index.getWildcardIds("*", pattern("*")));
+        assertTrue(index.getWildcardIds("Z*", pattern("Z*")).isEmpty());
+    }
+}
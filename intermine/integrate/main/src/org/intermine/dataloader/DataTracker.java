@@ -25,6 +25,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.intermine.sql.ConnectionPurpose;
 import org.intermine.sql.Database;
 
 import org.apache.log4j.Logger;
@@ -61,13 +62,13 @@ public class DataTracker
         new HashMap<Integer, ObjectDescription>();
     private HashMap<String, Source> nameToSource = new HashMap<String, Source>();
     private HashMap<Source, String> sourceToName = new HashMap<Source, String>();
-    private Connection conn;
-    private Connection storeConn;
+    protected Connection conn;
+    protected Connection storeConn;
     protected Exception broken = null;
     private CacheStorer cacheStorer;
-    private int version = 0;
+    protected int version = 0;
     // This reference is here so that the Database doesn't get garbage collected.
-    private Database db;
+    protected Database db;
 
     private int ops = 0;
     private int misses = 0;
@@ -83,14 +84,28 @@ public class DataTracker
      * @param commitSize number of entries to write to the database at a time
      */
     public DataTracker(Database db, int maxSize, int commitSize) {
+        this(db);
         this.maxSize = maxSize;
         this.commitSize = commitSize;
-        this.db = db;
         cache = new LinkedHashMap<Integer, ObjectDescription>(maxSize * 14 / 10, 0.75F, true);
+        cacheStorer = new CacheStorer();
+        Thread cacheStorerThread = new Thread(cacheStorer, "DataTracker CacheStorer");
+        cacheStorerThread.setDaemon(true);
+        cacheStorerThread.start();
+    }
+
+    /**
+     * Constructor for subclasses that keep entries in their own way. This opens the connections
+     * to the database and creates the tracker table if necessary, but does not set up the cache.
+     *
+     * @param db a Database to back the tracker
+     */
+    protected DataTracker(Database db) {
+        this.db = db;
         try {
-            conn = db.getConnection();
+            conn = db.getConnection(ConnectionPurpose.TRACKER);
             conn.setAutoCommit(true);
-            storeConn = db.getConnection();
+            storeConn = db.getConnection(ConnectionPurpose.TRACKER);
             storeConn.setAutoCommit(false);
             Statement s = conn.createStatement();
             try {
@@ -104,10 +119,6 @@ public class DataTracker
             e2.initCause(e);
             throw e2;
         }
-        cacheStorer = new CacheStorer();
-        Thread cacheStorerThread = new Thread(cacheStorer, "DataTracker CacheStorer");
-        cacheStorerThread.setDaemon(true);
-        cacheStorerThread.start();
     }
 
     /**
@@ -136,7 +147,13 @@ public class DataTracker
     public void prefetchIds(Set<Integer> ids) {
         Connection prefetchConn = null;
         try {
-            prefetchConn = db.getConnection();
+            // This tracker holds its own connections for its lifetime, so waiting for a full TRACKER
+            // partition from another thread could wait for ever. Entries that are not prefetched are
+            // fetched one at a time when they are needed.
+            prefetchConn = db.getConnectionIfAvailable(ConnectionPurpose.TRACKER);
+            if (prefetchConn == null) {
+                return;
+            }
             prefetchConn.setAutoCommit(true);
             prefetchConn.createStatement().execute("SET enable_seqscan = off;");
             long startTime = System.currentTimeMillis();
@@ -493,25 +510,7 @@ public class DataTracker
     private void writeMap(Map<Integer, ObjectDescription> map, boolean clean) throws SQLException {
         long start = System.currentTimeMillis();
         try {
-            org.postgresql.copy.CopyManager copyManager = null;
-            ByteArrayOutputStream baos = null;
-            DataOutputStream dos = null;
-            Statement s = null;
-            if (storeConn instanceof org.postgresql.PGConnection) {
-                copyManager = ((org.postgresql.PGConnection) storeConn).getCopyAPI();
-                baos = new ByteArrayOutputStream();
-                dos = new DataOutputStream(baos);
-                dos.writeBytes("PGCOPY\n");
-                dos.writeByte(255);
-                dos.writeBytes("\r\n");
-                dos.writeByte(0); // Signature done
-                dos.writeInt(0); // Flags - we aren't supplying OIDS
-                dos.writeInt(0); // Length of header extension
-            }
-            if (copyManager == null) {
-                s = storeConn.createStatement();
-                LOG.warn("Using slow portable writing method");
-            }
+            TrackerRowWriter writer = new TrackerRowWriter();
             for (Map.Entry<Integer, ObjectDescription> entry : map.entrySet()) {
                 Integer id = entry.getKey();
                 ObjectDescription desc = entry.getValue();
@@ -523,22 +522,7 @@ public class DataTracker
                         Source source = fieldEntry.getValue();
                         if (!orig.containsKey(field) || (!orig.get(field).equals(source))) {
                             // Insert required
-                            if (s == null) {
-                                dos.writeShort(4); // Number of fields
-                                dos.writeInt(4); // Length of an integer
-                                dos.writeInt(id.intValue()); // objectid
-                                dos.writeInt(field.length()); // Length of fieldname
-                                dos.writeBytes(field); // Field name
-                                String sourceName = sourceToString(source);
-                                dos.writeInt(sourceName.length()); // Length of source name
-                                dos.writeBytes(sourceName); // Source name
-                                dos.writeInt(4); // Length of an integer
-                                dos.writeInt(version); // version
-                            } else {
-                                s.addBatch("INSERT INTO tracker (objectid, fieldname, sourcename,"
-                                        + " version) VALUES (" + id + ", '" + field + "', '"
-                                        + sourceToString(source) + "', " + version + ")");
-                            }
+                            writer.write(id.intValue(), field, sourceToString(source));
                         }
                     }
                     if (clean) {
@@ -546,14 +530,7 @@ public class DataTracker
                     }
                 }
             }
-            if (s == null) {
-                dos.writeShort(-1); // No more tuples
-                dos.flush();
-                copyManager.copyIn("COPY tracker FROM STDIN BINARY",
-                        new ByteArrayInputStream(baos.toByteArray()));
-            } else {
-                s.executeBatch();
-            }
+            writer.finish();
             version++;
             storeConn.commit();
         } catch (IOException e) {
@@ -563,6 +540,103 @@ public class DataTracker
         LOG.debug("Finished storing batch (time = " + (now - start) + " ms)");
     }
 
+    /**
+     * Writes rows to the tracker table with the current version, using the storeConn connection.
+     * With PostgreSQL, the rows are sent with COPY in chunks, otherwise they are inserted in a
+     * batch. The caller must commit the transaction.
+     */
+    protected class TrackerRowWriter
+    {
+        private static final int COPY_CHUNK_ROWS = 100000;
+
+        private org.postgresql.copy.CopyManager copyManager = null;
+        private ByteArrayOutputStream baos = null;
+        private DataOutputStream dos = null;
+        private Statement s = null;
+        private int rows = 0;
+
+        /**
+         * Constructs a TrackerRowWriter.
+         *
+         * @throws SQLException if an error occurs in the database
+         * @throws IOException never
+         */
+        public TrackerRowWriter() throws SQLException, IOException {
+            if (storeConn instanceof org.postgresql.PGConnection) {
+                copyManager = ((org.postgresql.PGConnection) storeConn).getCopyAPI();
+                startCopy();
+            } else {
+                s = storeConn.createStatement();
+                LOG.warn("Using slow portable writing method");
+            }
+        }
+
+        private void startCopy() throws IOException {
+            baos = new ByteArrayOutputStream();
+            dos = new DataOutputStream(baos);
+            dos.writeBytes("PGCOPY\n");
+            dos.writeByte(255);
+            dos.writeBytes("\r\n");
+            dos.writeByte(0); // Signature done
+            dos.writeInt(0); // Flags - we aren't supplying OIDS
+            dos.writeInt(0); // Length of header extension
+        }
+
+        private void finishCopy() throws SQLException, IOException {
+            dos.writeShort(-1); // No more tuples
+            dos.flush();
+            copyManager.copyIn("COPY tracker FROM STDIN BINARY",
+                    new ByteArrayInputStream(baos.toByteArray()));
+        }
+
+        /**
+         * Writes a row.
+         *
+         * @param id the ID of the object
+         * @param field the name of the field
+         * @param sourceName the name of the source of the field
+         * @throws SQLException if an error occurs in the database
+         * @throws IOException never
+         */
+        public void write(int id, String field, String sourceName) throws SQLException,
+            IOException {
+            if (s == null) {
+                dos.writeShort(4); // Number of fields
+                dos.writeInt(4); // Length of an integer
+                dos.writeInt(id); // objectid
+                dos.writeInt(field.length()); // Length of fieldname
+                dos.writeBytes(field); // Field name
+                dos.writeInt(sourceName.length()); // Length of source name
+                dos.writeBytes(sourceName); // Source name
+                dos.writeInt(4); // Length of an integer
+                dos.writeInt(version); // version
+                rows++;
+                if (rows % COPY_CHUNK_ROWS == 0) {
+                    finishCopy();
+                    startCopy();
+                }
+            } else {
+                s.addBatch("INSERT INTO tracker (objectid, fieldname, sourcename,"
+                        + " version) VALUES (" + id + ", '" + field + "', '"
+                        + sourceName + "', " + version + ")");
+            }
+        }
+
+        /**
+         * Sends any rows that have not been sent yet.
+         *
+         * @throws SQLException if an error occurs in the database
+         * @throws IOException never
+         */
+        public void finish() throws SQLException, IOException {
+            if (s == null) {
+                finishCopy();
+            } else {
+                s.executeBatch();
+            }
+        }
+    }
+
     /**
      * Pokes the CacheStorer thread if there are too many entries in the cache.
      */
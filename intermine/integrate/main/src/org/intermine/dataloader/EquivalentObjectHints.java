@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import org.intermine.model.FastPathObject;
@@ -32,7 +33,9 @@ import org.intermine.objectstore.query.QueryValue;
 import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.objectstore.query.SubqueryExistsConstraint;
 import org.intermine.util.AlwaysSet;
+import org.intermine.util.BloomFilter;
 import org.intermine.util.DynamicUtil;
+import org.intermine.util.PropertiesUtil;
 import org.intermine.util.PseudoSet;
 
 import org.apache.log4j.Logger;
@@ -40,12 +43,22 @@ import org.apache.log4j.Logger;
 /**
  * Object for holding hint data for the getEquivalentObjects method in IntegrationWriters.
  *
+ * The hints describe the database as it was at the start of the run. For each class and primary
+ * key field that is asked about, the values in the database are summarised. A small number of
+ * values is held exactly. A larger number, up to the property
+ * "equivalentObjectFetcher.bloomFilterMaxValues", is held in a Bloom filter, which lets queries
+ * be skipped for nearly all values that are not in the database using about ten bits per value.
+ * Beyond that, only the range of Integer values is kept.
+ *
  * @author Matthew Wakeling
  */
 public class EquivalentObjectHints
 {
     private static final Logger LOG = Logger.getLogger(EquivalentObjectHints.class);
     private static final int SUMMARY_SIZE = 100;
+    private static final long DEFAULT_BLOOM_FILTER_MAX_VALUES = 10000000;
+    private static final double BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.01;
+    private static final int BLOOM_FILTER_BATCH_SIZE = 10000;
 
     private boolean databaseEmptyChecked = false;
     private boolean databaseEmpty = false;
@@ -57,6 +70,7 @@ public class EquivalentObjectHints
     private Map<String, ClassAndFieldName> summaryToCafn = new HashMap<String, ClassAndFieldName>();
 
     private ObjectStore os;
+    private long bloomFilterMaxValues = DEFAULT_BLOOM_FILTER_MAX_VALUES;
 
     /**
      * Constructor.
@@ -65,6 +79,16 @@ public class EquivalentObjectHints
      */
     public EquivalentObjectHints(ObjectStore os) {
         this.os = os;
+        Properties props = PropertiesUtil.getPropertiesStartingWith("equivalentObjectFetcher");
+        String maxValues = props.getProperty("equivalentObjectFetcher.bloomFilterMaxValues");
+        if (maxValues != null) {
+            try {
+                bloomFilterMaxValues = Long.parseLong(maxValues.trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid value for the property"
+                        + " equivalentObjectFetcher.bloomFilterMaxValues: " + maxValues);
+            }
+        }
     }
 
     /**
@@ -72,7 +96,7 @@ public class EquivalentObjectHints
      *
      * @return a boolean
      */
-    public boolean databaseEmpty() {
+    public synchronized boolean databaseEmpty() {
         if (databaseEmptyChecked) {
             return databaseEmpty;
         }
@@ -105,7 +129,7 @@ public class EquivalentObjectHints
      * @param clazz the class, must be in the model
      * @return a boolean
      */
-    public boolean classNotExists(Class<? extends FastPathObject> clazz) {
+    public synchronized boolean classNotExists(Class<? extends FastPathObject> clazz) {
         if (databaseEmpty) {
             return true;
         }
@@ -143,8 +167,8 @@ public class EquivalentObjectHints
      * @param value the value
      * @return a boolean
      */
-    public boolean pkQueryFruitless(Class<? extends FastPathObject> clazz, String fieldName,
-            Object value) {
+    public synchronized boolean pkQueryFruitless(Class<? extends FastPathObject> clazz,
+            String fieldName, Object value) {
         if (classNotExists(clazz)) {
             return true;
         }
@@ -179,7 +203,8 @@ public class EquivalentObjectHints
                             ObjectStore.SEQUENCE_IGNORE);
                 }
                 if (results.size() >= SUMMARY_SIZE) {
-                    if (Integer.class.equals(qs.getType())) {
+                    values = buildBloomFilter(qc, qs, summaryName);
+                    if ((values == null) && Integer.class.equals(qs.getType())) {
                         q = new Query();
                         q.addFrom(qc);
                         q.addToSelect(new QueryFunction(qs, QueryFunction.MIN));
@@ -189,7 +214,7 @@ public class EquivalentObjectHints
                                 ObjectStore.SEQUENCE_IGNORE);
                         values = new IntegerRangeSet(((Integer) results2.get(0).get(0)).intValue(),
                                 ((Integer) results2.get(0).get(1)).intValue());
-                    } else {
+                    } else if (values == null) {
                         values = AlwaysSet.getInstance();
                     }
                 } else {
@@ -226,13 +251,47 @@ public class EquivalentObjectHints
         return !values.contains(value);
     }
 
+    /**
+     * Reads all the values of a field from the database into a Bloom filter, if there are not too
+     * many of them.
+     *
+     * @param qc the QueryClass of the class
+     * @param qs the field of the class
+     * @param summaryName the name of the class and field, for logging
+     * @return a Set that contains all the values and a few others, or null if there are too many
+     * values
+     * @throws ObjectStoreException if the database cannot be read
+     */
+    private Set<Object> buildBloomFilter(QueryClass qc, QueryEvaluable qs, String summaryName)
+        throws ObjectStoreException {
+        long start = System.currentTimeMillis();
+        Query q = new Query();
+        q.addFrom(qc);
+        q.addToSelect(qs);
+        q.setDistinct(false);
+        int count = os.count(q, ObjectStore.SEQUENCE_IGNORE);
+        if (count > bloomFilterMaxValues) {
+            LOG.info("Not building a Bloom filter for " + summaryName + ", as it has " + count
+                    + " values");
+            return null;
+        }
+        BloomFilter filter = new BloomFilter(count, BLOOM_FILTER_FALSE_POSITIVE_RATE);
+        for (Object value : os.executeSingleton(q, BLOOM_FILTER_BATCH_SIZE, false, false,
+                    false)) {
+            filter.put(value);
+        }
+        LOG.info("Built " + filter + " for " + summaryName + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return new BloomFilterSet(filter);
+    }
+
     /**
      * Returns a Set of values that have been tested for a particular class and fieldname.
      *
      * @param summaryName a String
      * @return a Set of values, or an AlwaysSet if too many values were tested
      */
-    public Set<Object> getQueried(String summaryName) {
+    public synchronized Set<Object> getQueried(String summaryName) {
         return classAndFieldNameQueried.get(summaryToCafn.get(summaryName));
     }
 
@@ -242,7 +301,7 @@ public class EquivalentObjectHints
      * @param summaryName a String
      * @return a Set of values, or an AlwaysSet if too many values were tested
      */
-    public Set<Object> getValues(String summaryName) {
+    public synchronized Set<Object> getValues(String summaryName) {
         return classAndFieldNameValues.get(summaryToCafn.get(summaryName));
     }
 
@@ -271,6 +330,24 @@ public class EquivalentObjectHints
         }
     }
 
+    private static class BloomFilterSet extends PseudoSet<Object>
+    {
+        private BloomFilter filter;
+
+        public BloomFilterSet(BloomFilter filter) {
+            this.filter = filter;
+        }
+
+        public boolean contains(Object o) {
+            return filter.mightContain(o);
+        }
+
+        @Override
+        public String toString() {
+            return filter.toString();
+        }
+    }
+
     private static class IntegerRangeSet extends PseudoSet<Object>
     {
         private int low, high;
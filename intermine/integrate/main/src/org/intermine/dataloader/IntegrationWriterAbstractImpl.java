@@ -37,6 +37,7 @@ import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsInfo;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.objectstore.query.SingletonResults;
 import org.intermine.util.IntPresentSet;
 import org.intermine.util.IntToIntMap;
@@ -86,6 +87,21 @@ public abstract class IntegrationWriterAbstractImpl implements IntegrationWriter
         eof = new HintingFetcher(beof);
     }
 
+    /**
+     * Makes this IntegrationWriter share the id map and the set of stored ids of another, so that
+     * the two can load separate parts of the same source at the same time.
+     *
+     * @param other the IntegrationWriter to share with
+     */
+    protected void shareStateWith(IntegrationWriterAbstractImpl other) {
+        idMap = other.idMap;
+        dbIdsStored = other.dbIdsStored;
+        ignoreDuplicates = other.ignoreDuplicates;
+        seenBrokenOneToMany = other.seenBrokenOneToMany;
+        beof = new BaseEquivalentObjectFetcher(getModel(), idMap, osw);
+        eof = new HintingFetcher(beof);
+    }
+
     /**
      * Returns the base equivalent object fetcher.
      *
@@ -651,6 +667,21 @@ public abstract class IntegrationWriterAbstractImpl implements IntegrationWriter
         return osw.executeSingleton(q, batchSize, optimise, explain, prefetch);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ResultsStream stream(Query q) throws ObjectStoreException {
+        return osw.stream(q);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultsStream stream(Query q, int fetchSize, boolean optimise)
+        throws ObjectStoreException {
+        return osw.stream(q, fetchSize, optimise);
+    }
+
     /**
      * {@inheritDoc}
      */
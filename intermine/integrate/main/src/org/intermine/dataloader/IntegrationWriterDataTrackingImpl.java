@@ -66,6 +66,7 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
     protected IntPresentSet duplicateObjects = new IntPresentSet();
     protected boolean isDuplicates = false;
     protected PriorityConfig priorityConfig;
+    protected IntegrationWriterDataTrackingImpl parallelParent = null;
 
     /**
      * Creates a new instance of this class, given the properties defining it.
@@ -84,7 +85,9 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
 
     /**
      * Creates a new IntegrationWriter instance of the specified class and with a specified
-     * DataTracker class plus properties.
+     * DataTracker class plus properties. If the datatrackerOffHeapSize property is set and the
+     * DataTracker class is DataTracker itself, an OffHeapDataTracker using at most that many
+     * bytes is created instead.
      *
      * @param osAlias the alias of this objectstore
      * @param props the Properties
@@ -116,6 +119,7 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
                     + " datatracker commit size specified (check properties file)");
         }
         String trackerMissingClassesString = props.getProperty("datatrackerMissingClasses");
+        String trackerOffHeapSizeString = props.getProperty("datatrackerOffHeapSize");
 
         ObjectStoreWriter writer = ObjectStoreWriterFactory.getObjectStoreWriter(writerAlias);
         try {
@@ -132,10 +136,16 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
                     trackerMissingClasses.add(c);
                 }
             }
-            Constructor<? extends DataTracker> con = trackerClass.getConstructor(
-                    new Class[] {Database.class, Integer.TYPE, Integer.TYPE});
-            DataTracker newDataTracker = con.newInstance(new Object[] {db,
-                new Integer(maxSize), new Integer(commitSize)});
+            DataTracker newDataTracker;
+            if ((trackerOffHeapSizeString != null) && DataTracker.class.equals(trackerClass)) {
+                newDataTracker = new OffHeapDataTracker(db,
+                        Long.parseLong(trackerOffHeapSizeString));
+            } else {
+                Constructor<? extends DataTracker> con = trackerClass.getConstructor(
+                        new Class[] {Database.class, Integer.TYPE, Integer.TYPE});
+                newDataTracker = con.newInstance(new Object[] {db,
+                    new Integer(maxSize), new Integer(commitSize)});
+            }
 
             Constructor<? extends IntegrationWriterDataTrackingImpl> con2 =
                 iwClass.getConstructor(new Class[] {ObjectStoreWriter.class, DataTracker.class,
@@ -215,6 +225,39 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
         return dataTracker;
     }
 
+    /**
+     * Creates another IntegrationWriter of the same class that writes through a new
+     * ObjectStoreWriter but shares the id map, the data tracker and the record of skeletons and
+     * written objects with this one, so that objects that cannot be equivalent to each other can
+     * be loaded at the same time. The new writer must be closed before this one. Closing it
+     * commits nothing to the data tracker and does not check for skeletons - this writer does
+     * that for all of them when it is closed.
+     *
+     * @return an IntegrationWriterDataTrackingImpl
+     * @throws ObjectStoreException if a new ObjectStoreWriter cannot be created
+     */
+    public IntegrationWriterDataTrackingImpl getParallelWriter() throws ObjectStoreException {
+        ObjectStoreWriter newOsw = osw.getObjectStore().getNewWriter();
+        IntegrationWriterDataTrackingImpl retval;
+        try {
+            Constructor<? extends IntegrationWriterDataTrackingImpl> con =
+                getClass().getConstructor(new Class[] {ObjectStoreWriter.class, DataTracker.class,
+                    Set.class});
+            retval = con.newInstance(new Object[] {newOsw, dataTracker, trackerMissingClasses});
+        } catch (Exception e) {
+            newOsw.close();
+            throw new ObjectStoreException("Could not create a parallel " + getClass().getName(),
+                    e);
+        }
+        retval.shareStateWith(this);
+        retval.skeletons = skeletons;
+        retval.pureObjects = pureObjects;
+        retval.writtenObjects = writtenObjects;
+        retval.duplicateObjects = duplicateObjects;
+        retval.parallelParent = this;
+        return retval;
+    }
+
     /**
      * Returns true if the given class is NOT a subclass of any of the classes in
      * trackerMissingClasses.
@@ -610,6 +653,18 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
     @Override
     public void close() throws ObjectStoreException {
         super.close();
+        if (parallelParent != null) {
+            LOG.info("Time spent by parallel writer: Equivalent object queries: "
+                    + timeSpentEquiv + ", Create object: " + timeSpentCreate
+                    + ", Compute priorities: " + timeSpentPriorities + ", Copy fields: "
+                    + timeSpentCopyFields + ", Store object: " + timeSpentStore
+                    + ", Data tracker write: " + timeSpentDataTrackerWrite + ", recursing: "
+                    + timeSpentRecursing);
+            if (isDuplicates) {
+                parallelParent.isDuplicates = true;
+            }
+            return;
+        }
         dataTracker.close();
 
         // There is a bug somewhere in this code that sometimes allows skeletons to
@@ -11,10 +11,25 @@ package org.intermine.dataloader;
  */
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 import org.intermine.dataconversion.ItemToObjectTranslator;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
 import org.intermine.model.FastPathObject;
 import org.intermine.model.InterMineObject;
 import org.intermine.objectstore.ObjectStore;
@@ -74,139 +89,37 @@ public class ObjectStoreDataLoader extends DataLoader
      */
     public void process(ObjectStore os, Source source, Source skelSource,
             Class<? extends FastPathObject> queryClass) throws ObjectStoreException {
-        int errorCount = 0;
+        AtomicInteger errorCount = new AtomicInteger();
         ObjectStore origOs = os;
         try {
             if (os instanceof ObjectStoreFastCollectionsForTranslatorImpl) {
                 ((ObjectStoreFastCollectionsForTranslatorImpl) os).setSource(source);
             }
-            if (getIntegrationWriter() instanceof IntegrationWriterDataTrackingImpl) {
-                Properties props = PropertiesUtil.getPropertiesStartingWith(
-                        "equivalentObjectFetcher");
-                if (!("false".equals(props.getProperty("equivalentObjectFetcher.useParallel")))) {
-                    LOG.info("Using ParallelBatchingFetcher - set the property "
-                            + "\"equivalentObjectFetcher.useParallel\" to false to use the standard"
-                            + " BatchingFetcher");
-                    ParallelBatchingFetcher eof =
-                        new ParallelBatchingFetcher(((IntegrationWriterAbstractImpl)
-                                getIntegrationWriter()).getBaseEof(),
-                            ((IntegrationWriterDataTrackingImpl) getIntegrationWriter())
-                            .getDataTracker(), source);
-                    ((IntegrationWriterAbstractImpl) getIntegrationWriter()).setEof(eof);
-                    os = eof.getNoseyObjectStore(os);
-                } else {
-                    LOG.info("Using BatchingFetcher - set the property "
-                            + "\"equivalentObjectFetcher.useParallel\" to true to use the "
-                            + "ParallelBatchingFetcher");
-                    BatchingFetcher eof =
-                        new BatchingFetcher(((IntegrationWriterAbstractImpl)
-                                getIntegrationWriter()).getBaseEof(),
-                            ((IntegrationWriterDataTrackingImpl) getIntegrationWriter())
-                            .getDataTracker(), source);
-                    ((IntegrationWriterAbstractImpl) getIntegrationWriter()).setEof(eof);
-                    os = eof.getNoseyObjectStore(os);
-                }
-            }
             Properties props = PropertiesUtil.getPropertiesStartingWith("dataLoader");
             boolean allowMultipleErrors = "true".equals(props.getProperty(
                             "dataLoader.allowMultipleErrors"));
-            long[] times = new long[20];
-            for (int i = 0; i < 20; i++) {
-                times[i] = -1;
-            }
-            Query q = new Query();
-            QueryClass qc = new QueryClass(queryClass);
-            q.addFrom(qc);
-            q.addToSelect(qc);
-            q.setDistinct(false);
-            long opCount = 0;
-            long time = System.currentTimeMillis();
-            long startTime = time;
-            long timeSpentRead = 0;
-            long timeSpentWrite = 0;
-            long timeSpentCommit = 0;
-            long timeSpentLoop = 0;
-            getIntegrationWriter().beginTransaction();
-            SingletonResults res = os.executeSingleton(q, ITEM_READ_BATCH_SIZE, false, false, true);
-            long time4 = System.currentTimeMillis();
-            long time1, time2, time3;
-            @SuppressWarnings({ "unchecked", "rawtypes" })
-            Collection<FastPathObject> tmpRes = (Collection) res;
-            for (FastPathObject obj : tmpRes) {
-                time1 = System.currentTimeMillis();
-                timeSpentLoop += time1 - time4;
-                time2 = System.currentTimeMillis();
-                timeSpentRead += time2 - time1;
-                //if ("org.intermine.model.chado.feature".equals(obj.getClass().getName())) {
-                //    String objText = obj.toString();
-                //    int objTextLen = objText.length();
-                //    System//.out.println("Storing " + objText.substring(0, (objTextLen > 60 ? 60
-                //                    : objTextLen)));
-                //}
+            int parallelThreads = 1;
+            String parallelThreadsString = props.getProperty("dataLoader.parallelThreads");
+            if (parallelThreadsString != null) {
                 try {
-                    getIntegrationWriter().store(obj, source, skelSource);
-                } catch (RuntimeException e) {
-                    String identifier = null;
-                    if ((origOs instanceof ObjectStoreFastCollectionsForTranslatorImpl)
-                           && (obj instanceof InterMineObject)) {
-                        ItemToObjectTranslator trans = (ItemToObjectTranslator)
-                            ((ObjectStoreFastCollectionsForTranslatorImpl) origOs).getTranslator();
-                        identifier = trans.idToIdentifier(((InterMineObject) obj).getId());
-                    }
-                    LOG.error("Exception while dataloading" + (identifier == null ? ""
-                                : " item with identifier " + identifier), e);
-                    errorCount++;
-                    if (errorCount >= 100) {
-                        throw new RuntimeException("Too many data loading exceptions - to stop on"
-                                + " the first error, set the property"
-                                + " \"dataLoader.allowMultipleErrors\" to false", e);
-                    }
-                    if (!allowMultipleErrors) {
-                        throw new RuntimeException("Exception while dataloading - to allow multiple"
-                                + " errors, set the property \"dataLoader.allowMultipleErrors\" to"
-                                + " true\n" + (identifier == null ? ""
-                                    : "Problem while loading item identifier " + identifier
-                                    + " because\n") + e.getMessage(), e);
-                    }
+                    parallelThreads = Integer.parseInt(parallelThreadsString.trim());
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring invalid value for dataLoader.parallelThreads: "
+                            + parallelThreadsString);
                 }
-                time3 = System.currentTimeMillis();
-                timeSpentWrite += time3 - time2;
-                opCount++;
-                if (opCount % 10000 == 0) {
-                    long now = System.currentTimeMillis();
-                    if (times[(int) ((opCount / 10000) % 20)] == -1) {
-                        LOG.info("Dataloaded " + opCount + " objects - running at "
-                                + (600000000L / (now - time)) + " (avg "
-                                + ((60000L * opCount) / (now - startTime))
-                                + ") objects per minute -- now on "
-                                + DynamicUtil.getFriendlyName(obj.getClass()));
-                    } else {
-                        LOG.info("Dataloaded " + opCount + " objects - running at "
-                                + (600000000L / (now - time)) + " (200000 avg "
-                                + (12000000000L / (now - times[(int) ((opCount / 10000) % 20)]))
-                                + ") (avg = " + ((60000L * opCount) / (now - startTime))
-                                + ") objects per minute -- now on "
-                                + DynamicUtil.getFriendlyName(obj.getClass()));
-                    }
-                    time = now;
-                    times[(int) ((opCount / 10000) % 20)] = now;
-                    if (opCount % 500000 == 0) {
-                        getIntegrationWriter().batchCommitTransaction();
-                    }
+            }
+            if ((parallelThreads > 1) && InterMineObject.class.equals(queryClass)
+                    && (getIntegrationWriter() instanceof IntegrationWriterDataTrackingImpl)) {
+                processInParallel(origOs, source, skelSource, parallelThreads,
+                        allowMultipleErrors, errorCount);
+            } else {
+                if (getIntegrationWriter() instanceof IntegrationWriterDataTrackingImpl) {
+                    os = installFetcher((IntegrationWriterDataTrackingImpl) getIntegrationWriter(),
+                            os, source);
                 }
-                time4 = System.currentTimeMillis();
-                timeSpentCommit += time4 - time3;
+                processSequentially(os, origOs, source, skelSource, queryClass,
+                        allowMultipleErrors, errorCount);
             }
-            time3 = System.currentTimeMillis();
-            getIntegrationWriter().commitTransaction();
-            getIntegrationWriter().close();
-            long now = System.currentTimeMillis();
-            timeSpentCommit += now - time3;
-            LOG.info("Finished dataloading " + opCount + " objects at " + ((60000L * opCount)
-                        / (now - startTime)) + " objects per minute (" + (now - startTime)
-                    + " ms total) for source " + source.getName());
-            LOG.info("Time spent: Reading: " + (timeSpentRead + timeSpentLoop) + ", Writing: "
-                    + timeSpentWrite + ", Committing: " + timeSpentCommit);
         } catch (RuntimeException e) {
             if (origOs instanceof ObjectStoreFastCollectionsForTranslatorImpl) {
                 IntPresentSet doneAlready = ((ObjectStoreFastCollectionsForTranslatorImpl) origOs)
@@ -222,11 +135,368 @@ public class ObjectStoreDataLoader extends DataLoader
             throw e;
         }
         LOG.warn("errorCount: " + errorCount);
-        if (errorCount > 0) {
+        if (errorCount.get() > 0) {
             throw new RuntimeException("Dataloading finished. There were errors while loading "
                     + "- see the logs for details."
                     + " To stop on the first error, set the property \"dataloader"
                     + ".allowMultipleErrors\" to false");
         }
     }
+
+    /**
+     * Sets up the equivalent object fetcher of an IntegrationWriter to prefetch the equivalent
+     * objects of the objects read from the given ObjectStore.
+     *
+     * @param iw the IntegrationWriter
+     * @param os the ObjectStore from which data will be read
+     * @param source the main Source
+     * @return an ObjectStore to read the data through
+     */
+    private ObjectStore installFetcher(IntegrationWriterDataTrackingImpl iw, ObjectStore os,
+            Source source) {
+        Properties props = PropertiesUtil.getPropertiesStartingWith("equivalentObjectFetcher");
+        if (!("false".equals(props.getProperty("equivalentObjectFetcher.useParallel")))) {
+            LOG.info("Using ParallelBatchingFetcher - set the property "
+                    + "\"equivalentObjectFetcher.useParallel\" to false to use the standard"
+                    + " BatchingFetcher");
+            ParallelBatchingFetcher eof = new ParallelBatchingFetcher(iw.getBaseEof(),
+                    iw.getDataTracker(), source);
+            iw.setEof(eof);
+            return eof.getNoseyObjectStore(os);
+        } else {
+            LOG.info("Using BatchingFetcher - set the property "
+                    + "\"equivalentObjectFetcher.useParallel\" to true to use the "
+                    + "ParallelBatchingFetcher");
+            BatchingFetcher eof = new BatchingFetcher(iw.getBaseEof(), iw.getDataTracker(),
+                    source);
+            iw.setEof(eof);
+            return eof.getNoseyObjectStore(os);
+        }
+    }
+
+    /**
+     * Stores one object, logging any exception and deciding whether to carry on.
+     *
+     * @param iw the IntegrationWriter to store the object with
+     * @param obj the object
+     * @param origOs the ObjectStore the object came from
+     * @param source the main Source
+     * @param skelSource the skeleton Source
+     * @param allowMultipleErrors true to carry on after an error
+     * @param errorCount the number of errors so far, which is incremented on error
+     * @throws ObjectStoreException if an error occurs in the destination
+     */
+    private void storeObject(IntegrationWriter iw, FastPathObject obj, ObjectStore origOs,
+            Source source, Source skelSource, boolean allowMultipleErrors,
+            AtomicInteger errorCount) throws ObjectStoreException {
+        try {
+            iw.store(obj, source, skelSource);
+        } catch (RuntimeException e) {
+            String identifier = null;
+            if ((origOs instanceof ObjectStoreFastCollectionsForTranslatorImpl)
+                   && (obj instanceof InterMineObject)) {
+                ItemToObjectTranslator trans = (ItemToObjectTranslator)
+                    ((ObjectStoreFastCollectionsForTranslatorImpl) origOs).getTranslator();
+                identifier = trans.idToIdentifier(((InterMineObject) obj).getId());
+            }
+            LOG.error("Exception while dataloading" + (identifier == null ? ""
+                        : " item with identifier " + identifier), e);
+            if (errorCount.incrementAndGet() >= 100) {
+                throw new RuntimeException("Too many data loading exceptions - to stop on"
+                        + " the first error, set the property"
+                        + " \"dataLoader.allowMultipleErrors\" to false", e);
+            }
+            if (!allowMultipleErrors) {
+                throw new RuntimeException("Exception while dataloading - to allow multiple"
+                        + " errors, set the property \"dataLoader.allowMultipleErrors\" to"
+                        + " true\n" + (identifier == null ? ""
+                            : "Problem while loading item identifier " + identifier
+                            + " because\n") + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Loads the objects of the given class one at a time, with the IntegrationWriter of this
+     * DataLoader.
+     */
+    private void processSequentially(ObjectStore os, ObjectStore origOs, Source source,
+            Source skelSource, Class<? extends FastPathObject> queryClass,
+            boolean allowMultipleErrors, AtomicInteger errorCount) throws ObjectStoreException {
+        long[] times = new long[20];
+        for (int i = 0; i < 20; i++) {
+            times[i] = -1;
+        }
+        Query q = new Query();
+        QueryClass qc = new QueryClass(queryClass);
+        q.addFrom(qc);
+        q.addToSelect(qc);
+        q.setDistinct(false);
+        long opCount = 0;
+        long time = System.currentTimeMillis();
+        long startTime = time;
+        long timeSpentRead = 0;
+        long timeSpentWrite = 0;
+        long timeSpentCommit = 0;
+        long timeSpentLoop = 0;
+        getIntegrationWriter().beginTransaction();
+        SingletonResults res = os.executeSingleton(q, ITEM_READ_BATCH_SIZE, false, false, true);
+        long time4 = System.currentTimeMillis();
+        long time1, time2, time3;
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Collection<FastPathObject> tmpRes = (Collection) res;
+        for (FastPathObject obj : tmpRes) {
+            time1 = System.currentTimeMillis();
+            timeSpentLoop += time1 - time4;
+            time2 = System.currentTimeMillis();
+            timeSpentRead += time2 - time1;
+            //if ("org.intermine.model.chado.feature".equals(obj.getClass().getName())) {
+            //    String objText = obj.toString();
+            //    int objTextLen = objText.length();
+            //    System//.out.println("Storing " + objText.substring(0, (objTextLen > 60 ? 60
+            //                    : objTextLen)));
+            //}
+            storeObject(getIntegrationWriter(), obj, origOs, source, skelSource,
+                    allowMultipleErrors, errorCount);
+            time3 = System.currentTimeMillis();
+            timeSpentWrite += time3 - time2;
+            opCount++;
+            if (opCount % 10000 == 0) {
+                long now = System.currentTimeMillis();
+                if (times[(int) ((opCount / 10000) % 20)] == -1) {
+                    LOG.info("Dataloaded " + opCount + " objects - running at "
+                            + (600000000L / (now - time)) + " (avg "
+                            + ((60000L * opCount) / (now - startTime))
+                            + ") objects per minute -- now on "
+                            + DynamicUtil.getFriendlyName(obj.getClass()));
+                } else {
+                    LOG.info("Dataloaded " + opCount + " objects - running at "
+                            + (600000000L / (now - time)) + " (200000 avg "
+                            + (12000000000L / (now - times[(int) ((opCount / 10000) % 20)]))
+                            + ") (avg = " + ((60000L * opCount) / (now - startTime))
+                            + ") objects per minute -- now on "
+                            + DynamicUtil.getFriendlyName(obj.getClass()));
+                }
+                time = now;
+                times[(int) ((opCount / 10000) % 20)] = now;
+                if (opCount % 500000 == 0) {
+                    getIntegrationWriter().batchCommitTransaction();
+                }
+            }
+            time4 = System.currentTimeMillis();
+            timeSpentCommit += time4 - time3;
+        }
+        time3 = System.currentTimeMillis();
+        getIntegrationWriter().commitTransaction();
+        getIntegrationWriter().close();
+        long now = System.currentTimeMillis();
+        timeSpentCommit += now - time3;
+        LOG.info("Finished dataloading " + opCount + " objects at " + ((60000L * opCount)
+                    / (now - startTime)) + " objects per minute (" + (now - startTime)
+                + " ms total) for source " + source.getName());
+        LOG.info("Time spent: Reading: " + (timeSpentRead + timeSpentLoop) + ", Writing: "
+                + timeSpentWrite + ", Committing: " + timeSpentCommit);
+    }
+
+    /**
+     * Loads all the objects in the source using several IntegrationWriters at once. The classes
+     * of the source are divided into groups by a ParallelLoadPlan, and each group is loaded and
+     * committed by its own writer once the groups it depends on have been committed.
+     *
+     * @param origOs the ObjectStore from which to read data
+     * @param source the main Source
+     * @param skelSource the skeleton Source
+     * @param threads the number of groups to load at once
+     * @param allowMultipleErrors true to carry on after an error
+     * @param errorCount the number of errors so far
+     * @throws ObjectStoreException if an error occurs on either the source or the destination
+     */
+    private void processInParallel(final ObjectStore origOs, final Source source,
+            final Source skelSource, int threads, final boolean allowMultipleErrors,
+            final AtomicInteger errorCount) throws ObjectStoreException {
+        final IntegrationWriterDataTrackingImpl iw =
+            (IntegrationWriterDataTrackingImpl) getIntegrationWriter();
+        final long startTime = System.currentTimeMillis();
+        final ParallelLoadPlan plan = createPlan(origOs, source);
+        LOG.info("Dataloading source " + source.getName() + " with " + threads + " threads in "
+                + plan.getGroups().size() + " groups (planned in "
+                + (System.currentTimeMillis() - startTime) + " ms): " + plan);
+        final AtomicLong opCount = new AtomicLong();
+        final String threadName = "DataLoader " + source.getName() + " ";
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger threadNo = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, threadName + threadNo.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        CompletionService<ParallelLoadPlan.Group> completion =
+            new ExecutorCompletionService<ParallelLoadPlan.Group>(executor);
+        Set<ParallelLoadPlan.Group> started = new HashSet<ParallelLoadPlan.Group>();
+        Set<ParallelLoadPlan.Group> done = new HashSet<ParallelLoadPlan.Group>();
+        Throwable problem = null;
+        int running = 0;
+        try {
+            while (true) {
+                if (problem == null) {
+                    for (final ParallelLoadPlan.Group group : plan.getGroups()) {
+                        if ((!started.contains(group))
+                                && done.containsAll(group.getDependencies())) {
+                            started.add(group);
+                            running++;
+                            completion.submit(new Callable<ParallelLoadPlan.Group>() {
+                                public ParallelLoadPlan.Group call() throws Exception {
+                                    loadGroup(iw, plan, group, origOs, source, skelSource,
+                                            allowMultipleErrors, errorCount, opCount, startTime);
+                                    return group;
+                                }
+                            });
+                        }
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+                Future<ParallelLoadPlan.Group> future = completion.take();
+                running--;
+                try {
+                    done.add(future.get());
+                } catch (ExecutionException e) {
+                    if (problem == null) {
+                        problem = e.getCause();
+                    } else {
+                        LOG.error("Further exception while dataloading", e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw new RuntimeException("Interrupted while dataloading source "
+                    + source.getName(), e);
+        } finally {
+            executor.shutdown();
+        }
+        if (problem instanceof ObjectStoreException) {
+            throw (ObjectStoreException) problem;
+        } else if (problem instanceof RuntimeException) {
+            throw (RuntimeException) problem;
+        } else if (problem instanceof Error) {
+            throw (Error) problem;
+        } else if (problem != null) {
+            throw new RuntimeException("Exception while dataloading", problem);
+        }
+        iw.close();
+        long now = System.currentTimeMillis();
+        LOG.info("Finished dataloading " + opCount + " objects at " + ((60000L * opCount.get())
+                    / Math.max(1, now - startTime)) + " objects per minute ("
+                + (now - startTime) + " ms total) for source " + source.getName());
+    }
+
+    /**
+     * Finds the classes that have objects in the source, and divides them into groups that can be
+     * loaded at once.
+     *
+     * @param os the ObjectStore from which data will be read
+     * @param source the main Source
+     * @return a ParallelLoadPlan
+     * @throws ObjectStoreException if the source cannot be counted
+     */
+    private ParallelLoadPlan createPlan(ObjectStore os, Source source)
+        throws ObjectStoreException {
+        Model model = os.getModel();
+        Set<ClassDescriptor> present = new HashSet<ClassDescriptor>();
+        Set<ClassDescriptor> empty = new HashSet<ClassDescriptor>();
+        Set<ClassDescriptor> keyed = new HashSet<ClassDescriptor>();
+        for (ClassDescriptor cld : model.getTopDownLevelTraversal()) {
+            if (!InterMineObject.class.isAssignableFrom(cld.getType())) {
+                continue;
+            }
+            boolean superEmpty = false;
+            for (ClassDescriptor sup : cld.getSuperDescriptors()) {
+                superEmpty = superEmpty || empty.contains(sup);
+            }
+            if (!superEmpty) {
+                Query q = new Query();
+                QueryClass qc = new QueryClass(cld.getType());
+                q.addFrom(qc);
+                q.addToSelect(qc);
+                superEmpty = (os.count(q, ObjectStore.SEQUENCE_IGNORE) == 0);
+            }
+            if (superEmpty) {
+                empty.add(cld);
+            } else {
+                present.add(cld);
+                if (!DataLoaderHelper.getPrimaryKeys(cld, source, null).isEmpty()) {
+                    keyed.add(cld);
+                }
+            }
+        }
+        return ParallelLoadPlan.create(model, present, keyed);
+    }
+
+    /**
+     * Loads the objects of one group of a ParallelLoadPlan with a new IntegrationWriter, and
+     * commits them.
+     */
+    private void loadGroup(IntegrationWriterDataTrackingImpl iw, ParallelLoadPlan plan,
+            ParallelLoadPlan.Group group, ObjectStore origOs, Source source, Source skelSource,
+            boolean allowMultipleErrors, AtomicInteger errorCount, AtomicLong opCount,
+            long startTime) throws ObjectStoreException {
+        long groupStart = System.currentTimeMillis();
+        IntegrationWriterDataTrackingImpl writer = iw.getParallelWriter();
+        long count = 0;
+        boolean committed = false;
+        try {
+            ObjectStore os = installFetcher(writer, origOs, source);
+            writer.beginTransaction();
+            for (ClassDescriptor cld : group.getQueryClasses()) {
+                Query q = new Query();
+                QueryClass qc = new QueryClass(cld.getType());
+                q.addFrom(qc);
+                q.addToSelect(qc);
+                q.setDistinct(false);
+                SingletonResults res = os.executeSingleton(q, ITEM_READ_BATCH_SIZE, false, false,
+                        true);
+                @SuppressWarnings({ "unchecked", "rawtypes" })
+                Collection<FastPathObject> tmpRes = (Collection) res;
+                for (FastPathObject obj : tmpRes) {
+                    ParallelLoadPlan.Group owner = plan.getOwner(obj.getClass());
+                    if ((owner != null) && (owner != group)) {
+                        // Loaded by the query of another group
+                        continue;
+                    }
+                    storeObject(writer, obj, origOs, source, skelSource, allowMultipleErrors,
+                            errorCount);
+                    count++;
+                    long total = opCount.incrementAndGet();
+                    if (total % 10000 == 0) {
+                        LOG.info("Dataloaded " + total + " objects - running at (avg "
+                                + ((60000L * total)
+                                    / Math.max(1, System.currentTimeMillis() - startTime))
+                                + ") objects per minute -- now on "
+                                + DynamicUtil.getFriendlyName(obj.getClass()));
+                    }
+                    if (count % 500000 == 0) {
+                        writer.batchCommitTransaction();
+                    }
+                }
+            }
+            writer.commitTransaction();
+            committed = true;
+        } finally {
+            if (!committed) {
+                try {
+                    writer.abortTransaction();
+                } catch (Exception e) {
+                    LOG.warn("Could not abort transaction of group " + group.getNumber(), e);
+                }
+            }
+            writer.close();
+        }
+        LOG.info("Finished dataloading group " + group.getNumber() + " " + group + ": " + count
+                + " objects in " + (System.currentTimeMillis() - groupStart) + " ms");
+    }
 }
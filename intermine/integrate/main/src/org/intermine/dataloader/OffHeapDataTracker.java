@@ -0,0 +1,372 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.intermine.sql.ConnectionPurpose;
+import org.intermine.sql.Database;
+
+/**
+ * A DataTracker that keeps its entries in a TrackerStore outside the Java heap, with field names
+ * and sources replaced by small numbers. Every object seen during a load is kept in memory, so
+ * the tracker table is only read for objects written by earlier loads, and is only written when
+ * the tracker is flushed. If the store grows larger than a given number of bytes, it is flushed
+ * to the tracker table and emptied.
+ *
+ * The JVM must be allowed enough direct memory for the store, with -XX:MaxDirectMemorySize.
+ */
+public class OffHeapDataTracker extends DataTracker
+{
+    private static final Logger LOG = Logger.getLogger(OffHeapDataTracker.class);
+
+    private final long maxBytes;
+    private TrackerStore store = new TrackerStore();
+    private Map<String, Integer> fieldNumbers = new HashMap<String, Integer>();
+    private List<String> fieldNames = new ArrayList<String>();
+    private Map<Source, Integer> sourceNumbers = new HashMap<Source, Integer>();
+    private List<Source> sources = new ArrayList<Source>();
+
+    private int ops = 0;
+    private int misses = 0;
+    private int batched = 0;
+    private int spills = 0;
+    private long timeSpentReading = 0;
+    private long timeSpentPrefetching = 0;
+
+    /**
+     * Constructor with the same arguments as DataTracker, so that this class can be used in its
+     * place. The size arguments are ignored, and the store may use a quarter of the maximum heap
+     * size.
+     *
+     * @param db a Database to back the tracker
+     * @param maxSize ignored
+     * @param commitSize ignored
+     */
+    public OffHeapDataTracker(Database db, int maxSize, int commitSize) {
+        this(db, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * Constructor for OffHeapDataTracker.
+     *
+     * @param db a Database to back the tracker
+     * @param maxBytes the number of bytes of memory that the store may use before it is flushed
+     * to the database and emptied
+     */
+    public OffHeapDataTracker(Database db, long maxBytes) {
+        super(db);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prefetchIds(Set<Integer> ids) {
+        Connection prefetchConn = null;
+        try {
+            long startTime = System.currentTimeMillis();
+            List<Integer> toFetch = new ArrayList<Integer>();
+            synchronized (this) {
+                checkBroken();
+                for (Integer id : ids) {
+                    if (!store.contains(id.intValue())) {
+                        toFetch.add(id);
+                    }
+                }
+            }
+            if (toFetch.isEmpty()) {
+                return;
+            }
+            // This tracker holds its own connections for its lifetime, so waiting for a full TRACKER
+            // partition from another thread could wait for ever. Entries that are not prefetched are
+            // fetched one at a time when they are needed.
+            prefetchConn = db.getConnectionIfAvailable(ConnectionPurpose.TRACKER);
+            if (prefetchConn == null) {
+                return;
+            }
+            prefetchConn.setAutoCommit(true);
+            prefetchConn.createStatement().execute("SET enable_seqscan = off;");
+            for (int i = 0; i < toFetch.size(); i += 500) {
+                List<Integer> chunk = toFetch.subList(i, Math.min(i + 500, toFetch.size()));
+                StringBuffer sql = new StringBuffer("SELECT objectid, fieldname, sourcename,"
+                        + " version FROM tracker WHERE objectid IN (");
+                boolean needComma = false;
+                for (Integer id : chunk) {
+                    if (needComma) {
+                        sql.append(", ");
+                    }
+                    needComma = true;
+                    sql.append(id);
+                }
+                sql.append(") ORDER BY version");
+                List<Object[]> rows = new ArrayList<Object[]>();
+                int highestVersionSeen = Integer.MIN_VALUE;
+                ResultSet r = prefetchConn.createStatement().executeQuery(sql.toString());
+                while (r.next()) {
+                    highestVersionSeen = Math.max(highestVersionSeen, r.getInt(4));
+                    rows.add(new Object[] {new Integer(r.getInt(1)), r.getString(2),
+                        r.getString(3)});
+                }
+                synchronized (this) {
+                    if (version <= highestVersionSeen) {
+                        version = highestVersionSeen + 1;
+                    }
+                    // Objects may have been loaded or written while we were reading, in which
+                    // case the store is already at least as up to date as the database.
+                    Set<Integer> fresh = new HashSet<Integer>();
+                    for (Integer id : chunk) {
+                        if (!store.contains(id.intValue())) {
+                            store.clearObj(id.intValue());
+                            fresh.add(id);
+                        }
+                    }
+                    for (Object[] row : rows) {
+                        if (fresh.contains(row[0])) {
+                            store.put(((Integer) row[0]).intValue(), fieldNumber((String) row[1]),
+                                    sourceNumber(stringToSource((String) row[2])), false);
+                        }
+                    }
+                    batched += fresh.size();
+                    maybeSpill();
+                }
+            }
+            timeSpentPrefetching += System.currentTimeMillis() - startTime;
+        } catch (SQLException e) {
+            broken = e;
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(broken);
+            throw e2;
+        } finally {
+            if (prefetchConn != null) {
+                try {
+                    prefetchConn.close();
+                } catch (SQLException e) {
+                    LOG.warn("Error while closing prefetch connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Source getSource(Integer id, String field) {
+        if (id == null) {
+            throw new NullPointerException("id cannot be null");
+        }
+        checkBroken();
+        load(id.intValue());
+        Integer fieldNo = fieldNumbers.get(field);
+        if (fieldNo == null) {
+            return null;
+        }
+        int sourceNo = store.getSource(id.intValue(), fieldNo.intValue());
+        return (sourceNo == -1 ? null : sources.get(sourceNo));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setSource(Integer id, String field, Source source) {
+        if (id == null) {
+            throw new NullPointerException("id cannot be null");
+        }
+        // Throws NullPointerException if the source did not come from this tracker
+        sourceToString(source);
+        if (field == null) {
+            throw new NullPointerException("field cannot be null");
+        }
+        checkBroken();
+        load(id.intValue());
+        store.put(id.intValue(), fieldNumber(field), sourceNumber(source), true);
+        maybeSpill();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void clearObj(Integer id) {
+        checkBroken();
+        store.clearObj(id.intValue());
+        maybeSpill();
+    }
+
+    /**
+     * Does nothing, as the store is only written to the database when it is flushed.
+     *
+     * @return false
+     */
+    @Override
+    public boolean doWrite() {
+        checkBroken();
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush() {
+        checkBroken();
+        LOG.info("Flushing tracker - objects: " + store.size() + ", memory: "
+                + store.getAllocatedBytes() + " bytes");
+        long start = System.currentTimeMillis();
+        try {
+            TrackerRowWriter writer = new TrackerRowWriter();
+            TrackerStore.Cursor cursor = store.dirtyEntries();
+            int count = 0;
+            while (cursor.next()) {
+                writer.write(cursor.getId(), fieldNames.get(cursor.getField()),
+                        sourceToString(sources.get(cursor.getSource())));
+                count++;
+            }
+            writer.finish();
+            version++;
+            storeConn.commit();
+            store.cleanAll();
+            LOG.info("Wrote " + count + " tracker entries in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (SQLException e) {
+            broken = e;
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(broken);
+            throw e2;
+        } catch (IOException e) {
+            broken = e;
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(broken);
+            throw e2;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        LOG.info("Closing OffHeapDataTracker. Operations: " + ops + ", cache misses: " + misses
+                + ", time spent reading: " + timeSpentReading + ", prefetched: " + batched
+                + ", time spent prefetching: " + timeSpentPrefetching + ", spills: " + spills);
+        flush();
+        synchronized (this) {
+            store.clear();
+            try {
+                conn.close();
+                storeConn.close();
+                conn = null;
+                storeConn = null;
+            } catch (SQLException e) {
+                IllegalArgumentException e2 = new IllegalArgumentException();
+                e2.initCause(e);
+                throw e2;
+            }
+        }
+    }
+
+    /**
+     * Makes sure that the store holds the entries for an object, reading them from the database
+     * if necessary.
+     *
+     * @param id the ID of the object
+     */
+    private void load(int id) {
+        ops++;
+        if (store.contains(id)) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        store.clearObj(id);
+        try {
+            Statement s = conn.createStatement();
+            ResultSet r = s.executeQuery("select fieldname, sourcename, version from tracker"
+                    + " where objectid = " + id + " ORDER BY version");
+            while (r.next()) {
+                store.put(id, fieldNumber(r.getString(1)),
+                        sourceNumber(stringToSource(r.getString(2))), false);
+                int rowVersion = r.getInt(3);
+                if (version <= rowVersion) {
+                    version = rowVersion + 1;
+                }
+            }
+        } catch (SQLException e) {
+            broken = e;
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(broken);
+            throw e2;
+        }
+        misses++;
+        timeSpentReading += System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Flushes the store to the database and empties it, if it is using more than maxBytes.
+     */
+    private void maybeSpill() {
+        if (store.getAllocatedBytes() > maxBytes) {
+            LOG.warn("OffHeapDataTracker is using " + store.getAllocatedBytes() + " bytes ("
+                    + store.getWastedBytes() + " wasted), more than the limit of " + maxBytes
+                    + " - writing it to the database");
+            flush();
+            store.clear();
+            spills++;
+        }
+    }
+
+    private void checkBroken() {
+        if (broken != null) {
+            IllegalArgumentException e = new IllegalArgumentException();
+            e.initCause(broken);
+            throw e;
+        }
+    }
+
+    private int fieldNumber(String field) {
+        Integer retval = fieldNumbers.get(field);
+        if (retval == null) {
+            if (fieldNames.size() > TrackerStore.MAX_FIELD) {
+                throw new IllegalStateException("Too many field names in data tracker");
+            }
+            retval = new Integer(fieldNames.size());
+            fieldNames.add(field);
+            fieldNumbers.put(field, retval);
+        }
+        return retval.intValue();
+    }
+
+    private int sourceNumber(Source source) {
+        Integer retval = sourceNumbers.get(source);
+        if (retval == null) {
+            if (sources.size() > TrackerStore.MAX_SOURCE) {
+                throw new IllegalStateException("Too many sources in data tracker");
+            }
+            retval = new Integer(sources.size());
+            sources.add(source);
+            sourceNumbers.put(source, retval);
+        }
+        return retval.intValue();
+    }
+}
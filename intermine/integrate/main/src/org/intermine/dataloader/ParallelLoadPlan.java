@@ -0,0 +1,378 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.FieldDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.model.InterMineObject;
+
+/**
+ * Divides the classes of a source into groups that can be loaded into the production database at
+ * the same time by separate IntegrationWriters.
+ *
+ * Two classes must be loaded by the same writer if storing an object of one can store or find an
+ * equivalent object of the other, because the writers do not see each other's work until it is
+ * committed. That is the case if one class is a subclass of the other and the superclass has
+ * primary keys in the source, or if the classes reference each other in both directions. A class
+ * that references another class is loaded after the group containing the referenced class has
+ * been committed, so that the referenced objects are already in the id map and are never stored
+ * as skeletons by two writers.
+ *
+ * An object whose class is a subclass of more than one group's query classes is only loaded by
+ * its owning group, which is the group of its alphabetically first model class, so each object
+ * is loaded exactly once and the groups never contend for the same object.
+ */
+public class ParallelLoadPlan
+{
+    private final List<Group> groups;
+    private final Map<String, Group> classToGroup = new HashMap<String, Group>();
+    private final Model model;
+
+    /**
+     * Builds a plan for loading objects of the given classes.
+     *
+     * @param model the Model of the source and destination
+     * @param present the classes that have objects in the source - classes that are not
+     * InterMineObjects are ignored
+     * @param keyed the classes that have primary keys for the source
+     * @return a ParallelLoadPlan
+     */
+    public static ParallelLoadPlan create(Model model, Set<ClassDescriptor> present,
+            Set<ClassDescriptor> keyed) {
+        List<ClassDescriptor> nodes = new ArrayList<ClassDescriptor>();
+        for (ClassDescriptor cld : present) {
+            if (InterMineObject.class.isAssignableFrom(cld.getType())
+                    && !InterMineObject.class.equals(cld.getType())) {
+                nodes.add(cld);
+            }
+        }
+        Collections.sort(nodes, new Comparator<ClassDescriptor>() {
+            public int compare(ClassDescriptor a, ClassDescriptor b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        Map<ClassDescriptor, Integer> index = new HashMap<ClassDescriptor, Integer>();
+        for (ClassDescriptor cld : nodes) {
+            index.put(cld, new Integer(index.size()));
+        }
+
+        // Classes that share primary keys are merged with union-find
+        int[] parent = new int[nodes.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (ClassDescriptor cld : nodes) {
+            for (ClassDescriptor sup : cld.getAllSuperDescriptors()) {
+                Integer supIndex = index.get(sup);
+                if ((supIndex != null) && keyed.contains(sup)) {
+                    union(parent, index.get(cld).intValue(), supIndex.intValue());
+                }
+            }
+        }
+
+        // Classes that an object may store or look up while being stored
+        List<Set<Integer>> edges = new ArrayList<Set<Integer>>();
+        for (int i = 0; i < nodes.size(); i++) {
+            edges.add(new TreeSet<Integer>());
+        }
+        for (ClassDescriptor cld : nodes) {
+            int from = find(parent, index.get(cld).intValue());
+            List<ReferenceDescriptor> fields = new ArrayList<ReferenceDescriptor>();
+            fields.addAll(cld.getAllReferenceDescriptors());
+            fields.addAll(cld.getAllCollectionDescriptors());
+            for (ReferenceDescriptor field : fields) {
+                if (field.relationType() == FieldDescriptor.ONE_N_RELATION) {
+                    continue;
+                }
+                ClassDescriptor target = field.getReferencedClassDescriptor();
+                Set<ClassDescriptor> targets = new HashSet<ClassDescriptor>();
+                targets.add(target);
+                targets.addAll(model.getAllSubs(target));
+                for (ClassDescriptor targetCld : targets) {
+                    Integer to = index.get(targetCld);
+                    if (to != null) {
+                        int toRoot = find(parent, to.intValue());
+                        if (toRoot != from) {
+                            edges.get(from).add(new Integer(toRoot));
+                        }
+                    }
+                }
+            }
+        }
+
+        // Cycles of references must be loaded by one writer
+        int[] component = new Tarjan(parent, edges).run();
+        Map<Integer, Set<ClassDescriptor>> members = new TreeMap<Integer, Set<ClassDescriptor>>();
+        for (ClassDescriptor cld : nodes) {
+            Integer c = new Integer(component[find(parent, index.get(cld).intValue())]);
+            Set<ClassDescriptor> group = members.get(c);
+            if (group == null) {
+                group = new TreeSet<ClassDescriptor>(new Comparator<ClassDescriptor>() {
+                    public int compare(ClassDescriptor a, ClassDescriptor b) {
+                        return a.getName().compareTo(b.getName());
+                    }
+                });
+                members.put(c, group);
+            }
+            group.add(cld);
+        }
+        Map<Integer, Set<Integer>> componentEdges = new HashMap<Integer, Set<Integer>>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Integer c = new Integer(component[find(parent, i)]);
+            Set<Integer> deps = componentEdges.get(c);
+            if (deps == null) {
+                deps = new TreeSet<Integer>();
+                componentEdges.put(c, deps);
+            }
+            for (Integer to : edges.get(i)) {
+                Integer toComponent = new Integer(component[to.intValue()]);
+                if (!toComponent.equals(c)) {
+                    deps.add(toComponent);
+                }
+            }
+        }
+        return new ParallelLoadPlan(model, members, componentEdges);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    private ParallelLoadPlan(Model model, Map<Integer, Set<ClassDescriptor>> members,
+            Map<Integer, Set<Integer>> componentEdges) {
+        this.model = model;
+        // Tarjan's algorithm numbers components so that dependencies come first
+        Map<Integer, Group> byComponent = new HashMap<Integer, Group>();
+        List<Group> groupList = new ArrayList<Group>();
+        for (Map.Entry<Integer, Set<ClassDescriptor>> entry : members.entrySet()) {
+            Group group = new Group(groupList.size(), entry.getValue());
+            byComponent.put(entry.getKey(), group);
+            groupList.add(group);
+            for (ClassDescriptor cld : entry.getValue()) {
+                classToGroup.put(cld.getName(), group);
+            }
+        }
+        for (Map.Entry<Integer, Set<Integer>> entry : componentEdges.entrySet()) {
+            Group group = byComponent.get(entry.getKey());
+            for (Integer dep : entry.getValue()) {
+                group.dependencies.add(byComponent.get(dep));
+            }
+        }
+        groups = Collections.unmodifiableList(groupList);
+    }
+
+    /**
+     * Returns the groups of this plan, in an order in which they could be loaded one at a time.
+     *
+     * @return a List of Groups
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the group that should load an object of the given class.
+     *
+     * @param c the class of an object, which may be a dynamic class
+     * @return a Group, or null if the class is not part of the plan
+     */
+    public Group getOwner(Class<?> c) {
+        String first = null;
+        for (ClassDescriptor cld : model.getClassDescriptorsForClass(c)) {
+            if (classToGroup.containsKey(cld.getName())
+                    && ((first == null) || (cld.getName().compareTo(first) < 0))) {
+                first = cld.getName();
+            }
+        }
+        return (first == null ? null : classToGroup.get(first));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return groups.toString();
+    }
+
+    /**
+     * A set of classes that are loaded together by one IntegrationWriter.
+     */
+    public static class Group
+    {
+        private final int number;
+        private final Set<ClassDescriptor> classes;
+        private final List<ClassDescriptor> queryClasses = new ArrayList<ClassDescriptor>();
+        private final Set<Group> dependencies = new HashSet<Group>();
+
+        Group(int number, Set<ClassDescriptor> classes) {
+            this.number = number;
+            this.classes = Collections.unmodifiableSet(classes);
+            for (ClassDescriptor cld : classes) {
+                boolean covered = false;
+                for (ClassDescriptor sup : cld.getAllSuperDescriptors()) {
+                    if ((sup != cld) && classes.contains(sup)) {
+                        covered = true;
+                    }
+                }
+                if (!covered) {
+                    queryClasses.add(cld);
+                }
+            }
+        }
+
+        /**
+         * Returns the position of this group in the plan.
+         *
+         * @return an int
+         */
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * Returns the classes in this group, in alphabetical order.
+         *
+         * @return a Set of ClassDescriptors
+         */
+        public Set<ClassDescriptor> getClasses() {
+            return classes;
+        }
+
+        /**
+         * Returns the classes that must be queried to find all the objects of this group. This
+         * is the classes of the group that do not have a superclass in the group.
+         *
+         * @return a List of ClassDescriptors
+         */
+        public List<ClassDescriptor> getQueryClasses() {
+            return Collections.unmodifiableList(queryClasses);
+        }
+
+        /**
+         * Returns the groups that must be loaded and committed before this one is started.
+         *
+         * @return a Set of Groups
+         */
+        public Set<Group> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            StringBuilder retval = new StringBuilder();
+            for (ClassDescriptor cld : classes) {
+                retval.append(retval.length() == 0 ? "[" : ", ").append(cld.getUnqualifiedName());
+            }
+            retval.append("]");
+            if (!dependencies.isEmpty()) {
+                retval.append(" after groups ");
+                Set<Integer> numbers = new TreeSet<Integer>();
+                for (Group dep : dependencies) {
+                    numbers.add(new Integer(dep.number));
+                }
+                retval.append(numbers);
+            }
+            return retval.toString();
+        }
+    }
+
+    /**
+     * Finds the strongly connected components of the graph of union-find roots.
+     */
+    private static class Tarjan
+    {
+        private final int[] parent;
+        private final List<Set<Integer>> edges;
+        private final int[] order;
+        private final int[] low;
+        private final boolean[] onStack;
+        private final int[] component;
+        private final List<Integer> stack = new ArrayList<Integer>();
+        private int counter = 0;
+        private int components = 0;
+
+        Tarjan(int[] parent, List<Set<Integer>> edges) {
+            this.parent = parent;
+            this.edges = edges;
+            order = new int[parent.length];
+            low = new int[parent.length];
+            onStack = new boolean[parent.length];
+            component = new int[parent.length];
+        }
+
+        int[] run() {
+            for (int i = 0; i < parent.length; i++) {
+                if ((find(parent, i) == i) && (order[i] == 0)) {
+                    visit(i);
+                }
+            }
+            return component;
+        }
+
+        private void visit(int node) {
+            order[node] = ++counter;
+            low[node] = order[node];
+            stack.add(new Integer(node));
+            onStack[node] = true;
+            Collection<Integer> targets = edges.get(node);
+            for (Integer target : targets) {
+                int to = target.intValue();
+                if (order[to] == 0) {
+                    visit(to);
+                    low[node] = Math.min(low[node], low[to]);
+                } else if (onStack[to]) {
+                    low[node] = Math.min(low[node], order[to]);
+                }
+            }
+            if (low[node] == order[node]) {
+                int member;
+                do {
+                    member = stack.remove(stack.size() - 1).intValue();
+                    onStack[member] = false;
+                    component[member] = components;
+                } while (member != node);
+                components++;
+            }
+        }
+    }
+}
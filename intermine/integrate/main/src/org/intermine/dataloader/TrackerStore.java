@@ -0,0 +1,386 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact store of data tracking entries, mapping from an int object id and an int field number
+ * to an int source number, with a dirty flag on each entry. All the data is held in direct
+ * buffers outside the Java heap, so a store holding hundreds of millions of objects does not add
+ * to garbage collection pauses, and lookups do not create any objects.
+ *
+ * Object ids are looked up in pages of 65536 consecutive ids, which are allocated when an id in
+ * their range is first used. This suits the mostly-consecutive ids that InterMine allocates. Each
+ * id maps onto a record in a segmented arena, holding a header int and one int per field. A
+ * record that outgrows its capacity is moved to the end of the arena with double the capacity.
+ * The space left behind is not reused until the store is cleared.
+ *
+ * This class is not thread-safe.
+ */
+public class TrackerStore
+{
+    /** The largest field number that can be stored */
+    public static final int MAX_FIELD = 0xffff;
+    /** The largest source number that can be stored */
+    public static final int MAX_SOURCE = 0x7fff;
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int DEFAULT_SEGMENT_BITS = 24;
+    private static final int MAX_ADDRESS_BITS = 31;
+    private static final int DIRTY = 0x8000;
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int MAX_CAPACITY = 0xffff;
+
+    private final int segmentBits;
+    private final int segmentSize;
+    private final IntBuffer[] pages = new IntBuffer[1 << (32 - PAGE_BITS)];
+    private final List<IntBuffer> segments = new ArrayList<IntBuffer>();
+    private int pageCount = 0;
+    private int segmentUsed;
+    private int objectCount = 0;
+    private long wasted = 0;
+
+    /**
+     * Constructs an empty TrackerStore.
+     */
+    public TrackerStore() {
+        this(DEFAULT_SEGMENT_BITS);
+    }
+
+    /**
+     * Constructs an empty TrackerStore with arena segments of a given size, for testing.
+     *
+     * @param segmentBits the log base 2 of the number of ints in each arena segment
+     */
+    protected TrackerStore(int segmentBits) {
+        this.segmentBits = segmentBits;
+        segmentSize = 1 << segmentBits;
+        segmentUsed = segmentSize;
+    }
+
+    /**
+     * Returns whether the store has a record for the given object, even if it has no fields.
+     *
+     * @param id the object id
+     * @return true if the object is present
+     */
+    public boolean contains(int id) {
+        return find(id) != 0;
+    }
+
+    /**
+     * Returns the source number recorded for a field of an object.
+     *
+     * @param id the object id
+     * @param field the field number
+     * @return the source number, or -1 if there is none
+     */
+    public int getSource(int id, int field) {
+        int address = find(id);
+        if (address != 0) {
+            IntBuffer segment = segment(address);
+            int offset = offset(address);
+            int count = segment.get(offset) >>> 16;
+            for (int i = offset + 1; i <= offset + count; i++) {
+                int entry = segment.get(i);
+                if ((entry >>> 16) == field) {
+                    return entry & MAX_SOURCE;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates an empty record for an object, discarding any fields already recorded for it. This
+     * marks the object as present, so that the caller need not look elsewhere for its fields.
+     *
+     * @param id the object id
+     */
+    public void clearObj(int id) {
+        int old = find(id);
+        if (old != 0) {
+            wasted += (segment(old).get(offset(old)) & MAX_CAPACITY) + 1;
+        } else {
+            objectCount++;
+        }
+        setAddress(id, allocate(INITIAL_CAPACITY));
+    }
+
+    /**
+     * Records the source of a field of an object, creating a record for the object if necessary.
+     * A dirty entry is one that needs writing to the backing database. Recording the source that
+     * an entry already has does not change it.
+     *
+     * @param id the object id
+     * @param field the field number
+     * @param source the source number
+     * @param dirty true if the entry should be marked as dirty if it changes
+     */
+    public void put(int id, int field, int source, boolean dirty) {
+        if ((field < 0) || (field > MAX_FIELD)) {
+            throw new IllegalArgumentException("Field number " + field + " out of range");
+        }
+        if ((source < 0) || (source > MAX_SOURCE)) {
+            throw new IllegalArgumentException("Source number " + source + " out of range");
+        }
+        int newEntry = (field << 16) | (dirty ? DIRTY : 0) | source;
+        int address = find(id);
+        if (address == 0) {
+            clearObj(id);
+            address = find(id);
+        }
+        IntBuffer segment = segment(address);
+        int offset = offset(address);
+        int header = segment.get(offset);
+        int count = header >>> 16;
+        for (int i = offset + 1; i <= offset + count; i++) {
+            int entry = segment.get(i);
+            if ((entry >>> 16) == field) {
+                if ((entry & MAX_SOURCE) != source) {
+                    segment.put(i, newEntry);
+                }
+                return;
+            }
+        }
+        int capacity = header & MAX_CAPACITY;
+        if (count == capacity) {
+            if (capacity == MAX_CAPACITY) {
+                throw new IllegalStateException("Too many fields for object " + id);
+            }
+            int newCapacity = Math.min(capacity * 2, MAX_CAPACITY);
+            int newAddress = allocate(newCapacity);
+            IntBuffer newSegment = segment(newAddress);
+            int newOffset = offset(newAddress);
+            for (int i = 1; i <= count; i++) {
+                newSegment.put(newOffset + i, segment.get(offset + i));
+            }
+            setAddress(id, newAddress);
+            wasted += capacity + 1;
+            segment = newSegment;
+            offset = newOffset;
+            capacity = newCapacity;
+        }
+        segment.put(offset + count + 1, newEntry);
+        segment.put(offset, ((count + 1) << 16) | capacity);
+    }
+
+    /**
+     * Returns a Cursor over the dirty entries in the store.
+     *
+     * @return a Cursor
+     */
+    public Cursor dirtyEntries() {
+        return new Cursor();
+    }
+
+    /**
+     * Marks all the entries in the store as clean. This should be called once the dirty entries
+     * have been written to the backing database.
+     */
+    public void cleanAll() {
+        Cursor cursor = new Cursor();
+        while (cursor.next()) {
+            cursor.clean();
+        }
+    }
+
+    /**
+     * Returns the number of objects in the store.
+     *
+     * @return the number of objects
+     */
+    public int size() {
+        return objectCount;
+    }
+
+    /**
+     * Returns the number of bytes of memory allocated by the store.
+     *
+     * @return a number of bytes
+     */
+    public long getAllocatedBytes() {
+        return 4L * ((long) segments.size() * segmentSize + (long) pageCount * PAGE_SIZE);
+    }
+
+    /**
+     * Returns the number of bytes in the arena that are occupied by records that have been moved
+     * or discarded.
+     *
+     * @return a number of bytes
+     */
+    public long getWastedBytes() {
+        return 4L * wasted;
+    }
+
+    /**
+     * Removes everything from the store. The memory is released when the garbage collector
+     * notices that the buffers are no longer used.
+     */
+    public void clear() {
+        Arrays.fill(pages, null);
+        segments.clear();
+        pageCount = 0;
+        segmentUsed = segmentSize;
+        objectCount = 0;
+        wasted = 0;
+    }
+
+    /**
+     * Returns the address of the record for an object.
+     *
+     * @param id the object id
+     * @return the address, or zero if the object is not present
+     */
+    private int find(int id) {
+        IntBuffer page = pages[id >>> PAGE_BITS];
+        return (page == null ? 0 : page.get(id & PAGE_MASK));
+    }
+
+    private void setAddress(int id, int address) {
+        IntBuffer page = pages[id >>> PAGE_BITS];
+        if (page == null) {
+            page = ByteBuffer.allocateDirect(PAGE_SIZE * 4).asIntBuffer();
+            pages[id >>> PAGE_BITS] = page;
+            pageCount++;
+        }
+        page.put(id & PAGE_MASK, address);
+    }
+
+    /**
+     * Allocates an empty record in the arena. Addresses start at one, so that zero can mean that
+     * there is no record.
+     *
+     * @param capacity the number of fields that the record can hold
+     * @return the address of the record
+     */
+    private int allocate(int capacity) {
+        if (segmentUsed + capacity + 1 > segmentSize) {
+            if (((long) (segments.size() + 1) << segmentBits) >= (1L << MAX_ADDRESS_BITS)) {
+                throw new IllegalStateException("TrackerStore is full");
+            }
+            segments.add(ByteBuffer.allocateDirect(segmentSize * 4).asIntBuffer());
+            segmentUsed = 1;
+        }
+        int address = ((segments.size() - 1) << segmentBits) | segmentUsed;
+        segment(address).put(segmentUsed, capacity);
+        segmentUsed += capacity + 1;
+        return address;
+    }
+
+    private IntBuffer segment(int address) {
+        return segments.get(address >>> segmentBits);
+    }
+
+    private int offset(int address) {
+        return address & (segmentSize - 1);
+    }
+
+    /**
+     * Iterates through the dirty entries in the store, without creating an object for each entry.
+     * The store must not be modified while a Cursor is in use, apart from through clean().
+     */
+    public class Cursor
+    {
+        private int pageNo = -1;
+        private int slot = PAGE_MASK;
+        private IntBuffer segment = null;
+        private int offset = 0;
+        private int index = 0;
+        private int count = 0;
+        private int entry = 0;
+
+        /**
+         * Moves to the next dirty entry.
+         *
+         * @return false if there are no more dirty entries
+         */
+        public boolean next() {
+            while (true) {
+                while (index < count) {
+                    index++;
+                    entry = segment.get(offset + index);
+                    if ((entry & DIRTY) != 0) {
+                        return true;
+                    }
+                }
+                if (!nextObject()) {
+                    return false;
+                }
+            }
+        }
+
+        private boolean nextObject() {
+            while (true) {
+                slot++;
+                if (slot == PAGE_SIZE) {
+                    slot = 0;
+                    do {
+                        pageNo++;
+                        if (pageNo == pages.length) {
+                            return false;
+                        }
+                    } while (pages[pageNo] == null);
+                }
+                int address = pages[pageNo].get(slot);
+                if (address != 0) {
+                    segment = segment(address);
+                    offset = offset(address);
+                    count = segment.get(offset) >>> 16;
+                    index = 0;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Returns the object id of the current entry.
+         *
+         * @return the object id
+         */
+        public int getId() {
+            return (pageNo << PAGE_BITS) | slot;
+        }
+
+        /**
+         * Returns the field number of the current entry.
+         *
+         * @return the field number
+         */
+        public int getField() {
+            return entry >>> 16;
+        }
+
+        /**
+         * Returns the source number of the current entry.
+         *
+         * @return the source number
+         */
+        public int getSource() {
+            return entry & MAX_SOURCE;
+        }
+
+        /**
+         * Marks the current entry as clean.
+         */
+        public void clean() {
+            entry = entry & ~DIRTY;
+            segment.put(offset + index, entry);
+        }
+    }
+}
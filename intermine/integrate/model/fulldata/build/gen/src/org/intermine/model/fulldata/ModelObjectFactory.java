@@ -0,0 +1,36 @@
+package org.intermine.model.fulldata;
+
+import org.intermine.model.FastPathObject;
+import org.intermine.model.FastPathObjectFactory;
+
+public class ModelObjectFactory implements FastPathObjectFactory
+{
+    public FastPathObject newInstance(final Class<?> clazz) {
+        String name = clazz.getName();
+        switch (name.hashCode()) {
+            case -1498114492:
+                if (org.intermine.model.fulldata.Reference.class == clazz) {
+                    return new org.intermine.model.fulldata.Reference();
+                }
+                break;
+            case -559873643:
+                if (org.intermine.model.fulldata.Attribute.class == clazz) {
+                    return new org.intermine.model.fulldata.Attribute();
+                }
+                break;
+            case -88478598:
+                if (org.intermine.model.fulldata.Item.class == clazz) {
+                    return new org.intermine.model.fulldata.Item();
+                }
+                break;
+            case 1918630146:
+                if (org.intermine.model.fulldata.ReferenceList.class == clazz) {
+                    return new org.intermine.model.fulldata.ReferenceList();
+                }
+                break;
+            default:
+                break;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.model.testmodel.Broke;
+import org.intermine.model.testmodel.CEO;
+import org.intermine.model.testmodel.Types;
+
+public class ParallelLoadPlanTest extends TestCase
+{
+    private Model model;
+
+    public ParallelLoadPlanTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        model = Model.getInstanceByName("testmodel");
+    }
+
+    private Set<ClassDescriptor> classes(String... names) {
+        Set<ClassDescriptor> retval = new HashSet<ClassDescriptor>();
+        for (String name : names) {
+            retval.add(model.getClassDescriptorByName("org.intermine.model.testmodel." + name));
+        }
+        return retval;
+    }
+
+    private Set<ClassDescriptor> present() {
+        return classes("Address", "Bank", "CEO", "Company", "Contractor", "Department",
+                "Employee", "Manager", "Secretary", "Types");
+    }
+
+    private ParallelLoadPlan.Group groupOf(ParallelLoadPlan plan, String name) {
+        ClassDescriptor cld = classes(name).iterator().next();
+        for (ParallelLoadPlan.Group group : plan.getGroups()) {
+            if (group.getClasses().contains(cld)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    public void testReferenceCycles() throws Exception {
+        ParallelLoadPlan plan = ParallelLoadPlan.create(model, present(),
+                Collections.<ClassDescriptor>emptySet());
+        List<ParallelLoadPlan.Group> groups = plan.getGroups();
+        assertEquals(6, groups.size());
+        ParallelLoadPlan.Group company = groupOf(plan, "Company");
+        assertEquals(classes("CEO", "Company", "Contractor", "Department", "Manager"),
+                company.getClasses());
+        assertEquals(new HashSet<ParallelLoadPlan.Group>(Arrays.asList(groupOf(plan, "Address"),
+                        groupOf(plan, "Bank"), groupOf(plan, "Secretary"))),
+                company.getDependencies());
+        ParallelLoadPlan.Group employee = groupOf(plan, "Employee");
+        assertEquals(classes("Employee"), employee.getClasses());
+        assertTrue(employee.getDependencies().contains(company));
+        assertTrue(groupOf(plan, "Types").getDependencies().isEmpty());
+        for (ParallelLoadPlan.Group group : groups) {
+            assertEquals(group, groups.get(group.getNumber()));
+            for (ParallelLoadPlan.Group dep : group.getDependencies()) {
+                assertTrue(dep.getNumber() < group.getNumber());
+            }
+        }
+        assertEquals(ParallelLoadPlan.create(model, present(),
+                    Collections.<ClassDescriptor>emptySet()).toString(), plan.toString());
+    }
+
+    public void testPrimaryKeysMergeSubclasses() throws Exception {
+        ParallelLoadPlan plan = ParallelLoadPlan.create(model, present(), classes("Employee"));
+        ParallelLoadPlan.Group employee = groupOf(plan, "Employee");
+        assertEquals(classes("CEO", "Company", "Contractor", "Department", "Employee",
+                    "Manager"), employee.getClasses());
+        assertEquals(4, employee.getQueryClasses().size());
+        assertEquals(classes("Company", "Contractor", "Department", "Employee"),
+                new HashSet<ClassDescriptor>(employee.getQueryClasses()));
+    }
+
+    public void testOwner() throws Exception {
+        ParallelLoadPlan plan = ParallelLoadPlan.create(model, present(),
+                Collections.<ClassDescriptor>emptySet());
+        assertEquals(groupOf(plan, "Types"), plan.getOwner(Types.class));
+        assertEquals(groupOf(plan, "CEO"), plan.getOwner(CEO.class));
+        assertNull(plan.getOwner(Broke.class));
+    }
+}
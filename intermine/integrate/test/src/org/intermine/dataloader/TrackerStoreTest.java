@@ -0,0 +1,134 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class TrackerStoreTest extends TestCase
+{
+    public TrackerStoreTest(String arg) {
+        super(arg);
+    }
+
+    public void testPutGet() throws Exception {
+        TrackerStore store = new TrackerStore(10);
+        assertFalse(store.contains(5));
+        assertEquals(-1, store.getSource(5, 1));
+        store.put(5, 1, 3, true);
+        store.put(5, 2, 4, false);
+        assertTrue(store.contains(5));
+        assertEquals(3, store.getSource(5, 1));
+        assertEquals(4, store.getSource(5, 2));
+        assertEquals(-1, store.getSource(5, 3));
+        store.put(5, 1, 7, true);
+        assertEquals(7, store.getSource(5, 1));
+        assertEquals(1, store.size());
+    }
+
+    public void testClearObj() throws Exception {
+        TrackerStore store = new TrackerStore(10);
+        store.clearObj(12);
+        assertTrue(store.contains(12));
+        assertEquals(-1, store.getSource(12, 0));
+        store.put(12, 0, 1, true);
+        store.clearObj(12);
+        assertTrue(store.contains(12));
+        assertEquals(-1, store.getSource(12, 0));
+        assertEquals(1, store.size());
+    }
+
+    public void testGrowRecord() throws Exception {
+        TrackerStore store = new TrackerStore(10);
+        for (int field = 0; field < 100; field++) {
+            store.put(1, field, field % 50, true);
+            store.put(2, field, 3, true);
+        }
+        for (int field = 0; field < 100; field++) {
+            assertEquals(field % 50, store.getSource(1, field));
+            assertEquals(3, store.getSource(2, field));
+        }
+        assertTrue(store.getWastedBytes() > 0);
+    }
+
+    public void testSparseAndNegativeIds() throws Exception {
+        TrackerStore store = new TrackerStore(10);
+        int[] ids = new int[] {0, 65535, 65536, 10000000, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        for (int i = 0; i < ids.length; i++) {
+            store.put(ids[i], 1, i, true);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i, store.getSource(ids[i], 1));
+        }
+        assertEquals(ids.length, store.size());
+    }
+
+    public void testDirtyEntries() throws Exception {
+        TrackerStore store = new TrackerStore(10);
+        store.put(1, 1, 1, false);
+        store.put(1, 2, 2, true);
+        store.put(70000, 1, 3, true);
+        store.put(2, 1, 4, false);
+        // Same source as before, so stays clean
+        store.put(2, 1, 4, true);
+        Set<String> dirty = new HashSet<String>();
+        TrackerStore.Cursor cursor = store.dirtyEntries();
+        while (cursor.next()) {
+            dirty.add(cursor.getId() + "." + cursor.getField() + "=" + cursor.getSource());
+        }
+        Set<String> expected = new HashSet<String>();
+        expected.add("1.2=2");
+        expected.add("70000.1=3");
+        assertEquals(expected, dirty);
+        store.cleanAll();
+        assertFalse(store.dirtyEntries().next());
+        assertEquals(3, store.getSource(70000, 1));
+    }
+
+    public void testManyObjectsAndClear() throws Exception {
+        TrackerStore store = new TrackerStore(12);
+        for (int id = 0; id < 200000; id++) {
+            store.put(id, id % 7, id % 11, true);
+        }
+        assertEquals(200000, store.size());
+        for (int id = 0; id < 200000; id++) {
+            assertEquals(id % 11, store.getSource(id, id % 7));
+        }
+        int count = 0;
+        TrackerStore.Cursor cursor = store.dirtyEntries();
+        while (cursor.next()) {
+            count++;
+        }
+        assertEquals(200000, count);
+        long allocated = store.getAllocatedBytes();
+        assertTrue(allocated > 0);
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getAllocatedBytes());
+        assertFalse(store.contains(5));
+    }
+
+    public void testOutOfRange() throws Exception {
+        TrackerStore store = new TrackerStore(10);
+        try {
+            store.put(1, TrackerStore.MAX_FIELD + 1, 0, true);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            store.put(1, 0, TrackerStore.MAX_SOURCE + 1, true);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -14,8 +14,12 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -29,6 +33,7 @@ import org.intermine.metadata.CollectionDescriptor;
 import org.intermine.metadata.FieldDescriptor;
 import org.intermine.metadata.Model;
 import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.model.FastPathObjectFactory;
 import org.intermine.util.StringUtil;
 import org.intermine.util.TypeUtil;
 
@@ -42,6 +47,18 @@ public class JavaModelOutput
 {
     protected static final String INDENT = "    ";
     protected static final String ENDL = System.getProperty("line.separator");
+    /** The name of the class generated in each package to instantiate its model classes */
+    public static final String OBJECT_FACTORY_NAME = FastPathObjectFactory.CLASS_NAME;
+    protected static final Map<String, String> PRIMITIVE_WRAPPERS = new HashMap<String, String>();
+
+    static {
+        PRIMITIVE_WRAPPERS.put("boolean", "Boolean");
+        PRIMITIVE_WRAPPERS.put("short", "Short");
+        PRIMITIVE_WRAPPERS.put("int", "Integer");
+        PRIMITIVE_WRAPPERS.put("long", "Long");
+        PRIMITIVE_WRAPPERS.put("float", "Float");
+        PRIMITIVE_WRAPPERS.put("double", "Double");
+    }
 
     protected Model model;
     protected File file; //note: this is a directory
@@ -62,18 +79,20 @@ public class JavaModelOutput
      * Perform the mapping.
      */
     public void process() {
+        Map<String, List<ClassDescriptor>> packages = new TreeMap<String,
+            List<ClassDescriptor>>();
         for (ClassDescriptor cld : model.getClassDescriptors()) {
             String cldName = cld.getName();
             if (!"org.intermine.model.InterMineObject".equals(cldName)) {
                 String pkg = TypeUtil.packageName(cldName);
                 String cls = TypeUtil.unqualifiedName(cld.getName());
-                String separator = File.separator;
-                // Escape windows path seperator
-                if ("\\".equals(separator)) {
-                    separator = "\\\\";
+                List<ClassDescriptor> pkgClds = packages.get(pkg);
+                if (pkgClds == null) {
+                    pkgClds = new ArrayList<ClassDescriptor>();
+                    packages.put(pkg, pkgClds);
                 }
-                File dir = new File(file, pkg.replaceAll("[.]", separator));
-                dir.mkdirs();
+                pkgClds.add(cld);
+                File dir = packageDir(pkg);
                 File path = new File(dir, cls + ".java");
                 try {
                     path.delete();
@@ -92,6 +111,34 @@ public class JavaModelOutput
                 }
             }
         }
+        for (Map.Entry<String, List<ClassDescriptor>> entry : packages.entrySet()) {
+            File path = new File(packageDir(entry.getKey()), OBJECT_FACTORY_NAME + ".java");
+            try {
+                path.delete();
+                BufferedWriter fos = new BufferedWriter(new FileWriter(path, true));
+                fos.write(generateObjectFactory(entry.getKey(), entry.getValue()));
+                fos.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Error creating java", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the output directory for a package, creating it if necessary.
+     *
+     * @param pkg the package name
+     * @return the directory
+     */
+    protected File packageDir(String pkg) {
+        String separator = File.separator;
+        // Escape windows path seperator
+        if ("\\".equals(separator)) {
+            separator = "\\\\";
+        }
+        File dir = new File(file, pkg.replaceAll("[.]", separator));
+        dir.mkdirs();
+        return dir;
     }
 
     /**
@@ -776,6 +823,99 @@ public class JavaModelOutput
         return sb.toString();
     }
 
+    /**
+     * Groups fields by the hashCode of their name. The generated accessors switch on
+     * fieldName.hashCode() and only compare names within a bucket, rather than comparing
+     * fieldName against every field in turn.
+     *
+     * @param fields the fields to group
+     * @return a Map from name hashCode to the fields with that hashCode, in hashCode order
+     */
+    protected static Map<Integer, List<FieldDescriptor>> groupByNameHash(
+            Collection<? extends FieldDescriptor> fields) {
+        Map<Integer, List<FieldDescriptor>> retval = new TreeMap<Integer, List<FieldDescriptor>>();
+        for (FieldDescriptor field : fields) {
+            Integer hash = new Integer(field.getName().hashCode());
+            List<FieldDescriptor> bucket = retval.get(hash);
+            if (bucket == null) {
+                bucket = new ArrayList<FieldDescriptor>();
+                retval.put(hash, bucket);
+            }
+            bucket.add(field);
+        }
+        return retval;
+    }
+
+    /**
+     * Generates a switch on fieldName.hashCode() for the given fields. Each case tests the
+     * names in its bucket and runs the statements returned by the body generator, which
+     * must end by returning from the method.
+     *
+     * @param fields the fields to dispatch on
+     * @param body generates the statements for one field
+     * @return the generated switch statement
+     */
+    protected static String generateFieldSwitch(Collection<? extends FieldDescriptor> fields,
+            FieldBody body) {
+        String indent = INDENT + INDENT + INDENT + INDENT + INDENT;
+        StringBuffer sb = new StringBuffer();
+        sb.append(INDENT + INDENT)
+            .append("switch (fieldName.hashCode()) {\n");
+        for (Map.Entry<Integer, List<FieldDescriptor>> entry
+                : groupByNameHash(fields).entrySet()) {
+            sb.append(INDENT + INDENT + INDENT)
+                .append("case " + entry.getKey() + ":\n");
+            for (FieldDescriptor field : entry.getValue()) {
+                sb.append(INDENT + INDENT + INDENT + INDENT)
+                    .append("if (\"" + field.getName() + "\".equals(fieldName)) {\n");
+                body.generate(sb, field, indent);
+                sb.append(INDENT + INDENT + INDENT + INDENT)
+                    .append("}\n");
+            }
+            sb.append(INDENT + INDENT + INDENT + INDENT)
+                .append("break;\n");
+        }
+        sb.append(INDENT + INDENT + INDENT)
+            .append("default:\n")
+            .append(INDENT + INDENT + INDENT + INDENT)
+            .append("break;\n")
+            .append(INDENT + INDENT)
+            .append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generates the statements for a single field inside a generated field switch.
+     */
+    protected interface FieldBody
+    {
+        /**
+         * Appends the statements for a field.
+         *
+         * @param sb the StringBuffer to append to
+         * @param field the field
+         * @param indent the indentation of the statements
+         */
+        void generate(StringBuffer sb, FieldDescriptor field, String indent);
+    }
+
+    /**
+     * Returns the Java expression that refers to a field from inside a generated accessor,
+     * qualifying it with "this." where it clashes with a parameter name.
+     *
+     * @param field the field
+     * @param params the parameter names of the accessor
+     * @return the expression
+     */
+    protected static String fieldExpression(FieldDescriptor field, String... params) {
+        for (String param : params) {
+            if (param.equals(field.getName())) {
+                return "this." + field.getName();
+            }
+        }
+        return field.getName();
+    }
+
     /**
      * Generates the getFieldValue method.
      *
@@ -783,64 +923,39 @@ public class JavaModelOutput
      * @param proxy false to make the getFieldValue method, true to make the getFieldProxy method
      * @return a String with the method
      */
-    public String generateGetFieldValue(ClassDescriptor cld, boolean proxy) {
+    public String generateGetFieldValue(ClassDescriptor cld, final boolean proxy) {
         StringBuffer sb = new StringBuffer();
         sb.append(INDENT)
             .append("public Object getField" + (proxy ? "Proxy" : "Value")
                     + "(final String fieldName) throws IllegalAccessException {\n");
-        for (FieldDescriptor field : cld.getAllFieldDescriptors()) {
-            sb.append(INDENT + INDENT)
-                .append("if (\"" + field.getName() + "\".equals(fieldName)) {\n");
-            String fieldName = field.getName();
-            if ("fieldName".equals(fieldName)) {
-                fieldName = "this.fieldName";
-            }
-            if (field instanceof AttributeDescriptor) {
-                AttributeDescriptor attribute = (AttributeDescriptor) field;
-                if ("boolean".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append("return Boolean.valueOf(" + fieldName + ");\n");
-                } else if ("short".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append("return Short.valueOf(" + fieldName + ");\n");
-                } else if ("int".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append("return Integer.valueOf(" + fieldName + ");\n");
-                } else if ("long".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append("return Long.valueOf(" + fieldName + ");\n");
-                } else if ("float".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append("return Float.valueOf(" + fieldName + ");\n");
-                } else if ("double".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append("return Double.valueOf(" + fieldName + ");\n");
-                } else {
-                    sb.append(INDENT + INDENT + INDENT)
+        sb.append(generateFieldSwitch(cld.getAllFieldDescriptors(), new FieldBody() {
+            public void generate(StringBuffer out, FieldDescriptor field, String indent) {
+                String fieldName = fieldExpression(field, "fieldName");
+                if (field instanceof AttributeDescriptor) {
+                    String wrapper = PRIMITIVE_WRAPPERS.get(((AttributeDescriptor) field)
+                            .getType());
+                    if (wrapper != null) {
+                        out.append(indent)
+                            .append("return " + wrapper + ".valueOf(" + fieldName + ");\n");
+                    } else {
+                        out.append(indent)
+                            .append("return " + fieldName + ";\n");
+                    }
+                } else if (field.isReference() && (!proxy)) {
+                    out.append(indent)
+                        .append("if (" + fieldName + " instanceof ProxyReference) {\n")
+                        .append(indent + INDENT)
+                        .append("return ((ProxyReference) " + fieldName + ").getObject();\n")
+                        .append(indent)
+                        .append("}\n")
+                        .append(indent)
                         .append("return " + fieldName + ";\n");
-                }
-            } else if (field.isReference()) {
-                sb.append(INDENT + INDENT + INDENT);
-                if (proxy) {
-                    sb.append("return " + fieldName + ";\n");
                 } else {
-                    sb.append("if (" + fieldName + " instanceof ProxyReference) {\n")
-                        .append(INDENT + INDENT + INDENT + INDENT)
-                        .append("return ((ProxyReference) " + fieldName + ").getObject();\n")
-                        .append(INDENT + INDENT + INDENT)
-                        .append("} else {\n")
-                        .append(INDENT + INDENT + INDENT + INDENT)
-                        .append("return " + fieldName + ";\n")
-                        .append(INDENT + INDENT + INDENT)
-                        .append("}\n");
+                    out.append(indent)
+                        .append("return " + fieldName + ";\n");
                 }
-            } else {
-                sb.append(INDENT + INDENT + INDENT)
-                    .append("return " + fieldName + ";\n");
             }
-            sb.append(INDENT + INDENT)
-                .append("}\n");
-        }
+        }));
         sb.append(INDENT + INDENT)
             .append("if (!" + cld.getName() + ".class.equals(getClass())) {\n")
             .append(INDENT + INDENT + INDENT)
@@ -864,63 +979,39 @@ public class JavaModelOutput
     public String generateSetFieldValue(ClassDescriptor cld) {
         StringBuffer sb = new StringBuffer();
         sb.append(INDENT)
-            .append("public void setFieldValue(final String fieldName, final Object value) {\n")
-            .append(INDENT + INDENT);
-        for (FieldDescriptor field : cld.getAllFieldDescriptors()) {
-            sb.append("if (\"" + field.getName() + "\".equals(fieldName)) {\n");
-            String fieldName = field.getName();
-            if ("value".equals(fieldName)) {
-                fieldName = "this.value";
-            } else if ("fieldName".equals(fieldName)) {
-                fieldName = "this.fieldName";
-            }
-            if (field instanceof AttributeDescriptor) {
-                AttributeDescriptor attribute = (AttributeDescriptor) field;
-                if ("boolean".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append(fieldName + " = ((Boolean) value).booleanValue();\n");
-                } else if ("short".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append(fieldName + " = ((Short) value).shortValue();\n");
-                } else if ("int".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append(fieldName + " = ((Integer) value).intValue();\n");
-                } else if ("long".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append(fieldName + " = ((Long) value).longValue();\n");
-                } else if ("float".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append(fieldName + " = ((Float) value).floatValue();\n");
-                } else if ("double".equals(attribute.getType())) {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append(fieldName + " = ((Double) value).doubleValue();\n");
+            .append("public void setFieldValue(final String fieldName, final Object value) {\n");
+        sb.append(generateFieldSwitch(cld.getAllFieldDescriptors(), new FieldBody() {
+            public void generate(StringBuffer out, FieldDescriptor field, String indent) {
+                String fieldName = fieldExpression(field, "fieldName", "value");
+                out.append(indent);
+                if (field instanceof AttributeDescriptor) {
+                    String type = ((AttributeDescriptor) field).getType();
+                    String wrapper = PRIMITIVE_WRAPPERS.get(type);
+                    if (wrapper != null) {
+                        out.append(fieldName + " = ((" + wrapper + ") value)." + type
+                                + "Value();\n");
+                    } else {
+                        out.append(fieldName + " = (" + type + ") value;\n");
+                    }
+                } else if (field.isReference()) {
+                    out.append(fieldName + " = (org.intermine.model.InterMineObject) value;\n");
                 } else {
-                    sb.append(INDENT + INDENT + INDENT)
-                        .append(fieldName + " = (" + attribute.getType() + ") value;\n");
+                    out.append(fieldName + " = (java.util.Set) value;\n");
                 }
-            } else if (field.isReference()) {
-                sb.append(INDENT + INDENT + INDENT)
-                    .append(fieldName + " = (org.intermine.model.InterMineObject) value;\n");
-            } else {
-                sb.append(INDENT + INDENT + INDENT)
-                    .append(fieldName + " = (java.util.Set) value;\n");
+                out.append(indent)
+                    .append("return;\n");
             }
-            sb.append(INDENT + INDENT)
-                .append("} else ");
-        }
-        sb.append("{\n")
-            .append(INDENT + INDENT + INDENT)
+        }));
+        sb.append(INDENT + INDENT)
             .append("if (!" + cld.getName() + ".class.equals(getClass())) {\n")
-            .append(INDENT + INDENT + INDENT + INDENT)
-            .append("TypeUtil.setFieldValue(this, fieldName, value);\n")
-            .append(INDENT + INDENT + INDENT + INDENT)
-            .append("return;\n")
             .append(INDENT + INDENT + INDENT)
-            .append("}\n")
+            .append("TypeUtil.setFieldValue(this, fieldName, value);\n")
             .append(INDENT + INDENT + INDENT)
-            .append("throw new IllegalArgumentException(\"Unknown field \" + fieldName);\n")
+            .append("return;\n")
             .append(INDENT + INDENT)
             .append("}\n")
+            .append(INDENT + INDENT)
+            .append("throw new IllegalArgumentException(\"Unknown field \" + fieldName);\n")
             .append(INDENT)
             .append("}\n");
         return sb.toString();
@@ -936,38 +1027,27 @@ public class JavaModelOutput
         StringBuffer sb = new StringBuffer();
         sb.append(INDENT)
             .append("public void addCollectionElement(final String fieldName,")
-            .append(" final org.intermine.model.InterMineObject element) {\n")
-            .append(INDENT + INDENT);
-        for (FieldDescriptor field : cld.getAllFieldDescriptors()) {
-            if (field.isCollection()) {
-                String fieldName = field.getName();
-                if ("fieldName".equals(fieldName)) {
-                    fieldName = "this.fieldName";
-                } else if ("element".equals(fieldName)) {
-                    fieldName = "this.element";
-                }
-                sb.append("if (\"" + field.getName() + "\".equals(fieldName)) {\n")
-                    .append(INDENT + INDENT + INDENT)
-                    .append(fieldName + ".add(("
+            .append(" final org.intermine.model.InterMineObject element) {\n");
+        sb.append(generateFieldSwitch(collectionsOf(cld), new FieldBody() {
+            public void generate(StringBuffer out, FieldDescriptor field, String indent) {
+                out.append(indent)
+                    .append(fieldExpression(field, "fieldName", "element") + ".add(("
                             + ((CollectionDescriptor) field).getReferencedClassName()
                             + ") element);\n")
-                    .append(INDENT + INDENT)
-                    .append("} else ");
+                    .append(indent)
+                    .append("return;\n");
             }
-        }
-        sb.append("{\n")
-            .append(INDENT + INDENT + INDENT)
+        }));
+        sb.append(INDENT + INDENT)
             .append("if (!" + cld.getName() + ".class.equals(getClass())) {\n")
-            .append(INDENT + INDENT + INDENT + INDENT)
-            .append("TypeUtil.addCollectionElement(this, fieldName, element);\n")
-            .append(INDENT + INDENT + INDENT + INDENT)
-            .append("return;\n")
             .append(INDENT + INDENT + INDENT)
-            .append("}\n")
+            .append("TypeUtil.addCollectionElement(this, fieldName, element);\n")
             .append(INDENT + INDENT + INDENT)
-            .append("throw new IllegalArgumentException(\"Unknown collection \" + fieldName);\n")
+            .append("return;\n")
             .append(INDENT + INDENT)
             .append("}\n")
+            .append(INDENT + INDENT)
+            .append("throw new IllegalArgumentException(\"Unknown collection \" + fieldName);\n")
             .append(INDENT)
             .append("}\n");
         return sb.toString();
@@ -983,36 +1063,25 @@ public class JavaModelOutput
         StringBuffer sb = new StringBuffer();
         sb.append(INDENT)
             .append("public Class<?> getFieldType(final String fieldName) {\n");
-        for (FieldDescriptor field : cld.getAllFieldDescriptors()) {
-            sb.append(INDENT + INDENT)
-                .append("if (\"" + field.getName() + "\".equals(fieldName)) {\n")
-                .append(INDENT + INDENT + INDENT);
-            if (field instanceof AttributeDescriptor) {
-                AttributeDescriptor attribute = (AttributeDescriptor) field;
-                if ("boolean".equals(attribute.getType())) {
-                    sb.append("return Boolean.TYPE;\n");
-                } else if ("short".equals(attribute.getType())) {
-                    sb.append("return Short.TYPE;\n");
-                } else if ("int".equals(attribute.getType())) {
-                    sb.append("return Integer.TYPE;\n");
-                } else if ("long".equals(attribute.getType())) {
-                    sb.append("return Long.TYPE;\n");
-                } else if ("float".equals(attribute.getType())) {
-                    sb.append("return Float.TYPE;\n");
-                } else if ("double".equals(attribute.getType())) {
-                    sb.append("return Double.TYPE;\n");
+        sb.append(generateFieldSwitch(cld.getAllFieldDescriptors(), new FieldBody() {
+            public void generate(StringBuffer out, FieldDescriptor field, String indent) {
+                out.append(indent);
+                if (field instanceof AttributeDescriptor) {
+                    String type = ((AttributeDescriptor) field).getType();
+                    String wrapper = PRIMITIVE_WRAPPERS.get(type);
+                    if (wrapper != null) {
+                        out.append("return " + wrapper + ".TYPE;\n");
+                    } else {
+                        out.append("return " + type + ".class;\n");
+                    }
+                } else if (field.isReference()) {
+                    out.append("return " + ((ReferenceDescriptor) field).getReferencedClassName()
+                            + ".class;\n");
                 } else {
-                    sb.append("return " + attribute.getType() + ".class;\n");
+                    out.append("return java.util.Set.class;\n");
                 }
-            } else if (field.isReference()) {
-                sb.append("return " + ((ReferenceDescriptor) field).getReferencedClassName()
-                        + ".class;\n");
-            } else {
-                sb.append("return java.util.Set.class;\n");
             }
-            sb.append(INDENT + INDENT)
-                .append("}\n");
-        }
+        }));
         sb.append(INDENT + INDENT)
             .append("if (!" + cld.getName() + ".class.equals(getClass())) {\n")
             .append(INDENT + INDENT + INDENT)
@@ -1036,17 +1105,13 @@ public class JavaModelOutput
         StringBuffer sb = new StringBuffer();
         sb.append(INDENT)
             .append("public Class<?> getElementType(final String fieldName) {\n");
-        for (FieldDescriptor field : cld.getAllFieldDescriptors()) {
-            if (field.isCollection()) {
-                sb.append(INDENT + INDENT)
-                    .append("if (\"" + field.getName() + "\".equals(fieldName)) {\n")
-                    .append(INDENT + INDENT + INDENT)
+        sb.append(generateFieldSwitch(collectionsOf(cld), new FieldBody() {
+            public void generate(StringBuffer out, FieldDescriptor field, String indent) {
+                out.append(indent)
                     .append("return " + ((CollectionDescriptor) field).getReferencedClassName()
-                        + ".class;\n")
-                    .append(INDENT + INDENT)
-                    .append("}\n");
+                        + ".class;\n");
             }
-        }
+        }));
         sb.append(INDENT + INDENT)
             .append("if (!" + cld.getName() + ".class.equals(getClass())) {\n")
             .append(INDENT + INDENT + INDENT)
@@ -1059,4 +1124,90 @@ public class JavaModelOutput
             .append("}\n");
         return sb.toString();
     }
+
+    /**
+     * Returns the collections of a class, including inherited ones.
+     *
+     * @param cld the ClassDescriptor
+     * @return a List of CollectionDescriptors
+     */
+    protected static List<FieldDescriptor> collectionsOf(ClassDescriptor cld) {
+        List<FieldDescriptor> retval = new ArrayList<FieldDescriptor>();
+        for (FieldDescriptor field : cld.getAllFieldDescriptors()) {
+            if (field.isCollection()) {
+                retval.add(field);
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Generates the ModelObjectFactory for a package, which instantiates the classes of the
+     * package (and the shadow classes of its interfaces) with plain constructor calls.
+     *
+     * @param pkg the package name
+     * @param clds the ClassDescriptors in the package
+     * @return the generated source
+     */
+    protected String generateObjectFactory(String pkg, Collection<ClassDescriptor> clds) {
+        Map<String, String> constructors = new TreeMap<String, String>();
+        for (ClassDescriptor cld : clds) {
+            if (cld.isInterface()) {
+                constructors.put(cld.getName() + "Shadow", cld.getName() + "Shadow");
+            } else {
+                constructors.put(cld.getName(), cld.getName());
+            }
+        }
+        StringBuffer sb = new StringBuffer();
+        if (pkg.length() > 0) {
+            sb.append("package " + pkg + ";" + ENDL + ENDL);
+        }
+        sb.append("import org.intermine.model.FastPathObject;" + ENDL)
+            .append("import org.intermine.model.FastPathObjectFactory;" + ENDL + ENDL)
+            .append("public class " + OBJECT_FACTORY_NAME + " implements FastPathObjectFactory"
+                    + ENDL)
+            .append("{" + ENDL)
+            .append(INDENT)
+            .append("public FastPathObject newInstance(final Class<?> clazz) {\n")
+            .append(INDENT + INDENT)
+            .append("String name = clazz.getName();\n")
+            .append(INDENT + INDENT)
+            .append("switch (name.hashCode()) {\n");
+        Map<Integer, List<String>> buckets = new TreeMap<Integer, List<String>>();
+        for (String name : constructors.keySet()) {
+            Integer hash = new Integer(name.hashCode());
+            List<String> bucket = buckets.get(hash);
+            if (bucket == null) {
+                bucket = new ArrayList<String>();
+                buckets.put(hash, bucket);
+            }
+            bucket.add(name);
+        }
+        for (Map.Entry<Integer, List<String>> entry : buckets.entrySet()) {
+            sb.append(INDENT + INDENT + INDENT)
+                .append("case " + entry.getKey() + ":\n");
+            for (String name : entry.getValue()) {
+                sb.append(INDENT + INDENT + INDENT + INDENT)
+                    .append("if (" + name + ".class == clazz) {\n")
+                    .append(INDENT + INDENT + INDENT + INDENT + INDENT)
+                    .append("return new " + constructors.get(name) + "();\n")
+                    .append(INDENT + INDENT + INDENT + INDENT)
+                    .append("}\n");
+            }
+            sb.append(INDENT + INDENT + INDENT + INDENT)
+                .append("break;\n");
+        }
+        sb.append(INDENT + INDENT + INDENT)
+            .append("default:\n")
+            .append(INDENT + INDENT + INDENT + INDENT)
+            .append("break;\n")
+            .append(INDENT + INDENT)
+            .append("}\n")
+            .append(INDENT + INDENT)
+            .append("return null;\n")
+            .append(INDENT)
+            .append("}\n")
+            .append("}" + ENDL);
+        return sb.toString();
+    }
 }
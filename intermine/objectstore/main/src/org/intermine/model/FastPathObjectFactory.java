@@ -0,0 +1,30 @@
+package org.intermine.model;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * Instantiates model classes without reflection. An implementation is generated for each
+ * model package by JavaModelOutput, and is used by DynamicUtil in preference to
+ * Class.newInstance().
+ */
+public interface FastPathObjectFactory
+{
+    /** The name of the class generated in each model package to implement this interface */
+    String CLASS_NAME = "ModelObjectFactory";
+
+    /**
+     * Creates a new instance of the given class.
+     *
+     * @param clazz a concrete model class, or the shadow class of a model interface
+     * @return a new instance, or null if the class is not known to this factory
+     */
+    FastPathObject newInstance(Class<?> clazz);
+}
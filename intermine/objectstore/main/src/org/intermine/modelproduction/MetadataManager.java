@@ -113,11 +113,27 @@ public final class MetadataManager
      */
     public static final String NO_NOTXML = "noNotXml";
 
+    /**
+     * The name of the key used to store the format of the OBJECT column - notxml or binary.
+     */
+    public static final String OBJECT_FORMAT = "objectFormat";
+
+    /**
+     * The name of the key used to store the fingerprint of the model field layout that objects in
+     * binary format were written with.
+     */
+    public static final String OBJECT_LAYOUT = "objectLayout";
+
     /**
      * The name of the key used to store the modMine MetaData cache
      */
     public static final String MODMINE_METADATA_CACHE = "modMine_metadata_cache";
 
+    /**
+     * The name of the key used to store the feature density index used by the JBrowse endpoint
+     */
+    public static final String FEATURE_DENSITY_INDEX = "featureDensityIndex";
+
     /**
      * The name of the key used to store the serial number identifying the production db
      */
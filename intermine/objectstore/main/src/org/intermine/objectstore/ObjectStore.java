@@ -24,6 +24,7 @@ import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsInfo;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.objectstore.query.SingletonResults;
 
 /**
@@ -90,6 +91,29 @@ public interface ObjectStore
     SingletonResults executeSingleton(Query q, int batchSize, boolean optimise, boolean explain,
             boolean prefetch);
 
+    /**
+     * Execute a Query on this ObjectStore, returning the rows as a single forward stream. This is
+     * intended for reading the whole of a large result set, such as an export, where the Results
+     * object's batch-by-batch fetching would re-run the query for every batch. The returned
+     * stream should be closed if it is not read to the end.
+     *
+     * @param q the Query to execute
+     * @return a ResultsStream over the rows of the Query
+     * @throws ObjectStoreException if an error occurs starting the Query
+     */
+    ResultsStream stream(Query q) throws ObjectStoreException;
+
+    /**
+     * Execute a Query on this ObjectStore, returning the rows as a single forward stream.
+     *
+     * @param q the Query to execute
+     * @param fetchSize the number of rows to fetch from the database at a time
+     * @param optimise whether to optimise the query
+     * @return a ResultsStream over the rows of the Query
+     * @throws ObjectStoreException if an error occurs starting the Query
+     */
+    ResultsStream stream(Query q, int fetchSize, boolean optimise) throws ObjectStoreException;
+
     /**
      * Execute a Query on this ObjectStore, asking for a certain range of rows to be returned.
      * This will usually only be called by the Results object returned from
@@ -26,15 +26,21 @@ import org.apache.log4j.Logger;
 import org.intermine.metadata.MetaDataException;
 import org.intermine.metadata.Model;
 import org.intermine.model.InterMineObject;
+import org.intermine.objectstore.query.BatchedResultsStream;
 import org.intermine.objectstore.query.Clob;
 import org.intermine.objectstore.query.ObjectStoreBag;
+import org.intermine.objectstore.query.PrefetchManager;
+import org.intermine.objectstore.query.ResultsBatchCache;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryCreator;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.objectstore.query.SingletonResults;
-import org.intermine.util.CacheMap;
+import org.intermine.util.ObjectCache;
 import org.intermine.util.PropertiesUtil;
+import org.intermine.util.SoftObjectCache;
+import org.intermine.util.TinyLfuObjectCache;
 
 /**
  * Abstract implementation of the ObjectStore interface. Used to provide uniformity
@@ -46,6 +52,10 @@ import org.intermine.util.PropertiesUtil;
 public abstract class ObjectStoreAbstractImpl implements ObjectStore
 {
     private static final Logger LOG = Logger.getLogger(ObjectStoreAbstractImpl.class);
+    /** The default maximum number of entries in the getObjectById cache */
+    public static final int DEFAULT_OBJECT_CACHE_SIZE = 50000;
+    /** The default number of rows fetched at a time by stream() */
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 5000;
 
     protected static Random rand = new Random();
 
@@ -53,7 +63,7 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
     protected int maxOffset = Integer.MAX_VALUE;
     protected int maxLimit = Integer.MAX_VALUE;
     protected long maxTime = Long.MAX_VALUE;
-    protected CacheMap<Integer, InterMineObject> cache;
+    protected ObjectCache<Integer, InterMineObject> cache;
 
     protected int getObjectOps = 0;
     protected int getObjectHits = 0;
@@ -70,7 +80,11 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
     }
 
     /**
-     * Construct an ObjectStore with some metadata
+     * Construct an ObjectStore with some metadata. The getObjectById cache is configured by the
+     * os.query.object-cache property, which may be "lfu" (the default) for a cache bounded to
+     * os.query.object-cache-size entries, "soft" for an unbounded cache of soft references, or
+     * the name of a class implementing ObjectCache with a constructor taking the maximum size.
+     *
      * @param model the name of the model
      */
     protected ObjectStoreAbstractImpl(Model model) {
@@ -92,10 +106,37 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
 
         LOG.info("Creating new " + getClass().getName() + " with sequence = " + sequenceNumber
                 + ", model = \"" + model.getName() + "\"");
-        cache = new CacheMap<Integer, InterMineObject>(getClass().getName() + " with sequence = "
+        cache = createObjectCache(props.getProperty("object-cache"),
+                props.getProperty("object-cache-size"), getClass().getName() + " with sequence = "
                 + sequenceNumber + ", model = \"" + model.getName() + "\" getObjectById cache");
     }
 
+    /**
+     * Creates the cache used by getObjectById.
+     *
+     * @param type the type of cache - "lfu", "soft", a class name, or null for the default
+     * @param size the maximum number of entries as a String, or null for the default
+     * @param name a name for the cache, for log messages
+     * @return a new ObjectCache
+     */
+    @SuppressWarnings("unchecked")
+    protected static ObjectCache<Integer, InterMineObject> createObjectCache(String type,
+            String size, String name) {
+        int maxSize = (size == null ? DEFAULT_OBJECT_CACHE_SIZE : Integer.parseInt(size));
+        if ((type == null) || "lfu".equals(type)) {
+            return new TinyLfuObjectCache<Integer, InterMineObject>(maxSize);
+        } else if ("soft".equals(type)) {
+            return new SoftObjectCache<Integer, InterMineObject>(name);
+        }
+        try {
+            Class<?> cacheClass = Class.forName(type);
+            return (ObjectCache<Integer, InterMineObject>) cacheClass.getConstructor(Integer.TYPE)
+                .newInstance(new Integer(maxSize));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot create object cache of type " + type, e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -132,6 +173,25 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
         return retval;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ResultsStream stream(Query q) throws ObjectStoreException {
+        return stream(q, DEFAULT_STREAM_FETCH_SIZE, true);
+    }
+
+    /**
+     * Execute a Query, returning the rows as a stream. This implementation reads a Results
+     * object batch by batch, without prefetching; subclasses that can hold a database cursor
+     * open should override it.
+     *
+     * {@inheritDoc}
+     */
+    public ResultsStream stream(Query q, int fetchSize, boolean optimise)
+        throws ObjectStoreException {
+        return new BatchedResultsStream(execute(q, fetchSize, optimise, false, false));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -183,33 +243,19 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
         getObjectOps++;
         if (getObjectOps % 10000 == 0) {
             LOG.info("getObjectById called " + getObjectOps + " times. Cache hits: "
-                    + getObjectHits + ". Prefetches: " + getObjectPrefetches);
-        }
-        boolean contains = true;
-        InterMineObject cached = null;
-        synchronized (cache) {
-            cached = cache.get(id);
-            if (cached == null) {
-                contains = cache.containsKey(id);
-            }
+                    + getObjectHits + ". Prefetches: " + getObjectPrefetches + ". Cache size: "
+                    + cache.size() + ", total hits: " + cache.getHitCount() + ", misses: "
+                    + cache.getMissCount() + ", evictions: " + cache.getEvictionCount());
         }
-        if (contains) {
+        InterMineObject cached = cache.get(id);
+        if ((cached != null) || cache.containsKey(id)) {
             getObjectHits++;
             return cached;
         }
         InterMineObject fromDb = internalGetObjectById(id, clazz);
-        synchronized (cache) {
-            cached = cache.get(id);
-            if (cached == null) {
-                contains = cache.containsKey(id);
-            }
-            if (contains) {
-                fromDb = cached;
-            } else {
-                cacheObjectById(id, fromDb);
-            }
-        }
-        return fromDb;
+        // Another thread may have fetched the same object meanwhile - return the instance that
+        // got into the cache first, so that callers never see two copies of one object
+        return cache.putIfAbsent(id, fromDb);
     }
 
     /**
@@ -290,18 +336,14 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
      * {@inheritDoc}
      */
     public void invalidateObjectById(Integer id) {
-        synchronized (cache) {
-            cache.remove(id);
-        }
+        cache.remove(id);
     }
 
     /**
      * {@inheritDoc}
      */
     public Object cacheObjectById(Integer id, InterMineObject obj) {
-        synchronized (cache) {
-            cache.put(id, obj);
-        }
+        cache.put(id, obj);
         return obj;
     }
 
@@ -309,18 +351,43 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
      * {@inheritDoc}
      */
     public void flushObjectById() {
-        synchronized (cache) {
-            cache.clear();
-        }
+        cache.clear();
     }
 
     /**
      * {@inheritDoc}
      */
     public InterMineObject pilferObjectById(Integer id) {
-        synchronized (cache) {
-            return cache.get(id);
-        }
+        return cache.get(id);
+    }
+
+    /**
+     * Returns the cache used by getObjectById, so that its statistics can be inspected.
+     *
+     * @return an ObjectCache
+     */
+    public ObjectCache<Integer, InterMineObject> getObjectCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the PrefetchManager that Results from this ObjectStore should use to fetch batches,
+     * or null to use the default shared PrefetchManager.
+     *
+     * @return a PrefetchManager, or null
+     */
+    public PrefetchManager getPrefetchManager() {
+        return null;
+    }
+
+    /**
+     * Returns the ResultsBatchCache that Results from this ObjectStore should keep their batches
+     * in, or null to use the default shared cache.
+     *
+     * @return a ResultsBatchCache, or null
+     */
+    public ResultsBatchCache getResultsBatchCache() {
+        return null;
     }
 
     /**
@@ -17,12 +17,14 @@ import java.util.Set;
 
 import org.intermine.metadata.Model;
 import org.intermine.model.InterMineObject;
+import org.intermine.objectstore.query.BatchedResultsStream;
 import org.intermine.objectstore.query.Clob;
 import org.intermine.objectstore.query.ObjectStoreBag;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsInfo;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.objectstore.query.SingletonResults;
 
 /**
@@ -66,6 +68,25 @@ public class ObjectStorePassthruImpl implements ObjectStore
         return os.execute(q, batchSize, optimise, explain, prefetch);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public ResultsStream stream(Query q) throws ObjectStoreException {
+        return stream(q, ObjectStoreAbstractImpl.DEFAULT_STREAM_FETCH_SIZE, true);
+    }
+
+    /**
+     * Execute a Query, returning the rows as a stream. The rows are read through this
+     * ObjectStore's execute() method, so that subclasses see them, rather than being streamed
+     * from the underlying ObjectStore directly.
+     *
+     * {@inheritDoc}
+     */
+    public ResultsStream stream(Query q, int fetchSize, boolean optimise)
+        throws ObjectStoreException {
+        return new BatchedResultsStream(execute(q, fetchSize, optimise, false, false));
+    }
+
     /**
      * {@inheritDoc}
      */
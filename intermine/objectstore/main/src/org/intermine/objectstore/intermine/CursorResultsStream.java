@@ -0,0 +1,207 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
+import org.intermine.sql.precompute.QueryOptimiser;
+
+/**
+ * A ResultsStream that runs a query once without LIMIT or OFFSET and reads it through a
+ * server-side cursor, converting fetchSize rows at a time with the ResultsConverter. The stream
+ * holds a database connection from its ObjectStore until it is exhausted or closed.
+ */
+class CursorResultsStream implements ResultsStream
+{
+    private static final Logger LOG = Logger.getLogger(CursorResultsStream.class);
+
+    private final ObjectStoreInterMineImpl os;
+    private final Query q;
+    private final int fetchSize;
+    private final boolean optimise;
+    private Connection c;
+    private boolean restoreAutoCommit = false;
+    private Statement s;
+    private ResultSet sqlResults;
+    private Iterator<ResultsRow<Object>> chunk;
+    private boolean exhausted = false;
+
+    /**
+     * Constructor. Runs the query. The connection is released if this fails.
+     *
+     * @param os the ObjectStore the query is run in
+     * @param c a connection from os, which the stream releases when it is closed
+     * @param q the Query
+     * @param fetchSize the number of rows to fetch from the database at a time
+     * @param optimise whether to optimise the query
+     * @throws ObjectStoreException if the query cannot be run
+     */
+    CursorResultsStream(ObjectStoreInterMineImpl os, Connection c, Query q, int fetchSize,
+            boolean optimise) throws ObjectStoreException {
+        this.os = os;
+        this.c = c;
+        this.q = q;
+        this.fetchSize = fetchSize;
+        this.optimise = optimise;
+        List<ResultsRow<Object>> empty = Collections.emptyList();
+        this.chunk = empty.iterator();
+        String sql = null;
+        try {
+            if (os.getMinBagTableSize() != -1) {
+                os.createTempBagTables(c, q);
+                os.flushOldTempBagTables(c);
+            }
+            sql = SqlGenerator.generate(q, 0, Integer.MAX_VALUE, os.getSchema(),
+                    os.getDatabase(), os.bagConstraintTables);
+            if (optimise && os.everOptimise()) {
+                sql = QueryOptimiser.optimise(sql, null, os.getDatabase(), c,
+                        os.optimiserContext).getBestQueryString();
+            }
+            // Postgres only honours the fetch size with a cursor inside a transaction
+            if (c.getAutoCommit()) {
+                c.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            s = c.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            s.setFetchSize(fetchSize);
+            os.registerStatement(s);
+            try {
+                sqlResults = s.executeQuery(sql);
+            } finally {
+                os.deregisterStatement(s);
+            }
+        } catch (CompletelyFalseException e) {
+            exhausted = true;
+            closeResources();
+        } catch (SQLException e) {
+            closeResources();
+            throw new ObjectStoreException("Problem running SQL statement \"" + sql
+                    + "\" while streaming query \"" + q + "\"", e);
+        } catch (ObjectStoreException e) {
+            closeResources();
+            throw e;
+        } catch (RuntimeException e) {
+            closeResources();
+            throw new ObjectStoreException("Problem streaming query \"" + q + "\"", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized boolean hasNext() {
+        while ((!chunk.hasNext()) && (!exhausted)) {
+            fetchChunk();
+        }
+        return chunk.hasNext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized ResultsRow<Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return chunk.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void close() {
+        List<ResultsRow<Object>> empty = Collections.emptyList();
+        chunk = empty.iterator();
+        exhausted = true;
+        closeResources();
+    }
+
+    /**
+     * Converts the next fetchSize rows, closing the cursor once it has run out.
+     */
+    private void fetchChunk() {
+        try {
+            List<ResultsRow<Object>> rows = ResultsConverter.convert(sqlResults, q, os, c,
+                    ObjectStore.SEQUENCE_IGNORE, optimise, new ExtraQueryTime(), null, null,
+                    fetchSize);
+            chunk = rows.iterator();
+            if (rows.size() < fetchSize) {
+                exhausted = true;
+                closeResources();
+            }
+        } catch (ObjectStoreException e) {
+            close();
+            throw new RuntimeException("ObjectStore error has occurred (in stream)", e);
+        }
+    }
+
+    /**
+     * Closes the cursor and returns the connection to the ObjectStore.
+     */
+    private void closeResources() {
+        if (c == null) {
+            return;
+        }
+        try {
+            if (sqlResults != null) {
+                sqlResults.close();
+            }
+            if (s != null) {
+                s.close();
+            }
+            if (restoreAutoCommit) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOG.warn("Error closing cursor for query " + q, e);
+        } finally {
+            os.releaseConnection(c);
+            c = null;
+            s = null;
+            sqlResults = null;
+        }
+    }
+
+    /**
+     * Releases the connection if the stream was abandoned without being closed.
+     *
+     * @throws Throwable if something goes wrong
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        if (c != null) {
+            LOG.warn("Closing ResultsStream that was not closed, for query " + q);
+            closeResources();
+        }
+    }
+}
@@ -38,6 +38,10 @@ import org.apache.log4j.Logger;
 public class DatabaseSchema
 {
     private static final Logger LOG = Logger.getLogger(DatabaseSchema.class);
+    /** The objectFormat property value for objects stored as NotXml text */
+    public static final String OBJECT_FORMAT_NOTXML = "notxml";
+    /** The objectFormat property value for objects stored in ObjectBinaryFormat */
+    public static final String OBJECT_FORMAT_BINARY = "binary";
 
     private Model model;
     private List<ClassDescriptor> truncated;
@@ -47,6 +51,7 @@ public class DatabaseSchema
     private boolean fetchFromInterMineObject;
     private int version;
     private boolean hasBioSeg;
+    private boolean binaryObjects;
 
     private Set<ClassDescriptor> truncatedSet;
     private Map<ClassDescriptor, Fields> tableMasterToFieldDescriptors
@@ -68,6 +73,24 @@ public class DatabaseSchema
      */
     public DatabaseSchema(Model model, List<ClassDescriptor> truncated, boolean noNotXml,
             Set<String> missingTables, int version, boolean hasBioSeg) {
+        this(model, truncated, noNotXml, missingTables, version, hasBioSeg, false);
+    }
+
+    /**
+     * Returns an instance of DatabaseSchema, for the given Model and and List of truncated classes.
+     *
+     * @param model a Model
+     * @param truncated a List of ClassDescriptors representing the truncated classes, in order of
+     * decreasing priority.
+     * @param noNotXml true if NotXML data should be omitted from every table except InterMineObject
+     * @param missingTables a Set of lowercase table names which are missing
+     * @param version the version number in the database
+     * @param hasBioSeg true if the database has the bioseg type installed
+     * @param binaryObjects true if the OBJECT column holds ObjectBinaryFormat rather than NotXml
+     * @throws IllegalArgumentException if the truncated class list does not make sense
+     */
+    public DatabaseSchema(Model model, List<ClassDescriptor> truncated, boolean noNotXml,
+            Set<String> missingTables, int version, boolean hasBioSeg, boolean binaryObjects) {
         this.model = model;
         this.truncated = truncated;
         this.missingTables = missingTables;
@@ -76,6 +99,7 @@ public class DatabaseSchema
         this.fetchFromInterMineObject = !missingTables.contains("intermineobject");
         this.version = version;
         this.hasBioSeg = hasBioSeg;
+        this.binaryObjects = binaryObjects;
         for (int i = 0; i < truncated.size(); i++) {
             Class<?> cA = truncated.get(i).getType();
             for (int o = 0; o < i; o++) {
@@ -156,6 +180,16 @@ public class DatabaseSchema
         return flatMode || (!InterMineObject.class.isAssignableFrom(c));
     }
 
+    /**
+     * Returns true if the OBJECT column is a bytea column holding objects in ObjectBinaryFormat,
+     * or false if it is a text column holding NotXml.
+     *
+     * @return a boolean
+     */
+    public boolean isBinaryObjects() {
+        return binaryObjects;
+    }
+
     /**
      * Returns true if ProxyReferences can be fetched from the InterMineObject table.
      *
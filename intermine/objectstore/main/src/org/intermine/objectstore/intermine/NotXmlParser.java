@@ -10,12 +10,12 @@ package org.intermine.objectstore.intermine;
  *
  */
 
+import java.io.UnsupportedEncodingException;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import net.sf.cglib.proxy.Factory;
@@ -63,7 +63,28 @@ public final class NotXmlParser
     private static long createTime = 0;
     private static long parseTime = 0;
     private static Map<String, Class<? extends FastPathObject>> classCache
-        = Collections.synchronizedMap(new HashMap<String, Class<? extends FastPathObject>>());
+        = new ConcurrentHashMap<String, Class<? extends FastPathObject>>();
+
+    /**
+     * Parse the given contents of an OBJECT column into an Object. The contents may be either in
+     * ObjectBinaryFormat, or NotXml encoded in UTF-8, so databases in either format can be read.
+     *
+     * @param bytes the contents of an OBJECT column
+     * @param os the ObjectStore from which to create lazy objects
+     * @return an InterMineObject
+     * @throws ClassNotFoundException if a class cannot be found
+     */
+    public static InterMineObject parse(byte[] bytes,
+            ObjectStoreInterMineImpl os) throws ClassNotFoundException {
+        if (ObjectBinaryFormat.isBinary(bytes)) {
+            return ObjectBinaryFormat.parse(bytes, os);
+        }
+        try {
+            return parse(new String(bytes, "UTF-8"), os);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
     /**
      * Parse the given NotXml String into an Object.
@@ -115,6 +136,8 @@ public final class NotXmlParser
             Map<String, Object> valueMap = bean.getMap();
             Map<String, FieldDescriptor> fields = os.getModel()
                 .getFieldDescriptorsForClass(retval.getClass());
+            // Dynamic classes have no generated getFieldType(), and DynamicBean answers it by
+            // reflection on every call, so use the field types cached by TypeUtil instead
             Map<String, TypeUtil.FieldInfo> fieldInfos = TypeUtil.getFieldInfos(clazz);
             boolean fetchFromInterMineObject = os.getSchema().isFetchFromInterMineObject();
             for (int i = 2; i < a.length; i += 2) {
@@ -192,11 +215,10 @@ public final class NotXmlParser
 
                 Map<String, FieldDescriptor> fields = os.getModel()
                     .getFieldDescriptorsForClass(retval.getClass());
-                Map<String, TypeUtil.FieldInfo> fieldInfos = TypeUtil.getFieldInfos(clazz);
                 for (int i = 2; i < a.length; i += 2) {
                     if (a[i].startsWith("a")) {
                         String fieldName = a[i].substring(1);
-                        Class<?> fieldClass = fieldInfos.get(fieldName).getType();
+                        Class<?> fieldClass = retval.getFieldType(fieldName);
                         String firstString = (i + 1 == a.length ? "" : a[i + 1]);
                         StringBuffer string = null;
                         if (firstString.length() * 10 < xml.length() * 9) {
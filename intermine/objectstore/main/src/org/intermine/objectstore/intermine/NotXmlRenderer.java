@@ -17,6 +17,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
 
+import org.intermine.model.FastPathObject;
 import org.intermine.model.InterMineObject;
 import org.intermine.objectstore.query.ClobAccess;
 import org.intermine.util.DynamicUtil;
@@ -59,7 +60,12 @@ public final class NotXmlRenderer
                 // If field, value is field value
                 // If collection, no element output
                 // Element is not output if the value is null
-                Object value = TypeUtil.getFieldProxy(obj, fieldName);
+                Object value;
+                if (obj instanceof FastPathObject) {
+                    value = ((FastPathObject) obj).getFieldProxy(fieldName);
+                } else {
+                    value = TypeUtil.getFieldProxy(obj, fieldName);
+                }
 
                 if ((value != null) && (!Collection.class.isAssignableFrom(value.getClass()))) {
                     // It is not null or a collection.
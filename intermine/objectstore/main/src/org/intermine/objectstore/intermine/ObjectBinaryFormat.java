@@ -0,0 +1,522 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.cglib.proxy.Factory;
+
+import org.intermine.metadata.AttributeDescriptor;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.CollectionDescriptor;
+import org.intermine.metadata.FieldDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.model.FastPathObject;
+import org.intermine.model.InterMineObject;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.proxy.ProxyCollection;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.objectstore.query.ClobAccess;
+import org.intermine.util.DynamicBean;
+import org.intermine.util.DynamicUtil;
+import org.intermine.util.TypeUtil;
+import org.intermine.util.Util;
+
+/**
+ * Renders objects into, and parses objects from, a compact binary form suitable for storing in
+ * the OBJECT column of database tables when the objectstore has objectFormat=binary. This is the
+ * binary equivalent of NotXml.
+ * <p>
+ * The format is a marker byte, followed by the length-prefixed UTF-8 space-separated list of
+ * class names, followed by a sequence of (field ordinal + 1, value) pairs terminated by a zero.
+ * The field ordinal is the position of the field in the alphabetical list of fields of the class,
+ * so no field names are stored and no string splitting is needed to read an object. Values are
+ * encoded according to the type of the field - integers as zig-zag variable-length numbers,
+ * strings as length-prefixed UTF-8, and references as the ID of the referenced object.
+ * <p>
+ * Because the ordinals depend on the fields of the classes, a database in binary format records
+ * the fingerprint of the model's field layout, and cannot be read with a model whose fingerprint
+ * is different.
+ *
+ */
+public final class ObjectBinaryFormat
+{
+    private ObjectBinaryFormat() {
+    }
+
+    /** The first byte of every object in binary format. NotXml always starts with '$'. */
+    public static final byte MARKER = 1;
+
+    private static final int KIND_COLLECTION = 0;
+    private static final int KIND_REFERENCE = 1;
+    private static final int KIND_STRING = 2;
+    private static final int KIND_INTEGER = 3;
+    private static final int KIND_LONG = 4;
+    private static final int KIND_SHORT = 5;
+    private static final int KIND_BOOLEAN = 6;
+    private static final int KIND_FLOAT = 7;
+    private static final int KIND_DOUBLE = 8;
+    private static final int KIND_DATE = 9;
+    private static final int KIND_CLOB = 10;
+    private static final int KIND_OTHER = 11;
+
+    private static Map<Class<?>, Layout> layouts = new ConcurrentHashMap<Class<?>, Layout>();
+    private static Map<String, Class<? extends FastPathObject>> classCache
+        = new ConcurrentHashMap<String, Class<? extends FastPathObject>>();
+
+    /**
+     * Render the given object into binary format.
+     *
+     * @param obj the object to render
+     * @param model the Model that the object belongs to
+     * @return a byte array
+     */
+    public static byte[] render(FastPathObject obj, Model model) {
+        Layout layout = getLayout(obj.getClass(), model);
+        Output out = new Output();
+        out.write(MARKER);
+        out.writeBytes(layout.classNames);
+        for (int ordinal = 0; ordinal < layout.names.length; ordinal++) {
+            int kind = layout.kinds[ordinal];
+            if (kind == KIND_COLLECTION) {
+                continue;
+            }
+            Object value;
+            try {
+                value = obj.getFieldProxy(layout.names[ordinal]);
+            } catch (IllegalAccessException e) {
+                IllegalArgumentException e2 = new IllegalArgumentException();
+                e2.initCause(e);
+                throw e2;
+            }
+            if ((value == null) || (value instanceof Collection<?>)) {
+                continue;
+            }
+            out.writeVarInt(ordinal + 1);
+            switch (kind) {
+                case KIND_REFERENCE:
+                    out.writeVarLong(((InterMineObject) value).getId().intValue());
+                    break;
+                case KIND_STRING:
+                    out.writeString((String) value);
+                    break;
+                case KIND_INTEGER:
+                    out.writeVarLong(((Integer) value).intValue());
+                    break;
+                case KIND_LONG:
+                    out.writeVarLong(((Long) value).longValue());
+                    break;
+                case KIND_SHORT:
+                    out.writeVarLong(((Short) value).shortValue());
+                    break;
+                case KIND_BOOLEAN:
+                    out.write(((Boolean) value).booleanValue() ? 1 : 0);
+                    break;
+                case KIND_FLOAT:
+                    out.writeFixed(Float.floatToIntBits(((Float) value).floatValue()), 4);
+                    break;
+                case KIND_DOUBLE:
+                    out.writeFixed(Double.doubleToLongBits(((Double) value).doubleValue()), 8);
+                    break;
+                case KIND_DATE:
+                    out.writeVarLong(((Date) value).getTime());
+                    break;
+                case KIND_CLOB:
+                    out.writeString(((ClobAccess) value).getDbDescription());
+                    break;
+                default:
+                    out.writeString(value.toString());
+            }
+        }
+        out.writeVarInt(0);
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns true if the given bytes are an object in binary format.
+     *
+     * @param bytes the contents of an OBJECT column
+     * @return a boolean
+     */
+    public static boolean isBinary(byte[] bytes) {
+        return (bytes != null) && (bytes.length > 0) && (bytes[0] == MARKER);
+    }
+
+    /**
+     * Parse the given binary format object.
+     *
+     * @param bytes the contents of an OBJECT column
+     * @param os the ObjectStore from which to create lazy objects
+     * @return an InterMineObject
+     * @throws ClassNotFoundException if a class cannot be found
+     */
+    public static InterMineObject parse(byte[] bytes, ObjectStoreInterMineImpl os)
+        throws ClassNotFoundException {
+        if (!isBinary(bytes)) {
+            throw new IllegalArgumentException("Not an object in binary format");
+        }
+        Input in = new Input(bytes);
+        in.pos = 1;
+        String classNames = in.readString();
+        Class<? extends FastPathObject> clazz = classCache.get(classNames);
+        InterMineObject retval;
+        if (clazz == null) {
+            Set<Class<?>> classes = new HashSet<Class<?>>();
+            if (!"".equals(classNames)) {
+                for (String className : classNames.split(" ")) {
+                    classes.add(Class.forName(className));
+                }
+            }
+            retval = (InterMineObject) DynamicUtil.createObject(classes);
+            clazz = retval.getClass();
+            classCache.put(classNames, clazz);
+        } else {
+            retval = (InterMineObject) DynamicUtil.createObject(clazz);
+        }
+        Layout layout = getLayout(clazz, os.getModel());
+        Map<String, Object> valueMap = null;
+        if (retval instanceof Factory) {
+            valueMap = ((DynamicBean) ((Factory) retval).getCallback(0)).getMap();
+        }
+        boolean fetchFromInterMineObject = os.getSchema().isFetchFromInterMineObject();
+        int ordinalPlusOne;
+        while ((ordinalPlusOne = in.readVarInt()) != 0) {
+            int ordinal = ordinalPlusOne - 1;
+            String fieldName = layout.names[ordinal];
+            Object value;
+            switch (layout.kinds[ordinal]) {
+                case KIND_REFERENCE:
+                    @SuppressWarnings("unchecked") Class<? extends InterMineObject> refType =
+                        (Class) (fetchFromInterMineObject ? InterMineObject.class
+                                : layout.referencedTypes[ordinal]);
+                    value = new ProxyReference(os, new Integer((int) in.readVarLong()), refType);
+                    break;
+                case KIND_STRING:
+                    value = in.readString();
+                    break;
+                case KIND_INTEGER:
+                    value = new Integer((int) in.readVarLong());
+                    break;
+                case KIND_LONG:
+                    value = new Long(in.readVarLong());
+                    break;
+                case KIND_SHORT:
+                    value = new Short((short) in.readVarLong());
+                    break;
+                case KIND_BOOLEAN:
+                    value = Boolean.valueOf(in.read() != 0);
+                    break;
+                case KIND_FLOAT:
+                    value = new Float(Float.intBitsToFloat((int) in.readFixed(4)));
+                    break;
+                case KIND_DOUBLE:
+                    value = new Double(Double.longBitsToDouble(in.readFixed(8)));
+                    break;
+                case KIND_DATE:
+                    value = new Date(in.readVarLong());
+                    break;
+                case KIND_CLOB:
+                    value = ClobAccess.decodeDbDescription(os, in.readString());
+                    break;
+                case KIND_OTHER:
+                    value = TypeUtil.stringToObject(layout.types[ordinal], in.readString());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Field " + fieldName + " of "
+                            + classNames + " cannot be stored in binary format");
+            }
+            if (valueMap != null) {
+                valueMap.put(fieldName, value);
+            } else {
+                retval.setFieldValue(fieldName, value);
+            }
+        }
+        for (int ordinal = 0; ordinal < layout.names.length; ordinal++) {
+            if (layout.kinds[ordinal] == KIND_COLLECTION) {
+                Collection<Object> lazyColl = new ProxyCollection<Object>(os, retval,
+                        layout.names[ordinal], layout.referencedTypes[ordinal]);
+                if (valueMap != null) {
+                    valueMap.put(layout.names[ordinal], lazyColl);
+                } else {
+                    retval.setFieldValue(layout.names[ordinal], lazyColl);
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns a fingerprint of the fields of every class in the given model, including inherited
+     * fields. Adding, removing, renaming or changing the type of a field changes the fingerprint,
+     * as these change the ordinals of the fields in binary format.
+     *
+     * @param model a Model
+     * @return a String
+     */
+    public static String getLayoutFingerprint(Model model) {
+        Map<String, ClassDescriptor> classes = new TreeMap<String, ClassDescriptor>();
+        for (ClassDescriptor cld : model.getClassDescriptors()) {
+            classes.put(cld.getName(), cld);
+        }
+        StringBuilder layout = new StringBuilder();
+        for (ClassDescriptor cld : classes.values()) {
+            Map<String, FieldDescriptor> fields = new TreeMap<String, FieldDescriptor>();
+            for (FieldDescriptor fd : cld.getAllFieldDescriptors()) {
+                fields.put(fd.getName(), fd);
+            }
+            layout.append(cld.getName()).append(":");
+            for (FieldDescriptor fd : fields.values()) {
+                layout.append(" ").append(fd.getName()).append("=");
+                if (fd instanceof AttributeDescriptor) {
+                    layout.append(((AttributeDescriptor) fd).getType());
+                } else if (fd instanceof CollectionDescriptor) {
+                    layout.append("collection ")
+                        .append(((CollectionDescriptor) fd).getReferencedClassName());
+                } else {
+                    layout.append("reference ")
+                        .append(((ReferenceDescriptor) fd).getReferencedClassName());
+                }
+            }
+            layout.append("\n");
+        }
+        return Util.getMd5checksum(layout.toString());
+    }
+
+    /**
+     * Checks that a database in binary format can be read with the given model, by comparing the
+     * fingerprint of the model's field layout with the one recorded when the database was built.
+     *
+     * @param storedFingerprint the fingerprint stored in the database, or null if there is none
+     * @param model the Model that objects will be read with
+     * @throws ObjectStoreException if the fingerprints do not match
+     */
+    public static void checkLayoutFingerprint(String storedFingerprint, Model model)
+        throws ObjectStoreException {
+        if (storedFingerprint == null) {
+            throw new ObjectStoreException("The database stores objects in binary format, but "
+                    + "has no record of the model field layout it was built with, so it cannot be "
+                    + "read safely. Please rebuild the database.");
+        }
+        String fingerprint = getLayoutFingerprint(model);
+        if (!fingerprint.equals(storedFingerprint)) {
+            throw new ObjectStoreException("The database stores objects in binary format, and "
+                    + "the fields of the " + model.getName() + " model have changed since it was "
+                    + "built (layout fingerprint " + fingerprint + ", database was built with "
+                    + storedFingerprint + "). Please rebuild the database, or use the model it "
+                    + "was built with.");
+        }
+    }
+
+    /**
+     * Returns the layout of fields for the given class, creating it if necessary.
+     *
+     * @param clazz a class, possibly a dynamic class
+     * @param model the Model that the class belongs to
+     * @return a Layout
+     */
+    private static Layout getLayout(Class<?> clazz, Model model) {
+        Layout retval = layouts.get(clazz);
+        if (retval == null) {
+            retval = new Layout(clazz, model);
+            layouts.put(clazz, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * The fields of a class in ordinal order, with the way to encode each.
+     */
+    private static class Layout
+    {
+        private final byte[] classNames;
+        private final String[] names;
+        private final Class<?>[] types;
+        private final Class<?>[] referencedTypes;
+        private final int[] kinds;
+
+        Layout(Class<?> clazz, Model model) {
+            StringBuilder sb = new StringBuilder();
+            boolean needSpace = false;
+            for (Class<?> c : DynamicUtil.decomposeClass(clazz)) {
+                if (needSpace) {
+                    sb.append(" ");
+                }
+                needSpace = true;
+                sb.append(c.getName());
+            }
+            try {
+                classNames = sb.toString().getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            Map<String, TypeUtil.FieldInfo> infos = TypeUtil.getFieldInfos(clazz);
+            Map<String, FieldDescriptor> fields = model.getFieldDescriptorsForClass(clazz);
+            List<String> nameList = new ArrayList<String>(infos.keySet());
+            names = nameList.toArray(new String[nameList.size()]);
+            types = new Class<?>[names.length];
+            referencedTypes = new Class<?>[names.length];
+            kinds = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                Class<?> type = infos.get(names[i]).getType();
+                types[i] = type;
+                FieldDescriptor fd = fields.get(names[i]);
+                if (Collection.class.isAssignableFrom(type)) {
+                    kinds[i] = KIND_COLLECTION;
+                    referencedTypes[i] = (fd instanceof CollectionDescriptor
+                            ? ((CollectionDescriptor) fd).getReferencedClassDescriptor().getType()
+                            : InterMineObject.class);
+                } else if (InterMineObject.class.isAssignableFrom(type)) {
+                    kinds[i] = KIND_REFERENCE;
+                    referencedTypes[i] = (fd instanceof ReferenceDescriptor
+                            ? ((ReferenceDescriptor) fd).getReferencedClassDescriptor().getType()
+                            : type);
+                } else if (String.class.equals(type)) {
+                    kinds[i] = KIND_STRING;
+                } else if (Integer.class.equals(type) || Integer.TYPE.equals(type)) {
+                    kinds[i] = KIND_INTEGER;
+                } else if (Long.class.equals(type) || Long.TYPE.equals(type)) {
+                    kinds[i] = KIND_LONG;
+                } else if (Short.class.equals(type) || Short.TYPE.equals(type)) {
+                    kinds[i] = KIND_SHORT;
+                } else if (Boolean.class.equals(type) || Boolean.TYPE.equals(type)) {
+                    kinds[i] = KIND_BOOLEAN;
+                } else if (Float.class.equals(type) || Float.TYPE.equals(type)) {
+                    kinds[i] = KIND_FLOAT;
+                } else if (Double.class.equals(type) || Double.TYPE.equals(type)) {
+                    kinds[i] = KIND_DOUBLE;
+                } else if (Date.class.equals(type)) {
+                    kinds[i] = KIND_DATE;
+                } else if (ClobAccess.class.equals(type)) {
+                    kinds[i] = KIND_CLOB;
+                } else {
+                    kinds[i] = KIND_OTHER;
+                }
+            }
+        }
+    }
+
+    /**
+     * A growable byte buffer with methods for writing the primitive encodings.
+     */
+    private static class Output extends ByteArrayOutputStream
+    {
+        Output() {
+            super(256);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            write((int) zigzag);
+        }
+
+        void writeFixed(long value, int bytes) {
+            for (int i = (bytes - 1) * 8; i >= 0; i -= 8) {
+                write((int) (value >>> i) & 0xFF);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeString(String value) {
+            try {
+                writeBytes(value.getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * A cursor over a byte array, with methods for reading the primitive encodings.
+     */
+    private static class Input
+    {
+        private final byte[] buf;
+        private int pos = 0;
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int read() {
+            return buf[pos++] & 0xFF;
+        }
+
+        int readVarInt() {
+            int retval = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = read();
+                retval |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return retval;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = read();
+                zigzag |= ((long) (b & 0x7F)) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        long readFixed(int bytes) {
+            long retval = 0;
+            for (int i = 0; i < bytes; i++) {
+                retval = (retval << 8) | read();
+            }
+            return retval;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            try {
+                String retval = new String(buf, pos, length, "UTF-8");
+                pos += length;
+                return retval;
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
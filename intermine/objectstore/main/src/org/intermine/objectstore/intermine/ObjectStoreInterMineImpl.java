@@ -13,6 +13,7 @@ package org.intermine.objectstore.intermine;
 import static org.intermine.objectstore.query.ResultsBatches.DEFAULT_BATCH_SIZE;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
@@ -35,6 +36,12 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.intermine.metadata.ClassDescriptor;
@@ -59,6 +66,7 @@ import org.intermine.objectstore.query.ConstraintWithBag;
 import org.intermine.objectstore.query.FromElement;
 import org.intermine.objectstore.query.MultipleInBagConstraint;
 import org.intermine.objectstore.query.OrderDescending;
+import org.intermine.objectstore.query.PrefetchManager;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryClassBag;
@@ -70,9 +78,11 @@ import org.intermine.objectstore.query.QueryObjectReference;
 import org.intermine.objectstore.query.QueryOrderable;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsBatchCache;
 import org.intermine.objectstore.query.ResultsBatches;
 import org.intermine.objectstore.query.ResultsInfo;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.objectstore.query.SingletonResults;
 import org.intermine.sql.Database;
 import org.intermine.sql.DatabaseFactory;
@@ -125,6 +135,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     protected long statsExeTime = 0;
     protected long statsConTime = 0;
     protected QueryOptimiserContext limitedContext;
+    protected QueryOptimiserContext optimiserContext;
     protected boolean verboseQueryLog = false;
     protected boolean logBeforeExecute = false;
     protected int sequenceBase = 0;
@@ -132,6 +143,11 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     protected static final int SEQUENCE_MULTIPLE = 1000000;
     protected boolean logExplains = false;
     protected boolean disableResultsCache = false;
+    protected PrefetchManager prefetchManager = null;
+    protected ResultsBatchCache resultsBatchCache = null;
+    protected File optimiserCacheFile = null;
+    protected ExecutorService convertExecutor = null;
+    protected int flushConnections = 1;
 
     // don't use a table to represent bags if the bag is smaller than this value
     protected int minBagTableSize = -1;
@@ -201,6 +217,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         ShutdownHook.registerObject(new WeakReference<Object>(this));
         limitedContext = new QueryOptimiserContext();
         limitedContext.setTimeLimit(getMaxTime() / 10);
+        optimiserContext = new QueryOptimiserContext();
         description = "ObjectStoreInterMineImpl(" + db + ")";
     }
 
@@ -212,6 +229,83 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         return new ObjectStoreWriterInterMineImpl(this);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrefetchManager getPrefetchManager() {
+        return prefetchManager;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultsBatchCache getResultsBatchCache() {
+        return resultsBatchCache;
+    }
+
+    /**
+     * Returns the executor used to parse OBJECT columns while results are being converted, or
+     * null if they are parsed by the thread reading the results.
+     *
+     * @return an ExecutorService, or null
+     */
+    public ExecutorService getConvertExecutor() {
+        return convertExecutor;
+    }
+
+    /**
+     * Sets the number of threads used to parse OBJECT columns while results are being converted.
+     * The threads are shared by all queries on this objectstore. With fewer than two threads,
+     * OBJECT columns are parsed by the thread reading the results.
+     *
+     * @param convertThreads the number of threads
+     */
+    public synchronized void setConvertThreads(int convertThreads) {
+        if (convertExecutor != null) {
+            convertExecutor.shutdown();
+            convertExecutor = null;
+        }
+        if (convertThreads > 1) {
+            final String threadName = "ResultsConverter " + description + " ";
+            final AtomicInteger threadNo = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(convertThreads, convertThreads,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, threadName + threadNo.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            convertExecutor = executor;
+        }
+    }
+
+    /**
+     * Sets the number of connections that each new ObjectStoreWriter writes its batches over.
+     * With more than one, different tables are written at the same time over separate
+     * connections, which commit whenever the writer's batch is flushed. As that data could not
+     * be rolled back, writers only use the extra connections outside transactions started with
+     * beginTransaction().
+     *
+     * @param flushConnections the number of connections
+     */
+    public void setFlushConnections(int flushConnections) {
+        this.flushConnections = flushConnections;
+    }
+
+    /**
+     * Returns the number of connections that each new ObjectStoreWriter writes its batches over.
+     *
+     * @return an int
+     */
+    public int getFlushConnections() {
+        return flushConnections;
+    }
+
     /**
      * Returns the DatabaseSchema used by this ObjectStore.
      *
@@ -329,6 +423,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         String missingTablesString = props.getProperty("missingTables");
         String truncatedClassesString = props.getProperty("truncatedClasses");
         String noNotXmlString = props.getProperty("noNotXml");
+        String objectFormatString = props.getProperty("objectFormat");
 
         // Non-format properties
         String logfile = props.getProperty("logfile");
@@ -339,6 +434,13 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         String logExplainsString = props.getProperty("logExplains");
         String logBeforeExecuteString = props.getProperty("logBeforeExecute");
         String disableResultsCacheString = props.getProperty("disableResultsCache");
+        String prefetchThreadsString = props.getProperty("prefetchThreads");
+        String prefetchQueueLengthString = props.getProperty("prefetchQueueLength");
+        String batchCacheSizeString = props.getProperty("batchCacheSize");
+        String optimiserCacheFileString = props.getProperty("optimiserCacheFile");
+        String optimiserExplainThreadsString = props.getProperty("optimiserExplainThreads");
+        String convertThreadsString = props.getProperty("convertThreads");
+        String flushConnectionsString = props.getProperty("flushConnections");
 
         synchronized (instances) {
             ObjectStoreInterMineImpl os = instances.get(osAlias);
@@ -383,6 +485,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                 } catch (MetaDataException e) {
                     throw new ObjectStoreException("Cannot load model", e);
                 }
+                String objectLayoutString = null;
                 if (formatVersion >= 1) {
                     // If it's version >=1 then ignore the properties, and use the embedded values.
                     try {
@@ -392,6 +495,10 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                                 MetadataManager.MISSING_TABLES);
                         noNotXmlString = MetadataManager.retrieve(database,
                                 MetadataManager.NO_NOTXML);
+                        objectFormatString = MetadataManager.retrieve(database,
+                                MetadataManager.OBJECT_FORMAT);
+                        objectLayoutString = MetadataManager.retrieve(database,
+                                MetadataManager.OBJECT_LAYOUT);
                     } catch (SQLException e) {
                         throw new IllegalArgumentException("Couldn't retrieve embedded config "
                                 + "for ObjectStore " + osAlias);
@@ -423,6 +530,18 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                     throw new ObjectStoreException("Invalid value for property noNotXml: "
                             + noNotXmlString);
                 }
+                boolean binaryObjects = false;
+                if (DatabaseSchema.OBJECT_FORMAT_BINARY.equals(objectFormatString)) {
+                    binaryObjects = true;
+                    if (formatVersion >= 1) {
+                        // field ordinals depend on the model, so it must not have changed
+                        ObjectBinaryFormat.checkLayoutFingerprint(objectLayoutString, osModel);
+                    }
+                } else if ((objectFormatString != null)
+                        && (!DatabaseSchema.OBJECT_FORMAT_NOTXML.equals(objectFormatString))) {
+                    throw new ObjectStoreException("Invalid value for property objectFormat: "
+                            + objectFormatString);
+                }
                 HashSet<String> missingTables = new HashSet<String>();
                 if (missingTablesString != null) {
                     String[] tables = missingTablesString.split(",");
@@ -450,7 +569,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                     }
                 }
                 DatabaseSchema schema = new DatabaseSchema(osModel, truncatedClasses, noNotXml,
-                        missingTables, formatVersion, hasBioSeg);
+                        missingTables, formatVersion, hasBioSeg, binaryObjects);
                 os = new ObjectStoreInterMineImpl(database, schema);
                 os.description = osAlias;
 
@@ -495,12 +614,112 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                 if ("true".equals(disableResultsCacheString)) {
                     os.setDisableResultsCache(true);
                 }
+                int prefetchThreads = PrefetchManager.DEFAULT_MAX_THREADS;
+                int prefetchQueueLength = PrefetchManager.DEFAULT_MAX_PENDING;
+                try {
+                    if (prefetchThreadsString != null) {
+                        prefetchThreads = Integer.parseInt(prefetchThreadsString);
+                    }
+                    if (prefetchQueueLengthString != null) {
+                        prefetchQueueLength = Integer.parseInt(prefetchQueueLengthString);
+                    }
+                } catch (NumberFormatException e) {
+                    LOG.warn("Error setting prefetchThreads or prefetchQueueLength: " + e);
+                }
+                os.prefetchManager = new PrefetchManager(osAlias, prefetchThreads,
+                        prefetchQueueLength);
+                long batchCacheSize = ResultsBatchCache.defaultMaxBytes();
+                try {
+                    if (batchCacheSizeString != null) {
+                        batchCacheSize = Long.parseLong(batchCacheSizeString);
+                    }
+                } catch (NumberFormatException e) {
+                    LOG.warn("Error setting batchCacheSize: " + e);
+                }
+                os.resultsBatchCache = new ResultsBatchCache(osAlias, batchCacheSize);
+                os.resultsBatchCache.register();
+                try {
+                    if (optimiserExplainThreadsString != null) {
+                        os.setOptimiserExplainThreads(Integer.parseInt(
+                                    optimiserExplainThreadsString));
+                    }
+                } catch (NumberFormatException e) {
+                    LOG.warn("Error setting optimiserExplainThreads: " + e);
+                }
+                if (optimiserCacheFileString != null) {
+                    os.setOptimiserCacheFile(new File(optimiserCacheFileString));
+                }
+                try {
+                    if (convertThreadsString != null) {
+                        os.setConvertThreads(Integer.parseInt(convertThreadsString));
+                    }
+                } catch (NumberFormatException e) {
+                    LOG.warn("Error setting convertThreads: " + e);
+                }
+                try {
+                    if (flushConnectionsString != null) {
+                        os.setFlushConnections(Integer.parseInt(flushConnectionsString));
+                    }
+                } catch (NumberFormatException e) {
+                    LOG.warn("Error setting flushConnections: " + e);
+                }
                 instances.put(osAlias, os);
             }
             return os;
         }
     }
 
+    /**
+     * Sets the number of candidate queries that the query optimiser may explain at once, each
+     * with its own connection.
+     *
+     * @param explainThreads the number of candidates to explain at once
+     */
+    public void setOptimiserExplainThreads(int explainThreads) {
+        optimiserContext.setExplainThreads(explainThreads);
+        limitedContext.setExplainThreads(explainThreads);
+    }
+
+    /**
+     * Sets the file that the OptimiserCache for this objectstore's database is saved to when the
+     * objectstore is closed, and loads the cache from it if the file exists. Cache lines that use
+     * precomputed tables that have changed since the file was saved are discarded.
+     *
+     * @param file the file, or null to stop saving the cache
+     */
+    public void setOptimiserCacheFile(File file) {
+        optimiserCacheFile = file;
+        if ((file != null) && file.exists()) {
+            try {
+                Set<PrecomputedTable> tables = PrecomputedTableManager.getInstance(db)
+                    .getPrecomputedTables();
+                OptimiserCache.getInstance(db).load(file, tables);
+            } catch (SQLException e) {
+                LOG.warn("Could not load optimiser cache from " + file, e);
+            } catch (IOException e) {
+                LOG.warn("Could not load optimiser cache from " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Saves the OptimiserCache for this objectstore's database to the file set with
+     * setOptimiserCacheFile(), if there is one.
+     */
+    protected void saveOptimiserCache() {
+        if (optimiserCacheFile != null) {
+            try {
+                Set<PrecomputedTable> tables = PrecomputedTableManager.getInstance(db)
+                    .getPrecomputedTables();
+                OptimiserCache.getInstance(db).save(optimiserCacheFile, tables);
+            } catch (SQLException e) {
+                LOG.warn("Could not save optimiser cache to " + optimiserCacheFile, e);
+            } catch (IOException e) {
+                LOG.warn("Could not save optimiser cache to " + optimiserCacheFile, e);
+            }
+        }
+    }
+
     /**
      * Returns the log used by this objectstore.
      *
@@ -995,6 +1214,25 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         }
     }
 
+    /**
+     * Execute a Query, streaming the rows through a database cursor. The query is run once,
+     * without LIMIT or OFFSET, and rows are converted fetchSize at a time as they are read. The
+     * returned stream holds a database connection until it is exhausted or closed.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultsStream stream(Query q, int fetchSize, boolean optimise)
+        throws ObjectStoreException {
+        Connection c = null;
+        try {
+            c = getConnection();
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not get connection to database", e);
+        }
+        return new CursorResultsStream(this, c, q, fetchSize, optimise);
+    }
+
     /**
      * Overrides Object.finalize - release the DB log connection.
      *
@@ -1031,6 +1269,13 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                 + ", SQL Optimise: " + statsOptTime + ", Estimate: "
                 + statsEstTime + ", Execute: " + statsExeTime + ", Results Convert: "
                 + statsConTime);
+        if (prefetchManager != null) {
+            prefetchManager.shutdown();
+        }
+        if (convertExecutor != null) {
+            convertExecutor.shutdown();
+        }
+        saveOptimiserCache();
         flushLogTable();
         Connection c = null;
         try {
@@ -1147,7 +1392,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                     }
                 } else {
                     bestQuery = QueryOptimiser.optimise(sql, null, db, c,
-                            (explain ? limitedContext : QueryOptimiserContext.DEFAULT));
+                            (explain ? limitedContext : optimiserContext));
                 }
                 sql = bestQuery.getBestQueryString();
                 if (bestQuery instanceof BestQueryExplainer) {
@@ -1571,7 +1816,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         }
         try {
             if (everOptimise()) {
-                sql = QueryOptimiser.optimise(sql, null, db, c, QueryOptimiserContext.DEFAULT)
+                sql = QueryOptimiser.optimise(sql, null, db, c, optimiserContext)
                     .getBestQueryString();
             }
             //long time = (new Date()).getTime();
@@ -1627,7 +1872,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             } else {
                 sql = generateSql(c, q, 0, Integer.MAX_VALUE);
                 if (everOptimise()) {
-                    sql = QueryOptimiser.optimise(sql, null, db, c, QueryOptimiserContext.DEFAULT)
+                    sql = QueryOptimiser.optimise(sql, null, db, c, optimiserContext)
                         .getBestQueryString();
                 }
                 sql = "SELECT COUNT(*) FROM (" + sql + ") as fake_table";
@@ -1752,12 +1997,23 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             //            + (now - time) + "): " + sql);
             //}
             if (sqlResults.next()) {
-                currentColumn = sqlResults.getString("a1_");
-                if (sqlResults.next()) {
-                    throw new ObjectStoreException("More than one object in the database has this"
-                            + " primary key");
+                InterMineObject retval;
+                if (schema.isBinaryObjects()) {
+                    byte[] bytes = sqlResults.getBytes("a1_");
+                    currentColumn = "(" + bytes.length + " bytes)";
+                    if (sqlResults.next()) {
+                        throw new ObjectStoreException("More than one object in the database has "
+                                + "this primary key");
+                    }
+                    retval = NotXmlParser.parse(bytes, this);
+                } else {
+                    currentColumn = sqlResults.getString("a1_");
+                    if (sqlResults.next()) {
+                        throw new ObjectStoreException("More than one object in the database has "
+                                + "this primary key");
+                    }
+                    retval = NotXmlParser.parse(currentColumn, this);
                 }
-                InterMineObject retval = NotXmlParser.parse(currentColumn, this);
                 //if (currentColumn.length() < CACHE_LARGEST_OBJECT) {
                 cacheObjectById(retval.getId(), retval);
                 //} else {
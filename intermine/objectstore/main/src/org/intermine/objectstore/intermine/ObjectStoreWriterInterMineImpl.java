@@ -26,18 +26,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.intermine.metadata.AttributeDescriptor;
 import org.intermine.metadata.ClassDescriptor;
 import org.intermine.metadata.CollectionDescriptor;
 import org.intermine.metadata.FieldDescriptor;
 import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.model.FastPathObject;
 import org.intermine.model.InterMineObject;
 import org.intermine.objectstore.DataChangedException;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.proxy.Lazy;
+import org.intermine.objectstore.query.BatchedResultsStream;
 import org.intermine.objectstore.query.Clob;
 import static org.intermine.objectstore.query.Clob.CLOB_PAGE_SIZE;
 
@@ -45,11 +48,14 @@ import org.intermine.objectstore.query.ClobAccess;
 import org.intermine.objectstore.query.Constraint;
 import org.intermine.objectstore.query.ObjectStoreBag;
 import org.intermine.objectstore.query.PendingClob;
+import org.intermine.objectstore.query.PrefetchManager;
+import org.intermine.objectstore.query.ResultsBatchCache;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.objectstore.query.SingletonResults;
 import org.intermine.sql.DatabaseUtil;
 import org.intermine.sql.precompute.BestQuery;
@@ -105,6 +111,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         super(((ObjectStoreInterMineImpl) os).getModel());
         schema = ((ObjectStoreInterMineImpl) os).getSchema();
         limitedContext = ((ObjectStoreInterMineImpl) os).limitedContext;
+        optimiserContext = ((ObjectStoreInterMineImpl) os).optimiserContext;
         description = "Writer(" + ((ObjectStoreInterMineImpl) os).description + ")";
         if (os instanceof ObjectStoreWriter) {
             throw new ObjectStoreException("Cannot create an ObjectStoreWriterInterMineImpl from "
@@ -132,7 +139,10 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         int index = createSituation.indexOf("at junit.framework.TestCase.runBare");
         createSituation = (index < 0 ? createSituation : createSituation.substring(0, index));
         recentSequences = Collections.synchronizedMap(new WeakHashMap<Integer, Boolean>());
-        batch = new Batch(new BatchWriterPostgresCopyImpl());
+        batch = new Batch(new BatchWriterPostgresCopyImpl(), db, this.os.getFlushConnections());
+        // The writer alters the bag table directly, so it must not be written over another
+        // connection
+        batch.keepOnMainConnection(INT_BAG_TABLE_NAME);
         tableToInfo = new HashMap<String, TableInfo>();
         tableToColNameArray = new HashMap<String, String[]>();
         tableToCollections = new HashMap<String, Set<CollectionDescriptor>>();
@@ -372,6 +382,18 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         return os.getMinBagTableSize();
     }
 
+    /**
+     * Execute a Query, returning the rows as a stream. A writer has only one connection, which a
+     * cursor would hold for the life of the stream, so this reads the rows batch by batch instead.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultsStream stream(Query q, int fetchSize, boolean optimise)
+        throws ObjectStoreException {
+        return new BatchedResultsStream(execute(q, fetchSize, optimise, false, false));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -538,6 +560,30 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         return os;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrefetchManager getPrefetchManager() {
+        return os.getPrefetchManager();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultsBatchCache getResultsBatchCache() {
+        return os.getResultsBatchCache();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExecutorService getConvertExecutor() {
+        return os.getConvertExecutor();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -570,6 +616,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
                         (InterMineObject) o) : false);
             writePendingClobs(c, o);
             StringConstructor xml = null;
+            byte[] binaryObject = null;
             String objectClass = null;
             Set<ClassDescriptor> classDescriptors = model.getClassDescriptorsForClass(o.getClass());
 
@@ -642,17 +689,25 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
                             }
                             value = objectClass;
                         } else if ("OBJECT".equals(tableInfo.colNames[colNo])) {
-                            if (xml == null) {
-                                if (o instanceof InterMineObject) {
-                                    xml = ((InterMineObject) o).getoBJECT();
-                                } else {
-                                    xml = NotXmlRenderer.render(o);
+                            if (schema.isBinaryObjects()) {
+                                if (binaryObject == null) {
+                                    binaryObject = ObjectBinaryFormat.render(
+                                            (FastPathObject) o, model);
+                                }
+                                value = binaryObject;
+                            } else {
+                                if (xml == null) {
+                                    if (o instanceof InterMineObject) {
+                                        xml = ((InterMineObject) o).getoBJECT();
+                                    } else {
+                                        xml = NotXmlRenderer.render(o);
+                                    }
                                 }
+                                value = xml;
                             }
-                            value = xml;
                         } else if (validFieldNames.contains(tableInfo.fieldNames[colNo])) {
-                            if (o instanceof InterMineObject) {
-                                value = ((InterMineObject) o).getFieldProxy(tableInfo
+                            if (o instanceof FastPathObject) {
+                                value = ((FastPathObject) o).getFieldProxy(tableInfo
                                         .fieldNames[colNo]);
                             } else {
                                 value = TypeUtil.getFieldProxy(o, tableInfo.fieldNames[colNo]);
@@ -971,8 +1026,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
                 : TypeUtil.getFieldInfos(o.getClass()).entrySet()) {
             TypeUtil.FieldInfo fieldInfo = fieldEntry.getValue();
             if (InterMineObject.class.isAssignableFrom(fieldInfo.getType())) {
-                InterMineObject obj = (InterMineObject) TypeUtil.getFieldProxy(o,
-                        fieldInfo.getName());
+                InterMineObject obj = (InterMineObject) o.getFieldProxy(fieldInfo.getName());
                 if ((obj != null) && (obj.getId() == null)) {
                     obj.setId(getSerialWithConnection(c));
                 }
@@ -1007,14 +1061,20 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
                 : TypeUtil.getFieldInfos(o.getClass()).entrySet()) {
             TypeUtil.FieldInfo fieldInfo = fieldEntry.getValue();
             if (ClobAccess.class.isAssignableFrom(fieldInfo.getType())) {
-                ClobAccess ca = (ClobAccess) TypeUtil.getFieldValue(o, fieldInfo.getName());
+                FastPathObject fpo = (o instanceof FastPathObject) ? (FastPathObject) o : null;
+                ClobAccess ca = (ClobAccess) (fpo != null ? fpo.getFieldValue(fieldInfo.getName())
+                        : TypeUtil.getFieldValue(o, fieldInfo.getName()));
                 if (ca instanceof PendingClob) {
                     // We can't call createClob here - we already have a connection, and
                     // we must use that one.
                     Clob clob = new Clob(getSerialWithConnection(c));
                     replaceClobWithConnection(c, clob, ((PendingClob) ca)
                             .toString());
-                    TypeUtil.setFieldValue(o, fieldInfo.getName(), new ClobAccess(this, clob));
+                    if (fpo != null) {
+                        fpo.setFieldValue(fieldInfo.getName(), new ClobAccess(this, clob));
+                    } else {
+                        TypeUtil.setFieldValue(o, fieldInfo.getName(), new ClobAccess(this, clob));
+                    }
                 }
             }
         }
@@ -1462,6 +1522,9 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         try {
             c = getConnection();
             beginTransactionWithConnection(c);
+            // Writes over the batch's extra connections are committed as they are flushed, so
+            // they could not be rolled back if the transaction were aborted
+            batch.setSingleConnection(true);
         } catch (SQLException e) {
             throw new ObjectStoreException("Could not get connection to database", e);
         } finally {
@@ -1516,6 +1579,8 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
             }
             c.commit();
             c.setAutoCommit(true);
+            batch.setSingleConnection(false);
+            invalidateClobPages();
             os.databaseAltered(tablesAltered);
             tablesAltered.clear();
         } catch (SQLException e) {
@@ -1552,7 +1617,9 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
             }
             c.rollback();
             c.setAutoCommit(true);
+            batch.setSingleConnection(false);
             os.flushObjectById();
+            invalidateClobPages();
             tablesAltered.clear();
         } catch (SQLException e) {
             throw new ObjectStoreException("Error aborting transaction", e);
@@ -1584,6 +1651,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
     public void batchCommitTransactionWithConnection(Connection c) throws ObjectStoreException {
         try {
             batch.batchCommit(c);
+            invalidateClobPages();
             os.databaseAltered(tablesAltered);
             tablesAltered.clear();
         } catch (SQLException e) {
@@ -1591,6 +1659,21 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         }
     }
 
+    /**
+     * Stops ClobAccess returning cached pages of the clobs replaced in this transaction. This is
+     * done on abort as well as commit, because pages read through this writer during the
+     * transaction may have been cached.
+     */
+    private void invalidateClobPages() {
+        if (tablesAltered.contains(CLOB_TABLE_NAME)) {
+            for (Object altered : tablesAltered) {
+                if (altered instanceof Clob) {
+                    ClobAccess.invalidatePages(((Clob) altered).getClobId());
+                }
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      * This method should never be called on an ObjectStoreWriter.
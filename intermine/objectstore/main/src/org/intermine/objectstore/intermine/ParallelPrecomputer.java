@@ -25,6 +25,8 @@ import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryNode;
 import org.intermine.objectstore.query.ResultsInfo;
+import org.intermine.sql.ConnectionPurpose;
+import org.intermine.sql.Database;
 import org.intermine.util.SynchronisedIterator;
 
 /**
@@ -273,7 +275,12 @@ public class ParallelPrecomputer
      * @throws ObjectStoreException if the query cannot be precomputed
      */
     private void executeJob(Job job, int threadNo) throws ObjectStoreException {
-        job.execute(this, threadNo);
+        ConnectionPurpose previous = Database.setThreadPurpose(ConnectionPurpose.PRECOMPUTE);
+        try {
+            job.execute(this, threadNo);
+        } finally {
+            Database.setThreadPurpose(previous);
+        }
     }
 
     /**
@@ -24,6 +24,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.intermine.metadata.AttributeDescriptor;
 import org.intermine.metadata.CollectionDescriptor;
@@ -59,6 +64,9 @@ import org.intermine.util.DynamicUtil;
  */
 public final class ResultsConverter
 {
+    private static final Map<String, Set<Class<?>>> CLASSES
+        = new ConcurrentHashMap<String, Set<Class<?>>>();
+
     private ResultsConverter() {
     }
 
@@ -88,6 +96,34 @@ public final class ResultsConverter
             ObjectStoreInterMineImpl os, Connection c, Map<Object, Integer> sequence,
             boolean optimise, ExtraQueryTime extra, Set<PrecomputedTable> goFasterTables,
             OptimiserCache goFasterCache) throws ObjectStoreException {
+        return convert(sqlResults, q, os, c, sequence, optimise, extra, goFasterTables,
+                goFasterCache, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Method to convert at most maxRows rows from SQL results to InterMine object-based results,
+     * leaving the ResultSet positioned on the last row read. This allows a large ResultSet to be
+     * converted piece by piece, as for a cursor.
+     *
+     * @param sqlResults the ResultSet
+     * @param q the Query
+     * @param os the ObjectStoreInterMineImpl with which to associate any new lazy objects
+     * @param c a Connection with which to make extra requests
+     * @param sequence an object representing the state of the database
+     * @param optimise whether to use optimisation on path expression queries
+     * @param extra object to record extra query execution time
+     * @param goFasterTables a Set of PrecomputedTables that may help with extra queries
+     * @param goFasterCache an OptimiserCache that may help with extra queries
+     * @param maxRows the maximum number of rows to read
+     * @return a List of ResultsRow objects, shorter than maxRows only if the ResultSet has been
+     * exhausted
+     * @throws ObjectStoreException if the ResultSet does not match the Query in any way, or if a
+     * SQL exception occurs
+     */
+    public static List<ResultsRow<Object>> convert(ResultSet sqlResults, Query q,
+            ObjectStoreInterMineImpl os, Connection c, Map<Object, Integer> sequence,
+            boolean optimise, ExtraQueryTime extra, Set<PrecomputedTable> goFasterTables,
+            OptimiserCache goFasterCache, int maxRows) throws ObjectStoreException {
         Object currentColumn = null;
         HashSet<QuerySelectable> noObjectColumns = new HashSet<QuerySelectable>();
         HashSet<String> noObjectClassColumns = new HashSet<String>();
@@ -102,7 +138,14 @@ public final class ResultsConverter
                 aliases.put(node, DatabaseUtil.generateSqlCompatibleName(q.getAliases().get(node)));
             }
 
-            while (sqlResults.next()) {
+            // OBJECT columns are parsed in the background while further rows are read, if the
+            // objectstore has threads for it
+            ParallelParser parser = null;
+            if (os.getConvertExecutor() != null) {
+                parser = new ParallelParser(os, os.getConvertExecutor());
+            }
+
+            while ((retval.size() < maxRows) && sqlResults.next()) {
                 ResultsRow<Object> row = new ResultsRow<Object>();
                 for (QuerySelectable node : q.getSelect()) {
                     String alias = aliases.get(node);
@@ -129,8 +172,25 @@ public final class ResultsConverter
                                     }
                                 } else {
                                     try {
-                                        objectField = sqlResults.getString(alias);
-                                        if (objectField != null) {
+                                        if (os.getSchema().isBinaryObjects()) {
+                                            byte[] objectBytes = sqlResults.getBytes(alias);
+                                            if ((objectBytes != null) && (parser != null)
+                                                    && (idField != null)) {
+                                                obj = parser.defer(idField, null, objectBytes);
+                                            } else if (objectBytes != null) {
+                                                currentColumn = "(" + objectBytes.length
+                                                    + " bytes)";
+                                                obj = NotXmlParser.parse(objectBytes, os);
+                                                os.cacheObjectById(((InterMineObject) obj)
+                                                        .getId(), (InterMineObject) obj);
+                                            }
+                                        } else {
+                                            objectField = sqlResults.getString(alias);
+                                        }
+                                        if ((objectField != null) && (parser != null)
+                                                && (idField != null)) {
+                                            obj = parser.defer(idField, objectField, null);
+                                        } else if (objectField != null) {
                                             currentColumn = objectField;
                                             obj = NotXmlParser.parse(objectField, os);
                                             //if (objectField.length() < ObjectStoreInterMineImpl
@@ -168,18 +228,8 @@ public final class ResultsConverter
                             if (Date.class.equals(node.getType())) {
                                 currentColumn = new Date(((Long) currentColumn).longValue());
                             } else if (Class.class.equals(node.getType())) {
-                                Set<Class<?>> classes = new HashSet<Class<?>>();
-                                try {
-                                    String[] b = ((String) currentColumn).split(" ");
-                                    for (int i = 0; i < b.length; i++) {
-                                        classes.add(Class.forName(b[i]));
-                                    }
-                                } catch (ClassNotFoundException e) {
-                                    SQLException e2
-                                        = new SQLException("Invalid entry in class column");
-                                    e2.initCause(e);
-                                    throw e2;
-                                }
+                                Set<Class<?>> classes = getClasses((String) currentColumn,
+                                        "class");
                                 if (classes.size() == 1) {
                                     currentColumn = classes.iterator().next();
                                 } else {
@@ -199,6 +249,16 @@ public final class ResultsConverter
                 }
                 retval.add(row);
             }
+            if (parser != null) {
+                currentColumn = null;
+                try {
+                    parser.finish(retval);
+                } finally {
+                    if (parser.getFailedColumn() != null) {
+                        currentColumn = parser.getFailedColumn();
+                    }
+                }
+            }
             if (!idsToFetch.isEmpty()) {
                 Map<Integer, InterMineObject> fetched = fetchByIds(os, c, sequence,
                         InterMineObject.class, idsToFetch, extra);
@@ -258,6 +318,36 @@ public final class ResultsConverter
     //private static long timeSpentSql = 0;
     //private static int countBuildObject = 0;
 
+    /**
+     * Returns the classes named in a space-separated list, as stored in class and objectclass
+     * columns. The lists are cached, as there are only as many as there are classes in the model
+     * and Class.forName() is too slow to call for every row.
+     *
+     * @param names the class names separated by spaces
+     * @param columnType the kind of column the names came from, for the error message
+     * @return a Set of classes, which must not be modified
+     * @throws SQLException if a class cannot be found
+     */
+    private static Set<Class<?>> getClasses(String names, String columnType)
+        throws SQLException {
+        Set<Class<?>> retval = CLASSES.get(names);
+        if (retval == null) {
+            retval = new HashSet<Class<?>>();
+            try {
+                String[] b = names.split(" ");
+                for (int i = 0; i < b.length; i++) {
+                    retval.add(Class.forName(b[i]));
+                }
+            } catch (ClassNotFoundException e) {
+                SQLException e2 = new SQLException("Invalid entry in " + columnType + " column");
+                e2.initCause(e);
+                throw e2;
+            }
+            CLASSES.put(names, retval);
+        }
+        return retval;
+    }
+
     /**
      * Builds an object from separate fields in flat mode.
      *
@@ -284,17 +374,7 @@ public final class ResultsConverter
                 noObjectClassColumns.add(alias);
             }
             if (objectClass != null) {
-                classes = new HashSet<Class<?>>();
-                try {
-                    String[] b = objectClass.split(" ");
-                    for (int i = 0; i < b.length; i++) {
-                        classes.add(Class.forName(b[i]));
-                    }
-                } catch (ClassNotFoundException e) {
-                    SQLException e2 = new SQLException("Invalid entry in objectclass column");
-                    e2.initCause(e);
-                    throw e2;
-                }
+                classes = getClasses(objectClass, "objectclass");
             }
         }
         FastPathObject retval = DynamicUtil.createObject(classes);
@@ -588,4 +668,171 @@ public final class ResultsConverter
             throw new ObjectStoreException("Error fetching additional objects", e);
         }
     }
+
+    /**
+     * Parses OBJECT columns for one call to convert using the objectstore's convert executor.
+     * Each column is left in its row as a placeholder, and the placeholders are handed to the
+     * executor in chunks while the caller carries on reading rows from the ResultSet. The final
+     * partial chunk is parsed by the caller, and then the placeholders are replaced with the
+     * parsed objects. Columns with the same id share one placeholder, so that a row set
+     * containing an object more than once refers to one instance of it, as when parsing serially.
+     */
+    private static class ParallelParser
+    {
+        /** The number of OBJECT columns parsed in one task */
+        static final int CHUNK_SIZE = 64;
+
+        private final ObjectStoreInterMineImpl os;
+        private final ExecutorService executor;
+        private final Map<Integer, PendingObject> pendingById
+            = new HashMap<Integer, PendingObject>();
+        private final List<ParseChunk> chunks = new ArrayList<ParseChunk>();
+        private final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        private ParseChunk chunk = null;
+        private Object failedColumn = null;
+
+        ParallelParser(ObjectStoreInterMineImpl os, ExecutorService executor) {
+            this.os = os;
+            this.executor = executor;
+        }
+
+        /**
+         * Returns a placeholder for an OBJECT column, to be put in the row in place of the object.
+         *
+         * @param id the id of the object
+         * @param objectField the contents of the column as a String, or null
+         * @param objectBytes the contents of the column as bytes, or null
+         * @return a PendingObject
+         */
+        PendingObject defer(Integer id, String objectField, byte[] objectBytes) {
+            PendingObject pending = pendingById.get(id);
+            if (pending == null) {
+                pending = new PendingObject(objectField, objectBytes);
+                pendingById.put(id, pending);
+                if (chunk == null) {
+                    chunk = new ParseChunk(os);
+                }
+                chunk.objects.add(pending);
+                if (chunk.objects.size() >= CHUNK_SIZE) {
+                    chunks.add(chunk);
+                    futures.add(executor.submit(chunk));
+                    chunk = null;
+                }
+            }
+            return pending;
+        }
+
+        /**
+         * Waits for all the placeholders to be parsed, replaces them in the rows with the parsed
+         * objects, and puts the objects in the objectstore's cache.
+         *
+         * @param rows the rows containing placeholders
+         * @throws ClassNotFoundException if an OBJECT column mentions an unknown class
+         * @throws ObjectStoreException if interrupted while waiting
+         */
+        void finish(List<ResultsRow<Object>> rows) throws ClassNotFoundException,
+            ObjectStoreException {
+            if (chunk != null) {
+                // No point in waiting idle for another thread to parse the last chunk
+                try {
+                    chunk.call();
+                } finally {
+                    if (chunk.current != null) {
+                        failedColumn = chunk.current.describe();
+                    }
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ObjectStoreException("Interrupted while converting results", e);
+                } catch (ExecutionException e) {
+                    if (chunks.get(i).current != null) {
+                        failedColumn = chunks.get(i).current.describe();
+                    }
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ClassNotFoundException) {
+                        throw (ClassNotFoundException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new ObjectStoreException("Error parsing OBJECT column", cause);
+                }
+            }
+            for (PendingObject pending : pendingById.values()) {
+                os.cacheObjectById(pending.obj.getId(), pending.obj);
+            }
+            for (ResultsRow<Object> row : rows) {
+                for (int i = 0; i < row.size(); i++) {
+                    Object obj = row.get(i);
+                    if (obj instanceof PendingObject) {
+                        row.set(i, ((PendingObject) obj).obj);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns a description of the OBJECT column that failed to parse, if any.
+         *
+         * @return the column contents, or null
+         */
+        Object getFailedColumn() {
+            return failedColumn;
+        }
+    }
+
+    /**
+     * A placeholder for an object whose OBJECT column has not been parsed yet.
+     */
+    private static class PendingObject
+    {
+        private final String objectField;
+        private final byte[] objectBytes;
+        private InterMineObject obj = null;
+
+        PendingObject(String objectField, byte[] objectBytes) {
+            this.objectField = objectField;
+            this.objectBytes = objectBytes;
+        }
+
+        void parse(ObjectStoreInterMineImpl os) throws ClassNotFoundException {
+            if (objectBytes != null) {
+                obj = NotXmlParser.parse(objectBytes, os);
+            } else {
+                obj = NotXmlParser.parse(objectField, os);
+            }
+        }
+
+        Object describe() {
+            return (objectBytes != null ? "(" + objectBytes.length + " bytes)" : objectField);
+        }
+    }
+
+    /**
+     * A task that parses a chunk of OBJECT columns.
+     */
+    private static class ParseChunk implements Callable<Object>
+    {
+        final List<PendingObject> objects = new ArrayList<PendingObject>();
+        private final ObjectStoreInterMineImpl os;
+        PendingObject current = null;
+
+        ParseChunk(ObjectStoreInterMineImpl os) {
+            this.os = os;
+        }
+
+        public Object call() throws ClassNotFoundException {
+            for (PendingObject pending : objects) {
+                current = pending;
+                pending.parse(os);
+            }
+            current = null;
+            return null;
+        }
+    }
 }
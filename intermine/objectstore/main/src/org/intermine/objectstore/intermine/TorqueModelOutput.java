@@ -187,7 +187,8 @@ public class TorqueModelOutput
             sb.append(INDENT + "<table name=\"" + className + "\">" + ENDL);
             if ((!(schema.isMissingNotXml() || schema.isFlatMode(cld.getType())))
                     || InterMineObject.class.equals(cld.getType())) {
-                sb.append(generateColumn("OBJECT", "java.lang.String"));
+                sb.append(generateColumn("OBJECT", schema.isBinaryObjects() ? "LONGVARBINARY"
+                            : "java.lang.String"));
             }
             DatabaseSchema.Fields fields = schema.getTableFields(cld);
             for (AttributeDescriptor field : fields.getAttributes()) {
@@ -58,6 +58,7 @@ public class TorqueModelOutputTask extends Task
             String missingTablesString = props.getProperty("missingTables");
             String truncatedClassesString = props.getProperty("truncatedClasses");
             String noNotXmlString = props.getProperty("noNotXml");
+            String objectFormatString = props.getProperty("objectFormat");
 
             Model osModel;
             String modelName = props.getProperty("model");
@@ -84,6 +85,14 @@ public class TorqueModelOutputTask extends Task
                 throw new ObjectStoreException("Invalid value for property noNotXml: "
                         + noNotXmlString);
             }
+            boolean binaryObjects = false;
+            if (DatabaseSchema.OBJECT_FORMAT_BINARY.equals(objectFormatString)) {
+                binaryObjects = true;
+            } else if ((objectFormatString != null)
+                    && (!DatabaseSchema.OBJECT_FORMAT_NOTXML.equals(objectFormatString))) {
+                throw new ObjectStoreException("Invalid value for property objectFormat: "
+                        + objectFormatString);
+            }
             HashSet<String> missingTables = new HashSet<String>();
             if (missingTablesString != null) {
                 String[] tables = missingTablesString.split(",");
@@ -93,7 +102,7 @@ public class TorqueModelOutputTask extends Task
             }
 
             schema = new DatabaseSchema(osModel, truncatedClasses, noNotXml, missingTables,
-                    FORMAT_VERSION, false);
+                    FORMAT_VERSION, false, binaryObjects);
         } catch (ClassCastException e) {
             throw new BuildException("Objectstore " + osName
                     + " is not an ObjectStoreInterMineImpl", e);
@@ -0,0 +1,64 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A ResultsStream that reads a Results object batch by batch. This is used by ObjectStores that
+ * have no cheaper way to stream a query.
+ */
+public class BatchedResultsStream implements ResultsStream
+{
+    private Iterator<Object> iter;
+
+    /**
+     * Constructor.
+     *
+     * @param results the Results to stream
+     */
+    public BatchedResultsStream(Results results) {
+        this.iter = results.iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasNext() {
+        return (iter != null) && iter.hasNext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public ResultsRow<Object> next() {
+        if (iter == null) {
+            throw new NoSuchElementException();
+        }
+        return (ResultsRow<Object>) iter.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() {
+        iter = null;
+    }
+}
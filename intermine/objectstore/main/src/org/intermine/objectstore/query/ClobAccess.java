@@ -12,28 +12,55 @@ package org.intermine.objectstore.query;
 
 import static org.intermine.objectstore.query.Clob.CLOB_PAGE_SIZE;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.proxy.Lazy;
+import org.intermine.util.TinyLfuObjectCache;
 
 /**
  * Class used to read a Clob from the ObjectStore.
  *
+ * Pages of clobs are kept in a cache shared by all ClobAccess objects, and are read from the
+ * database a number of pages at a time, so reading a clob from start to end needs few queries.
+ * Long sequences should be read with getChars(), drainToWriter() or drainToPrintStream(), which
+ * copy a page at a time, rather than with charAt().
+ *
  * @author Matthew Wakeling
  */
 public class ClobAccess implements CharSequence, Lazy
 {
+    /**
+     * The number of pages read from the database by each query.
+     */
+    public static final int READ_AHEAD_PAGES = 50;
+    private static final int PAGE_CACHE_SIZE = 1000;
+    private static final TinyLfuObjectCache<PageKey, String> PAGE_CACHE =
+        new TinyLfuObjectCache<PageKey, String>(PAGE_CACHE_SIZE);
+    // clob id to the version of the clob's pages in the cache, for clobs that have been replaced
+    private static final ConcurrentMap<Integer, Integer> CLOB_VERSIONS =
+        new ConcurrentHashMap<Integer, Integer>();
+    private static final AtomicInteger NEXT_VERSION = new AtomicInteger();
+
     protected ObjectStore os;
     protected SingletonResults results;
     protected Clob clob;
     protected int offset;
     protected int length;
     protected boolean subSequence;
+    // the version of the clob's cached pages when results was created
+    protected Integer pageVersion;
+    // the page most recently read by this object, so that charAt() doesn't use the cache
+    private Page lastPage = null;
 
     /**
      * Protected constructor for use by PendingClob only.
@@ -59,12 +86,15 @@ public class ClobAccess implements CharSequence, Lazy
      * Construct a ClobAccess object representing a subsequence of an existing ClobAccess object.
      *
      * @param results the SingletonResults object backing the object
+     * @param pageVersion the version of the cached pages when results was created
      * @param clob the Clob to access
      * @param offset the offset
      * @param length the length
      */
-    private ClobAccess(SingletonResults results, Clob clob, int offset, int length) {
+    private ClobAccess(SingletonResults results, Integer pageVersion, Clob clob, int offset,
+            int length) {
         this.results = results;
+        this.pageVersion = pageVersion;
         this.clob = clob;
         this.offset = offset;
         this.length = length;
@@ -81,7 +111,8 @@ public class ClobAccess implements CharSequence, Lazy
         if (results == null) {
             Query q = new Query();
             q.addToSelect(clob);
-            results = os.executeSingleton(q, 20, false, false, true);
+            pageVersion = CLOB_VERSIONS.get(new Integer(clob.getClobId()));
+            results = os.executeSingleton(q, READ_AHEAD_PAGES, false, false, true);
             int pageCount = results.size();
             if (pageCount == 0) {
                 length = 0;
@@ -126,10 +157,118 @@ public class ClobAccess implements CharSequence, Lazy
             throw new IndexOutOfBoundsException("index is not less than length");
         }
         int page = index / CLOB_PAGE_SIZE;
-        String pageText = (String) results.get(page);
+        String pageText = getPage(page);
         return pageText.charAt(index - page * CLOB_PAGE_SIZE);
     }
 
+    /**
+     * Return the text of a page of the underlying clob.  The page is taken from the shared cache
+     * if possible, otherwise it is read from the database along with the following pages.
+     *
+     * @param page the number of the page in the clob, not counting from the offset
+     * @return the text of the page
+     */
+    protected String getPage(int page) {
+        Page last = lastPage;
+        if ((last != null) && (last.number == page)) {
+            return last.text;
+        }
+        // pages are cached under the version from before results was created, so pages of the old
+        // contents of a replaced clob can't be cached under its new version
+        int clobId = clob.getClobId();
+        PageKey key = new PageKey(os, clobId, pageVersion, page);
+        String text = PAGE_CACHE.get(key);
+        if (text == null) {
+            text = (String) results.get(page);
+            // the query that read the page read the pages after it too
+            int lastReadAhead = Math.min(results.size(),
+                    (page / READ_AHEAD_PAGES + 1) * READ_AHEAD_PAGES);
+            for (int i = page + 1; i < lastReadAhead; i++) {
+                PAGE_CACHE.put(new PageKey(os, clobId, pageVersion, i),
+                        (String) results.get(i));
+            }
+            PAGE_CACHE.put(key, text);
+        }
+        lastPage = new Page(page, text);
+        return text;
+    }
+
+    /**
+     * Stops the shared cache from returning pages of the given clob that were cached before now,
+     * for use when the contents of an existing clob are replaced. The old pages are left for the
+     * cache to evict.
+     *
+     * @param clobId the id of the clob
+     */
+    public static void invalidatePages(int clobId) {
+        CLOB_VERSIONS.put(new Integer(clobId), new Integer(NEXT_VERSION.incrementAndGet()));
+    }
+
+    /**
+     * Empties the shared cache of clob pages.
+     */
+    public static void clearPageCache() {
+        PAGE_CACHE.clear();
+    }
+
+    /**
+     * Return the cache of clob pages shared by all ClobAccess objects, for statistics.
+     *
+     * @return the cache
+     */
+    public static TinyLfuObjectCache<?, String> getPageCache() {
+        return PAGE_CACHE;
+    }
+
+    /**
+     * Copies characters from this sequence into a char array, like String.getChars().
+     *
+     * @param srcBegin the index of the first character to copy
+     * @param srcEnd the index after the last character to copy
+     * @param dst the array to copy into
+     * @param dstBegin the position in dst of the first character copied
+     * @throws IndexOutOfBoundsException if srcBegin or srcEnd are out of range, or dst is too
+     * short
+     */
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        init();
+        if ((srcBegin < 0) || (srcEnd > length) || (srcBegin > srcEnd)) {
+            throw new IndexOutOfBoundsException("Cannot copy characters " + srcBegin + " to "
+                    + srcEnd + " of a Clob of length " + length);
+        }
+        int start = offset + srcBegin;
+        int end = offset + srcEnd;
+        int pos = dstBegin;
+        for (int page = start / CLOB_PAGE_SIZE; page * CLOB_PAGE_SIZE < end; page++) {
+            String pageText = getPage(page);
+            int from = Math.max(start - page * CLOB_PAGE_SIZE, 0);
+            int to = Math.min(end - page * CLOB_PAGE_SIZE, pageText.length());
+            pageText.getChars(from, to, dst, pos);
+            pos += to - from;
+        }
+    }
+
+    /**
+     * Sends the entire contents of the Clob to the given Writer, a page at a time.
+     *
+     * @param out a Writer to write the Clob value to
+     * @throws IOException if the Writer throws an exception
+     */
+    public void drainToWriter(Writer out) throws IOException {
+        init();
+        if (length > 0) {
+            int lowestPage = offset / CLOB_PAGE_SIZE;
+            int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
+            for (int page = lowestPage; page <= highestPage; page++) {
+                String pageText = getPage(page);
+                int from = (page == lowestPage ? offset - page * CLOB_PAGE_SIZE : 0);
+                int to = (page == highestPage ? offset + length - page * CLOB_PAGE_SIZE
+                        : pageText.length());
+                out.write(pageText, from, to - from);
+            }
+        }
+    }
+
     /**
      * Returns the length of this character sequence.
      *
@@ -164,7 +303,7 @@ public class ClobAccess implements CharSequence, Lazy
         if ((start == 0) && (end == length)) {
             return this;
         }
-        return new ClobAccess(results, clob, start + offset, end - start);
+        return new ClobAccess(results, pageVersion, clob, start + offset, end - start);
     }
 
     /**
@@ -190,7 +329,7 @@ public class ClobAccess implements CharSequence, Lazy
             int lowestPage = offset / CLOB_PAGE_SIZE;
             int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
             for (int page = lowestPage; page <= highestPage; page++) {
-                String pageText = (String) results.get(page);
+                String pageText = getPage(page);
                 if (page == highestPage) {
                     pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
                 }
@@ -214,7 +353,7 @@ public class ClobAccess implements CharSequence, Lazy
         int lowestPage = offset / CLOB_PAGE_SIZE;
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
         for (int page = lowestPage; page <= highestPage; page++) {
-            String pageText = (String) results.get(page);
+            String pageText = getPage(page);
             if (page == highestPage) {
                 pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
             }
@@ -268,6 +407,16 @@ public class ClobAccess implements CharSequence, Lazy
         return results;
     }
 
+    /**
+     * Returns the version of the cached pages that goes with the results object, for use by
+     * subclass constructors.
+     *
+     * @return an Integer, or null if the clob has not been replaced
+     */
+    public Integer getPageVersionWithoutInit() {
+        return pageVersion;
+    }
+
     /**
      * Returns true if this object is a subsequence of a main Clob.
      *
@@ -277,6 +426,53 @@ public class ClobAccess implements CharSequence, Lazy
         return subSequence;
     }
 
+    /**
+     * A page of a clob, as remembered by a ClobAccess object.
+     */
+    private static class Page
+    {
+        private final int number;
+        private final String text;
+
+        Page(int number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The key of a page in the shared cache.
+     */
+    private static class PageKey
+    {
+        private final ObjectStore os;
+        private final int clobId;
+        private final int version;
+        private final int page;
+
+        PageKey(ObjectStore os, int clobId, Integer version, int page) {
+            this.os = os;
+            this.clobId = clobId;
+            this.version = (version == null ? 0 : version.intValue());
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof PageKey) {
+                PageKey other = (PageKey) o;
+                return (os == other.os) && (clobId == other.clobId) && (version == other.version)
+                    && (page == other.page);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((31 * System.identityHashCode(os) + clobId) * 31 + version) * 1000003 + page;
+        }
+    }
+
     private static ThreadLocal<Map<String, ClobAccessSubclassFactory>> subclassFactoryCache =
         new ThreadLocal<Map<String, ClobAccessSubclassFactory>>() {
             @Override protected Map<String, ClobAccessSubclassFactory> initialValue() {
@@ -10,6 +10,10 @@ package org.intermine.objectstore.query;
  *
  */
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+
 import org.intermine.objectstore.ObjectStore;
 
 /**
@@ -68,6 +72,30 @@ public class PendingClob extends ClobAccess
         return text.length();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        text.getChars(srcBegin, srcEnd, dst, dstBegin);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void drainToWriter(Writer out) throws IOException {
+        out.write(text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void drainToPrintStream(PrintStream out) {
+        out.print(text);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -10,33 +10,75 @@ package org.intermine.objectstore.query;
  *
  */
 
-import org.apache.log4j.Logger;
+import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreAbstractImpl;
 import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.sql.ConnectionPurpose;
+import org.intermine.sql.Database;
 
 /**
- * A manager for the prefetch mechanism for the Results object.
+ * A manager for the prefetch mechanism for the Results object. Each ObjectStoreInterMineImpl has
+ * its own PrefetchManager, with a bounded number of service threads and a bounded queue of
+ * pending requests, so that speculative read-ahead cannot swamp the database. Other ObjectStores
+ * share a default instance.
+ * <p>
+ * Requests made by threads that actually need the data (through doRequest) never queue - they
+ * either take over a pending request, wait for a request that is already being serviced, or
+ * fetch the batch themselves. Pending prefetch requests hold only a weak reference to the
+ * ResultsBatches object, so a request for Results that nobody can see any more is dropped
+ * rather than executed.
  *
  * @author Matthew Wakeling
  */
-public final class PrefetchManager
+public class PrefetchManager
 {
-    private PrefetchManager() {
-    }
-
     private static final Logger LOG = Logger.getLogger(PrefetchManager.class);
-    /** Pending set of requests - always accessed inside a synchronise on sync. */
-    protected static Set<Request> pending = new HashSet<Request>();
-    /** Set of requests currently being serviced. This Set is not accessed inside a block
-     * synchronised on any global object, so it must be able to handle concurrent access. */
-    protected static Set<Request> serviced = Collections.synchronizedSet(new HashSet<Request>());
-    protected static int serviceThreads = 0;
-    private static Object sync = new Object();
+
+    /** Priority of a read-ahead request for the batch after one that has just been read */
+    public static final int PRIORITY_READ_AHEAD = 0;
+    /** Priority of a request for a batch that is known to be wanted soon */
+    public static final int PRIORITY_HIGH = 10;
+
+    /** The default maximum number of service threads */
+    public static final int DEFAULT_MAX_THREADS = 10;
+    /** The default maximum number of pending requests */
+    public static final int DEFAULT_MAX_PENDING = 200;
 
     protected static final int LOADING = 3;
+    private static final int LOG_INTERVAL = 1000;
+
+    private static PrefetchManager defaultInstance = null;
+
+    private final String name;
+    private final int maxThreads;
+    private final int maxPending;
+
+    /** Pending requests - always accessed inside a synchronise on this. */
+    protected PriorityQueue<Request> pending = new PriorityQueue<Request>();
+    /** Set of requests currently being serviced. This Set is not always accessed inside a block
+     * synchronised on this, so it must be able to handle concurrent access. */
+    protected Set<Request> serviced = Collections.synchronizedSet(new HashSet<Request>());
+    protected int serviceThreads = 0;
+    private int idleThreads = 0;
+    private boolean shutdown = false;
+    private long sequence = 0;
+
+    private long requestsAdded = 0;
+    private long requestsDropped = 0;
+    private long requestsCancelled = 0;
+    private long requestsTakenOver = 0;
+    private long prefetchesDone = 0;
+    private long prefetchesFailed = 0;
+    private long prefetchHits = 0;
+    private long waits = 0;
 
     /*
      * This class provides methods for cancelling requests, so here is an explanation of how this
@@ -81,53 +123,119 @@ public final class PrefetchManager
      */
 
     /**
-     * Adds a request to the Set of pending requests, and wakes up a Thread to handle it.
+     * Creates a new PrefetchManager.
+     *
+     * @param name a name for this manager, used for thread names and log messages
+     * @param maxThreads the maximum number of service threads to run prefetches with
+     * @param maxPending the maximum number of requests to hold before dropping the least
+     * important
+     */
+    public PrefetchManager(String name, int maxThreads, int maxPending) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be at least one, not "
+                    + maxThreads);
+        }
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending must be at least one, not "
+                    + maxPending);
+        }
+        this.name = name;
+        this.maxThreads = maxThreads;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Returns the PrefetchManager shared by all ObjectStores that do not have their own.
+     *
+     * @return a PrefetchManager
+     */
+    public static synchronized PrefetchManager getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = new PrefetchManager("default", DEFAULT_MAX_THREADS,
+                    DEFAULT_MAX_PENDING);
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Returns the PrefetchManager that should be used to fetch batches for the given ObjectStore.
+     *
+     * @param os an ObjectStore
+     * @return a PrefetchManager
+     */
+    public static PrefetchManager getInstance(ObjectStore os) {
+        if (os instanceof ObjectStoreAbstractImpl) {
+            PrefetchManager retval = ((ObjectStoreAbstractImpl) os).getPrefetchManager();
+            if (retval != null) {
+                return retval;
+            }
+        }
+        return getDefault();
+    }
+
+    /**
+     * Adds a request to the queue of pending requests, and wakes up a Thread to handle it.
      *
      * @param result a ResultsBatches object that is making the request
      * @param batchNo the batch number to be fetched
      * @param optimise true if queries should be optimised
      * @param explain true if this method should explain each query first
+     * @param priority the priority of the request - higher numbers are serviced first
      */
-    public static void addRequest(ResultsBatches result, int batchNo, boolean optimise,
-            boolean explain) {
-        Request request = new Request(result, batchNo, optimise, explain);
-        synchronized (sync) {
+    public void addRequest(ResultsBatches result, int batchNo, boolean optimise,
+            boolean explain, int priority) {
+        Request request = new Request(result, batchNo, optimise, explain, priority);
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
             synchronized (result) {
                 // Synchronise on BOTH locks, so we can muck about with anything.
-                if (!result.batches.containsKey(new Integer(batchNo))) {
-                    // The request has not been done.
-                    if (!serviced.contains(request)) {
-                        // And it isn't currently being serviced.
-                        //if (!pending.contains(request)) {
-                        //    LOG.debug("addRequest - adding request:                          "
-                        //            + request);
-                        //}
-                        pending.add(request);
-                        if ((pending.size() + serviced.size()) > (serviceThreads * LOADING)) {
-                            // There are too many requests for the servicing threads.
-                            Thread newThread = new ServiceThread();
-                            newThread.setDaemon(true);
-                            newThread.setName("PrefetchManager ServiceThread");
-                            newThread.start();
-                            serviceThreads++;
-                            LOG.info("addRequest - creating new ServiceThread. We now have "
-                                    + serviceThreads);
-                        } else {
-                            // There may or may not be a service thread waiting. If not, a service
-                            // thread will soon finish a request.
-                            sync.notify();
-                        }
-                    //} else {
-                        //LOG.debug("addRequest - the request is currently being serviced: "
-                        //        + request);
-                    }
-                //} else {
-                    //LOG.debug("addRequest - the request has already been done:       " + request);
+                if (result.batches.containsKey(new Integer(batchNo))
+                        || serviced.contains(request) || pending.contains(request)) {
+                    // The request has been done, or is being done, or is already queued.
+                    return;
                 }
             }
+            request.sequence = sequence++;
+            pending.add(request);
+            requestsAdded++;
+            if (pending.size() > maxPending) {
+                dropLeastImportant();
+            }
+            if ((idleThreads == 0) && (serviceThreads < maxThreads)
+                    && ((pending.size() + serviced.size()) > (serviceThreads * LOADING))) {
+                // There are too many requests for the servicing threads.
+                serviceThreads++;
+                Thread newThread = new ServiceThread();
+                newThread.setDaemon(true);
+                newThread.setName("PrefetchManager " + name + " ServiceThread " + serviceThreads);
+                newThread.start();
+                LOG.info("addRequest - creating new ServiceThread for " + name + ". We now have "
+                        + serviceThreads);
+            } else {
+                // There may or may not be a service thread waiting. If not, a service thread
+                // will soon finish a request.
+                notify();
+            }
         }
     }
 
+    /**
+     * Removes the pending request that would be serviced last. Must be called inside a
+     * synchronise on this.
+     */
+    private void dropLeastImportant() {
+        Request worst = null;
+        for (Request request : pending) {
+            if ((worst == null) || (request.compareTo(worst) > 0)) {
+                worst = request;
+            }
+        }
+        pending.remove(worst);
+        requestsDropped++;
+    }
+
     /**
      * Returns when the given request is completed. If the given request is not already being
      * serviced, then this method will start servicing the request in the current thread.
@@ -140,9 +248,9 @@ public final class PrefetchManager
      * @throws ObjectStoreException if an error occurs in the underlying ObjectStore
      * @throws IndexOutOfBoundsException if the batch is off the end of the results
      */
-    public static List<Object> doRequest(ResultsBatches result, int batchNo, boolean optimise,
+    public List<Object> doRequest(ResultsBatches result, int batchNo, boolean optimise,
             boolean explain) throws ObjectStoreException {
-        return doRequest(new Request(result, batchNo, optimise, explain));
+        return doRequest(new Request(result, batchNo, optimise, explain, PRIORITY_HIGH), result);
     }
 
     /**
@@ -150,16 +258,19 @@ public final class PrefetchManager
      * current thread fetches it.
      *
      * @param request a Request object
+     * @param result the ResultsBatches object referred to by the request, held strongly by the
+     * caller for the duration
      * @return a List containing the contents of the batch
      * @throws ObjectStoreException if an error occurs in the underlying ObjectStore
      * @throws IndexOutOfBoundsException if the batch is off the end of the results
      */
-    protected static List<Object> doRequest(Request request) throws ObjectStoreException {
+    protected List<Object> doRequest(Request request, ResultsBatches result)
+        throws ObjectStoreException {
         boolean needToWait = false;
         List<Object> retval = null;
 
-        synchronized (sync) {
-            synchronized (request.result) {
+        synchronized (this) {
+            synchronized (result) {
                 // Synchronise on BOTH locks, so we can muck about with anything.
                 // Note, that to avoid deadlocks, we should never lock these two in the opposite
                 // order, or call wait on either of these locks where a notify needs to obtain
@@ -167,29 +278,24 @@ public final class PrefetchManager
                 // We need both locks, because we need to exclude the possibility that someone
                 // finishes a request between us checking to see if it is already fetched, and
                 // checking if we need to wait for someone to finish fetching it.
-                retval = request.result.batches.get(new Integer(request.batchNo));
+                retval = result.batches.get(new Integer(request.batchNo));
                 if (retval != null) {
                     // The batch has already been fetched.
-                    //LOG.debug("doRequest - the request has already been done:        " + request);
                     return retval;
                 }
-                if (pending.contains(request)) {
-                    // The request is pending.
-                    // If it is pending, then we wish it to be serviced by US. Therefore, we
-                    // need to move it to serviced state and do it.
-                    // The request is not being serviced. We take over.
+                if (pending.remove(request)) {
+                    // The request is pending. A thread that actually needs the data takes
+                    // priority over the service threads, so we take it over and do it ourselves.
                     serviced.add(request);
-                    pending.remove(request);
-                    //LOG.debug("doRequest - the request was pending:                  " + request);
+                    requestsTakenOver++;
                 } else if (serviced.contains(request)) {
                     // The request is being serviced. We just need to wait.
                     needToWait = true;
-                    //LOG.debug("doRequest - the request is currently being serviced:  " + request);
+                    waits++;
                 } else {
                     // The request has never been seen before. Therefore, we should add it to the
                     // serviced set, and handle it.
                     serviced.add(request);
-                    //LOG.debug("doRequest - new request:                              " + request);
                 }
             }
         }
@@ -205,15 +311,14 @@ public final class PrefetchManager
         //     state while we were in the synchronised block.
 
         if (needToWait) {
-            synchronized (request.result) {
+            synchronized (result) {
                 // We are synchronised. Now, no thread can report that the request is finished until
                 // we release the lock.
                 // First, check that someone didn't finish during the GAP.
                 if (serviced.contains(request)) {
                     // Noone finished, so we can wait for that to happen.
-                    //LOG.debug("doRequest - waiting for another thread to finish:     " + request);
                     try {
-                        request.result.wait();
+                        result.wait();
                     } catch (InterruptedException e) {
                         // Ignore interruption.
                     }
@@ -222,7 +327,7 @@ public final class PrefetchManager
                 // removed the request from serviced. Either way, we can't be absolutely sure that
                 // result.batches contains the batch we want, for several reasons. So we recurse.
                 // Reasons:
-                // 1. request.result.batches may be a WeakHashMap, in which case the batch may have
+                // 1. result.batches may be a WeakHashMap, in which case the batch may have
                 //     been removed from it by the garbage collector since it was added.
                 // 2. The object we are waiting for is a result. A notify that we might have
                 //     received could have been for a different request.
@@ -232,17 +337,16 @@ public final class PrefetchManager
                 //     request. This allows threads waiting to do the operation themselves, and
                 //     therefore return back the correct exception.
             }
-            retval = doRequest(request);
+            retval = doRequest(request, result);
         } else {
             try {
-                //LOG.debug("doRequest - servicing request:                        " + request);
                 // Now, we can service this request in a normal manner, outside all locks.
-                retval = request.result.fetchBatchFromObjectStore(request.batchNo, request.optimise,
+                retval = result.fetchBatchFromObjectStore(request.batchNo, request.optimise,
                         request.explain);
             } finally {
                 // And then report that it is finished, inside a lock, even if we did get an
                 // exception.
-                reportDone(request);
+                reportDone(request, result);
             }
         }
 
@@ -253,106 +357,212 @@ public final class PrefetchManager
      * Allows a system to report that it has finished servicing a particular request.
      *
      * @param request the request that has been done
+     * @param result the ResultsBatches object referred to by the request
      */
-    protected static void reportDone(Request request) {
-        synchronized (request.result) {
-            //LOG.debug("reportDone - finished request:                        " + request);
+    protected void reportDone(Request request, ResultsBatches result) {
+        synchronized (result) {
             serviced.remove(request);
-            request.result.notifyAll();
+            result.notifyAll();
         }
     }
 
     /**
-     * Returns a request for a thread to service.
+     * Records that a batch fetched by a service thread was later used.
+     */
+    protected synchronized void recordHit() {
+        prefetchHits++;
+    }
+
+    /**
+     * Returns a request for a thread to service, or null if this manager has been shut down.
+     * Requests for ResultsBatches objects that have been garbage collected are discarded.
      *
      * @return a request to service
      */
-    protected static Request getRequest() {
-        Request retval;
-        synchronized (sync) {
-            while (pending.isEmpty()) {
-                // There are no requests to get - wait for a notify.
-                //LOG.debug("getRequest - waiting for a request");
+    protected synchronized Request getRequest() {
+        while (!shutdown) {
+            Request retval = pending.poll();
+            if (retval == null) {
+                idleThreads++;
                 try {
-                    sync.wait();
+                    wait();
                 } catch (InterruptedException e) {
                     // Ignore interruption.
+                } finally {
+                    idleThreads--;
                 }
+            } else if (retval.getResult() == null) {
+                requestsCancelled++;
+            } else {
+                // Nothing checks whether the batch has been fetched without also checking
+                // serviced inside a synchronise on this, so we only need to move the request
+                // into serviced here.
+                serviced.add(retval);
+                return retval;
             }
-            // Get a request from the pending set. We know there is something in there, because we
-            // just got false from pending.isEmpty, and we have the lock on sync, and nothing
-            // touches pending unless they have that lock.
-            retval = pending.iterator().next();
-            //LOG.debug("getRequest - got request:                             " + retval);
-            // Now we have a request, we could synchronise by its result - other things look
-            // for the request in serviced - namely:
-            // 1. addRequest doesn't add a request to pending if it already in serviced. However,
-            //     that doesn't matter, because it is already synchronised on sync. Otherwise, you
-            //     might have had the situation where a request appears in both pending and serviced
-            //     sets.
-            // 2. doRequest also moves items from pending to serviced, but that doesn't matter
-            //     because it is also synchronised on sync. Otherwise you could have two threads
-            //     servicing the same request, which could possibly leave other requests not being
-            //     serviced while a service thread sleeps.
-            // 3. doRequest decides whether to wait on whether there is a request in serviced, but
-            //     this also does not matter, as it can only be broken by a thread removing a
-            //     request from serviced outside a synchronised block.
-            // 4. reportDone removes an entry from serviced, which does not matter, because it will
-            //     only break something that is broken by things being removed from serviced outside
-            //     a sync lock.
-            // Basically, we never check to see if the batch has already been fetched before
-            // checking to see if anyone is fetching it - we only put the request in serviced.
-            // Therefore, we do not need to synchronise by request.result here.
-
-            serviced.add(retval);
-            pending.remove(retval);
         }
-        return retval;
+        return null;
+    }
+
+    /**
+     * Stops the service threads of this manager once they have finished their current request,
+     * and discards all pending requests. Requests made through doRequest continue to work.
+     */
+    public synchronized void shutdown() {
+        if (!shutdown) {
+            shutdown = true;
+            pending.clear();
+            notifyAll();
+            LOG.info("Shutting down " + this);
+        }
+    }
+
+    /**
+     * Returns the number of prefetched batches that were subsequently used, divided by the number
+     * of batches prefetched.
+     *
+     * @return a double between zero and one
+     */
+    public synchronized double getHitRate() {
+        return (prefetchesDone == 0 ? 0.0 : ((double) prefetchHits) / prefetchesDone);
+    }
+
+    /**
+     * Returns the number of service threads currently running.
+     *
+     * @return an int
+     */
+    public synchronized int getServiceThreadCount() {
+        return serviceThreads;
+    }
+
+    /**
+     * Returns the number of requests waiting to be serviced.
+     *
+     * @return an int
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
     }
 
-    private static class Request
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "PrefetchManager " + name + " (threads: " + serviceThreads + "/" + maxThreads
+            + ", pending: " + pending.size() + "/" + maxPending + ", requests: " + requestsAdded
+            + ", dropped: " + requestsDropped + ", cancelled: " + requestsCancelled
+            + ", taken over: " + requestsTakenOver + ", waited for: " + waits + ", prefetched: "
+            + prefetchesDone + ", failed: " + prefetchesFailed + ", used: " + prefetchHits + ")";
+    }
+
+    private synchronized void recordDone(boolean success) {
+        if (success) {
+            prefetchesDone++;
+        } else {
+            prefetchesFailed++;
+        }
+        if ((prefetchesDone + prefetchesFailed) % LOG_INTERVAL == 0) {
+            LOG.info(toString());
+        }
+    }
+
+    /**
+     * A unit of work for the PrefetchManager - a batch of a ResultsBatches object. Two requests
+     * are equal if they refer to the same batch of the same ResultsBatches object.
+     */
+    protected static class Request implements Comparable<Request>
     {
-        private ResultsBatches result;
+        private WeakReference<ResultsBatches> result;
+        private int resultHashCode;
         private int batchNo;
         private boolean optimise;
         private boolean explain;
+        private int priority;
+        private long sequence = 0;
 
-        public Request(ResultsBatches result, int batchNo, boolean optimise, boolean explain) {
-            this.result = result;
+        public Request(ResultsBatches result, int batchNo, boolean optimise, boolean explain,
+                int priority) {
+            this.result = new WeakReference<ResultsBatches>(result);
+            this.resultHashCode = System.identityHashCode(result);
             this.batchNo = batchNo;
             this.optimise = optimise;
             this.explain = explain;
+            this.priority = priority;
+        }
+
+        /**
+         * Returns the ResultsBatches object, or null if it has been garbage collected.
+         *
+         * @return a ResultsBatches object
+         */
+        public ResultsBatches getResult() {
+            return result.get();
         }
 
         @Override
         public int hashCode() {
-            return 2 * result.query.hashCode() + 3 * batchNo;
+            return 2 * resultHashCode + 3 * batchNo;
         }
 
         @Override
         public boolean equals(Object obj) {
-            return (result == ((Request) obj).result) && (((Request) obj).batchNo == batchNo);
+            if (obj instanceof Request) {
+                Request other = (Request) obj;
+                if (other == this) {
+                    return true;
+                }
+                ResultsBatches thisResult = result.get();
+                return (thisResult != null) && (thisResult == other.result.get())
+                    && (other.batchNo == batchNo);
+            }
+            return false;
+        }
+
+        /**
+         * Orders requests so that those to be serviced first come first - higher priority, and
+         * then the oldest.
+         *
+         * {@inheritDoc}
+         */
+        public int compareTo(Request other) {
+            if (priority != other.priority) {
+                return (priority > other.priority ? -1 : 1);
+            }
+            return (sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1));
         }
 
         @Override
         public String toString() {
-            return "Result " + result.query.hashCode() + ", batch " + batchNo;
+            return "Result " + resultHashCode + ", batch " + batchNo + ", priority " + priority;
         }
     }
 
-    private static class ServiceThread extends Thread
+    private class ServiceThread extends Thread
     {
         @Override
         public void run() {
+            Database.setThreadPurpose(ConnectionPurpose.PREFETCH);
             try {
-                while (true) {
-                    Request request = PrefetchManager.getRequest();
-                    //LOG.debug("ServiceThread.run - servicing request                 " + request);
+                Request request;
+                while ((request = getRequest()) != null) {
+                    ResultsBatches result = request.getResult();
+                    if (result == null) {
+                        // Collected between getRequest and now - nobody will wait for this.
+                        synchronized (PrefetchManager.this) {
+                            serviced.remove(request);
+                            requestsCancelled++;
+                        }
+                        continue;
+                    }
+                    boolean success = false;
                     try {
                         // Now, we can service this request in a normal manner, outside all locks.
-                        @SuppressWarnings("unused")
-                        List<Object> batch = request.result.fetchBatchFromObjectStore(request
-                                .batchNo, request.optimise, request.explain);
+                        result.fetchBatchFromObjectStore(request.batchNo, request.optimise,
+                                request.explain);
+                        result.markPrefetched(request.batchNo);
+                        success = true;
                     } catch (Exception e) {
                         LOG.warn("ServiceThread.run - Received exception                " + request
                                 + " " + e);
@@ -361,20 +571,25 @@ public final class PrefetchManager
                     } finally {
                         // And then report that it is finished, inside a lock, even if we did get an
                         // exception.
-                        reportDone(request);
+                        reportDone(request, result);
+                        recordDone(success);
                     }
                 }
             } catch (Error e) {
                 LOG.error("Failure of PrefetchManager service thread with error", e);
                 throw e;
             } finally {
-                // Like I said, we REALLY NEED to know if something has gone wrong here, as it is a
-                // BIG BAD BUG.
-                LOG.error("ServiceThread died unexpectedly. PrefetchManager may stop working");
-                // And decrement the count of available ServiceThreads.
-                PrefetchManager.serviceThreads--;
+                synchronized (PrefetchManager.this) {
+                    if (!shutdown) {
+                        // Like I said, we REALLY NEED to know if something has gone wrong here, as
+                        // it is a BIG BAD BUG.
+                        LOG.error("ServiceThread died unexpectedly. PrefetchManager may stop "
+                                + "working");
+                    }
+                    // And decrement the count of available ServiceThreads.
+                    serviceThreads--;
+                }
             }
         }
     }
 }
-
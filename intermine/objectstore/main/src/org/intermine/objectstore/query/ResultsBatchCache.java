@@ -0,0 +1,466 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.intermine.model.FastPathObject;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreAbstractImpl;
+import org.intermine.objectstore.proxy.Lazy;
+import org.intermine.util.TypeUtil;
+
+/**
+ * A cache of result batches shared by all the Results objects of an ObjectStore, bounded by an
+ * estimate of the number of bytes the batches occupy. Each ResultsBatches object sees its own
+ * batches through a Map returned by newBatchMap(), while the byte budget is enforced across all
+ * of them. When the budget is exceeded, batches are evicted in CLOCK order - a batch that has
+ * been read since the eviction hand last passed it gets a second chance.
+ *
+ * Unlike the soft-reference maps this replaces, the cache is never flushed all at once by the
+ * garbage collector, so a full GC does not cause every Results object to re-run its queries.
+ */
+public class ResultsBatchCache implements ResultsBatchCacheMBean
+{
+    private static final Logger LOG = Logger.getLogger(ResultsBatchCache.class);
+
+    /** The proportion of the maximum heap size used by the default byte budget */
+    public static final double DEFAULT_HEAP_FRACTION = 0.2;
+
+    // Rough object sizes for a 64-bit JVM, used by estimateSize()
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 8;
+    private static final int FIELD_SIZE = 24;
+    private static final int SAMPLE_SIZE = 32;
+
+    private static ResultsBatchCache defaultInstance = null;
+
+    private final String name;
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicInteger liveEntries = new AtomicInteger();
+    private final AtomicInteger deadEntries = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final ConcurrentLinkedQueue<CachedBatch> clock
+        = new ConcurrentLinkedQueue<CachedBatch>();
+    private final ConcurrentMap<Class<?>, String[]> fieldNames
+        = new ConcurrentHashMap<Class<?>, String[]>();
+
+    /**
+     * Constructs a new ResultsBatchCache.
+     *
+     * @param name a name for the cache, used in log messages and JMX
+     * @param maxBytes the maximum estimated size of the cached batches in bytes
+     */
+    public ResultsBatchCache(String name, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative: " + maxBytes);
+        }
+        this.name = name;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the default byte budget, which is a fraction of the maximum heap size.
+     *
+     * @return a number of bytes
+     */
+    public static long defaultMaxBytes() {
+        return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION);
+    }
+
+    /**
+     * Returns the ResultsBatchCache shared by ObjectStores that do not have their own.
+     *
+     * @return a ResultsBatchCache
+     */
+    public static synchronized ResultsBatchCache getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = new ResultsBatchCache("default", defaultMaxBytes());
+            defaultInstance.register();
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Returns the ResultsBatchCache that should hold batches for the given ObjectStore.
+     *
+     * @param os an ObjectStore
+     * @return a ResultsBatchCache
+     */
+    public static ResultsBatchCache getInstance(ObjectStore os) {
+        if (os instanceof ObjectStoreAbstractImpl) {
+            ResultsBatchCache retval = ((ObjectStoreAbstractImpl) os).getResultsBatchCache();
+            if (retval != null) {
+                return retval;
+            }
+        }
+        return getDefault();
+    }
+
+    /**
+     * Registers this cache with the platform MBean server, under the name
+     * org.intermine:type=ResultsBatchCache,name=&lt;name&gt;. Failure is logged and ignored.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("org.intermine:type=ResultsBatchCache,name="
+                    + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Could not register ResultsBatchCache " + name + " with JMX", e);
+        }
+    }
+
+    /**
+     * Returns a new Map from batch number to batch for a single ResultsBatches object, backed by
+     * this cache.
+     *
+     * @return a Map
+     */
+    public Map<Integer, List<Object>> newBatchMap() {
+        return new BatchMap();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getBatchCount() {
+        return liveEntries.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        CachedBatch entry;
+        while ((entry = clock.poll()) != null) {
+            if (entry.owner.entries.remove(entry.batchNo, entry)) {
+                release(entry);
+            }
+        }
+        deadEntries.set(0);
+    }
+
+    /**
+     * Estimates the number of bytes used by a batch of rows, by looking at a sample of the rows.
+     * Rows are usually ResultsRows, but may be plain objects.
+     *
+     * @param rows a batch
+     * @return an estimated number of bytes
+     */
+    public long estimateSize(List<Object> rows) {
+        int size = rows.size();
+        long retval = OBJECT_OVERHEAD + ((long) size) * REFERENCE_SIZE;
+        if (size == 0) {
+            return retval;
+        }
+        int step = Math.max(1, size / SAMPLE_SIZE);
+        long sampled = 0;
+        int sampleCount = 0;
+        for (int i = 0; i < size; i += step) {
+            sampled += estimateRowSize(rows.get(i));
+            sampleCount++;
+        }
+        return retval + (sampled * size) / sampleCount;
+    }
+
+    private long estimateRowSize(Object row) {
+        if (row instanceof List<?>) {
+            List<?> list = (List<?>) row;
+            long retval = OBJECT_OVERHEAD * 2 + ((long) list.size()) * REFERENCE_SIZE;
+            for (Object o : list) {
+                retval += estimateValueSize(o);
+            }
+            return retval;
+        }
+        return estimateValueSize(row);
+    }
+
+    private long estimateValueSize(Object o) {
+        if (o == null) {
+            return 0;
+        } else if (o instanceof String) {
+            return OBJECT_OVERHEAD * 3 + 2 * ((String) o).length();
+        } else if ((o instanceof Number) || (o instanceof Boolean) || (o instanceof Date)) {
+            return OBJECT_OVERHEAD + REFERENCE_SIZE;
+        } else if (o instanceof FastPathObject) {
+            // Batches are held strongly, so the contents of the fields have to be counted, or
+            // objects with long strings would let the cache grow far beyond its budget.
+            FastPathObject fpo = (FastPathObject) o;
+            String[] names = getFieldNames(o.getClass());
+            long retval = OBJECT_OVERHEAD + ((long) names.length) * REFERENCE_SIZE;
+            for (String fieldName : names) {
+                try {
+                    // getFieldProxy() does not load lazy references and collections
+                    retval += estimateFieldSize(fpo.getFieldProxy(fieldName));
+                } catch (IllegalAccessException e) {
+                    retval += FIELD_SIZE;
+                }
+            }
+            return retval;
+        }
+        return OBJECT_OVERHEAD * 2;
+    }
+
+    private long estimateFieldSize(Object value) {
+        if ((value == null) || (value instanceof FastPathObject)) {
+            // Objects referred to are counted where they appear in a row, if at all
+            return 0;
+        } else if (value instanceof Lazy) {
+            return OBJECT_OVERHEAD * 3;
+        } else if (value instanceof Collection<?>) {
+            return OBJECT_OVERHEAD * 4 + ((long) ((Collection<?>) value).size()) * FIELD_SIZE;
+        }
+        return estimateValueSize(value);
+    }
+
+    private String[] getFieldNames(Class<?> c) {
+        String[] retval = fieldNames.get(c);
+        if (retval == null) {
+            Set<String> names = TypeUtil.getFieldInfos(c).keySet();
+            retval = names.toArray(new String[names.size()]);
+            fieldNames.put(c, retval);
+        }
+        return retval;
+    }
+
+    private void add(CachedBatch entry) {
+        liveEntries.incrementAndGet();
+        usedBytes.addAndGet(entry.bytes);
+        clock.add(entry);
+        evict();
+    }
+
+    private void release(CachedBatch entry) {
+        entry.rows = null;
+        liveEntries.decrementAndGet();
+        usedBytes.addAndGet(-entry.bytes);
+        // Released entries stay in the clock queue until the hand reaches them. Purge them if
+        // they start to outnumber the live ones, so that the queue cannot grow without bound.
+        int dead = deadEntries.incrementAndGet();
+        if ((dead > 1024) && (dead > liveEntries.get())) {
+            synchronized (clock) {
+                if (deadEntries.get() == dead) {
+                    Iterator<CachedBatch> iter = clock.iterator();
+                    while (iter.hasNext()) {
+                        if (iter.next().rows == null) {
+                            iter.remove();
+                        }
+                    }
+                    deadEntries.set(0);
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        if (usedBytes.get() <= maxBytes) {
+            return;
+        }
+        synchronized (clock) {
+            // Each live entry can be given at most one second chance per pass of the hand.
+            int budget = 2 * clock.size() + 1;
+            while ((usedBytes.get() > maxBytes) && (budget-- > 0)) {
+                CachedBatch entry = clock.poll();
+                if (entry == null) {
+                    return;
+                }
+                if (entry.rows == null) {
+                    deadEntries.decrementAndGet();
+                } else if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.add(entry);
+                } else if (entry.owner.entries.remove(entry.batchNo, entry)) {
+                    evictions.incrementAndGet();
+                    release(entry);
+                    deadEntries.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * A cached batch.
+     */
+    private static class CachedBatch
+    {
+        final BatchMap owner;
+        final Integer batchNo;
+        final long bytes;
+        volatile List<Object> rows;
+        volatile boolean referenced = false;
+
+        CachedBatch(BatchMap owner, Integer batchNo, List<Object> rows, long bytes) {
+            this.owner = owner;
+            this.batchNo = batchNo;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The batches of a single ResultsBatches object. Batches may disappear from this map at any
+     * time, when they are evicted to make room for others.
+     */
+    private class BatchMap extends AbstractMap<Integer, List<Object>>
+    {
+        final ConcurrentMap<Integer, CachedBatch> entries
+            = new ConcurrentHashMap<Integer, CachedBatch>();
+
+        @Override
+        public List<Object> get(Object key) {
+            CachedBatch entry = entries.get(key);
+            List<Object> retval = (entry == null ? null : entry.rows);
+            if (retval == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            entry.referenced = true;
+            hits.incrementAndGet();
+            return retval;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            CachedBatch entry = entries.get(key);
+            return (entry != null) && (entry.rows != null);
+        }
+
+        @Override
+        public List<Object> put(Integer key, List<Object> rows) {
+            long bytes = estimateSize(rows);
+            if (bytes > maxBytes) {
+                // Too big to cache at all. Callers always have the rows to hand anyway.
+                LOG.info("Not caching batch of " + rows.size() + " rows in " + name
+                        + " - estimated size " + bytes + " bytes is larger than the cache");
+                return remove(key);
+            }
+            CachedBatch entry = new CachedBatch(this, key, rows, bytes);
+            CachedBatch old = entries.put(key, entry);
+            List<Object> retval = null;
+            if (old != null) {
+                retval = old.rows;
+                release(old);
+            }
+            add(entry);
+            return retval;
+        }
+
+        @Override
+        public List<Object> remove(Object key) {
+            CachedBatch old = entries.remove(key);
+            if (old == null) {
+                return null;
+            }
+            List<Object> retval = old.rows;
+            release(old);
+            return retval;
+        }
+
+        @Override
+        public void clear() {
+            for (Integer key : new HashSet<Integer>(entries.keySet())) {
+                remove(key);
+            }
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public Set<Integer> keySet() {
+            return entries.keySet();
+        }
+
+        @Override
+        public Collection<List<Object>> values() {
+            return snapshot().values();
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, List<Object>>> entrySet() {
+            return snapshot().entrySet();
+        }
+
+        private Map<Integer, List<Object>> snapshot() {
+            Map<Integer, List<Object>> retval = new HashMap<Integer, List<Object>>();
+            for (Map.Entry<Integer, CachedBatch> mapEntry : entries.entrySet()) {
+                List<Object> rows = mapEntry.getValue().rows;
+                if (rows != null) {
+                    retval.put(mapEntry.getKey(), rows);
+                }
+            }
+            return retval;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * JMX view of the occupancy of a ResultsBatchCache.
+ */
+public interface ResultsBatchCacheMBean
+{
+    /**
+     * Returns the maximum estimated size of the batches held, in bytes.
+     *
+     * @return a number of bytes
+     */
+    long getMaxBytes();
+
+    /**
+     * Returns the estimated size of the batches currently held, in bytes.
+     *
+     * @return a number of bytes
+     */
+    long getUsedBytes();
+
+    /**
+     * Returns the number of batches currently held.
+     *
+     * @return an int
+     */
+    int getBatchCount();
+
+    /**
+     * Returns the number of batch lookups that found the batch in the cache.
+     *
+     * @return a long
+     */
+    long getHits();
+
+    /**
+     * Returns the number of batch lookups that did not find the batch in the cache.
+     *
+     * @return a long
+     */
+    long getMisses();
+
+    /**
+     * Returns the number of batches evicted to stay inside the byte budget.
+     *
+     * @return a long
+     */
+    long getEvictions();
+
+    /**
+     * Removes all batches from the cache.
+     */
+    void clear();
+}
@@ -13,13 +13,14 @@ package org.intermine.objectstore.query;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.intermine.objectstore.DataChangedException;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
-import org.intermine.util.CacheMap;
 
 /**
  * Class holding the data batches for the Results object. Possibly multiple Results objects with
@@ -44,9 +45,11 @@ public class ResultsBatches
 
     protected ResultsInfo info;
 
-    // A map of batch number against a List of ResultsRows
-    protected Map<Integer, List<Object>> batches = Collections.synchronizedMap(
-            new CacheMap<Integer, List<Object>>("Results batches"));
+    // A map of batch number against a List of ResultsRows, backed by the ObjectStore's
+    // ResultsBatchCache. Batches may be evicted from it at any time.
+    protected Map<Integer, List<Object>> batches;
+    // The batch numbers that were fetched by the PrefetchManager and have not been used yet
+    protected Set<Integer> prefetchedBatches = Collections.synchronizedSet(new HashSet<Integer>());
 
     /**
      * Construct a new ResultsBatches object. This is generally only called by the Results object.
@@ -59,6 +62,7 @@ public class ResultsBatches
         this.query = query;
         this.os = os;
         this.sequence = sequence;
+        this.batches = ResultsBatchCache.getInstance(os).newBatchMap();
     }
 
     /**
@@ -118,10 +122,21 @@ public class ResultsBatches
      */
     public void prefetch(int batchNo, boolean optimise, boolean explain) {
         if (!batches.containsKey(new Integer(batchNo))) {
-            PrefetchManager.addRequest(this, batchNo, optimise, explain);
+            PrefetchManager.getInstance(os).addRequest(this, batchNo, optimise, explain,
+                    PrefetchManager.PRIORITY_READ_AHEAD);
         }
     }
 
+    /**
+     * Records that the given batch was fetched by the PrefetchManager rather than by a thread
+     * that needed it, so that the usefulness of prefetching can be measured.
+     *
+     * @param batchNo the batch number
+     */
+    protected void markPrefetched(int batchNo) {
+        prefetchedBatches.add(new Integer(batchNo));
+    }
+
     /**
      * Gets a range of rows from within a batch
      *
@@ -159,9 +174,13 @@ public class ResultsBatches
      */
     protected List<Object> getBatch(int batchNo, boolean optimise, boolean explain)
         throws ObjectStoreException {
-        List<Object> retval = batches.get(new Integer(batchNo));
+        Integer key = new Integer(batchNo);
+        List<Object> retval = batches.get(key);
         if (retval == null) {
-            retval = PrefetchManager.doRequest(this, batchNo, optimise, explain);
+            retval = PrefetchManager.getInstance(os).doRequest(this, batchNo, optimise, explain);
+        }
+        if (prefetchedBatches.remove(key)) {
+            PrefetchManager.getInstance(os).recordHit();
         }
         return retval;
     }
@@ -0,0 +1,28 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Iterator;
+
+/**
+ * A single forward pass over the rows of a Query, as returned by ObjectStore.stream(). Unlike
+ * Results, rows are not kept once they have been returned, and the stream may hold database
+ * resources until it is exhausted or closed. Errors from the ObjectStore are thrown as
+ * RuntimeExceptions from hasNext() and next(), after which the stream is closed.
+ */
+public interface ResultsStream extends Iterator<ResultsRow<Object>>
+{
+    /**
+     * Releases any resources held by this stream. It is safe to call this more than once, and it
+     * is called automatically when the last row has been read.
+     */
+    void close();
+}
@@ -0,0 +1,419 @@
+package org.intermine.sql;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The connections that a Database has handed out for one ConnectionPurpose. A partition may have
+ * a limit on the number of threads holding its connections at once, in which case requests from
+ * other threads wait until a thread has closed all of its connections. A thread that already
+ * holds a connection from the partition can always open more without waiting, as code that
+ * needs a second connection while holding one would otherwise deadlock when every thread in the
+ * partition did the same. The partition records how long each request waited, and keeps track of
+ * every open connection, so that connections that are held for too long can be found.
+ *
+ * Connections are handed out wrapped in a proxy that implements all the interfaces of the
+ * underlying connection, so that the partition knows when they are closed.
+ */
+public class ConnectionPartition implements ConnectionPartitionMBean
+{
+    private static final int BUCKETS = 40;
+
+    private final ConnectionPurpose purpose;
+    private final int limit;
+    private final Semaphore permits;
+    private final boolean trackLeaks;
+    private final Set<Tracker> open
+        = Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+    /** The number of connections open or being opened by each thread holding a permit */
+    private final Map<Thread, int[]> holders = new HashMap<Thread, int[]>();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalHeldNanos = new AtomicLong();
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Constructor.
+     *
+     * @param purpose the kind of work that this partition hands out connections for
+     * @param limit the maximum number of threads to have connections open at once, or 0 for no
+     * limit
+     * @param trackLeaks true to record the stack trace of the code that opened each connection
+     */
+    public ConnectionPartition(ConnectionPurpose purpose, int limit, boolean trackLeaks) {
+        this.purpose = purpose;
+        this.limit = limit;
+        this.permits = (limit > 0 ? new Semaphore(limit, true) : null);
+        this.trackLeaks = trackLeaks;
+    }
+
+    /**
+     * Waits for the partition to have room for another connection for the current thread, which
+     * is straight away if the thread already holds one. If this returns true, the caller must
+     * follow it with a call to either wrap() or cancel() in the same thread.
+     *
+     * @param timeoutMillis the number of milliseconds to wait, 0 to wait for ever, or a negative
+     * number to not wait at all
+     * @return false if the timeout expired, or there was no room and the caller would not wait
+     * @throws SQLException if the thread is interrupted
+     */
+    protected boolean acquire(long timeoutMillis) throws SQLException {
+        if (permits == null) {
+            return true;
+        }
+        Thread thread = Thread.currentThread();
+        synchronized (holders) {
+            int[] held = holders.get(thread);
+            if (held != null) {
+                held[0]++;
+                return true;
+            }
+        }
+        if (!permits.tryAcquire()) {
+            if (timeoutMillis < 0) {
+                return false;
+            }
+            if (!waitForPermit(timeoutMillis)) {
+                return false;
+            }
+        }
+        synchronized (holders) {
+            holders.put(thread, new int[] {1});
+        }
+        return true;
+    }
+
+    private boolean waitForPermit(long timeoutMillis) throws SQLException {
+        waiting.incrementAndGet();
+        try {
+            if (timeoutMillis > 0) {
+                if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    timeouts.incrementAndGet();
+                    return false;
+                }
+            } else {
+                permits.acquire();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            SQLException e2 = new SQLException("Interrupted while waiting for a " + purpose
+                    + " connection");
+            e2.initCause(e);
+            throw e2;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gives back the room acquired for a connection that could not be opened.
+     */
+    protected void cancel() {
+        release(Thread.currentThread());
+    }
+
+    /**
+     * Gives back the room used by one connection of a thread, releasing the thread's permit once
+     * it has no connections left.
+     *
+     * @param owner the thread that acquired the room
+     */
+    private void release(Thread owner) {
+        if (permits == null) {
+            return;
+        }
+        synchronized (holders) {
+            int[] held = holders.get(owner);
+            if (held == null) {
+                return;
+            }
+            held[0]--;
+            if (held[0] > 0) {
+                return;
+            }
+            holders.remove(owner);
+        }
+        permits.release();
+    }
+
+    /**
+     * Records a connection as open in this partition, and wraps it so that the partition is
+     * told when it is closed.
+     *
+     * @param con a newly opened connection
+     * @param waitNanos the number of nanoseconds spent waiting for the connection
+     * @return a Connection to hand out in place of con
+     */
+    protected Connection wrap(Connection con, long waitNanos) {
+        acquired.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max = maxWaitNanos.get();
+        while ((waitNanos > max) && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+        long micros = waitNanos / 1000;
+        int bucket = 0;
+        while ((bucket < BUCKETS - 1) && (micros >= (1L << bucket))) {
+            bucket++;
+        }
+        waitHistogram.incrementAndGet(bucket);
+
+        Tracker tracker = new Tracker(con);
+        open.add(tracker);
+        ClassLoader loader = con.getClass().getClassLoader();
+        return (Connection) Proxy.newProxyInstance(loader == null
+                ? ConnectionPartition.class.getClassLoader() : loader,
+                getInterfaces(con.getClass()), tracker);
+    }
+
+    private void closed(Tracker tracker) {
+        if (open.remove(tracker)) {
+            released.incrementAndGet();
+            totalHeldNanos.addAndGet(System.nanoTime() - tracker.openedAt);
+            release(tracker.owner);
+        }
+    }
+
+    private static Class<?>[] getInterfaces(Class<?> c) {
+        Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+        interfaces.add(Connection.class);
+        for (Class<?> cls = c; cls != null; cls = cls.getSuperclass()) {
+            for (Class<?> i : cls.getInterfaces()) {
+                // Only public interfaces can be proxied from another package
+                if (Modifier.isPublic(i.getModifiers())) {
+                    interfaces.add(i);
+                }
+            }
+        }
+        return interfaces.toArray(new Class<?>[interfaces.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getPurpose() {
+        return purpose.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getInUse() {
+        return open.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getMeanWaitMillis() {
+        long count = acquired.get();
+        return (count == 0 ? 0.0 : totalWaitNanos.get() / (count * 1000000.0));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getMeanHeldMillis() {
+        long count = released.get();
+        return (count == 0 ? 0.0 : totalHeldNanos.get() / (count * 1000000.0));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] getWaitHistogram() {
+        long[] retval = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            retval[i] = waitHistogram.get(i);
+        }
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getWaitPercentileMillis(double percentile) {
+        long[] histogram = getWaitHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long wanted = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if ((seen >= wanted) && (seen > 0)) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String[] getOpenConnections() {
+        List<Tracker> trackers = new ArrayList<Tracker>(open);
+        Collections.sort(trackers, new Comparator<Tracker>() {
+            public int compare(Tracker a, Tracker b) {
+                return (a.openedAt < b.openedAt ? -1 : (a.openedAt == b.openedAt ? 0 : 1));
+            }
+        });
+        long now = System.nanoTime();
+        String[] retval = new String[trackers.size()];
+        for (int i = 0; i < retval.length; i++) {
+            Tracker tracker = trackers.get(i);
+            StringBuilder description = new StringBuilder();
+            description.append(purpose).append(" connection held for ")
+                .append((now - tracker.openedAt) / 1000000).append(" ms by thread \"")
+                .append(tracker.threadName).append("\"");
+            if (tracker.situation != null) {
+                StringWriter trace = new StringWriter();
+                PrintWriter pw = new PrintWriter(trace);
+                tracker.situation.printStackTrace(pw);
+                pw.close();
+                description.append(", opened at: ").append(trace);
+            }
+            retval[i] = description.toString();
+        }
+        return retval;
+    }
+
+    /**
+     * Returns a one-line summary of the statistics of this partition, for logging.
+     *
+     * @return a String
+     */
+    public String getSummary() {
+        return purpose + " connections - limit: " + (limit > 0 ? "" + limit : "none")
+            + ", in use: " + getInUse() + ", acquired: " + getAcquired() + ", timeouts: "
+            + getTimeouts() + ", mean wait: " + getMeanWaitMillis() + " ms, 99% wait under: "
+            + getWaitPercentileMillis(99.0) + " ms, max wait: " + getMaxWaitMillis()
+            + " ms, mean held: " + getMeanHeldMillis() + " ms";
+    }
+
+    @Override
+    public String toString() {
+        return getSummary() + ", wait histogram: " + Arrays.toString(getWaitHistogram());
+    }
+
+    /**
+     * The handler behind each proxy connection, which notices when the connection is closed.
+     */
+    private class Tracker implements InvocationHandler
+    {
+        private final Connection con;
+        private final long openedAt = System.nanoTime();
+        private final Thread owner = Thread.currentThread();
+        private final String threadName = owner.getName();
+        private final Throwable situation;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        Tracker(Connection con) {
+            this.con = con;
+            this.situation = (trackLeaks ? new Throwable("Connection opened") : null);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            int argCount = (args == null ? 0 : args.length);
+            if ("equals".equals(name) && (argCount == 1)) {
+                return Boolean.valueOf(proxy == args[0]);
+            } else if ("hashCode".equals(name) && (argCount == 0)) {
+                return new Integer(System.identityHashCode(proxy));
+            } else if ("toString".equals(name) && (argCount == 0)) {
+                return purpose + " connection " + con;
+            } else if ("close".equals(name) && (argCount == 0)) {
+                if (closed.compareAndSet(false, true)) {
+                    try {
+                        con.close();
+                    } finally {
+                        closed(this);
+                    }
+                }
+                return null;
+            } else if ("isClosed".equals(name) && (argCount == 0) && closed.get()) {
+                return Boolean.TRUE;
+            }
+            try {
+                return method.invoke(con, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
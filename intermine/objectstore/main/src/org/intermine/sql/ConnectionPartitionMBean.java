@@ -0,0 +1,81 @@
+package org.intermine.sql;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * The JMX management interface of a ConnectionPartition.
+ */
+public interface ConnectionPartitionMBean
+{
+    /**
+     * @return the name of the ConnectionPurpose of the partition
+     */
+    String getPurpose();
+
+    /**
+     * @return the maximum number of connections the partition may have open, or 0 for no limit
+     */
+    int getLimit();
+
+    /**
+     * @return the number of connections currently open
+     */
+    int getInUse();
+
+    /**
+     * @return the number of threads currently waiting for a connection
+     */
+    int getWaiting();
+
+    /**
+     * @return the number of connections handed out
+     */
+    long getAcquired();
+
+    /**
+     * @return the number of requests for a connection that gave up waiting
+     */
+    long getTimeouts();
+
+    /**
+     * @return the mean time taken to get a connection, in milliseconds
+     */
+    double getMeanWaitMillis();
+
+    /**
+     * @return the longest time taken to get a connection, in milliseconds
+     */
+    double getMaxWaitMillis();
+
+    /**
+     * @return the mean time that connections were held for before being closed, in milliseconds
+     */
+    double getMeanHeldMillis();
+
+    /**
+     * @return the number of connections that took less than 2^i microseconds to get, but not
+     * less than 2^(i-1), for each i
+     */
+    long[] getWaitHistogram();
+
+    /**
+     * @param percentile a percentage
+     * @return an upper bound on the time taken to get the given percentage of connections, in
+     * milliseconds
+     */
+    double getWaitPercentileMillis(double percentile);
+
+    /**
+     * @return a description of each open connection, longest held first, including where it was
+     * opened if leak tracking is enabled
+     */
+    String[] getOpenConnections();
+}
@@ -0,0 +1,29 @@
+package org.intermine.sql;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * The kinds of work that a Database hands out connections for. Each has its own partition of
+ * the connections, so that the number of connections used by background work can be limited.
+ */
+public enum ConnectionPurpose
+{
+    /** Queries that a user or build step is waiting for - the default */
+    INTERACTIVE,
+    /** Batches of results fetched ahead of time by a PrefetchManager */
+    PREFETCH,
+    /** Creating precomputed tables */
+    PRECOMPUTE,
+    /** Reading and writing the data tracker during a load */
+    TRACKER,
+    /** Statements run by Database.executeSqlInParallel() */
+    BACKGROUND;
+}
@@ -10,6 +10,7 @@ package org.intermine.sql;
  *
  */
 
+import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -17,15 +18,21 @@ import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import org.apache.log4j.Logger;
@@ -50,10 +57,22 @@ public class Database implements Shutdownable
     /** The number of worker threads to use for background SQL statements */
     protected int parallel = 4;
 
+    /** Limits on the number of threads holding connections for each ConnectionPurpose, eg.
+     * "prefetch=4,precompute=2". Purposes that are not mentioned have no limit. */
+    protected String connectionLimits;
+    /** The number of milliseconds to wait for a connection in a full partition, or 0 for ever */
+    protected String connectionWaitTimeout;
+    /** If "true", record where each connection was opened, to help find leaked connections */
+    protected String trackConnections;
+
     // Store all the properties this Database was configured with
     protected Properties settings;
 
-    // protected Map createSituations = new HashMap();
+    private static final ThreadLocal<ConnectionPurpose> THREAD_PURPOSE
+        = new ThreadLocal<ConnectionPurpose>();
+    private volatile ConnectionPartition[] partitions = null;
+    private long waitTimeout = 0;
+    private List<ObjectName> registeredBeans = new ArrayList<ObjectName>();
 
     /**
      * No argument constructor for testing purposes
@@ -71,6 +90,8 @@ public class Database implements Shutdownable
     protected Database(Properties props) throws ClassNotFoundException {
         settings = props;
         configure(props);
+        getPartitions();
+        registerBeans();
         try {
             LOG.info("Creating new Database " + getURL() + "(" + toString() + ") with ClassLoader "
                     + getClass().getClassLoader() + " and parallelism " + parallel);
@@ -91,57 +112,196 @@ public class Database implements Shutdownable
     }
 
     /**
-     * Gets a Connection to this Database
+     * Gets a Connection to this Database, for the ConnectionPurpose of the current thread.
      *
      * @return a Connection to this Database
      * @throws SQLException if there is a problem in the underlying database
      */
     public Connection getConnection() throws SQLException {
+        return getConnection(getThreadPurpose());
+    }
+
+    /**
+     * Gets a Connection to this Database from the partition for a particular kind of work. If
+     * the partition already has as many threads holding connections as it is allowed, and the
+     * current thread is not one of them, this waits for one of those threads to close its
+     * connections. The connection must be closed when it is finished with.
+     *
+     * @param purpose the kind of work that the connection is for
+     * @return a Connection to this Database
+     * @throws SQLException if there is a problem in the underlying database, or no connection
+     * became available within the configured connectionWaitTimeout
+     */
+    public Connection getConnection(ConnectionPurpose purpose) throws SQLException {
+        return getConnection(purpose, waitTimeout);
+    }
+
+    /**
+     * Gets a Connection to this Database from the partition for a particular kind of work, if
+     * that can be done without waiting for the partition. This is for work that can be done
+     * another way, and that may be run while some other thread holds connections from the same
+     * partition until the work is finished.
+     *
+     * @param purpose the kind of work that the connection is for
+     * @return a Connection to this Database, or null if the partition is full
+     * @throws SQLException if there is a problem in the underlying database
+     */
+    public Connection getConnectionIfAvailable(ConnectionPurpose purpose) throws SQLException {
+        return getConnection(purpose, -1);
+    }
+
+    private Connection getConnection(ConnectionPurpose purpose, long timeout)
+        throws SQLException {
         Connection retval;
         if (datasource == null) {
             throw new NullPointerException("Datasource is null. Properties are: " + settings);
         }
+        ConnectionPartition partition = getPartition(purpose);
+        long start = System.nanoTime();
+        if (!partition.acquire(timeout)) {
+            if (timeout < 0) {
+                return null;
+            }
+            LOG.warn("Timed out waiting for a connection to " + getName() + " - open connections: "
+                    + StringUtil.join(Arrays.asList(partition.getOpenConnections()),
+                        "\n"));
+            throw new SQLException("Timed out after " + timeout + " ms waiting for a "
+                    + purpose + " connection to " + getName() + " - " + partition.getSummary());
+        }
         try {
             retval = datasource.getConnection();
         } catch (PSQLException e) {
+            partition.cancel();
             throw new RuntimeException("can't open datasource for " + this, e);
+        } catch (SQLException e) {
+            partition.cancel();
+            throw e;
+        } catch (RuntimeException e) {
+            partition.cancel();
+            throw e;
+        }
+        return partition.wrap(retval, System.nanoTime() - start);
+    }
+
+    /**
+     * Sets the kind of work that the current thread is doing, which decides the partition that
+     * getConnection() takes connections from. Threads start off doing INTERACTIVE work.
+     *
+     * @param purpose a ConnectionPurpose, or null to go back to INTERACTIVE
+     * @return the ConnectionPurpose that the thread had before, so that it can be restored
+     */
+    public static ConnectionPurpose setThreadPurpose(ConnectionPurpose purpose) {
+        ConnectionPurpose previous = getThreadPurpose();
+        if (purpose == null) {
+            THREAD_PURPOSE.remove();
+        } else {
+            THREAD_PURPOSE.set(purpose);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the kind of work that the current thread is doing.
+     *
+     * @return a ConnectionPurpose
+     */
+    public static ConnectionPurpose getThreadPurpose() {
+        ConnectionPurpose retval = THREAD_PURPOSE.get();
+        return (retval == null ? ConnectionPurpose.INTERACTIVE : retval);
+    }
+
+    /**
+     * Returns the partition of connections for a kind of work, which holds the statistics for
+     * those connections.
+     *
+     * @param purpose a ConnectionPurpose
+     * @return a ConnectionPartition
+     */
+    public ConnectionPartition getPartition(ConnectionPurpose purpose) {
+        return getPartitions()[purpose.ordinal()];
+    }
+
+    private ConnectionPartition[] getPartitions() {
+        ConnectionPartition[] retval = partitions;
+        if (retval == null) {
+            synchronized (this) {
+                retval = partitions;
+                if (retval == null) {
+                    retval = createPartitions();
+                    partitions = retval;
+                }
+            }
+        }
+        return retval;
+    }
+
+    private ConnectionPartition[] createPartitions() {
+        int[] limits = new int[ConnectionPurpose.values().length];
+        if ((connectionLimits != null) && (connectionLimits.trim().length() > 0)) {
+            for (String limit : connectionLimits.split(",")) {
+                String[] parts = limit.split("=");
+                try {
+                    ConnectionPurpose purpose = ConnectionPurpose.valueOf(parts[0].trim()
+                            .toUpperCase());
+                    limits[purpose.ordinal()] = Integer.parseInt(parts[1].trim());
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Invalid connectionLimits entry \""
+                            + limit + "\" - expected <purpose>=<number>, where purpose is one"
+                            + " of " + Arrays.asList(ConnectionPurpose.values()));
+                }
+            }
+        }
+        if (connectionWaitTimeout != null) {
+            waitTimeout = Long.parseLong(connectionWaitTimeout.trim());
+        }
+        boolean trackLeaks = "true".equalsIgnoreCase(trackConnections);
+        ConnectionPartition[] retval = new ConnectionPartition[limits.length];
+        for (ConnectionPurpose purpose : ConnectionPurpose.values()) {
+            retval[purpose.ordinal()] = new ConnectionPartition(purpose,
+                    limits[purpose.ordinal()], trackLeaks);
         }
-        /*
-        Exception e = new Exception();
-        e.fillInStackTrace();
-        StringWriter message = new StringWriter();
-        PrintWriter pw = new PrintWriter(message);
-        e.printStackTrace(pw);
-        pw.close();
-        String createSituation = message.toString();
-        int index = createSituation.indexOf("at junit.framework.TestCase.runBare");
-        createSituation = (index < 0 ? createSituation : createSituation.substring(0, index));
-        createSituations.put(retval, createSituation);
-        */
         return retval;
     }
 
+    private void registerBeans() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            String name = (getName() == null ? "unknown" : getName());
+            for (ConnectionPartition partition : getPartitions()) {
+                ObjectName beanName = new ObjectName("org.intermine.sql:type=ConnectionPartition,"
+                        + "database=" + ObjectName.quote(name) + ",id="
+                        + System.identityHashCode(this) + ",purpose=" + partition.getPurpose());
+                server.registerMBean(partition, beanName);
+                registeredBeans.add(beanName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Could not register connection statistics for " + getName() + " with JMX", e);
+        } catch (SecurityException e) {
+            LOG.warn("Could not register connection statistics for " + getName() + " with JMX", e);
+        }
+    }
+
     /**
-     * Logs stuff
+     * Logs the connection statistics, and any connections that are still open.
      */
     public void shutdown() {
-        /*int totalConnections = 0;
-        int activeConnections = 0;
-        Iterator iter = createSituations.entrySet().iterator();
-        while (iter.hasNext()) {
-            Map.Entry entry = (Map.Entry) iter.next();
-            Connection con = (Connection) entry.getKey();
-            String sit = (String) entry.getValue();
-            String conDesc = con.toString();
-            if (conDesc.indexOf("Pooled connection wrapping physical connection null") == -1) {
-                LOG.info("Possibly active connection for Database " + getURL() + "(" + toString()
-                        + "), connection: " + con + ", createSituation: " + sit);
-                activeConnections++;
+        for (ConnectionPartition partition : getPartitions()) {
+            if (partition.getAcquired() > 0) {
+                LOG.info("Database " + getName() + " " + partition.getSummary());
+            }
+            for (String open : partition.getOpenConnections()) {
+                LOG.info("Possibly leaked connection for Database " + getName() + ": " + open);
+            }
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (ObjectName beanName : registeredBeans) {
+                server.unregisterMBean(beanName);
             }
-            totalConnections++;
+        } catch (JMException e) {
+            LOG.warn("Could not unregister connection statistics for " + getName(), e);
         }
-        LOG.info("Database " + getURL() + "(" + toString() + ") has " + totalConnections
-                + " connections, of which " + activeConnections + " are active");*/
+        registeredBeans.clear();
         if (datasource instanceof org.postgresql.ds.PGPoolingDataSource) {
             LOG.info("Shutdown - Closing datasource for Database " + getURL() + "(" + toString()
                     + ") with ClassLoader " + getClass().getClassLoader());
@@ -514,7 +674,7 @@ public class Database implements Shutdownable
                     Connection c = null;
                     try {
                         job = queue.take();
-                        c = getConnection();
+                        c = getConnection(ConnectionPurpose.BACKGROUND);
                         c.setAutoCommit(true);
                         Statement s = c.createStatement();
                         s.execute(job.getSql());
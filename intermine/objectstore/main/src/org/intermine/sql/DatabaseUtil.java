@@ -704,6 +704,13 @@ public final class DatabaseUtil
             return ((Boolean) o).booleanValue() ? "'true'" : "'false'";
         } else if (o instanceof Class<?>) {
             return objectToString(((Class<?>) o).getName());
+        } else if (o instanceof byte[]) {
+            StringBuilder hex = new StringBuilder("decode('");
+            for (byte b : (byte[]) o) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.append("', 'hex')").toString();
         } else if (o == null) {
             return "NULL";
         } else {
@@ -27,7 +27,7 @@ import org.intermine.sql.query.Query;
  */
 public class BestQueryExplainer extends BestQuery
 {
-    private static final int OVERHEAD = 300;
+    protected static final int OVERHEAD = 300;
     protected static final int ALWAYS_EXPLAIN_TABLES = 3;
     protected static final int NEVER_EXPLAIN_TABLES = 8;
 
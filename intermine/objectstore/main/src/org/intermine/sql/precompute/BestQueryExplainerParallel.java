@@ -0,0 +1,388 @@
+package org.intermine.sql.precompute;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.intermine.sql.Database;
+import org.intermine.sql.query.ExplainResult;
+import org.intermine.sql.query.PostgresExplainResult;
+import org.intermine.sql.query.Query;
+
+/**
+ * A BestQueryExplainer that explains candidate queries in parallel, each on its own connection
+ * from the Database. At most explainThreads candidates are explained at once for one
+ * optimisation, using threads from a pool shared by all optimisations. Candidates that produce
+ * the same SQL are only explained once. The time limit applies to the whole search - when it
+ * runs out, the best candidate explained so far is used, and the explains that are still queued
+ * or running are cancelled, so that they do not go on holding connections.
+ *
+ * Connections other than the caller's cannot see uncommitted data, so this should only be used
+ * when the caller's connection is not in a transaction.
+ */
+public class BestQueryExplainerParallel extends BestQueryExplainer
+{
+    /** The maximum number of threads explaining queries, shared by all optimisations */
+    public static final int POOL_SIZE = 16;
+    private static final Logger LOG = Logger.getLogger(BestQueryExplainerParallel.class);
+
+    private static ThreadPoolExecutor pool = null;
+
+    protected Database db;
+    protected int explainThreads;
+    protected ConcurrentMap<String, Future<ExplainResult>> explains
+        = new ConcurrentHashMap<String, Future<ExplainResult>>();
+    protected LinkedList<Candidate> pending = new LinkedList<Candidate>();
+    protected ConcurrentMap<Statement, String> running
+        = new ConcurrentHashMap<Statement, String>();
+    protected volatile boolean cancelled = false;
+    protected volatile String keptSql = null;
+
+    /**
+     * Constructs a BestQueryExplainerParallel.
+     *
+     * @param db the Database to get connections for explaining from
+     * @param con the Connection of the caller, used if a candidate must be explained after the
+     * search has finished
+     * @param timeLimit a time limit in milliseconds, or -1 for no limit
+     * @param explainThreads the maximum number of candidates to explain at once
+     */
+    public BestQueryExplainerParallel(Database db, Connection con, long timeLimit,
+            int explainThreads) {
+        super(con, timeLimit);
+        this.db = db;
+        this.explainThreads = explainThreads;
+    }
+
+    /**
+     * Constructs a BestQueryExplainerParallel that uses dummy explains, for testing purposes.
+     *
+     * @param timeLimit a time limit in milliseconds, or -1 for no limit
+     * @param explainThreads the maximum number of candidates to explain at once
+     */
+    protected BestQueryExplainerParallel(long timeLimit, int explainThreads) {
+        super();
+        this.timeLimit = timeLimit;
+        this.explainThreads = explainThreads;
+    }
+
+    /**
+     * Returns the thread pool shared by all instances, creating it if necessary.
+     *
+     * @return a ThreadPoolExecutor
+     */
+    protected static synchronized ThreadPoolExecutor getPool() {
+        if (pool == null) {
+            final AtomicInteger threadNo = new AtomicInteger();
+            pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "QueryOptimiser explain "
+                                    + threadNo.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+        }
+        return pool;
+    }
+
+    /**
+     * Allows a Candidate to be added to this tracker. Candidates that need explaining are sent to
+     * the thread pool, and the results of any explains that have finished are considered.
+     *
+     * @param c the Candidate
+     * @throws BestQueryException if the current best Candidate is the best we think we are going to
+     * get
+     * @throws SQLException if an error occurs in the underlying database
+     */
+    @Override
+    protected void add(Candidate c) throws BestQueryException, SQLException {
+        int tableCount = c.getTableCount();
+        boolean doExplain = (tableCount <= ALWAYS_EXPLAIN_TABLES);
+        if (tableCount < candidateTables) {
+            candidateTables = tableCount;
+            candidates.clear();
+            if (tableCount < NEVER_EXPLAIN_TABLES) {
+                doExplain = true;
+            }
+        }
+        if (doExplain) {
+            // Generate the SQL once, as it is the key for the explains
+            c.queryString = c.getQueryString();
+            while (pending.size() >= explainThreads) {
+                // Wait for the oldest explain, so that this optimisation does not hold more than
+                // explainThreads connections.
+                consider(pending.removeFirst(), -1);
+            }
+            submit(c);
+            pending.add(c);
+        } else {
+            didNotExplain(c);
+            if (tableCount == candidateTables) {
+                candidates.add(c);
+            }
+        }
+        harvest();
+
+        long elapsed = System.currentTimeMillis() - start.getTime();
+        if ((timeLimit >= 0) && (elapsed > timeLimit)) {
+            cancelExplains();
+            throwBestQueryException("Optimiser reached time limit (limit = " + timeLimit
+                    + "ms, elapsed = " + elapsed + "ms)");
+        }
+        if (bestCandidate != null) {
+            // throw BestQueryException if the bestQuery will take less time to run than the
+            // amount of time we have spent optimising so far
+            if (bestCandidate.getExplain().getTime() < (elapsed + OVERHEAD)) {
+                throwBestQueryException("Explain time: "
+                            + bestCandidate.getExplain().getTime() + ", elapsed time: "
+                            + elapsed);
+            }
+        }
+    }
+
+    /**
+     * Gets the best Candidate found so far, first waiting for the explains that are still running
+     * until the time limit runs out.
+     *
+     * @return the best Candidate
+     * @throws SQLException if an error occurs in the underlying database
+     */
+    @Override
+    protected Candidate getBest() throws SQLException {
+        while (!pending.isEmpty()) {
+            Candidate c = pending.removeFirst();
+            long wait = -1;
+            if ((timeLimit >= 0) && (bestCandidate != null)) {
+                wait = Math.max(0, start.getTime() + timeLimit - System.currentTimeMillis());
+            }
+            if (!consider(c, wait)) {
+                // Out of time
+                pending.addFirst(c);
+                cancelExplains();
+            }
+        }
+        return super.getBest();
+    }
+
+    /**
+     * Abandons the explains of the pending candidates. Explains that have not started yet are
+     * removed from the queue, and the statements of those that are running are cancelled. If no
+     * candidate has been explained yet, the oldest explain is allowed to finish, so that there is
+     * a query to return.
+     *
+     * @throws SQLException if the explain that is allowed to finish fails
+     */
+    protected void cancelExplains() throws SQLException {
+        Candidate kept = null;
+        if ((bestCandidate == null) && (!pending.isEmpty())) {
+            kept = pending.removeFirst();
+            keptSql = kept.getQueryString();
+        }
+        cancelled = true;
+        for (Candidate abandoned : pending) {
+            if (!abandoned.getQueryString().equals(keptSql)) {
+                Future<ExplainResult> future = explains.get(abandoned.getQueryString());
+                future.cancel(false);
+                if (future instanceof Runnable) {
+                    // so that it doesn't take up a place in the queue of the shared pool
+                    getPool().remove((Runnable) future);
+                }
+            }
+        }
+        pending.clear();
+        for (Map.Entry<Statement, String> entry : running.entrySet()) {
+            if (!entry.getValue().equals(keptSql)) {
+                try {
+                    entry.getKey().cancel();
+                } catch (SQLException e) {
+                    LOG.warn("Could not cancel explain", e);
+                }
+            }
+        }
+        if (kept != null) {
+            consider(kept, -1);
+        }
+    }
+
+    /**
+     * Records that an explain is about to run with the given Statement, so that it can be
+     * cancelled if the optimiser runs out of time. This is called by the threads in the pool.
+     *
+     * @param stmt the Statement
+     * @param sql the query String being explained
+     * @throws SQLException if the explains have already been cancelled
+     */
+    protected void startExplain(Statement stmt, String sql) throws SQLException {
+        running.put(stmt, sql);
+        if (cancelled && (!sql.equals(keptSql))) {
+            running.remove(stmt);
+            throw new SQLException("Explain abandoned because the optimiser ran out of time");
+        }
+    }
+
+    /**
+     * Records that the explain running with the given Statement has finished.
+     *
+     * @param stmt the Statement
+     */
+    protected void finishExplain(Statement stmt) {
+        running.remove(stmt);
+    }
+
+    /**
+     * Considers the candidates whose explains have finished.
+     *
+     * @throws SQLException if an explain failed
+     */
+    private void harvest() throws SQLException {
+        Iterator<Candidate> iter = pending.iterator();
+        while (iter.hasNext()) {
+            Candidate c = iter.next();
+            if (explains.get(c.getQueryString()).isDone()) {
+                iter.remove();
+                consider(c, -1);
+            }
+        }
+    }
+
+    /**
+     * Waits for a candidate's explain to finish, and makes it the best candidate if it is better.
+     *
+     * @param c the Candidate
+     * @param wait the maximum time to wait in milliseconds, or -1 to wait until it finishes
+     * @return false if the explain did not finish in time
+     * @throws SQLException if the explain failed
+     */
+    private boolean consider(Candidate c, long wait) throws SQLException {
+        Future<ExplainResult> future = explains.get(c.getQueryString());
+        try {
+            c.explainResult = (wait < 0 ? future.get() : future.get(wait, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new RuntimeException("Error explaining query " + c.getQueryString(),
+                    e.getCause());
+        }
+        if (c.betterThan(bestCandidate)) {
+            bestCandidate = c;
+        }
+        return true;
+    }
+
+    /**
+     * Starts explaining a candidate in the thread pool, unless the same SQL has already been
+     * explained.
+     *
+     * @param c the Candidate
+     */
+    private void submit(Candidate c) {
+        final String sql = c.getQueryString();
+        FutureTask<ExplainResult> task = new FutureTask<ExplainResult>(
+                new Callable<ExplainResult>() {
+                    public ExplainResult call() throws SQLException {
+                        return explainInPool(sql);
+                    }
+                });
+        if (explains.putIfAbsent(sql, task) == null) {
+            getPool().execute(task);
+        }
+    }
+
+    /**
+     * Explains a query String with a new connection. This is called by the threads in the pool.
+     *
+     * @param sql the query String
+     * @return an ExplainResult
+     * @throws SQLException if an error occurs in the underlying database
+     */
+    protected ExplainResult explainInPool(String sql) throws SQLException {
+        if (db == null) {
+            return ExplainResult.getInstance(sql, (Connection) null);
+        }
+        Connection explainCon = db.getConnection();
+        try {
+            Statement stmt = explainCon.createStatement();
+            try {
+                startExplain(stmt, sql);
+                try {
+                    return new PostgresExplainResult(sql, stmt);
+                } finally {
+                    finishExplain(stmt);
+                }
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            explainCon.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ExplainResult getExplainResult(Query q) throws SQLException {
+        return getExplainResult(q.getSQLString());
+    }
+
+    /**
+     * Returns the explain for a query String, waiting for the thread pool if the same SQL has
+     * already been submitted, and otherwise explaining it with the caller's connection.
+     *
+     * @param q the query String
+     * @return an ExplainResult
+     * @throws SQLException if an error occurs in the underlying database
+     */
+    @Override
+    protected ExplainResult getExplainResult(String q) throws SQLException {
+        Future<ExplainResult> future = explains.get(q);
+        if ((future != null) && (!future.isCancelled())) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new RuntimeException("Error explaining query " + q, e.getCause());
+            }
+        }
+        return super.getExplainResult(q);
+    }
+}
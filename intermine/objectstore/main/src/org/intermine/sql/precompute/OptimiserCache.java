@@ -10,29 +10,57 @@ package org.intermine.sql.precompute;
  *
  */
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.log4j.Logger;
 import org.intermine.sql.Database;
-import org.intermine.util.CacheMap;
 
 /**
  * A class that provides an implementation of a cache for String-based SQL query optimisation.
+ * The cache may be used by many threads at once without locking. It can be saved to a file and
+ * loaded again, so that a restarted application does not have to optimise every query again.
  *
  * @author Matthew Wakeling
  */
 public class OptimiserCache
 {
+    private static final Logger LOG = Logger.getLogger(OptimiserCache.class);
+
     /** Maximum number of cache linesets in the cache. */
     public static final int MAX_LINESETS = 1000;
     /** Number of events to happen before an expiration run. */
     public static final int EXPIRE_INTERVAL = 100;
 
+    private static final int FILE_MAGIC = 0x4f505443;
+    private static final int FILE_VERSION = 1;
+    private static final Pattern WORD = Pattern.compile("\\w+");
+
     // Caches need to be per-database, so we will provide a static method to retrieve a cache object
-    // given a database. We need to be careful about synchronisation in this whole class.
-    private static Map<Database, OptimiserCache> caches = new HashMap<Database, OptimiserCache>();
+    // given a database.
+    private static ConcurrentMap<Database, OptimiserCache> caches
+        = new ConcurrentHashMap<Database, OptimiserCache>();
 
     /**
      * Returns an OptimiserCache object relevant to the database given.
@@ -40,11 +68,16 @@ public class OptimiserCache
      * @param db a Database object to find a cache for
      * @return an OptimiserCache object
      */
-    public static synchronized OptimiserCache getInstance(Database db) {
-        if (!caches.containsKey(db)) {
-            caches.put(db, new OptimiserCache());
+    public static OptimiserCache getInstance(Database db) {
+        OptimiserCache retval = caches.get(db);
+        if (retval == null) {
+            retval = new OptimiserCache();
+            OptimiserCache existing = caches.putIfAbsent(db, retval);
+            if (existing != null) {
+                retval = existing;
+            }
         }
-        return caches.get(db);
+        return retval;
     }
 
 
@@ -52,20 +85,35 @@ public class OptimiserCache
      * A Map that holds a mapping from unoptimised query string (with LIMIT and OFFSET stripped off)
      * to a Set of OptimiserCacheLine objects.
      */
-    protected Map<String, Set<OptimiserCacheLine>> cacheLines;
+    protected ConcurrentMap<String, Set<OptimiserCacheLine>> cacheLines;
+
+    // The time each lineset was last used, in events, so that the least recently used can expire
+    private ConcurrentMap<String, Long> lastUsed = new ConcurrentHashMap<String, Long>();
+    private AtomicLong events = new AtomicLong();
+    private AtomicInteger expiring = new AtomicInteger();
 
     /**
      * Constructor for this object.
      */
     public OptimiserCache() {
-        cacheLines = new CacheMap<String, Set<OptimiserCacheLine>>();
+        cacheLines = new ConcurrentHashMap<String, Set<OptimiserCacheLine>>();
     }
 
     /**
      * Removes all entries from the cache.
      */
-    public synchronized void flush() {
+    public void flush() {
         cacheLines.clear();
+        lastUsed.clear();
+    }
+
+    /**
+     * Returns the number of linesets in the cache.
+     *
+     * @return an int
+     */
+    public int size() {
+        return cacheLines.size();
     }
 
     /**
@@ -75,7 +123,7 @@ public class OptimiserCache
      * @param optimised the optimised SQL string (stripped of LIMIT and OFFSET)
      * @param limit the limit that was used during the optimisation
      */
-    public synchronized void addCacheLine(String original, String optimised, int limit) {
+    public void addCacheLine(String original, String optimised, int limit) {
         if (original.toUpperCase().startsWith("EXPLAIN ")) {
             original = original.substring(8);
         }
@@ -84,13 +132,18 @@ public class OptimiserCache
         }
         Set<OptimiserCacheLine> lines = cacheLines.get(original);
         if (lines == null) {
-            lines = new HashSet<OptimiserCacheLine>();
-            cacheLines.put(original, lines);
+            lines = Collections.newSetFromMap(
+                    new ConcurrentHashMap<OptimiserCacheLine, Boolean>());
+            Set<OptimiserCacheLine> existing = cacheLines.putIfAbsent(original, lines);
+            if (existing != null) {
+                lines = existing;
+            }
         }
 
         OptimiserCacheLine line = new OptimiserCacheLine(optimised, limit, original);
 
         lines.add(line);
+        touch(original);
     }
 
     /**
@@ -100,7 +153,7 @@ public class OptimiserCache
      * @param limit the limit required
      * @return a possible optimised SQL string (minus LIMIT and OFFSET)
      */
-    public synchronized String lookup(String original, int limit) {
+    public String lookup(String original, int limit) {
         //LOG.debug("Looking up query \"" + original + "\" with limit " + limit
         //        + " and offset " + offset + " - ");
         boolean originalWasExplain = false;
@@ -127,7 +180,197 @@ public class OptimiserCache
             //LOG.debug("Cache didn't have anything near enough");
             return null;
         }
+        touch(original);
         //LOG.debug("Cache hit");
         return (originalWasExplain ? "EXPLAIN " : "") + bestLine.getOptimised();
     }
+
+    /**
+     * Records a use of a lineset, and every EXPIRE_INTERVAL events removes the least recently used
+     * linesets beyond MAX_LINESETS.
+     *
+     * @param original the key of the lineset
+     */
+    private void touch(String original) {
+        long now = events.incrementAndGet();
+        lastUsed.put(original, new Long(now));
+        if ((now % EXPIRE_INTERVAL == 0) && (cacheLines.size() > MAX_LINESETS)
+                && expiring.compareAndSet(0, 1)) {
+            try {
+                expire();
+            } finally {
+                expiring.set(0);
+            }
+        }
+    }
+
+    private void expire() {
+        List<Map.Entry<String, Long>> entries
+            = new ArrayList<Map.Entry<String, Long>>(lastUsed.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return a.getValue().compareTo(b.getValue());
+            }
+        });
+        int toRemove = cacheLines.size() - MAX_LINESETS;
+        for (int i = 0; (i < toRemove) && (i < entries.size()); i++) {
+            Map.Entry<String, Long> entry = entries.get(i);
+            if (lastUsed.remove(entry.getKey(), entry.getValue())) {
+                cacheLines.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of the cache to a file, along with the definitions of the precomputed
+     * tables the optimised queries use, so that load() can tell which lines are still valid. The
+     * file is written to a temporary file first and then renamed, so a crash cannot leave a
+     * truncated cache behind.
+     *
+     * @param file the file to write
+     * @param precomputedTables the precomputed tables that the cache lines were created with
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file, Collection<PrecomputedTable> precomputedTables)
+        throws IOException {
+        Map<String, String> tableSql = new HashMap<String, String>();
+        for (PrecomputedTable pt : precomputedTables) {
+            tableSql.put(pt.getName(), pt.getSQLString());
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+        int lineCount = 0;
+        try {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(tableSql.size());
+            for (Map.Entry<String, String> entry : tableSql.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            List<OptimiserCacheLine> lines = new ArrayList<OptimiserCacheLine>();
+            for (Set<OptimiserCacheLine> lineSet : cacheLines.values()) {
+                lines.addAll(lineSet);
+            }
+            out.writeInt(lines.size());
+            for (OptimiserCacheLine line : lines) {
+                writeString(out, line.getOriginal());
+                writeString(out, line.getOptimised());
+                out.writeInt(line.getLimit());
+                Set<String> used = tablesUsed(line.getOptimised(), tableSql.keySet());
+                out.writeInt(used.size());
+                for (String name : used) {
+                    writeString(out, name);
+                }
+                lineCount++;
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Could not rename " + tmp + " to " + file);
+            }
+        }
+        LOG.info("Saved " + lineCount + " optimiser cache lines to " + file);
+    }
+
+    /**
+     * Adds the cache lines saved in a file by save() to this cache. Lines are discarded if a
+     * precomputed table they use has since been dropped or redefined. If precomputed tables have
+     * been created since the file was saved, every line is discarded, because any query might be
+     * optimised better with the new tables.
+     *
+     * @param file the file to read
+     * @param precomputedTables the precomputed tables that currently exist
+     * @return the number of lines added to the cache
+     * @throws IOException if the file cannot be read or is not a saved OptimiserCache
+     */
+    public int load(File file, Collection<PrecomputedTable> precomputedTables)
+        throws IOException {
+        Map<String, String> currentSql = new HashMap<String, String>();
+        for (PrecomputedTable pt : precomputedTables) {
+            currentSql.put(pt.getName(), pt.getSQLString());
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+        int added = 0;
+        int discarded = 0;
+        try {
+            if ((in.readInt() != FILE_MAGIC) || (in.readInt() != FILE_VERSION)) {
+                throw new IOException("File " + file + " is not a saved OptimiserCache");
+            }
+            int tableCount = in.readInt();
+            Set<String> savedTables = new HashSet<String>();
+            Set<String> validTables = new HashSet<String>();
+            for (int i = 0; i < tableCount; i++) {
+                String name = readString(in);
+                String sql = readString(in);
+                savedTables.add(name);
+                if (sql.equals(currentSql.get(name))) {
+                    validTables.add(name);
+                }
+            }
+            if (!savedTables.containsAll(currentSql.keySet())) {
+                LOG.info("Not loading optimiser cache from " + file
+                        + " - precomputed tables have been created since it was saved");
+                return 0;
+            }
+            int lineCount = in.readInt();
+            for (int i = 0; i < lineCount; i++) {
+                String original = readString(in);
+                String optimised = readString(in);
+                int limit = in.readInt();
+                int usedCount = in.readInt();
+                boolean valid = true;
+                for (int o = 0; o < usedCount; o++) {
+                    valid = validTables.contains(readString(in)) && valid;
+                }
+                if (valid) {
+                    addCacheLine(original, optimised, limit);
+                    added++;
+                } else {
+                    discarded++;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        LOG.info("Loaded " + added + " optimiser cache lines from " + file + ", discarded "
+                + discarded + " that used changed precomputed tables");
+        return added;
+    }
+
+    /**
+     * Returns the names of the precomputed tables mentioned in an SQL string.
+     *
+     * @param sql an SQL string
+     * @param tableNames the names of all the precomputed tables
+     * @return a Set of table names
+     */
+    private static Set<String> tablesUsed(String sql, Set<String> tableNames) {
+        Set<String> retval = new HashSet<String>();
+        Matcher m = WORD.matcher(sql);
+        while (m.find()) {
+            String word = m.group();
+            if (tableNames.contains(word)) {
+                retval.add(word);
+            }
+        }
+        return retval;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
 }
@@ -60,6 +60,15 @@ public class OptimiserCacheLine
         return optimised;
     }
 
+    /**
+     * Returns the limit that was used to generate the optimised query.
+     *
+     * @return the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
     /**
      * Returns the original SQL string.
      *
@@ -68,5 +77,25 @@ public class OptimiserCacheLine
     public String getOriginal() {
         return original;
     }
-}
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof OptimiserCacheLine) {
+            OptimiserCacheLine line = (OptimiserCacheLine) o;
+            return (limit == line.limit) && optimised.equals(line.optimised)
+                && original.equals(line.original);
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return optimised.hashCode() + 3 * limit + 5 * original.hashCode();
+    }
+}
@@ -27,6 +27,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.intermine.sql.ConnectionPurpose;
 import org.intermine.sql.Database;
 import org.intermine.sql.DatabaseUtil;
 import org.intermine.sql.query.AbstractTable;
@@ -266,7 +267,7 @@ public class PrecomputedTableManager
             Collection<String> indexes, boolean record) throws SQLException {
         Connection con = null;
         try {
-            con = (conn == null ? database.getConnection() : conn);
+            con = (conn == null ? database.getConnection(ConnectionPurpose.PRECOMPUTE) : conn);
             con.setAutoCommit(true);
             if (indexes == null) {
                 indexes = new LinkedHashSet<String>();
@@ -381,7 +382,7 @@ public class PrecomputedTableManager
         oc.flush();
         Connection con = null;
         try {
-            con = (conn == null ? database.getConnection() : conn);
+            con = (conn == null ? database.getConnection(ConnectionPurpose.PRECOMPUTE) : conn);
             // Drop the entry from the index table
             PreparedStatement pstmt = con.prepareStatement("DELETE FROM "
                                                            + TABLE_INDEX + " WHERE name = ?");
@@ -213,6 +213,12 @@ public final class QueryOptimiser
                 bestQuery = new BestQueryLogger(true);
             } else if (context.getMode() == QueryOptimiserContext.MODE_VERBOSE_SUMMARY) {
                 bestQuery = new BestQueryLogger(false);
+            } else if ((context.getExplainThreads() > 1) && (database != null)
+                    && explainConnection.getAutoCommit()) {
+                // Other connections can only see what the caller can if it is not in a
+                // transaction.
+                bestQuery = new BestQueryExplainerParallel(database, explainConnection,
+                        context.getTimeLimit(), context.getExplainThreads());
             } else {
                 bestQuery = new BestQueryExplainer(explainConnection, context.getTimeLimit());
             }
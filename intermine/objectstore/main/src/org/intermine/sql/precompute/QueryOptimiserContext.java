@@ -29,6 +29,7 @@ public class QueryOptimiserContext
 
     private String mode = MODE_NORMAL;
     private long timeLimit = -1;
+    private int explainThreads = 1;
 
     /**
      * Sets the optimiser mode of operation.
@@ -78,6 +79,30 @@ public class QueryOptimiserContext
         return timeLimit;
     }
 
+    /**
+     * Sets the maximum number of candidate queries the optimiser may explain at once, each with
+     * its own database connection. A value of 1 explains candidates one at a time with the
+     * caller's connection.
+     *
+     * @param explainThreads the number of candidates to explain at once
+     */
+    public void setExplainThreads(int explainThreads) {
+        if (explainThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of explain threads "
+                    + explainThreads);
+        }
+        this.explainThreads = explainThreads;
+    }
+
+    /**
+     * Returns the maximum number of candidate queries the optimiser may explain at once.
+     *
+     * @return an int
+     */
+    public int getExplainThreads() {
+        return explainThreads;
+    }
+
     /**
      * Returns true if the optimiser will print out stuff.
      *
@@ -113,5 +138,16 @@ public class QueryOptimiserContext
         public long getTimeLimit() {
             return -1;
         }
+
+        @Override
+        public void setExplainThreads(@SuppressWarnings("unused") int explainThreads) {
+            throw new IllegalStateException("This is the default QueryOptimiserContext - it cannot"
+                    + " be altered");
+        }
+
+        @Override
+        public int getExplainThreads() {
+            return 1;
+        }
     };
 }
@@ -67,13 +67,34 @@ public class PostgresExplainResult extends ExplainResult
         }
 
         Statement s = database.createStatement();
+        explain(query, s);
+        s.close();
+    }
+
+    /**
+     * Constructs an instance of PostgresExplainResult for a given Query String, using a Statement
+     * created by the caller, so that the explain can be cancelled from another thread. The
+     * Statement is not closed.
+     *
+     * @param query the String query to be explained
+     * @param stmt a Statement to run the explain with
+     * @throws SQLException if a database error occurs
+     * @throws NullPointerException if either query or stmt are null
+     */
+    public PostgresExplainResult(String query, Statement stmt) throws SQLException {
+        if ((query == null) || (stmt == null)) {
+            throw new NullPointerException("Arguments cannot be null");
+        }
+        explain(query, stmt);
+    }
+
+    private void explain(String query, Statement s) throws SQLException {
         if (!query.toUpperCase().startsWith("EXPLAIN ")) {
             query = "explain " + query;
         }
         try {
             s.execute(query);
             retrieveExplainString(s);
-            s.close();
         } catch (SQLException e) {
             SQLException e2 = new SQLException("Error running query \"" + query + "\"");
             e2.initCause(e);
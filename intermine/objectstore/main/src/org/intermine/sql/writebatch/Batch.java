@@ -14,12 +14,16 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
+import org.intermine.sql.Database;
 
 /**
  * A class representing a collection of writes to an SQL database. This class is intended for the
@@ -30,6 +34,16 @@ import org.apache.log4j.Logger;
  * BatchWriters are database-specific, in that they use different tricks to speed up the write,
  * some of which depend on a certain database product.
  *
+ * The writes are performed by background flusher threads. By default there is one, which uses
+ * the Connection passed in by the caller. A Batch may also be given a Database from which to
+ * open extra connections, each with its own flusher thread. Each table is then written entirely
+ * by one flusher, so the writes to a single table (including its deletes) always happen in order
+ * over one connection, but different tables are written concurrently. The extra connections
+ * commit at the end of every flush, so that the data is visible to the caller's Connection
+ * afterwards - this means that it is not rolled back if the caller aborts its transaction, so
+ * callers that need to be able to roll back should switch the Batch to a single connection
+ * with setSingleConnection() for the length of the transaction.
+ *
  * @author Matthew Wakeling
  */
 public class Batch
@@ -43,10 +57,15 @@ public class Batch
     private int batchSize = 0;
     private int lastCheckBatchSize = 0;
 
-    private List<FlushJob> flushJobs = Collections.emptyList();
-    private SQLException problem = null;
+    private final Database database;
+    private final BatchFlusher[] flushers;
+    private final long[] flusherAssignedSize;
+    private final Map<String, Integer> tableFlushers = new HashMap<String, Integer>();
+    private final Set<String> mainConnectionTables = new HashSet<String>();
+    private final Map<String, TableStatistics> tableStatistics
+        = new ConcurrentHashMap<String, TableStatistics>();
 
-    private volatile int lastDutyCycle = 100;
+    private boolean singleConnection = false;
     private boolean closed = false;
     private static final List<FlushJob> CLOSE_DOWN_COMMAND = new ArrayList<FlushJob>();
 
@@ -56,12 +75,80 @@ public class Batch
      * @param batchWriter the BatchWriter to use
      */
     public Batch(BatchWriter batchWriter) {
+        this(batchWriter, null, 1);
+    }
+
+    /**
+     * Constructs an empty Batch, with no tables, which writes to the database over several
+     * connections at once. One of these is the Connection passed in to each method, and the rest
+     * are opened from the given Database when they are first needed.
+     *
+     * @param batchWriter the BatchWriter to use
+     * @param database the Database to open extra connections from, or null for none
+     * @param connections the total number of connections to write over
+     */
+    public Batch(BatchWriter batchWriter, Database database, int connections) {
         this.batchWriter = batchWriter;
-        BatchFlusher flusher = new BatchFlusher();
-        Thread thread = new Thread(flusher);
-        thread.setDaemon(true);
-        thread.setName("WriteBatch Flusher");
-        thread.start();
+        this.database = database;
+        int flusherCount = ((database == null) || (connections < 1) ? 1 : connections);
+        flushers = new BatchFlusher[flusherCount];
+        flusherAssignedSize = new long[flusherCount];
+        for (int i = 0; i < flusherCount; i++) {
+            flushers[i] = new BatchFlusher(i);
+            Thread thread = new Thread(flushers[i]);
+            thread.setDaemon(true);
+            thread.setName(i == 0 ? "WriteBatch Flusher" : "WriteBatch Flusher " + (i + 1));
+            thread.start();
+        }
+    }
+
+    /**
+     * Makes sure that a table is always written over the Connection passed in by the caller,
+     * rather than one of the extra connections. This is necessary for tables that the caller
+     * also alters directly with its Connection, as the extra connections would not see those
+     * alterations until the caller commits. This must be called before any rows are added to
+     * the table.
+     *
+     * @param name the name of the table
+     */
+    public void keepOnMainConnection(String name) {
+        if (tableFlushers.containsKey(name) && (tableFlushers.get(name).intValue() != 0)) {
+            throw new IllegalStateException("Table " + name + " is already written over another"
+                    + " connection");
+        }
+        mainConnectionTables.add(name);
+    }
+
+    /**
+     * Sets whether all tables are written over the Connection passed in by the caller, even if
+     * this Batch has extra connections. While this is set, everything written is part of the
+     * caller's transaction, and is rolled back if the caller aborts it. Tables keep their place
+     * on the extra connections for when this is unset. This waits for the writes already queued
+     * on the connections that are no longer to be used, so that the writes to each table stay in
+     * order.
+     *
+     * @param singleConnection true to write only over the caller's Connection
+     */
+    public void setSingleConnection(boolean singleConnection) {
+        if (singleConnection != this.singleConnection) {
+            if (singleConnection) {
+                for (int i = 1; i < flushers.length; i++) {
+                    flushers[i].waitForFreeConnection();
+                }
+            } else {
+                flushers[0].waitForFreeConnection();
+            }
+            this.singleConnection = singleConnection;
+        }
+    }
+
+    /**
+     * Returns the number of connections that this Batch writes over.
+     *
+     * @return an int
+     */
+    public int getConnectionCount() {
+        return flushers.length;
     }
 
     /**
@@ -211,9 +298,17 @@ public class Batch
         //Exception e = new Exception();
         //e.fillInStackTrace();
         //LOG.error("Flushed", e);
-        backgroundFlush(con, filter);
+        SQLException problem = null;
+        try {
+            backgroundFlush(con, filter);
+        } catch (SQLException e) {
+            problem = e;
+        }
         List<FlushJob> empty = Collections.emptyList();
-        putFlushJobs(empty);
+        problem = putFlushJobs(empty, problem);
+        if (problem != null) {
+            throw problem;
+        }
     }
 
     /**
@@ -262,7 +357,24 @@ public class Batch
             throw new SQLException("Batch is closed");
         }
         //long start = System.currentTimeMillis();
-        List<FlushJob> jobs = batchWriter.write(con, tables, filter);
+        List<List<FlushJob>> jobs = new ArrayList<List<FlushJob>>();
+        for (int i = 0; i < flushers.length; i++) {
+            jobs.add(new ArrayList<FlushJob>());
+        }
+        // Each table is written separately, so that the time taken for each can be measured
+        for (Map.Entry<String, Table> tableEntry : tables.entrySet()) {
+            String name = tableEntry.getKey();
+            if ((filter == null) || filter.contains(name)) {
+                int size = tableEntry.getValue().getSize();
+                int index = (singleConnection ? 0 : getFlusherIndex(name, size));
+                Connection flusherCon = (index == 0 ? con : flushers[index].getConnection());
+                List<FlushJob> tableJobs = batchWriter.write(flusherCon, tables,
+                        Collections.singleton(name));
+                if (!tableJobs.isEmpty()) {
+                    jobs.get(index).add(new FlushJobTable(name, index, size, tableJobs));
+                }
+            }
+        }
         int oldBatchSize = batchSize;
         batchSize = 0;
         for (Map.Entry<String, Table> tableEntry : tables.entrySet()) {
@@ -271,11 +383,18 @@ public class Batch
         }
         lastCheckBatchSize = batchSize;
         if (needBatchCommit) {
-            jobs.add(new FlushJobBatchCommit(con));
+            jobs.get(0).add(new FlushJobBatchCommit(con));
             needBatchCommit = false;
         }
         //long middle = System.currentTimeMillis();
-        putFlushJobs(jobs);
+        SQLException problem = null;
+        for (int i = 0; i < flushers.length; i++) {
+            try {
+                flushers[i].putFlushJobs(jobs.get(i));
+            } catch (SQLException e) {
+                problem = (problem == null ? e : problem);
+            }
+        }
         //long end = System.currentTimeMillis();
         //if ((end > middle + 10) && (lastDutyCycle < 75)) {
         //    LOG.info("Enqueued " + (oldBatchSize - batchSize) + " of " + oldBatchSize
@@ -288,6 +407,36 @@ public class Batch
             LOG.info("Enqueued " + (oldBatchSize - batchSize) + " of " + oldBatchSize
                     + " byte batch.");
         }
+        if (problem != null) {
+            throw problem;
+        }
+    }
+
+    /**
+     * Returns the index of the flusher that writes the given table, choosing one if the table
+     * has not been written before. Tables are spread across flushers by the amount of data that
+     * was waiting to be written to them when they were first seen.
+     *
+     * @param name the name of the table
+     * @param size the amount of data about to be written to the table
+     * @return an index into flushers
+     */
+    private int getFlusherIndex(String name, int size) {
+        Integer index = tableFlushers.get(name);
+        if (index == null) {
+            int chosen = 0;
+            if (!mainConnectionTables.contains(name)) {
+                for (int i = 1; i < flushers.length; i++) {
+                    if (flusherAssignedSize[i] < flusherAssignedSize[chosen]) {
+                        chosen = i;
+                    }
+                }
+            }
+            index = new Integer(chosen);
+            tableFlushers.put(name, index);
+        }
+        flusherAssignedSize[index.intValue()] += Math.max(size, 0);
+        return index.intValue();
     }
 
     /**
@@ -307,7 +456,19 @@ public class Batch
         } catch (SQLException e) {
         }
         closed = true;
-        putFlushJobs(CLOSE_DOWN_COMMAND);
+        SQLException problem = putFlushJobs(CLOSE_DOWN_COMMAND, null);
+        if (!tableStatistics.isEmpty()) {
+            StringBuilder message = new StringBuilder("Batch wrote over ")
+                .append(flushers.length).append(" connection(s) - slowest tables:");
+            List<TableStatistics> stats = getTableStatistics();
+            for (int i = 0; (i < stats.size()) && (i < 10); i++) {
+                message.append(" ").append(stats.get(i));
+            }
+            LOG.info(message.toString());
+        }
+        if (problem != null) {
+            throw problem;
+        }
     }
 
     /**
@@ -327,7 +488,9 @@ public class Batch
         }
         batchSize = 0;
         lastCheckBatchSize = 0;
-        waitForFreeConnection();
+        for (BatchFlusher flusher : flushers) {
+            flusher.waitForFreeConnection();
+        }
         clearProblem();
     }
 
@@ -340,100 +503,287 @@ public class Batch
         if (closed) {
             throw new IllegalStateException("Batch is closed");
         }
-        waitForFreeConnection();
+        for (BatchFlusher flusher : flushers) {
+            flusher.waitForFreeConnection();
+        }
         this.batchWriter = batchWriter;
     }
 
     /**
-     * Returns a List of flush jobs (each as fully-processed as possible) when one becomes
-     * available.
+     * Returns the statistics of the time spent writing each table, slowest first.
      *
-     * @return a List
+     * @return a List of TableStatistics objects
      */
-    private synchronized List<FlushJob> getFlushJobs() {
-        flushJobs = null;
-        notifyAll();
-        while (flushJobs == null) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
+    public List<TableStatistics> getTableStatistics() {
+        List<TableStatistics> retval = new ArrayList<TableStatistics>(tableStatistics.values());
+        Collections.sort(retval, new Comparator<TableStatistics>() {
+            public int compare(TableStatistics a, TableStatistics b) {
+                long aMillis = a.getMillis();
+                long bMillis = b.getMillis();
+                return (aMillis > bMillis ? -1 : (aMillis == bMillis ? 0 : 1));
+            }
+        });
+        return retval;
+    }
+
+    /**
+     * Returns true if all the flushers are idle.
+     */
+    private boolean isFreeConnection() {
+        for (BatchFlusher flusher : flushers) {
+            if (!flusher.isFreeConnection()) {
+                return false;
             }
         }
-        // By this point, any problem must necessarily have been picked up, so we can reset it.
-        problem = null;
-        return flushJobs;
+        return true;
     }
 
     /**
-     * Waits for the flushJobs variable to be empty, which guarantees that the connection is
-     * currently unused.
+     * Puts the same List of flush jobs into every flusher.
+     *
+     * @param jobs a List of jobs
+     * @param problem an exception already caught, or null
+     * @return the first exception, starting with problem, that was reported by any flusher
      */
-    private synchronized void waitForFreeConnection() {
-        while (flushJobs != null) {
+    private SQLException putFlushJobs(List<FlushJob> jobs, SQLException problem) {
+        SQLException retval = problem;
+        for (BatchFlusher flusher : flushers) {
             try {
-                wait();
-            } catch (InterruptedException e) {
+                flusher.putFlushJobs(jobs);
+            } catch (SQLException e) {
+                retval = (retval == null ? e : retval);
             }
         }
+        return retval;
     }
 
     /**
-     * Returns true if the flushJobs variable is empty - that is, the connection is idle.
+     * Clears the problem with the Batch.
      */
-    private synchronized boolean isFreeConnection() {
-        return flushJobs == null;
+    public void clearProblem() {
+        for (BatchFlusher flusher : flushers) {
+            flusher.clearProblem();
+        }
     }
 
     /**
-     * Puts a List of flush jobs into the flushJobs variable, and tells the writer thread to write
-     * it.
-     *
-     * @param jobs a List of jobs
-     * @throws SQLException if the last background flush resulted in an error - note that the
-     * operation will go ahead anyway (although it is likely to throw another exception of its own,
-     * because the transaction will be invalid).
+     * The time spent writing a single table.
      */
-    private synchronized void putFlushJobs(List<FlushJob> jobs) throws SQLException {
-        long startTime = System.currentTimeMillis();
-        while (flushJobs != null) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-            }
+    public static class TableStatistics
+    {
+        private final String name;
+        private final int connection;
+        private int flushes = 0;
+        private long size = 0;
+        private long millis = 0;
+
+        TableStatistics(String name, int connection) {
+            this.name = name;
+            this.connection = connection;
         }
-        long endTime = System.currentTimeMillis();
-        if (endTime > startTime + 100) {
-            LOG.info("Waited " + (endTime - startTime) + " ms for batch flusher");
+
+        synchronized void add(int size, long millis) {
+            flushes++;
+            this.size += Math.max(size, 0);
+            this.millis += millis;
         }
-        if ((!jobs.isEmpty()) || (jobs == CLOSE_DOWN_COMMAND)) {
-            flushJobs = jobs;
-            notifyAll();
+
+        /**
+         * @return the name of the table
+         */
+        public String getName() {
+            return name;
         }
-        if (problem != null) {
-            throw problem;
+
+        /**
+         * @return the index of the connection that the table is written over, 0 being the
+         * Connection passed in by the caller
+         */
+        public int getConnection() {
+            return connection;
         }
-    }
 
-    /**
-     * Reports a problem to the Batch - it will be thrown on the next background flush, or discarded
-     * by the clear method.
-     *
-     * @param problem the SQLException
-     */
-    private synchronized void reportProblem(SQLException problem) {
-        this.problem = problem;
+        /**
+         * @return the number of times that data has been written to the table
+         */
+        public synchronized int getFlushes() {
+            return flushes;
+        }
+
+        /**
+         * @return the approximate number of bytes written to the table
+         */
+        public synchronized long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the number of milliseconds spent writing to the table
+         */
+        public synchronized long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return the approximate number of bytes written to the table per second
+         */
+        public synchronized long getBytesPerSecond() {
+            return (millis == 0 ? 0 : (size * 1000) / millis);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return name + " (connection " + connection + ", " + flushes + " flushes, " + size
+                + " bytes in " + millis + " ms, " + (getBytesPerSecond() / 1024) + " kB/s)";
+        }
     }
 
     /**
-     * Clears the problem with the Batch.
+     * A FlushJob that writes all the changes to one table, and records the time taken.
      */
-    public synchronized void clearProblem() {
-        problem = null;
+    private class FlushJobTable implements FlushJob
+    {
+        private final String name;
+        private final int index;
+        private final int size;
+        private final List<FlushJob> jobs;
+
+        FlushJobTable(String name, int index, int size, List<FlushJob> jobs) {
+            this.name = name;
+            this.index = index;
+            this.size = size;
+            this.jobs = jobs;
+        }
+
+        public void flush() throws SQLException {
+            long start = System.currentTimeMillis();
+            for (FlushJob job : jobs) {
+                job.flush();
+            }
+            TableStatistics stats = tableStatistics.get(name);
+            if (stats == null) {
+                stats = new TableStatistics(name, index);
+                tableStatistics.put(name, stats);
+            }
+            stats.add(size, System.currentTimeMillis() - start);
+        }
     }
 
     private class BatchFlusher implements Runnable
     {
-        public BatchFlusher() {
+        private final int index;
+        private Connection ownCon = null;
+        private List<FlushJob> flushJobs = Collections.emptyList();
+        private SQLException problem = null;
+        private volatile int lastDutyCycle = 100;
+
+        public BatchFlusher(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Returns the Connection that this flusher writes over, opening it if necessary. This is
+         * only for the flushers that have their own connection.
+         *
+         * @return a Connection
+         * @throws SQLException if the connection cannot be opened
+         */
+        private Connection getConnection() throws SQLException {
+            if (ownCon == null) {
+                Connection c = database.getConnection();
+                c.setAutoCommit(false);
+                ownCon = c;
+            }
+            return ownCon;
+        }
+
+        /**
+         * Returns a List of flush jobs (each as fully-processed as possible) when one becomes
+         * available.
+         *
+         * @return a List
+         */
+        private synchronized List<FlushJob> getFlushJobs() {
+            flushJobs = null;
+            notifyAll();
+            while (flushJobs == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                }
+            }
+            // By this point, any problem must necessarily have been picked up, so we can reset
+            // it.
+            problem = null;
+            return flushJobs;
+        }
+
+        /**
+         * Waits for the flushJobs variable to be empty, which guarantees that the connection is
+         * currently unused.
+         */
+        private synchronized void waitForFreeConnection() {
+            while (flushJobs != null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+
+        /**
+         * Returns true if the flushJobs variable is empty - that is, the connection is idle.
+         */
+        private synchronized boolean isFreeConnection() {
+            return flushJobs == null;
+        }
+
+        /**
+         * Puts a List of flush jobs into the flushJobs variable, and tells the writer thread to
+         * write it.
+         *
+         * @param jobs a List of jobs
+         * @throws SQLException if the last background flush resulted in an error - note that the
+         * operation will go ahead anyway (although it is likely to throw another exception of its
+         * own, because the transaction will be invalid).
+         */
+        private synchronized void putFlushJobs(List<FlushJob> jobs) throws SQLException {
+            long startTime = System.currentTimeMillis();
+            while (flushJobs != null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                }
+            }
+            long endTime = System.currentTimeMillis();
+            if (endTime > startTime + 100) {
+                LOG.info("Waited " + (endTime - startTime) + " ms for batch flusher "
+                        + (index + 1));
+            }
+            if ((!jobs.isEmpty()) || (jobs == CLOSE_DOWN_COMMAND)) {
+                flushJobs = jobs;
+                notifyAll();
+            }
+            if (problem != null) {
+                throw problem;
+            }
+        }
+
+        /**
+         * Reports a problem to the Batch - it will be thrown on the next background flush, or
+         * discarded by the clear method.
+         *
+         * @param problem the SQLException
+         */
+        private synchronized void reportProblem(SQLException problem) {
+            this.problem = problem;
+        }
+
+        /**
+         * Clears the problem with the flusher.
+         */
+        private synchronized void clearProblem() {
+            problem = null;
         }
 
         public void run() {
@@ -446,8 +796,18 @@ public class Batch
                 try {
                     jobs = getFlushJobs();
                     long start = System.currentTimeMillis();
-                    for (FlushJob job : jobs) {
-                        job.flush();
+                    try {
+                        for (FlushJob job : jobs) {
+                            job.flush();
+                        }
+                        if ((ownCon != null) && (!jobs.isEmpty())) {
+                            ownCon.commit();
+                        }
+                    } catch (SQLException e) {
+                        if (ownCon != null) {
+                            ownCon.rollback();
+                        }
+                        throw e;
                     }
                     long end = System.currentTimeMillis();
                     totalSpent += end - start;
@@ -457,8 +817,8 @@ public class Batch
                         lastDutyCycle = (int) (((100 * (totalSpent - spentAtLastMessage)
                                         + ((end - timeAtLastMessage) / 2))
                                     / (end - timeAtLastMessage)));
-                        LOG.info("Batch flusher has spent " + totalSpent + " ms waiting for the"
-                                + " database (duty cycle " + totalDutyCycle
+                        LOG.info("Batch flusher " + (index + 1) + " has spent " + totalSpent
+                                + " ms waiting for the database (duty cycle " + totalDutyCycle
                                 + "%) (current duty cycle " + lastDutyCycle + "%)");
                         timeAtLastMessage = end;
                         spentAtLastMessage = totalSpent;
@@ -478,6 +838,14 @@ public class Batch
                     jobs = null;
                 }
             }
+            if (ownCon != null) {
+                try {
+                    ownCon.close();
+                } catch (SQLException e) {
+                    LOG.warn("Error closing batch flusher connection", e);
+                }
+                ownCon = null;
+            }
         }
     }
 }
@@ -30,6 +30,8 @@ import org.apache.log4j.Logger;
 
 /**
  * An implementation of the BatchWriter interface that uses PostgreSQL-specific COPY commands.
+ * The COPY data is encoded into pooled chunks, which are streamed to the database by the flush
+ * job and reused for later batches.
  *
  * @author Matthew Wakeling
  */
@@ -61,8 +63,8 @@ public class BatchWriterPostgresCopyImpl extends BatchWriterPreparedStatementImp
                             + " back to prepared statements");
                     super.doInserts(name, table, batches);
                 } else {
-                    PostgresByteArrayOutputStream baos = new PostgresByteArrayOutputStream();
-                    PostgresDataOutputStream dos = new PostgresDataOutputStream(baos);
+                    PostgresCopyChunkStream chunks = new PostgresCopyChunkStream();
+                    PostgresDataOutputStream dos = new PostgresDataOutputStream(chunks);
                     dos.writeBytes("PGCOPY\n");
                     dos.writeByte(255);
                     dos.writeBytes("\r\n");
@@ -98,8 +100,7 @@ public class BatchWriterPostgresCopyImpl extends BatchWriterPreparedStatementImp
                     String sql = sqlBuffer.toString();
                     dos.writeShort(-1);
                     dos.flush();
-                    batches.add(new FlushJobPostgresCopyImpl(copyManager, sql,
-                                baos.getBuffer(), baos.size()));
+                    batches.add(new FlushJobPostgresCopyChunksImpl(copyManager, sql, chunks));
                 }
             } catch (IOException e) {
                 throw new SQLException(e.toString());
@@ -135,6 +136,9 @@ public class BatchWriterPostgresCopyImpl extends BatchWriterPreparedStatementImp
             dos.writeLargeUTF((String) o);
         } else if (o instanceof StringConstructor) {
             dos.writeLargeUTF((StringConstructor) o);
+        } else if (o instanceof byte[]) {
+            dos.writeInt(((byte[]) o).length);
+            dos.write((byte[]) o);
         } else if (o instanceof BigDecimal) {
             BigInteger unscaledValue = ((BigDecimal) o).unscaledValue();
             int signum = ((BigDecimal) o).signum();
@@ -210,8 +214,8 @@ public class BatchWriterPostgresCopyImpl extends BatchWriterPreparedStatementImp
                             + " back to prepared statements");
                     super.doIndirectionInserts(name, table, batches);
                 } else {
-                    PostgresByteArrayOutputStream baos = new PostgresByteArrayOutputStream();
-                    DataOutputStream dos = new DataOutputStream(baos);
+                    PostgresCopyChunkStream chunks = new PostgresCopyChunkStream();
+                    DataOutputStream dos = new DataOutputStream(chunks);
                     dos.writeBytes("PGCOPY\n");
                     dos.writeByte(255);
                     dos.writeBytes("\r\n");
@@ -229,8 +233,7 @@ public class BatchWriterPostgresCopyImpl extends BatchWriterPreparedStatementImp
                         + table.getRightColName() + ") FROM STDIN BINARY";
                     dos.writeShort(-1);
                     dos.flush();
-                    batches.add(new FlushJobPostgresCopyImpl(copyManager, sql,
-                                baos.getBuffer(), baos.size()));
+                    batches.add(new FlushJobPostgresCopyChunksImpl(copyManager, sql, chunks));
                 }
             } catch (IOException e) {
                 throw new SQLException(e.toString());
@@ -17,6 +17,7 @@ import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -385,10 +386,13 @@ public class BatchWriterSimpleImpl implements BatchWriter
     /*
      * All code above this comment is called by the thread that calls into the Batch.
      * All code below this comment is called by the Batch writer thread.
-     * They do not access any common instance variables, so they need no synchronisation.
+     * They do not access any common instance variables, so they need no synchronisation, except
+     * that a Batch with several connections has several writer threads, each writing different
+     * tables, which share the map of statistics.
      */
 
-    protected Map<String, Statistic> stats = new HashMap<String, Statistic>();
+    protected Map<String, Statistic> stats
+        = Collections.synchronizedMap(new HashMap<String, Statistic>());
 
     /**
      * {@inheritDoc}
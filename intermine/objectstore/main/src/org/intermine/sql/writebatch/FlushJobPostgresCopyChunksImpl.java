@@ -0,0 +1,74 @@
+package org.intermine.sql.writebatch;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * An implementation of the FlushJob interface that streams COPY data held in a
+ * PostgresCopyChunkStream to the database a chunk at a time.
+ */
+public class FlushJobPostgresCopyChunksImpl implements FlushJob
+{
+    private static final Logger LOG = Logger.getLogger(FlushJobPostgresCopyChunksImpl.class);
+
+    private CopyManager copyManager;
+    private String sql;
+    private PostgresCopyChunkStream data;
+    private long size;
+
+    /**
+     * Constructor for this class
+     *
+     * @param copyManager the CopyManager to use
+     * @param sql the SQL String containing the COPY command
+     * @param data the COPY data
+     */
+    public FlushJobPostgresCopyChunksImpl(CopyManager copyManager, String sql,
+            PostgresCopyChunkStream data) {
+        this.copyManager = copyManager;
+        this.sql = sql;
+        this.data = data;
+        this.size = data.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void flush() throws SQLException {
+        CopyIn copyIn = null;
+        try {
+            copyIn = copyManager.copyIn(sql);
+            data.writeTo(copyIn);
+            copyIn.endCopy();
+            copyManager = null;
+            sql = null;
+            data = null;
+        } catch (SQLException e) {
+            if ((copyIn != null) && copyIn.isActive()) {
+                try {
+                    copyIn.cancelCopy();
+                } catch (SQLException e2) {
+                    LOG.warn("Could not cancel COPY operation", e2);
+                }
+            }
+            data.release();
+            SQLException e2 = new SQLException("Error writing to database, running statement "
+                    + sql + ", data size = " + size);
+            e2.initCause(e);
+            throw e2;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.intermine.sql.writebatch;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.postgresql.copy.CopyIn;
+
+/**
+ * An OutputStream that collects COPY data in a list of fixed-size chunks taken from a shared
+ * pool, instead of in one byte array. Writing never copies data that has already been written,
+ * and the chunks can be sent to the database one at a time with writeTo(), each being returned
+ * to the pool as soon as it has been sent, so the memory used by one batch can be reused to
+ * build the next.
+ *
+ * This class is not thread-safe - it is filled by one thread and then sent by another.
+ */
+public class PostgresCopyChunkStream extends OutputStream
+{
+    /** The size of each chunk */
+    public static final int CHUNK_SIZE = 64 * 1024;
+    /** The maximum number of unused chunks to keep in the pool */
+    public static final int MAX_POOLED_CHUNKS = 256;
+
+    private static final ConcurrentLinkedQueue<byte[]> POOL = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger POOL_SIZE = new AtomicInteger();
+
+    private List<byte[]> chunks = new ArrayList<byte[]>();
+    private byte[] current = null;
+    private int pos = CHUNK_SIZE;
+    private long size = 0;
+
+    /**
+     * Takes a chunk from the pool, or creates one if the pool is empty.
+     *
+     * @return a byte array of length CHUNK_SIZE
+     */
+    protected static byte[] takeChunk() {
+        byte[] chunk = POOL.poll();
+        if (chunk == null) {
+            return new byte[CHUNK_SIZE];
+        }
+        POOL_SIZE.decrementAndGet();
+        return chunk;
+    }
+
+    /**
+     * Returns a chunk to the pool, unless the pool is already full.
+     *
+     * @param chunk a byte array previously obtained from takeChunk()
+     */
+    protected static void returnChunk(byte[] chunk) {
+        if (POOL_SIZE.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+            POOL.offer(chunk);
+        } else {
+            POOL_SIZE.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of unused chunks in the pool.
+     *
+     * @return an int
+     */
+    public static int getPooledChunkCount() {
+        return POOL_SIZE.get();
+    }
+
+    private void nextChunk() {
+        if (chunks == null) {
+            throw new IllegalStateException("Cannot write to a PostgresCopyChunkStream that has"
+                    + " already been sent or released");
+        }
+        current = takeChunk();
+        chunks.add(current);
+        pos = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) {
+        if (pos == CHUNK_SIZE) {
+            nextChunk();
+        }
+        current[pos++] = (byte) b;
+        size++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (pos == CHUNK_SIZE) {
+                nextChunk();
+            }
+            int toCopy = Math.min(len, CHUNK_SIZE - pos);
+            System.arraycopy(b, off, current, pos, toCopy);
+            pos += toCopy;
+            off += toCopy;
+            len -= toCopy;
+            size += toCopy;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to this stream.
+     *
+     * @return a long
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Sends the contents of this stream to a COPY operation, chunk by chunk, returning each chunk
+     * to the pool once it has been sent. The stream cannot be used afterwards, even if this
+     * method throws an exception.
+     *
+     * @param copyIn the COPY operation to write to
+     * @throws SQLException if the database rejects the data
+     */
+    public void writeTo(CopyIn copyIn) throws SQLException {
+        List<byte[]> toSend = chunks;
+        int lastLength = pos;
+        chunks = null;
+        current = null;
+        pos = CHUNK_SIZE;
+        if (toSend == null) {
+            throw new IllegalStateException("PostgresCopyChunkStream has already been sent or"
+                    + " released");
+        }
+        int last = toSend.size() - 1;
+        int i = 0;
+        try {
+            for (; i <= last; i++) {
+                byte[] chunk = toSend.get(i);
+                copyIn.writeToCopy(chunk, 0, (i == last ? lastLength : CHUNK_SIZE));
+                toSend.set(i, null);
+                returnChunk(chunk);
+            }
+        } finally {
+            for (; i <= last; i++) {
+                byte[] chunk = toSend.get(i);
+                if (chunk != null) {
+                    returnChunk(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns all the chunks of this stream to the pool without sending them. The stream cannot
+     * be used afterwards.
+     */
+    public void release() {
+        if (chunks != null) {
+            for (byte[] chunk : chunks) {
+                returnChunk(chunk);
+            }
+            chunks = null;
+            current = null;
+            pos = CHUNK_SIZE;
+        }
+    }
+}
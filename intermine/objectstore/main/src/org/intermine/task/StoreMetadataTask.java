@@ -15,6 +15,8 @@ import java.util.Random;
 
 import org.intermine.metadata.Model;
 import org.intermine.modelproduction.MetadataManager;
+import org.intermine.objectstore.intermine.DatabaseSchema;
+import org.intermine.objectstore.intermine.ObjectBinaryFormat;
 import static org.intermine.objectstore.intermine.TorqueModelOutput.FORMAT_VERSION;
 import org.intermine.sql.Database;
 import org.intermine.sql.DatabaseFactory;
@@ -93,6 +95,7 @@ public class StoreMetadataTask extends Task
             String missingTablesString = props.getProperty("missingTables");
             String truncatedClassesString = props.getProperty("truncatedClasses");
             String noNotXmlString = props.getProperty("noNotXml");
+            String objectFormatString = props.getProperty("objectFormat");
 
             boolean noNotXml = false;
             if ("true".equals(noNotXmlString) || (noNotXmlString == null)) {
@@ -104,6 +107,14 @@ public class StoreMetadataTask extends Task
                         + noNotXmlString);
             }
 
+            if (objectFormatString == null) {
+                objectFormatString = DatabaseSchema.OBJECT_FORMAT_NOTXML;
+            } else if (!(DatabaseSchema.OBJECT_FORMAT_NOTXML.equals(objectFormatString)
+                    || DatabaseSchema.OBJECT_FORMAT_BINARY.equals(objectFormatString))) {
+                throw new BuildException("Invalid value for property objectFormat: "
+                        + objectFormatString);
+            }
+
             MetadataManager.store(db, MetadataManager.OS_FORMAT_VERSION, "" + FORMAT_VERSION);
             if (truncatedClassesString != null) {
                 MetadataManager.store(db, MetadataManager.TRUNCATED_CLASSES,
@@ -113,6 +124,11 @@ public class StoreMetadataTask extends Task
                 MetadataManager.store(db, MetadataManager.MISSING_TABLES, missingTablesString);
             }
             MetadataManager.store(db, MetadataManager.NO_NOTXML, "" + noNotXml);
+            MetadataManager.store(db, MetadataManager.OBJECT_FORMAT, objectFormatString);
+            if (DatabaseSchema.OBJECT_FORMAT_BINARY.equals(objectFormatString)) {
+                MetadataManager.store(db, MetadataManager.OBJECT_LAYOUT,
+                        ObjectBinaryFormat.getLayoutFingerprint(model));
+            }
             MetadataManager.store(db, MetadataManager.SERIAL_NUMBER, Long.toString(new Random().nextLong()));
         } catch (Exception e) {
             if (e instanceof BuildException) {
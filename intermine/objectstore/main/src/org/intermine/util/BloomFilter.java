@@ -0,0 +1,172 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * A Bloom filter - a fixed-size summary of a set of objects that can say for certain that an
+ * object was never added, but may wrongly say that an object was added with a small probability.
+ * The size of the filter is chosen when it is created from the number of objects expected and the
+ * acceptable rate of false positives, and does not grow as objects are added.
+ *
+ * Objects are compared according to their equals() method, so the same rules apply as for a
+ * HashSet. Strings are hashed from their characters to 64 bits rather than by hashCode(), as they
+ * are the most common values and String.hashCode() collides too often for large filters. Null may
+ * be added like any other value.
+ *
+ * This class is not thread-safe.
+ */
+public class BloomFilter
+{
+    private static final int MAX_WORDS = Integer.MAX_VALUE - 8;
+    private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+    private long insertions = 0;
+
+    /**
+     * Constructor for this class.
+     *
+     * @param expectedInsertions the number of objects that will be added
+     * @param falsePositiveRate the acceptable probability of mightContain() returning true for an
+     * object that was not added, once expectedInsertions objects have been added
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if ((falsePositiveRate <= 0.0) || (falsePositiveRate >= 1.0)) {
+            throw new IllegalArgumentException("Illegal false positive rate: "
+                    + falsePositiveRate);
+        }
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate)
+                / (Math.log(2) * Math.log(2)));
+        long wordCount = Math.min(MAX_WORDS, Math.max(1, (bits + 63) / 64));
+        words = new long[(int) wordCount];
+        bitCount = wordCount * 64;
+        hashCount = (int) Math.max(1, Math.min(30, Math.round(((double) bitCount) / n
+                        * Math.log(2))));
+    }
+
+    /**
+     * Adds an object to the filter.
+     *
+     * @param o the object, which may be null
+     * @return true if the filter changed, which means that the object had definitely not been
+     * added before
+     */
+    public boolean put(Object o) {
+        long hash = hash(o);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                changed = true;
+            }
+        }
+        insertions++;
+        return changed;
+    }
+
+    /**
+     * Returns whether an object may have been added to the filter.
+     *
+     * @param o the object, which may be null
+     * @return false if the object has definitely not been added, true if it probably has
+     */
+    public boolean mightContain(Object o) {
+        long hash = hash(o);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of bits in the filter.
+     *
+     * @return a long
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Returns the number of bits set for each object.
+     *
+     * @return an int
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Returns the number of times put() has been called.
+     *
+     * @return a long
+     */
+    public long getInsertions() {
+        return insertions;
+    }
+
+    /**
+     * Returns the probability of mightContain() returning true for an object that has not been
+     * added, given the number of objects added so far.
+     *
+     * @return a double between 0 and 1
+     */
+    public double getFalsePositiveRate() {
+        return Math.pow(1.0 - Math.exp(-((double) hashCount) * insertions / bitCount),
+                hashCount);
+    }
+
+    private static long hash(Object o) {
+        if (o == null) {
+            return NULL_HASH;
+        }
+        long h;
+        if (o instanceof String) {
+            // 64-bit FNV-1a over the characters
+            String s = (String) o;
+            h = 0xCBF29CE484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001B3L;
+            }
+        } else {
+            h = o.hashCode();
+        }
+        // Finalisation step of MurmurHash3, so that every input bit affects every output bit
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "BloomFilter(" + insertions + " values in " + bitCount + " bits)";
+    }
+}
@@ -19,10 +19,12 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.cglib.proxy.Factory;
 
 import org.intermine.model.FastPathObject;
+import org.intermine.model.FastPathObjectFactory;
 import org.intermine.model.InterMineObject;
 
 /**
@@ -33,9 +35,19 @@ import org.intermine.model.InterMineObject;
 public final class DynamicUtil
 {
     private static Map<Set<? extends Class<?>>, Class<? extends FastPathObject>> classMap
-        = new HashMap<Set<? extends Class<?>>, Class<? extends FastPathObject>>();
-    private static HashMap<Class<?>, Set<Class<?>>> decomposeMap = new HashMap<Class<?>,
+        = new ConcurrentHashMap<Set<? extends Class<?>>, Class<? extends FastPathObject>>();
+    private static Map<Class<?>, Set<Class<?>>> decomposeMap = new ConcurrentHashMap<Class<?>,
         Set<Class<?>>>();
+    private static Map<Class<?>, FastPathObjectFactory> factoryMap
+        = new ConcurrentHashMap<Class<?>, FastPathObjectFactory>();
+    private static Map<Class<?>, Factory> prototypeMap = new ConcurrentHashMap<Class<?>, Factory>();
+    private static Map<String, Set<Class<?>>> classNamesMap
+        = new ConcurrentHashMap<String, Set<Class<?>>>();
+    private static final FastPathObjectFactory NO_FACTORY = new FastPathObjectFactory() {
+        public FastPathObject newInstance(Class<?> clazz) {
+            return null;
+        }
+    };
     private static Map<Class<?>, String> friendlyNameMap = new HashMap<Class<?>, String>();
     private static Map<Class<?>, String> simpleNameMap = new HashMap<Class<?>, String>();
 
@@ -55,7 +67,7 @@ public final class DynamicUtil
      * compatible.
      */
     @SuppressWarnings("unchecked")
-    public static synchronized FastPathObject createObject(Set<? extends Class<?>> classes) {
+    public static FastPathObject createObject(Set<? extends Class<?>> classes) {
         Class<? extends FastPathObject> requiredClass = classMap.get(classes);
         if (requiredClass != null) {
             return createObject(requiredClass);
@@ -85,20 +97,9 @@ public final class DynamicUtil
                     throw new IllegalArgumentException("Cannot create an object without a class "
                                                        + "for: " + classes);
                 } else {
-                    try {
-                        classMap.put(classes, fpclazz);
-                        return fpclazz.newInstance();
-                    } catch (InstantiationException e) {
-                        IllegalArgumentException e2 = new IllegalArgumentException("Problem running"
-                                + " constructor");
-                        e2.initCause(e);
-                        throw e2;
-                    } catch (IllegalAccessException e) {
-                        IllegalArgumentException e2 = new IllegalArgumentException("Problem running"
-                                + " constructor");
-                        e2.initCause(e);
-                        throw e2;
-                    }
+                    FastPathObject retval = createObject(fpclazz);
+                    classMap.put(classes, fpclazz);
+                    return retval;
                 }
             }
             if ((fpclazz == null) && (interfaces.size() == 1)) {
@@ -142,6 +143,14 @@ public final class DynamicUtil
      * @throws IllegalArgumentException if an error occurs
      */
     public static <C extends FastPathObject> C createObject(Class<C> clazz) {
+        FastPathObject generated = getObjectFactory(clazz).newInstance(clazz);
+        if (generated != null) {
+            return clazz.cast(generated);
+        }
+        Factory prototype = prototypeMap.get(clazz);
+        if (prototype != null) {
+            return clazz.cast(prototype.newInstance(new DynamicBean()));
+        }
         C retval = null;
         try {
             retval = clazz.newInstance();
@@ -152,6 +161,41 @@ public final class DynamicUtil
         }
         if (retval instanceof Factory) {
             ((Factory) retval).setCallback(0, new DynamicBean());
+            // Later instances are created from this one through the cglib Factory interface,
+            // which does not need reflection.
+            prototypeMap.put(clazz, (Factory) retval);
+            return clazz.cast(((Factory) retval).newInstance(new DynamicBean()));
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the generated FastPathObjectFactory for the package of the given class, or a
+     * factory that always returns null if the package has none. The lookup is cached per class.
+     *
+     * @param clazz a class
+     * @return a FastPathObjectFactory
+     */
+    private static FastPathObjectFactory getObjectFactory(Class<?> clazz) {
+        FastPathObjectFactory retval = factoryMap.get(clazz);
+        if (retval == null) {
+            String factoryName = TypeUtil.packageName(clazz.getName());
+            factoryName = (factoryName.length() > 0 ? factoryName + "." : "")
+                + FastPathObjectFactory.CLASS_NAME;
+            retval = NO_FACTORY;
+            try {
+                Class<?> factoryClass = Class.forName(factoryName, true, clazz.getClassLoader());
+                if (FastPathObjectFactory.class.isAssignableFrom(factoryClass)) {
+                    retval = (FastPathObjectFactory) factoryClass.newInstance();
+                }
+            } catch (ClassNotFoundException e) {
+                // No generated factory - fall back on reflection
+            } catch (InstantiationException e) {
+                // Fall back on reflection
+            } catch (IllegalAccessException e) {
+                // Fall back on reflection
+            }
+            factoryMap.put(clazz, retval);
         }
         return retval;
     }
@@ -200,7 +244,7 @@ public final class DynamicUtil
      * @throws IllegalArgumentException if there is more than one Class, or if the fields are not
      * compatible.
      */
-    public static synchronized Class<? extends FastPathObject> composeClass(Set<Class<?>> classes) {
+    public static Class<? extends FastPathObject> composeClass(Set<Class<?>> classes) {
         Class<? extends FastPathObject> retval = classMap.get(classes);
         if (retval == null) {
             retval = createObject(classes).getClass();
@@ -232,7 +276,7 @@ public final class DynamicUtil
      * @param clazz the Class to decompose
      * @return a Set of Class objects
      */
-    public static synchronized Set<Class<?>> decomposeClass(Class<?> clazz) {
+    public static Set<Class<?>> decomposeClass(Class<?> clazz) {
         Set<Class<?>> retval = decomposeMap.get(clazz);
         if (retval == null) {
             if (net.sf.cglib.proxy.Factory.class.isAssignableFrom(clazz)) {
@@ -294,7 +338,16 @@ public final class DynamicUtil
      */
     public static FastPathObject instantiateObject(String className, String implementations)
         throws ClassNotFoundException {
+        String key = className + "|" + implementations;
+        Set<Class<?>> classes = classNamesMap.get(key);
+        if (classes == null) {
+            classes = convertToClasses(parseClassNames(className, implementations));
+            classNamesMap.put(key, classes);
+        }
+        return createObject(classes);
+    }
 
+    private static Set<String> parseClassNames(String className, String implementations) {
         Set<String> classNames = new HashSet<String>();
 
         if (className != null && !"".equals(className) && !"".equals(className.trim())) {
@@ -309,8 +362,7 @@ public final class DynamicUtil
             throw new RuntimeException("attempted to create an object without specifying any "
                                        + "classes or interfaces");
         }
-
-        return createObject(convertToClasses(classNames));
+        return classNames;
     }
 
     /**
@@ -0,0 +1,101 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * A count-min sketch of four-bit counters, used to estimate how often keys have been seen
+ * recently. Once the number of increments reaches ten times the capacity, all the counters are
+ * halved, so that old popularity fades away. This class is not thread-safe - callers must
+ * synchronise.
+ */
+class FrequencySketch
+{
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = new int[] {0x97cb3127, 0xb3c9a3a5, 0xc2b2ae35, 0x85ebca6b};
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions = 0;
+
+    /**
+     * Creates a new sketch suitable for a cache of the given capacity.
+     *
+     * @param capacity the maximum number of entries in the cache
+     */
+    FrequencySketch(int capacity) {
+        int width = 16;
+        while (width < capacity && width < (1 << 30)) {
+            width <<= 1;
+        }
+        table = new byte[DEPTH][width];
+        mask = width - 1;
+        sampleSize = Math.max(10 * capacity, 10);
+    }
+
+    /**
+     * Records an occurrence of the given key.
+     *
+     * @param key the key
+     */
+    void increment(Object key) {
+        int hash = spread(key);
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[i][index] < MAX_COUNT) {
+                table[i][index]++;
+                added = true;
+            }
+        }
+        if (added && (++additions >= sampleSize)) {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent occurrences of the given key.
+     *
+     * @param key the key
+     * @return an int between zero and fifteen
+     */
+    int frequency(Object key) {
+        int hash = spread(key);
+        int retval = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            retval = Math.min(retval, table[i][indexOf(hash, i)]);
+        }
+        return retval;
+    }
+
+    private void reset() {
+        for (int i = 0; i < DEPTH; i++) {
+            byte[] row = table[i];
+            for (int o = 0; o < row.length; o++) {
+                row[o] = (byte) (row[o] >> 1);
+            }
+        }
+        additions = additions / 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        return (h ^ (h >>> 15)) & mask;
+    }
+
+    private static int spread(Object key) {
+        int h = (key == null ? 0 : key.hashCode());
+        h ^= (h >>> 16);
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -45,7 +45,7 @@ public class IntPresentSet
      * @param i the int to add to the set
      * @param newBit true to add to the set, false to remove from the set
      */
-    public void set(int i, boolean newBit) {
+    public synchronized void set(int i, boolean newBit) {
         int bitNo = i & WORD_MASK;
         i /= WORD_SIZE;
         int wordNo = i & PAGE_MASK;
@@ -84,7 +84,7 @@ public class IntPresentSet
      * @param i any int
      * @return true or false
      */
-    public boolean contains(int i) {
+    public synchronized boolean contains(int i) {
         int bitNo = i & WORD_MASK;
         i /= WORD_SIZE;
         int wordNo = i & PAGE_MASK;
@@ -103,7 +103,7 @@ public class IntPresentSet
      *
      * @param i an Integer
      */
-    public void add(Integer i) {
+    public synchronized void add(Integer i) {
         if (i == null) {
             throw new NullPointerException("i is null");
         }
@@ -117,7 +117,7 @@ public class IntPresentSet
      * @param i any Integer
      * @return true or false
      */
-    public boolean contains(Integer i) {
+    public synchronized boolean contains(Integer i) {
         if (i == null) {
             throw new NullPointerException("i is null");
         }
@@ -130,14 +130,14 @@ public class IntPresentSet
      *
      * @return the size
      */
-    public int size() {
+    public synchronized int size() {
         return size;
     }
 
     /**
      * Removes all ints from the object.
      */
-    public void clear() {
+    public synchronized void clear() {
         pages.clear();
         size = 0;
     }
@@ -146,7 +146,7 @@ public class IntPresentSet
      * {@inheritDoc}
      */
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuffer retval = new StringBuffer("[");
         boolean needComma = false;
         TreeSet<Integer> sortedKeys = new TreeSet<Integer>(pages.keySet());
@@ -0,0 +1,106 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * A cache of objects that may be accessed concurrently by many threads without external
+ * synchronisation. Implementations are free to drop entries at any time, according to their
+ * eviction policy. Null values are permitted, and are distinguished from missing entries by the
+ * containsKey method, so that a cache can remember that something does not exist.
+ * <p>
+ * Implementations keep counts of hits, misses and evictions, so that the effectiveness of the
+ * cache can be logged.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of cached values
+ */
+public interface ObjectCache<K, V>
+{
+    /**
+     * Returns the value cached for the given key, or null if there is no entry. A hit is counted
+     * if the key is present, and a miss otherwise.
+     *
+     * @param key the key
+     * @return the cached value, or null
+     */
+    V get(K key);
+
+    /**
+     * Returns true if an entry is present for the given key, even if its value is null. This
+     * method does not affect the hit and miss counts.
+     *
+     * @param key the key
+     * @return true if the key is present
+     */
+    boolean containsKey(K key);
+
+    /**
+     * Offers an entry to the cache. The cache may decide not to keep the entry, or may evict
+     * other entries to make room for it.
+     *
+     * @param key the key
+     * @param value the value, which may be null
+     */
+    void put(K key, V value);
+
+    /**
+     * Offers an entry to the cache unless an entry is already present for the key, and returns
+     * the value that the cache holds for the key afterwards. Threads that race to cache an object
+     * they have each fetched therefore all end up with the same instance, as long as the cache
+     * does not decide to drop the entry straight away.
+     *
+     * @param key the key
+     * @param value the value, which may be null
+     * @return the value already present for the key, or value if there was none
+     */
+    V putIfAbsent(K key, V value);
+
+    /**
+     * Removes the entry for the given key, if present.
+     *
+     * @param key the key
+     */
+    void remove(K key);
+
+    /**
+     * Removes all entries from the cache. The statistics are not reset.
+     */
+    void clear();
+
+    /**
+     * Returns the number of entries currently in the cache.
+     *
+     * @return an int
+     */
+    int size();
+
+    /**
+     * Returns the number of get operations that found an entry.
+     *
+     * @return a long
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of get operations that did not find an entry.
+     *
+     * @return a long
+     */
+    long getMissCount();
+
+    /**
+     * Returns the number of entries removed by the cache in order to stay within its bounds, or
+     * by the garbage collector.
+     *
+     * @return a long
+     */
+    long getEvictionCount();
+}
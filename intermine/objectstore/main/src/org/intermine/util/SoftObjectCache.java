@@ -0,0 +1,139 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An ObjectCache backed by a single synchronised CacheMap, so the values are held softly and the
+ * size of the cache is limited only by the garbage collector. This is the behaviour the
+ * objectstore getObjectById cache has always had, and is kept for those who want it.
+ * <p>
+ * Evictions by the garbage collector are not counted.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of cached values
+ */
+public class SoftObjectCache<K, V> implements ObjectCache<K, V>
+{
+    private final CacheMap<K, V> map;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a new empty cache.
+     *
+     * @param name the name of the cache, printed out in log messages
+     */
+    public SoftObjectCache(String name) {
+        map = new CacheMap<K, V>(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public V get(K key) {
+        V retval;
+        boolean contains = true;
+        synchronized (map) {
+            retval = map.get(key);
+            if (retval == null) {
+                contains = map.containsKey(key);
+            }
+        }
+        if (contains) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsKey(K key) {
+        synchronized (map) {
+            return map.containsKey(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void put(K key, V value) {
+        synchronized (map) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public V putIfAbsent(K key, V value) {
+        synchronized (map) {
+            V retval = map.get(key);
+            if ((retval != null) || map.containsKey(key)) {
+                return retval;
+            }
+            map.put(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void remove(K key) {
+        synchronized (map) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictionCount() {
+        return 0;
+    }
+}
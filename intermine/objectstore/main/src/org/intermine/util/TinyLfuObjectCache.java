@@ -0,0 +1,278 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An ObjectCache bounded by the number of entries, using the W-TinyLFU policy. New entries enter
+ * a small LRU admission window. When an entry falls out of the window, it is only admitted to the
+ * main LRU area if it has been seen more often recently than the entry that would have to be
+ * evicted to make room for it, as estimated by a FrequencySketch. This keeps frequently-used
+ * objects in the cache when large numbers of objects are only looked at once.
+ * <p>
+ * The cache is split into a number of independently-locked segments by the hash of the key, so
+ * threads reading different objects do not contend on a single monitor.
+ * <p>
+ * The bound is on the number of entries, not on their size in memory, so the maximum size should
+ * be chosen with the typical size of a value in mind. Values of widely varying size are better
+ * held in a cache bounded by bytes.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of cached values
+ */
+public class TinyLfuObjectCache<K, V> implements ObjectCache<K, V>
+{
+    private static final int SEGMENTS = 16;
+    private static final Object NULL_VALUE = new Object();
+
+    private final Segment<K>[] segments;
+    private final int maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new empty cache.
+     *
+     * @param maxSize the maximum number of entries to hold
+     */
+    @SuppressWarnings("unchecked")
+    public TinyLfuObjectCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive, not " + maxSize);
+        }
+        this.maxSize = maxSize;
+        int segmentCount = (maxSize < SEGMENTS * 16 ? 1 : SEGMENTS);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<K>(maxSize / segmentCount
+                    + (i < maxSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the maximum number of entries this cache will hold.
+     *
+     * @return an int
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Object retval = segmentFor(key).get(key);
+        if (retval == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return (retval == NULL_VALUE ? null : (V) retval);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsKey(K key) {
+        return segmentFor(key).containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void put(K key, V value) {
+        int evicted = segmentFor(key).put(key, value == null ? NULL_VALUE : value);
+        if (evicted > 0) {
+            evictions.addAndGet(evicted);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(K key, V value) {
+        Segment<K> segment = segmentFor(key);
+        synchronized (segment) {
+            Object present = segment.peek(key);
+            if (present != null) {
+                return (present == NULL_VALUE ? null : (V) present);
+            }
+            put(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        for (Segment<K> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        int retval = 0;
+        for (Segment<K> segment : segments) {
+            retval += segment.size();
+        }
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TinyLfuObjectCache(size = " + size() + "/" + maxSize + ", hits = " + hits.get()
+            + ", misses = " + misses.get() + ", evictions = " + evictions.get() + ")";
+    }
+
+    private Segment<K> segmentFor(K key) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        int h = (key == null ? 0 : key.hashCode());
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * One independently-locked part of the cache, consisting of an admission window, a main area
+     * and a frequency sketch.
+     *
+     * @param <K> the type of keys
+     */
+    private static class Segment<K>
+    {
+        private final LinkedHashMap<K, Object> window;
+        private final LinkedHashMap<K, Object> main;
+        private final FrequencySketch sketch;
+        private final int windowSize;
+        private final int mainSize;
+
+        Segment(int capacity) {
+            windowSize = Math.max(1, capacity / 10);
+            mainSize = Math.max(1, capacity - windowSize);
+            window = new LinkedHashMap<K, Object>(16, 0.75F, true);
+            main = new LinkedHashMap<K, Object>(16, 0.75F, true);
+            sketch = new FrequencySketch(capacity);
+        }
+
+        synchronized Object get(K key) {
+            sketch.increment(key);
+            Object retval = window.get(key);
+            if (retval == null) {
+                retval = main.get(key);
+            }
+            return retval;
+        }
+
+        /**
+         * Returns the stored value without adding to the frequency of the key.
+         */
+        synchronized Object peek(K key) {
+            Object retval = window.get(key);
+            if (retval == null) {
+                retval = main.get(key);
+            }
+            return retval;
+        }
+
+        synchronized boolean containsKey(K key) {
+            return window.containsKey(key) || main.containsKey(key);
+        }
+
+        /**
+         * Stores a value and returns the number of entries that were evicted as a result.
+         */
+        synchronized int put(K key, Object value) {
+            sketch.increment(key);
+            if (main.containsKey(key)) {
+                main.put(key, value);
+                return 0;
+            }
+            window.put(key, value);
+            if (window.size() <= windowSize) {
+                return 0;
+            }
+            Iterator<Map.Entry<K, Object>> windowIter = window.entrySet().iterator();
+            Map.Entry<K, Object> candidate = windowIter.next();
+            windowIter.remove();
+            if (main.size() < mainSize) {
+                main.put(candidate.getKey(), candidate.getValue());
+                return 0;
+            }
+            Iterator<Map.Entry<K, Object>> mainIter = main.entrySet().iterator();
+            Map.Entry<K, Object> victim = mainIter.next();
+            if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+                mainIter.remove();
+                main.put(candidate.getKey(), candidate.getValue());
+            }
+            return 1;
+        }
+
+        synchronized void remove(K key) {
+            if (window.remove(key) == null) {
+                main.remove(key);
+            }
+        }
+
+        synchronized void clear() {
+            window.clear();
+            main.clear();
+        }
+
+        synchronized int size() {
+            return window.size() + main.size();
+        }
+    }
+}
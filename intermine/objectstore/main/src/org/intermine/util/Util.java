@@ -237,6 +237,16 @@ public final class Util
         }
         byte[] buffer = sequence.getBytes();
         md5.update(buffer);
+        return getMd5checksum(md5);
+    }
+
+    /**
+     * Completes an MD5 digest that has been fed a sequence a piece at a time.
+     *
+     * @param md5 a MessageDigest for the MD5 algorithm
+     * @return the checksum in the same form as getMd5checksum(String)
+     */
+    public static String getMd5checksum(MessageDigest md5) {
         byte[] bits = md5.digest();
         StringBuilder checksum = new StringBuilder();
         for (int i = 0; i < bits.length; i++) {
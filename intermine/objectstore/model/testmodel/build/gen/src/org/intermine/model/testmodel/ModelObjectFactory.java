@@ -0,0 +1,116 @@
+package org.intermine.model.testmodel;
+
+import org.intermine.model.FastPathObject;
+import org.intermine.model.FastPathObjectFactory;
+
+public class ModelObjectFactory implements FastPathObjectFactory
+{
+    public FastPathObject newInstance(final Class<?> clazz) {
+        String name = clazz.getName();
+        switch (name.hashCode()) {
+            case -2106071265:
+                if (org.intermine.model.testmodel.HasAddressShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.HasAddressShadow();
+                }
+                break;
+            case -2015788817:
+                if (org.intermine.model.testmodel.Address.class == clazz) {
+                    return new org.intermine.model.testmodel.Address();
+                }
+                break;
+            case -1756889101:
+                if (org.intermine.model.testmodel.Secretary.class == clazz) {
+                    return new org.intermine.model.testmodel.Secretary();
+                }
+                break;
+            case -848636006:
+                if (org.intermine.model.testmodel.Contractor.class == clazz) {
+                    return new org.intermine.model.testmodel.Contractor();
+                }
+                break;
+            case -624691081:
+                if (org.intermine.model.testmodel.Department.class == clazz) {
+                    return new org.intermine.model.testmodel.Department();
+                }
+                break;
+            case -539289912:
+                if (org.intermine.model.testmodel.CEO.class == clazz) {
+                    return new org.intermine.model.testmodel.CEO();
+                }
+                break;
+            case -265101840:
+                if (org.intermine.model.testmodel.HasSecretarysShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.HasSecretarysShadow();
+                }
+                break;
+            case -32836440:
+                if (org.intermine.model.testmodel.Manager.class == clazz) {
+                    return new org.intermine.model.testmodel.Manager();
+                }
+                break;
+            case -12481352:
+                if (org.intermine.model.testmodel.CompanyShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.CompanyShadow();
+                }
+                break;
+            case 52273427:
+                if (org.intermine.model.testmodel.Employee.class == clazz) {
+                    return new org.intermine.model.testmodel.Employee();
+                }
+                break;
+            case 293055025:
+                if (org.intermine.model.testmodel.RandomInterfaceShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.RandomInterfaceShadow();
+                }
+                break;
+            case 396833654:
+                if (org.intermine.model.testmodel.SimpleObject.class == clazz) {
+                    return new org.intermine.model.testmodel.SimpleObject();
+                }
+                break;
+            case 461880097:
+                if (org.intermine.model.testmodel.Bank.class == clazz) {
+                    return new org.intermine.model.testmodel.Bank();
+                }
+                break;
+            case 1307207092:
+                if (org.intermine.model.testmodel.BrokeShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.BrokeShadow();
+                }
+                break;
+            case 1448157432:
+                if (org.intermine.model.testmodel.Range.class == clazz) {
+                    return new org.intermine.model.testmodel.Range();
+                }
+                break;
+            case 1450721332:
+                if (org.intermine.model.testmodel.Types.class == clazz) {
+                    return new org.intermine.model.testmodel.Types();
+                }
+                break;
+            case 1483440269:
+                if (org.intermine.model.testmodel.EmployableShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.EmployableShadow();
+                }
+                break;
+            case 1660284713:
+                if (org.intermine.model.testmodel.ThingShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.ThingShadow();
+                }
+                break;
+            case 1823009330:
+                if (org.intermine.model.testmodel.EmploymentPeriod.class == clazz) {
+                    return new org.intermine.model.testmodel.EmploymentPeriod();
+                }
+                break;
+            case 2089474002:
+                if (org.intermine.model.testmodel.ImportantPersonShadow.class == clazz) {
+                    return new org.intermine.model.testmodel.ImportantPersonShadow();
+                }
+                break;
+            default:
+                break;
+        }
+        return null;
+    }
+}
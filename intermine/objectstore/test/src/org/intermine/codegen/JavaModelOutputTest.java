@@ -72,6 +72,7 @@ public class JavaModelOutputTest extends TestCase
             assertTrue(buffer.toString(), buffer.toString().contains(expected));
         } finally {
             processFile.delete();
+            new File("./" + JavaModelOutput.OBJECT_FACTORY_NAME + ".java").delete();
         }
     }
 
@@ -320,5 +321,34 @@ public class JavaModelOutputTest extends TestCase
 
         assertTrue(expected, mo.generate(cld3, false).contains(expected));
     }
-}
 
+    public void testGenerateGetFieldValueSwitch() throws Exception {
+        AttributeDescriptor atd1 = new AttributeDescriptor("atd1", "int");
+        Set atts = new HashSet(Collections.singleton(atd1));
+        ClassDescriptor cld1 = new ClassDescriptor("package.name.Class1", null, false, atts, new HashSet(), new HashSet());
+        Model model = new Model("model", "package.name", new HashSet(Collections.singleton(cld1)));
+
+        String expected = INDENT + INDENT + INDENT + "case " + "atd1".hashCode() + ":\n"
+            + INDENT + INDENT + INDENT + INDENT + "if (\"atd1\".equals(fieldName)) {\n"
+            + INDENT + INDENT + INDENT + INDENT + INDENT + "return Integer.valueOf(atd1);\n"
+            + INDENT + INDENT + INDENT + INDENT + "}\n"
+            + INDENT + INDENT + INDENT + INDENT + "break;\n";
+        String generated = mo.generateGetFieldValue(cld1, false);
+        assertTrue(generated, generated.contains(INDENT + INDENT + "switch (fieldName.hashCode()) {\n"));
+        assertTrue(generated, generated.contains(expected));
+    }
+
+    public void testGenerateObjectFactory() throws Exception {
+        ClassDescriptor cld1 = new ClassDescriptor("package.name.Class1", null, false, new HashSet(), new HashSet(), new HashSet());
+        ClassDescriptor cld2 = new ClassDescriptor("package.name.Interface1", null, true, new HashSet(), new HashSet(), new HashSet());
+        Model model = new Model("model", "package.name", new HashSet(Arrays.asList(new Object[] {cld1, cld2})));
+
+        String generated = mo.generateObjectFactory("package.name", Arrays.asList(new ClassDescriptor[] {cld1, cld2}));
+        assertTrue(generated, generated.startsWith("package package.name;" + ENDL));
+        assertTrue(generated, generated.contains("public class ModelObjectFactory implements FastPathObjectFactory"));
+        assertTrue(generated, generated.contains("if (package.name.Class1.class == clazz) {\n"
+                    + INDENT + INDENT + INDENT + INDENT + INDENT + "return new package.name.Class1();\n"));
+        assertTrue(generated, generated.contains("return new package.name.Interface1Shadow();\n"));
+        assertFalse(generated, generated.contains("new package.name.Interface1()"));
+    }
+}
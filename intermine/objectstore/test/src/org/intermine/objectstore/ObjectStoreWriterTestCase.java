@@ -10,6 +10,7 @@ package org.intermine.objectstore;
  *
  */
 
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
@@ -756,5 +757,29 @@ public class ObjectStoreWriterTestCase extends ObjectStoreAbstractImplTestCase
         ClobAccess sub = ca.subSequence(85000, 85016);
         assertEquals("Lots of monkeys.", sub.toString());
         assertEquals(16, sub.length());
+        char[] chars = new char[20];
+        ca.getChars(6990, 7010, chars, 0);
+        assertEquals(longString.substring(6990, 7010), new String(chars));
+        sub.getChars(5, 16, chars, 2);
+        assertEquals("of monkeys.", new String(chars, 2, 11));
+        StringWriter out = new StringWriter();
+        ca.drainToWriter(out);
+        assertEquals(longString.toString(), out.toString());
+    }
+
+    public void testClobReplacedInTransaction() throws Exception {
+        Clob clob = writer.createClob();
+        writer.replaceClob(clob, "Monkey");
+        assertEquals("Monkey", new ClobAccess(writer, clob).toString());
+        writer.beginTransaction();
+        writer.replaceClob(clob, "Gorilla");
+        assertEquals("Gorilla", new ClobAccess(writer, clob).toString());
+        writer.abortTransaction();
+        // the page read inside the aborted transaction must not be served from the page cache
+        assertEquals("Monkey", new ClobAccess(writer, clob).toString());
+        writer.beginTransaction();
+        writer.replaceClob(clob, "Chimpanzee");
+        writer.commitTransaction();
+        assertEquals("Chimpanzee", new ClobAccess(writer, clob).toString());
     }
 }
@@ -12,6 +12,7 @@ import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsInfo;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.objectstore.query.SingletonResults;
 
 import java.util.Collection;
@@ -133,6 +134,14 @@ public class ObjectStoreWriterDummyImpl implements ObjectStoreWriter
         throw new UnsupportedOperationException();
     }
 
+    public ResultsStream stream(Query q) {
+        throw new UnsupportedOperationException();
+    }
+
+    public ResultsStream stream(Query q, int fetchSize, boolean optimise) {
+        throw new UnsupportedOperationException();
+    }
+
     public SingletonResults executeSingleton(Query q) {
         throw new UnsupportedOperationException();
     }
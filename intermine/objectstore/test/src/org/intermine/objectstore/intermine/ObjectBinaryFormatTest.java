@@ -0,0 +1,122 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.intermine.metadata.Model;
+import org.intermine.model.testmodel.Address;
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.modelproduction.xml.InterMineModelParser;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.ObjectStoreFactory;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.util.DynamicUtil;
+
+public class ObjectBinaryFormatTest extends TestCase
+{
+    ObjectStoreInterMineImpl os;
+
+    public void setUp() throws Exception {
+        os = (ObjectStoreInterMineImpl) ObjectStoreFactory.getObjectStore("os.unittest");
+    }
+
+    public void testRoundTrip() throws Exception {
+        Employee e = new Employee();
+        Department d = new Department();
+        e.setId(new Integer(1234));
+        e.setName("Employee1 with a $_^ delimiter and some \u00fcnicode");
+        e.setAge(-42);
+        e.setFullTime(true);
+        d.setId(new Integer(5678));
+        e.setDepartment(d);
+
+        byte[] bytes = ObjectBinaryFormat.render(e, os.getModel());
+        assertTrue(ObjectBinaryFormat.isBinary(bytes));
+
+        Employee obj1 = (Employee) NotXmlParser.parse(bytes, os);
+        assertEquals(e.getName(), obj1.getName());
+        assertEquals(new Integer(1234), obj1.getId());
+        assertEquals(-42, obj1.getAge());
+        assertTrue(obj1.getFullTime());
+        ProxyReference o = (ProxyReference) obj1.proxGetDepartment();
+        assertNotNull(o);
+        assertEquals(new Integer(5678), o.getId());
+        assertNull(obj1.proxGetAddress());
+    }
+
+    public void testRoundTripDynamic() throws Exception {
+        Company c = (Company) DynamicUtil.createObject(Collections.singleton(Company.class));
+        Address a = new Address();
+        a.setId(new Integer(74328));
+        c.setId(new Integer(74350));
+        c.setName("CompanyC");
+        c.setVatNumber(100);
+        c.setAddress(a);
+
+        Company obj1 = (Company) NotXmlParser.parse(ObjectBinaryFormat.render(c, os.getModel()),
+                os);
+        assertEquals("CompanyC", obj1.getName());
+        assertEquals(100, obj1.getVatNumber());
+        assertEquals(new Integer(74350), obj1.getId());
+        assertEquals(new Integer(74328), ((ProxyReference) obj1.getFieldProxy("address"))
+                .getId());
+        assertNotNull(obj1.getDepartments());
+    }
+
+    public void testLayoutFingerprint() throws Exception {
+        Model model = os.getModel();
+        String fingerprint = ObjectBinaryFormat.getLayoutFingerprint(model);
+        String xml = model.toString();
+        assertEquals(fingerprint, ObjectBinaryFormat.getLayoutFingerprint(parse(xml)));
+        ObjectBinaryFormat.checkLayoutFingerprint(fingerprint, model);
+
+        String employee = "<class name=\"Employee\"";
+        int classStart = xml.indexOf(employee);
+        int attributesStart = xml.indexOf(">", classStart) + 1;
+        String changedXml = xml.substring(0, attributesStart)
+            + "<attribute name=\"aaaFirst\" type=\"java.lang.String\"/>"
+            + xml.substring(attributesStart);
+        Model changed = parse(changedXml);
+        assertFalse(fingerprint.equals(ObjectBinaryFormat.getLayoutFingerprint(changed)));
+        try {
+            ObjectBinaryFormat.checkLayoutFingerprint(fingerprint, changed);
+            fail("Expected ObjectStoreException");
+        } catch (ObjectStoreException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(fingerprint));
+        }
+        try {
+            ObjectBinaryFormat.checkLayoutFingerprint(null, model);
+            fail("Expected ObjectStoreException");
+        } catch (ObjectStoreException e) {
+            // no fingerprint recorded
+        }
+    }
+
+    private static Model parse(String xml) throws Exception {
+        return new InterMineModelParser().process(new StringReader(xml));
+    }
+
+    public void testNotXmlBytes() throws Exception {
+        String s = NotXmlParser.DELIM + "org.intermine.model.testmodel.Employee"
+            + NotXmlParser.DELIM + "aid" + NotXmlParser.DELIM + "1234"
+            + NotXmlParser.DELIM + "aname" + NotXmlParser.DELIM + "Employee1";
+
+        Employee obj1 = (Employee) NotXmlParser.parse(s.getBytes("UTF-8"), os);
+        assertEquals("Employee1", obj1.getName());
+        assertEquals(new Integer(1234), obj1.getId());
+    }
+}
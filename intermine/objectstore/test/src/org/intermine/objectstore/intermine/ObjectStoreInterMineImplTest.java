@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -52,6 +53,7 @@ import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryCloner;
 import org.intermine.objectstore.query.QueryCollectionReference;
 import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryObjectReference;
 import org.intermine.objectstore.query.QueryValue;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
@@ -955,4 +957,36 @@ public class ObjectStoreInterMineImplTest extends ObjectStoreAbstractImplTestCas
         Results r3 = os.execute(q, 102, false, false, false);
         assertTrue(r3.isSingleBatch());
     }
+
+    public void testParallelConvert() throws Exception {
+        Query q = new Query();
+        QueryClass qcEmp = new QueryClass(Employee.class);
+        QueryClass qcDept = new QueryClass(Department.class);
+        q.addFrom(qcEmp);
+        q.addFrom(qcDept);
+        q.addToSelect(qcEmp);
+        q.addToSelect(qcDept);
+        q.setConstraint(new ContainsConstraint(new QueryObjectReference(qcEmp, "department"),
+                    ConstraintOp.CONTAINS, qcDept));
+        q.addToOrderBy(new QueryField(qcEmp, "name"));
+        ObjectStoreInterMineImpl osii = (ObjectStoreInterMineImpl) os;
+        List<ResultsRow<Object>> serial = osii.execute(q, 0, 1000, false, false,
+                ObjectStore.SEQUENCE_IGNORE);
+        osii.flushObjectById();
+        osii.setConvertThreads(4);
+        try {
+            List<ResultsRow<Object>> parallel = osii.execute(q, 0, 1000, false, false,
+                    ObjectStore.SEQUENCE_IGNORE);
+            assertEquals(serial, parallel);
+            Map<Integer, Object> departments = new HashMap<Integer, Object>();
+            for (ResultsRow<Object> row : parallel) {
+                Department dept = (Department) row.get(1);
+                Object previous = departments.put(dept.getId(), dept);
+                assertTrue(previous == null || previous == dept);
+                assertEquals(dept.getId(), ((Employee) row.get(0)).getDepartment().getId());
+            }
+        } finally {
+            osii.setConvertThreads(0);
+        }
+    }
 }
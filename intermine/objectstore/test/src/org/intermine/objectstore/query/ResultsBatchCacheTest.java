@@ -0,0 +1,135 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.lang.StringUtils;
+import org.intermine.model.testmodel.Employee;
+
+public class ResultsBatchCacheTest extends TestCase
+{
+    public ResultsBatchCacheTest(String arg) {
+        super(arg);
+    }
+
+    private static List<Object> makeBatch(int rows) {
+        List<Object> retval = new ArrayList<Object>();
+        for (int i = 0; i < rows; i++) {
+            ResultsRow<Object> row = new ResultsRow<Object>();
+            row.add("row" + i);
+            row.add(new Integer(i));
+            retval.add(row);
+        }
+        return retval;
+    }
+
+    public void testPutGet() throws Exception {
+        ResultsBatchCache cache = new ResultsBatchCache("test", 1000000);
+        Map<Integer, List<Object>> batches = cache.newBatchMap();
+        List<Object> batch = makeBatch(10);
+        batches.put(new Integer(0), batch);
+        assertSame(batch, batches.get(new Integer(0)));
+        assertTrue(batches.containsKey(new Integer(0)));
+        assertNull(batches.get(new Integer(1)));
+        assertEquals(1, batches.size());
+        assertEquals(1, cache.getBatchCount());
+        assertEquals(cache.estimateSize(batch), cache.getUsedBytes());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testBatchMapsAreSeparate() throws Exception {
+        ResultsBatchCache cache = new ResultsBatchCache("test", 1000000);
+        Map<Integer, List<Object>> batches1 = cache.newBatchMap();
+        Map<Integer, List<Object>> batches2 = cache.newBatchMap();
+        List<Object> batch = makeBatch(10);
+        batches1.put(new Integer(0), batch);
+        assertNull(batches2.get(new Integer(0)));
+        batches2.put(new Integer(0), makeBatch(5));
+        assertSame(batch, batches1.get(new Integer(0)));
+        assertEquals(2, cache.getBatchCount());
+    }
+
+    public void testReplaceAndRemove() throws Exception {
+        ResultsBatchCache cache = new ResultsBatchCache("test", 1000000);
+        Map<Integer, List<Object>> batches = cache.newBatchMap();
+        List<Object> batch1 = makeBatch(10);
+        List<Object> batch2 = makeBatch(20);
+        batches.put(new Integer(0), batch1);
+        assertSame(batch1, batches.put(new Integer(0), batch2));
+        assertEquals(1, cache.getBatchCount());
+        assertEquals(cache.estimateSize(batch2), cache.getUsedBytes());
+        batches.clear();
+        assertEquals(0, cache.getBatchCount());
+        assertEquals(0, cache.getUsedBytes());
+        assertTrue(batches.isEmpty());
+    }
+
+    public void testEvictionStaysWithinBudget() throws Exception {
+        ResultsBatchCache sizer = new ResultsBatchCache("sizer", 0);
+        long batchBytes = sizer.estimateSize(makeBatch(100));
+        ResultsBatchCache cache = new ResultsBatchCache("test", batchBytes * 3);
+        Map<Integer, List<Object>> batches1 = cache.newBatchMap();
+        Map<Integer, List<Object>> batches2 = cache.newBatchMap();
+        for (int i = 0; i < 5; i++) {
+            batches1.put(new Integer(i), makeBatch(100));
+            batches2.put(new Integer(i), makeBatch(100));
+            assertTrue(cache.getUsedBytes() <= cache.getMaxBytes());
+        }
+        assertEquals(3, cache.getBatchCount());
+        assertEquals(7, cache.getEvictions());
+        assertEquals(3, batches1.size() + batches2.size());
+    }
+
+    public void testRecentlyUsedBatchSurvives() throws Exception {
+        ResultsBatchCache sizer = new ResultsBatchCache("sizer", 0);
+        long batchBytes = sizer.estimateSize(makeBatch(100));
+        ResultsBatchCache cache = new ResultsBatchCache("test", batchBytes * 2);
+        Map<Integer, List<Object>> batches = cache.newBatchMap();
+        batches.put(new Integer(0), makeBatch(100));
+        batches.put(new Integer(1), makeBatch(100));
+        assertNotNull(batches.get(new Integer(0)));
+        batches.put(new Integer(2), makeBatch(100));
+        assertTrue(batches.containsKey(new Integer(0)));
+        assertFalse(batches.containsKey(new Integer(1)));
+        assertTrue(batches.containsKey(new Integer(2)));
+    }
+
+    public void testObjectContentsCounted() throws Exception {
+        ResultsBatchCache cache = new ResultsBatchCache("test", 0);
+        Employee small = new Employee();
+        small.setName("a");
+        Employee large = new Employee();
+        large.setName(StringUtils.repeat("a", 10001));
+        List<Object> smallBatch = new ArrayList<Object>();
+        List<Object> largeBatch = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            smallBatch.add(new ResultsRow<Object>(Collections.singletonList(small)));
+            largeBatch.add(new ResultsRow<Object>(Collections.singletonList(large)));
+        }
+        assertTrue(cache.estimateSize(largeBatch) - cache.estimateSize(smallBatch)
+                >= 100 * 2 * 10000);
+    }
+
+    public void testOversizedBatchNotCached() throws Exception {
+        ResultsBatchCache cache = new ResultsBatchCache("test", 100);
+        Map<Integer, List<Object>> batches = cache.newBatchMap();
+        batches.put(new Integer(0), makeBatch(100));
+        assertNull(batches.get(new Integer(0)));
+        assertEquals(0, cache.getUsedBytes());
+    }
+}
@@ -0,0 +1,196 @@
+package org.intermine.sql;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ConnectionPartitionTest extends TestCase
+{
+    private int closes;
+
+    public ConnectionPartitionTest(String arg) {
+        super(arg);
+    }
+
+    private Connection fakeConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("close".equals(method.getName())) {
+                            closes++;
+                        } else if ("getAutoCommit".equals(method.getName())) {
+                            return Boolean.TRUE;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Opens a connection in the partition from another thread, so that it counts against the
+     * limit for the current thread. Returns null if the partition stayed full for timeoutMillis.
+     */
+    private Connection openInThread(final ConnectionPartition partition, final long timeoutMillis,
+            final long waitNanos) throws Exception {
+        final Connection[] retval = new Connection[1];
+        final Exception[] error = new Exception[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    if (partition.acquire(timeoutMillis)) {
+                        retval[0] = partition.wrap(fakeConnection(), waitNanos);
+                    }
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        };
+        t.start();
+        t.join();
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return retval[0];
+    }
+
+    public void testLimit() throws Exception {
+        ConnectionPartition partition = new ConnectionPartition(ConnectionPurpose.PREFETCH, 2,
+                false);
+        Connection c1 = openInThread(partition, 0, 1000);
+        Connection c2 = openInThread(partition, 0, 3000000);
+        assertEquals(2, partition.getInUse());
+        assertFalse(partition.acquire(10));
+        assertEquals(1, partition.getTimeouts());
+        assertFalse(partition.acquire(-1));
+        assertEquals(1, partition.getTimeouts());
+
+        c1.close();
+        // Closing twice only gives back one connection
+        c1.close();
+        assertEquals(1, closes);
+        assertTrue(c1.isClosed());
+        assertEquals(1, partition.getInUse());
+        assertTrue(partition.acquire(10));
+        partition.cancel();
+        c2.close();
+        assertEquals(0, partition.getInUse());
+        assertEquals(2, partition.getAcquired());
+        assertEquals(3.0, partition.getMaxWaitMillis(), 0.0001);
+    }
+
+    public void testNested() throws Exception {
+        ConnectionPartition partition = new ConnectionPartition(ConnectionPurpose.PRECOMPUTE, 1,
+                false);
+        assertTrue(partition.acquire(0));
+        Connection c1 = partition.wrap(fakeConnection(), 0);
+        // A thread that holds a connection does not wait for another
+        assertTrue(partition.acquire(-1));
+        Connection c2 = partition.wrap(fakeConnection(), 0);
+        assertTrue(partition.acquire(-1));
+        partition.cancel();
+        assertEquals(2, partition.getInUse());
+
+        c1.close();
+        // The thread still holds c2, so other threads must still wait
+        assertNull(openInThread(partition, 10, 0));
+        c2.close();
+        assertNotNull(openInThread(partition, 10, 0));
+    }
+
+    public void testNestedUnderLimitDoesNotDeadlock() throws Exception {
+        final ConnectionPartition partition = new ConnectionPartition(
+                ConnectionPurpose.PRECOMPUTE, 2, false);
+        final CountDownLatch holding = new CountDownLatch(2);
+        final AtomicInteger finished = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        partition.acquire(0);
+                        Connection outer = partition.wrap(fakeConnection(), 0);
+                        holding.countDown();
+                        // Make sure that both permits are taken before nesting
+                        holding.await();
+                        partition.acquire(0);
+                        Connection inner = partition.wrap(fakeConnection(), 0);
+                        inner.close();
+                        outer.close();
+                        finished.incrementAndGet();
+                    } catch (Exception e) {
+                        // Counted as not finished
+                    }
+                }
+            };
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+        assertEquals(4, finished.get());
+        assertEquals(0, partition.getInUse());
+        assertEquals(8, partition.getAcquired());
+    }
+
+    public void testUnlimited() throws Exception {
+        ConnectionPartition partition = new ConnectionPartition(ConnectionPurpose.INTERACTIVE, 0,
+                false);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(partition.acquire(1));
+            partition.wrap(fakeConnection(), 0);
+        }
+        assertEquals(100, partition.getInUse());
+        assertEquals(0, partition.getWaiting());
+    }
+
+    public void testDelegation() throws Exception {
+        ConnectionPartition partition = new ConnectionPartition(ConnectionPurpose.INTERACTIVE, 0,
+                false);
+        partition.acquire(0);
+        Connection c = partition.wrap(fakeConnection(), 0);
+        assertTrue(c.getAutoCommit());
+        assertTrue(c.equals(c));
+        assertFalse(c.equals(fakeConnection()));
+        assertEquals(System.identityHashCode(c), c.hashCode());
+    }
+
+    public void testHistogramAndLeaks() throws Exception {
+        ConnectionPartition partition = new ConnectionPartition(ConnectionPurpose.TRACKER, 0,
+                true);
+        for (int i = 0; i < 99; i++) {
+            partition.acquire(0);
+            partition.wrap(fakeConnection(), 500 * 1000).close();
+        }
+        partition.acquire(0);
+        Connection leaked = partition.wrap(fakeConnection(), 100 * 1000 * 1000);
+        long[] histogram = partition.getWaitHistogram();
+        // 500 microseconds is under 2^9, 100 ms is under 2^17 microseconds
+        assertEquals(99, histogram[9]);
+        assertEquals(1, histogram[17]);
+        assertEquals(0.512, partition.getWaitPercentileMillis(50.0), 0.0001);
+        assertEquals(131.072, partition.getWaitPercentileMillis(100.0), 0.0001);
+        String[] open = partition.getOpenConnections();
+        assertEquals(1, open.length);
+        assertTrue(open[0], open[0].contains("testHistogramAndLeaks"));
+        leaked.close();
+        assertEquals(0, partition.getOpenConnections().length);
+    }
+}
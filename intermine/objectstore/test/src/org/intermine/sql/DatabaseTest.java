@@ -85,6 +85,33 @@ public class DatabaseTest extends TestCase
         Database db = new Database(props);
         assertEquals("secret", db.getPassword());
     }
+
+    public void testConnectionLimits() throws Exception {
+        props.put("connectionLimits", "prefetch=4, Precompute=2");
+        Database db = new Database(props);
+        assertEquals(4, db.getPartition(ConnectionPurpose.PREFETCH).getLimit());
+        assertEquals(2, db.getPartition(ConnectionPurpose.PRECOMPUTE).getLimit());
+        assertEquals(0, db.getPartition(ConnectionPurpose.INTERACTIVE).getLimit());
+        db.shutdown();
+    }
+
+    public void testInvalidConnectionLimits() throws Exception {
+        props.put("connectionLimits", "sideline=4");
+        try {
+            new Database(props);
+            fail("Expected: IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testThreadPurpose() throws Exception {
+        assertEquals(ConnectionPurpose.INTERACTIVE, Database.getThreadPurpose());
+        assertEquals(ConnectionPurpose.INTERACTIVE,
+                Database.setThreadPurpose(ConnectionPurpose.PREFETCH));
+        assertEquals(ConnectionPurpose.PREFETCH, Database.getThreadPurpose());
+        assertEquals(ConnectionPurpose.PREFETCH, Database.setThreadPurpose(null));
+        assertEquals(ConnectionPurpose.INTERACTIVE, Database.getThreadPurpose());
+    }
 /*
     public void manyTables(int tableCount) throws Exception {
         LOG.warn("Starting test with tableCount = " + tableCount);
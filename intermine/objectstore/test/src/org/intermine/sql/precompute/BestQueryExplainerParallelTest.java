@@ -0,0 +1,229 @@
+package org.intermine.sql.precompute;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.intermine.sql.query.Constant;
+import org.intermine.sql.query.Constraint;
+import org.intermine.sql.query.ExplainResult;
+import org.intermine.sql.query.Field;
+import org.intermine.sql.query.Query;
+import org.intermine.sql.query.SelectValue;
+import org.intermine.sql.query.Table;
+
+public class BestQueryExplainerParallelTest extends TestCase
+{
+    public BestQueryExplainerParallelTest(String arg) {
+        super(arg);
+    }
+
+    private static Query makeQuery(int tables, String value) {
+        Query q = new Query();
+        Field first = null;
+        for (int i = 0; i < tables; i++) {
+            Table t = new Table("mytable");
+            Field f = new Field("a", t);
+            if (first == null) {
+                first = f;
+                q.addSelect(new SelectValue(f, null));
+            }
+            q.addFrom(t);
+            q.addWhere(new Constraint(f, Constraint.EQ, new Constant(value)));
+        }
+        return q;
+    }
+
+    public void testReturnBest() throws Exception {
+        SlowExplainer bq = new SlowExplainer(-1, 4, 0);
+        Query q1 = makeQuery(1, "1");
+        Query q2 = makeQuery(2, "1");
+        bq.add(q2);
+        bq.add(q1);
+        assertEquals(q1.getSQLString(), bq.getBestQueryString());
+    }
+
+    public void testExplainsInParallel() throws Exception {
+        SlowExplainer bq = new SlowExplainer(-1, 4, 300);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            bq.add(makeQuery(3, "" + i));
+        }
+        assertNotNull(bq.getBestQueryString());
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(4, bq.explainCount.get());
+        assertTrue("Took " + elapsed + " ms", elapsed < 1000);
+    }
+
+    public void testDuplicateExplainedOnce() throws Exception {
+        SlowExplainer bq = new SlowExplainer(-1, 4, 0);
+        bq.add(makeQuery(2, "1"));
+        bq.add(makeQuery(2, "1"));
+        bq.add(makeQuery(2, "1").getSQLString());
+        assertNotNull(bq.getBestQueryString());
+        assertEquals(1, bq.explainCount.get());
+    }
+
+    public void testTimeLimit() throws Exception {
+        SlowExplainer bq = new SlowExplainer(200, 1, 0);
+        Query q1 = makeQuery(2, "1");
+        bq.add(q1);
+        bq.delay = 2000;
+        try {
+            bq.add(makeQuery(1, "2"));
+        } catch (BestQueryException e) {
+            // The first query may already be good enough
+        }
+        long start = System.currentTimeMillis();
+        assertEquals(q1.getSQLString(), bq.getBestQueryString());
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    public void testTimeLimitCancelsRunningExplains() throws Exception {
+        BlockingExplainer bq = new BlockingExplainer(200, 2);
+        Query q1 = makeQuery(2, "'fast'");
+        bq.add(q1);
+        bq.add(makeQuery(2, "2"));
+        assertTrue(bq.started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        try {
+            bq.add(makeQuery(2, "3"));
+            fail("Expected BestQueryException");
+        } catch (BestQueryException e) {
+            // Out of time
+        }
+        assertTrue(bq.cancelled.await(5, TimeUnit.SECONDS));
+        assertEquals(q1.getSQLString(), bq.getBestQueryString());
+    }
+
+    public void testTimeLimitRemovesQueuedExplains() throws Exception {
+        BlockingExplainer bq = new BlockingExplainer(200, 4);
+        Query q1 = makeQuery(2, "'fast'");
+        bq.add(q1);
+        bq.explains.get(q1.getSQLString()).get();
+        // fill the shared pool, so that further explains stay in its queue
+        final CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor pool = BestQueryExplainerParallel.getPool();
+        try {
+            for (int i = 0; i < BestQueryExplainerParallel.POOL_SIZE; i++) {
+                pool.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            // Finish
+                        }
+                    }
+                });
+            }
+            Query q2 = makeQuery(2, "2");
+            Query q3 = makeQuery(2, "3");
+            bq.add(q2);
+            bq.add(q3);
+            Runnable task2 = (Runnable) bq.explains.get(q2.getSQLString());
+            Runnable task3 = (Runnable) bq.explains.get(q3.getSQLString());
+            assertTrue(pool.getQueue().contains(task2));
+            assertTrue(pool.getQueue().contains(task3));
+            Thread.sleep(300);
+            try {
+                bq.add(makeQuery(2, "4"));
+                fail("Expected BestQueryException");
+            } catch (BestQueryException e) {
+                // Out of time
+            }
+            assertFalse(pool.getQueue().contains(task2));
+            assertFalse(pool.getQueue().contains(task3));
+            assertEquals(q1.getSQLString(), bq.getBestQueryString());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static class SlowExplainer extends BestQueryExplainerParallel
+    {
+        volatile long delay;
+        AtomicInteger explainCount = new AtomicInteger();
+
+        SlowExplainer(long timeLimit, int explainThreads, long delay) {
+            super(timeLimit, explainThreads);
+            this.delay = delay;
+        }
+
+        @Override
+        protected ExplainResult explainInPool(String sql) throws SQLException {
+            explainCount.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            return super.explainInPool(sql);
+        }
+    }
+
+    /**
+     * Explains queries on the value 'fast' straight away, and others with a Statement that blocks
+     * until it is cancelled.
+     */
+    private static class BlockingExplainer extends BestQueryExplainerParallel
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        BlockingExplainer(long timeLimit, int explainThreads) {
+            super(timeLimit, explainThreads);
+        }
+
+        @Override
+        protected ExplainResult explainInPool(String sql) throws SQLException {
+            if (sql.contains("'fast'")) {
+                return super.explainInPool(sql);
+            }
+            final CountDownLatch cancel = new CountDownLatch(1);
+            Statement stmt = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                    new Class<?>[] {Statement.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method m, Object[] args) {
+                            if ("cancel".equals(m.getName())) {
+                                cancel.countDown();
+                            } else if ("hashCode".equals(m.getName())) {
+                                return new Integer(System.identityHashCode(proxy));
+                            } else if ("equals".equals(m.getName())) {
+                                return Boolean.valueOf(proxy == args[0]);
+                            }
+                            return null;
+                        }
+                    });
+            startExplain(stmt, sql);
+            started.countDown();
+            try {
+                if (cancel.await(10, TimeUnit.SECONDS)) {
+                    cancelled.countDown();
+                    throw new SQLException("Cancelled");
+                }
+                return super.explainInPool(sql);
+            } catch (InterruptedException e) {
+                throw new SQLException("Interrupted");
+            } finally {
+                finishExplain(stmt);
+            }
+        }
+    }
+}
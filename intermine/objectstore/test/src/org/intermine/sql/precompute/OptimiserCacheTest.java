@@ -10,8 +10,15 @@ package org.intermine.sql.precompute;
  *
  */
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import org.intermine.sql.query.Query;
+
 public class OptimiserCacheTest extends TestCase
 {
     public OptimiserCacheTest(String arg1) {
@@ -28,4 +35,58 @@ public class OptimiserCacheTest extends TestCase
         assertNull(cache.lookup("original1", 10));
         assertNull(cache.lookup("somethingelse", 1000));
     }
+
+    public void testExpire() throws Exception {
+        OptimiserCache cache = new OptimiserCache();
+        for (int i = 0; i < OptimiserCache.MAX_LINESETS + OptimiserCache.EXPIRE_INTERVAL; i++) {
+            cache.addCacheLine("original" + i, "optimised" + i, 1000);
+        }
+        assertEquals(OptimiserCache.MAX_LINESETS, cache.size());
+        assertNull(cache.lookup("original0", 1000));
+        assertEquals("optimised1099", cache.lookup("original1099", 1000));
+    }
+
+    public void testSaveLoad() throws Exception {
+        PrecomputedTable pt1 = makeTable("precomp_1", "SELECT a.id FROM tab1 AS a");
+        PrecomputedTable pt2 = makeTable("precomp_2", "SELECT a.id FROM tab2 AS a");
+        OptimiserCache cache = new OptimiserCache();
+        cache.addCacheLine("original1", "SELECT precomp_1.id FROM precomp_1", 1000);
+        cache.addCacheLine("original2", "SELECT precomp_2.id FROM precomp_2", 1000);
+        cache.addCacheLine("original3", "optimised3", 1000);
+        File file = File.createTempFile("optimisercache", ".bin");
+        try {
+            cache.save(file, Arrays.asList(pt1, pt2));
+
+            OptimiserCache loaded = new OptimiserCache();
+            assertEquals(3, loaded.load(file, Arrays.asList(pt1, pt2)));
+            assertEquals("SELECT precomp_1.id FROM precomp_1", loaded.lookup("original1", 1000));
+            assertEquals("optimised3", loaded.lookup("original3", 1000));
+
+            // precomp_2 has been dropped, so only the line using it is discarded
+            loaded = new OptimiserCache();
+            assertEquals(2, loaded.load(file, Collections.singletonList(pt1)));
+            assertNull(loaded.lookup("original2", 1000));
+            assertEquals("optimised3", loaded.lookup("original3", 1000));
+
+            // precomp_1 has been redefined
+            List<PrecomputedTable> changed = Arrays.asList(pt2,
+                    makeTable("precomp_1", "SELECT a.id FROM tab3 AS a"));
+            loaded = new OptimiserCache();
+            assertEquals(2, loaded.load(file, changed));
+            assertNull(loaded.lookup("original1", 1000));
+
+            // A new table has been created, which might optimise anything better
+            List<PrecomputedTable> added = Arrays.asList(pt1, pt2,
+                    makeTable("precomp_3", "SELECT a.id FROM tab3 AS a"));
+            loaded = new OptimiserCache();
+            assertEquals(0, loaded.load(file, added));
+            assertEquals(0, loaded.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static PrecomputedTable makeTable(String name, String sql) throws Exception {
+        return new PrecomputedTable(new Query(sql), sql, name, null, null);
+    }
 }
@@ -0,0 +1,271 @@
+package org.intermine.sql.writebatch;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.sql.Database;
+
+/**
+ * Tests for the Batch, using a BatchWriter that does not need a database.
+ */
+public class BatchTest extends TestCase
+{
+    public BatchTest(String arg) {
+        super(arg);
+    }
+
+    public void testTablesWrittenSeparately() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        Batch batch = new Batch(writer);
+        assertEquals(1, batch.getConnectionCount());
+        String[] colNames = new String[] {"a"};
+        batch.addRow(null, "table1", new Integer(1), colNames, new Object[] {new Integer(1)});
+        batch.addRow(null, "table2", new Integer(2), colNames, new Object[] {new Integer(2)});
+        batch.addRow(null, "indirect", "a", "b", 1, 2);
+        batch.flush(null);
+        List<String> written = writer.getWritten();
+        Collections.sort(written);
+        assertEquals(Arrays.asList("indirect", "table1", "table2"), written);
+
+        batch.deleteRow(null, "table1", "a", new Integer(1));
+        batch.flush(null, Collections.singleton("table2"));
+        assertEquals(3, writer.getWritten().size());
+        batch.close(null);
+        assertEquals(4, writer.getWritten().size());
+        assertEquals("table1", writer.getWritten().get(3));
+
+        List<Batch.TableStatistics> stats = batch.getTableStatistics();
+        assertEquals(3, stats.size());
+        for (Batch.TableStatistics stat : stats) {
+            assertEquals(0, stat.getConnection());
+            assertEquals("table1".equals(stat.getName()) ? 2 : 1, stat.getFlushes());
+            assertTrue(stat.getSize() > 0);
+        }
+    }
+
+    public void testProblemReported() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        writer.fail = true;
+        Batch batch = new Batch(writer);
+        batch.addRow(null, "table1", new Integer(1), new String[] {"a"},
+                new Object[] {new Integer(1)});
+        try {
+            batch.flush(null);
+            fail("Expected SQLException");
+        } catch (SQLException e) {
+            assertEquals("Failed to write table1", e.getMessage());
+        }
+        batch.clear();
+        writer.fail = false;
+        batch.addRow(null, "table1", new Integer(1), new String[] {"a"},
+                new Object[] {new Integer(1)});
+        batch.flush(null);
+        batch.close(null);
+    }
+
+    public void testSeveralConnections() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        FakeDatabase db = new FakeDatabase();
+        Connection main = db.getConnection();
+        Batch batch = new Batch(writer, db, 3);
+        assertEquals(3, batch.getConnectionCount());
+        batch.keepOnMainConnection(ObjectStoreInterMineImpl.INT_BAG_TABLE_NAME);
+        for (int round = 0; round < 3; round++) {
+            addRows(batch, main, round);
+            batch.flush(main);
+        }
+        batch.close(main);
+
+        // Each table is pinned to one connection
+        Set<Connection> used = new HashSet<Connection>();
+        for (String table : TABLES) {
+            assertEquals(table, 1, writer.getConnections(table).size());
+            used.addAll(writer.getConnections(table));
+        }
+        assertEquals(Collections.singleton(main),
+                writer.getConnections(ObjectStoreInterMineImpl.INT_BAG_TABLE_NAME));
+        // The tables are spread over all the connections
+        assertEquals(3, used.size());
+        for (Batch.TableStatistics stat : batch.getTableStatistics()) {
+            if (ObjectStoreInterMineImpl.INT_BAG_TABLE_NAME.equals(stat.getName())) {
+                assertEquals(0, stat.getConnection());
+            }
+            assertEquals(3, stat.getFlushes());
+        }
+        // The extra connections commit every round, and the caller's is left alone
+        assertEquals(0, db.getCommits(main));
+        for (Connection c : used) {
+            if (c != main) {
+                assertEquals(3, db.getCommits(c));
+            }
+        }
+    }
+
+    public void testSingleConnection() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        FakeDatabase db = new FakeDatabase();
+        Connection main = db.getConnection();
+        Batch batch = new Batch(writer, db, 3);
+        addRows(batch, main, 0);
+        batch.flush(main);
+        Map<String, Set<Connection>> pinned = new HashMap<String, Set<Connection>>();
+        for (String table : TABLES) {
+            pinned.put(table, writer.getConnections(table));
+        }
+        writer.clearConnections();
+
+        // In a transaction, everything is written over the caller's connection
+        batch.setSingleConnection(true);
+        addRows(batch, main, 1);
+        batch.flush(main);
+        for (String table : TABLES) {
+            assertEquals(Collections.singleton(main), writer.getConnections(table));
+        }
+        writer.clearConnections();
+
+        // Afterwards, the tables go back to the connections they were pinned to
+        batch.setSingleConnection(false);
+        addRows(batch, main, 2);
+        batch.flush(main);
+        for (String table : TABLES) {
+            assertEquals(pinned.get(table), writer.getConnections(table));
+        }
+        batch.close(main);
+    }
+
+    private static final String[] TABLES = new String[] {"table1", "table2", "table3",
+        "table4", "table5", "table6", "indirect"};
+
+    private static void addRows(Batch batch, Connection con, int round) throws SQLException {
+        String[] colNames = new String[] {"a"};
+        for (String table : TABLES) {
+            if ("indirect".equals(table)) {
+                batch.addRow(con, table, "a", "b", round, round);
+            } else {
+                batch.addRow(con, table, new Integer(round), colNames,
+                        new Object[] {new Integer(round)});
+            }
+        }
+        batch.addRow(con, ObjectStoreInterMineImpl.INT_BAG_TABLE_NAME, "bagid", "value", round,
+                round);
+    }
+
+    /**
+     * A Database that hands out connections that only count their commits.
+     */
+    private static class FakeDatabase extends Database
+    {
+        private final Map<Connection, AtomicInteger> commits
+            = new ConcurrentHashMap<Connection, AtomicInteger>();
+
+        @Override
+        public Connection getConnection() {
+            final AtomicInteger count = new AtomicInteger();
+            Connection retval = (Connection) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[] {Connection.class},
+                    new InvocationHandler() {
+                        public Object invoke(Object proxy, Method m, Object[] args) {
+                            if ("commit".equals(m.getName())) {
+                                count.incrementAndGet();
+                            } else if ("hashCode".equals(m.getName())) {
+                                return new Integer(System.identityHashCode(proxy));
+                            } else if ("equals".equals(m.getName())) {
+                                return Boolean.valueOf(proxy == args[0]);
+                            }
+                            return null;
+                        }
+                    });
+            commits.put(retval, count);
+            return retval;
+        }
+
+        int getCommits(Connection c) {
+            return commits.get(c).get();
+        }
+    }
+
+    private static class RecordingWriter implements BatchWriter
+    {
+        private final List<String> written = Collections.synchronizedList(
+                new ArrayList<String>());
+        private final Map<String, Set<Connection>> connections
+            = new HashMap<String, Set<Connection>>();
+        volatile boolean fail = false;
+
+        public List<FlushJob> write(Connection con, Map<String, ? extends Table> tables,
+                Set<String> filter) {
+            List<FlushJob> retval = new ArrayList<FlushJob>();
+            for (Map.Entry<String, ? extends Table> entry : tables.entrySet()) {
+                final String name = entry.getKey();
+                if (((filter == null) || filter.contains(name))
+                        && (entry.getValue().getSize() != 0)) {
+                    entry.getValue().clear();
+                    synchronized (connections) {
+                        Set<Connection> used = connections.get(name);
+                        if (used == null) {
+                            used = new HashSet<Connection>();
+                            connections.put(name, used);
+                        }
+                        used.add(con);
+                    }
+                    retval.add(new FlushJob() {
+                        public void flush() throws SQLException {
+                            if (fail) {
+                                throw new SQLException("Failed to write " + name);
+                            }
+                            written.add(name);
+                        }
+                    });
+                }
+            }
+            return retval;
+        }
+
+        public void updateStatistics(Map<String, Integer> activity, Connection con) {
+        }
+
+        List<String> getWritten() {
+            synchronized (written) {
+                return new ArrayList<String>(written);
+            }
+        }
+
+        Set<Connection> getConnections(String table) {
+            synchronized (connections) {
+                return new HashSet<Connection>(connections.get(table));
+            }
+        }
+
+        void clearConnections() {
+            synchronized (connections) {
+                connections.clear();
+            }
+        }
+    }
+}
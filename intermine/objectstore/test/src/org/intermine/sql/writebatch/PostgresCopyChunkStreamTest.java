@@ -0,0 +1,137 @@
+package org.intermine.sql.writebatch;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.postgresql.copy.CopyIn;
+
+public class PostgresCopyChunkStreamTest extends TestCase
+{
+    public PostgresCopyChunkStreamTest(String arg) {
+        super(arg);
+    }
+
+    private void writeData(PostgresDataOutputStream dos) throws Exception {
+        Random random = new Random(42);
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            longString.append((char) (random.nextInt(3) == 0 ? 0x20AC : 'a' + (i % 26)));
+        }
+        for (int i = 0; i < 20000; i++) {
+            dos.writeShort(3);
+            dos.writeInt(4);
+            dos.writeInt(i);
+            dos.writeLargeUTF("Row " + i + " é");
+            byte[] bytes = new byte[random.nextInt(20)];
+            random.nextBytes(bytes);
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+        dos.writeLargeUTF(longString.toString());
+        dos.writeShort(-1);
+        dos.flush();
+    }
+
+    public void testSameAsByteArray() throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writeData(new PostgresDataOutputStream(expected));
+        PostgresCopyChunkStream chunks = new PostgresCopyChunkStream();
+        writeData(new PostgresDataOutputStream(chunks));
+        assertEquals(expected.size(), chunks.size());
+
+        RecordingCopyIn copyIn = new RecordingCopyIn(-1);
+        int pooled = PostgresCopyChunkStream.getPooledChunkCount();
+        chunks.writeTo(copyIn);
+        assertTrue(Arrays.equals(expected.toByteArray(), copyIn.received.toByteArray()));
+        assertTrue(copyIn.writes > 1);
+        assertEquals(Math.min(PostgresCopyChunkStream.MAX_POOLED_CHUNKS, pooled + copyIn.writes),
+                PostgresCopyChunkStream.getPooledChunkCount());
+        try {
+            chunks.write(1);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    public void testFailedWrite() throws Exception {
+        PostgresCopyChunkStream chunks = new PostgresCopyChunkStream();
+        byte[] data = new byte[PostgresCopyChunkStream.CHUNK_SIZE * 3 + 10];
+        chunks.write(data, 0, data.length);
+        int pooled = PostgresCopyChunkStream.getPooledChunkCount();
+        try {
+            chunks.writeTo(new RecordingCopyIn(2));
+            fail("Expected SQLException");
+        } catch (SQLException e) {
+            // Expected
+        }
+        assertEquals(Math.min(PostgresCopyChunkStream.MAX_POOLED_CHUNKS, pooled + 4),
+                PostgresCopyChunkStream.getPooledChunkCount());
+        chunks.release();
+        assertEquals(Math.min(PostgresCopyChunkStream.MAX_POOLED_CHUNKS, pooled + 4),
+                PostgresCopyChunkStream.getPooledChunkCount());
+    }
+
+    private static class RecordingCopyIn implements CopyIn
+    {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int writes = 0;
+        int failAt;
+
+        RecordingCopyIn(int failAt) {
+            this.failAt = failAt;
+        }
+
+        public void writeToCopy(byte[] buf, int off, int len) throws SQLException {
+            if (writes == failAt) {
+                throw new SQLException("Failed");
+            }
+            writes++;
+            received.write(buf, off, len);
+        }
+
+        public void flushCopy() {
+        }
+
+        public long endCopy() {
+            return 0;
+        }
+
+        public int getFieldCount() {
+            return 0;
+        }
+
+        public int getFormat() {
+            return 1;
+        }
+
+        public int getFieldFormat(int field) {
+            return 1;
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+
+        public void cancelCopy() {
+        }
+
+        public long getHandledRowCount() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+public class BloomFilterTest extends TestCase
+{
+    public BloomFilterTest(String arg) {
+        super(arg);
+    }
+
+    public void testNoFalseNegatives() throws Exception {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("gene" + i);
+            filter.put(new Integer(i * 7));
+        }
+        filter.put(null);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("gene" + i));
+            assertTrue(filter.mightContain(new Integer(i * 7)));
+        }
+        assertTrue(filter.mightContain(null));
+        assertEquals(20001, filter.getInsertions());
+    }
+
+    public void testFalsePositiveRate() throws Exception {
+        BloomFilter filter = new BloomFilter(100000, 0.01);
+        assertFalse(filter.mightContain("FBgn0000001"));
+        assertFalse(filter.mightContain(null));
+        for (int i = 0; i < 100000; i++) {
+            filter.put("FBgn" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 100000; i < 200000; i++) {
+            if (filter.mightContain("FBgn" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+        assertTrue(filter.getFalsePositiveRate() < 0.02);
+        assertFalse(filter.put("FBgn5"));
+    }
+}
@@ -57,6 +57,24 @@ public class DynamicUtilTest extends TestCase
         assertEquals("Flibble", c.getName());
     }
 
+    public void testCreateObjectGeneratedFactory() throws Exception {
+        Employee e = DynamicUtil.createObject(Employee.class);
+        assertEquals(Employee.class, e.getClass());
+        Company c = (Company) DynamicUtil.createObject(Collections.singleton(Company.class));
+        assertEquals("org.intermine.model.testmodel.CompanyShadow", c.getClass().getName());
+    }
+
+    public void testCreateObjectCompositeInstancesIndependent() throws Exception {
+        Set classes = new HashSet(Arrays.asList(new Class[] {Company.class, Broke.class}));
+        Company c1 = (Company) DynamicUtil.createObject(classes);
+        Company c2 = (Company) DynamicUtil.createObject(classes);
+        assertEquals(c1.getClass(), c2.getClass());
+        c1.setName("One");
+        c2.setName("Two");
+        assertEquals("One", c1.getName());
+        assertEquals("Two", c2.getName());
+    }
+
     public void testCreateObjectOneInterfaceWithParents() throws Exception {
         Object obj = DynamicUtil.createObject(Collections.singleton(Employable.class));
         assertTrue(obj instanceof Employable);
@@ -0,0 +1,91 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Collections;
+
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.Employee;
+
+/**
+ * Compares the generated field accessors and object factories with the reflective paths in
+ * TypeUtil and Class.newInstance(). Not a unit test - run it by hand with the testmodel on the
+ * classpath, optionally passing the number of iterations.
+ */
+public final class FastPathAccessorBenchmark
+{
+    private static final String[] FIELDS = new String[] {"name", "age", "fullTime", "end", "id"};
+
+    private FastPathAccessorBenchmark() {
+    }
+
+    /**
+     * Runs the comparison.
+     *
+     * @param args optional number of iterations
+     * @throws Exception if something goes wrong
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        Employee e = new Employee();
+        e.setName("Employee1");
+        e.setAge(42);
+        e.setEnd("end");
+        e.setId(new Integer(1));
+        // Two rounds, so that the second one is measured after JIT compilation.
+        int sink = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += e.getFieldValue(FIELDS[i % FIELDS.length]) == null ? 0 : 1;
+            }
+            report("generated getFieldValue", start, iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += TypeUtil.getFieldValue(e, FIELDS[i % FIELDS.length]) == null ? 0 : 1;
+            }
+            report("TypeUtil.getFieldValue", start, iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                e.setFieldValue("name", "Employee1");
+            }
+            report("generated setFieldValue", start, iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                TypeUtil.setFieldValue(e, "name", "Employee1");
+            }
+            report("TypeUtil.setFieldValue", start, iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += DynamicUtil.createObject(Employee.class).hashCode() & 1;
+            }
+            report("DynamicUtil.createObject", start, iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += Employee.class.newInstance().hashCode() & 1;
+            }
+            report("Class.newInstance", start, iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += DynamicUtil.createObject(Collections.singleton(Company.class))
+                    .hashCode() & 1;
+            }
+            report("DynamicUtil.createObject(Set)", start, iterations);
+        }
+        // Print the accumulated results so that the loops cannot be optimised away.
+        System.out.println("checksum: " + sink);
+    }
+
+    private static void report(String name, long start, int iterations) {
+        long nanos = System.nanoTime() - start;
+        System.out.println(name + ": " + (nanos / iterations) + " ns/op");
+    }
+}
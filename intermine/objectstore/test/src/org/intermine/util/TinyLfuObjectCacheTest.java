@@ -0,0 +1,83 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+public class TinyLfuObjectCacheTest extends TestCase
+{
+    public TinyLfuObjectCacheTest(String arg1) {
+        super(arg1);
+    }
+
+    public void testBasic() throws Exception {
+        TinyLfuObjectCache<Integer, String> cache = new TinyLfuObjectCache<Integer, String>(100);
+
+        cache.put(new Integer(5), "five");
+        cache.put(new Integer(2), null);
+
+        assertEquals("five", cache.get(new Integer(5)));
+        assertNull(cache.get(new Integer(2)));
+        assertTrue(cache.containsKey(new Integer(2)));
+        assertNull(cache.get(new Integer(3)));
+        assertFalse(cache.containsKey(new Integer(3)));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        cache.remove(new Integer(5));
+        assertFalse(cache.containsKey(new Integer(5)));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    public void testPutIfAbsent() throws Exception {
+        TinyLfuObjectCache<Integer, String> cache = new TinyLfuObjectCache<Integer, String>(100);
+        String first = new String("five");
+        assertSame(first, cache.putIfAbsent(new Integer(5), first));
+        assertSame(first, cache.putIfAbsent(new Integer(5), new String("five")));
+        assertNull(cache.putIfAbsent(new Integer(2), null));
+        assertNull(cache.putIfAbsent(new Integer(2), "two"));
+        assertSame(first, cache.get(new Integer(5)));
+        assertEquals(2, cache.size());
+    }
+
+    public void testBounded() throws Exception {
+        TinyLfuObjectCache<Integer, String> cache = new TinyLfuObjectCache<Integer, String>(1000);
+        for (int i = 0; i < 100000; i++) {
+            cache.put(new Integer(i), "" + i);
+        }
+        assertTrue("Size was " + cache.size(), cache.size() <= 1000);
+        assertTrue(cache.getEvictionCount() >= 99000);
+    }
+
+    public void testFrequentEntriesSurviveScan() throws Exception {
+        TinyLfuObjectCache<Integer, String> cache = new TinyLfuObjectCache<Integer, String>(100);
+        for (int i = 0; i < 50; i++) {
+            cache.put(new Integer(i), "" + i);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get(new Integer(i));
+            }
+        }
+        for (int i = 1000; i < 2000; i++) {
+            cache.put(new Integer(i), "" + i);
+        }
+        int present = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.containsKey(new Integer(i))) {
+                present++;
+            }
+        }
+        assertTrue("Only " + present + " frequent entries survived", present >= 40);
+    }
+}
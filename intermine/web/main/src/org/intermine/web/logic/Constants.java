@@ -137,6 +137,17 @@ public final class Constants
      */
     public static final int POLL_REFRESH_SECONDS = 2;
 
+    /**
+     * Longest time that the query poll page waits for a running query to finish before telling
+     * the client to refresh.
+     */
+    public static final int POLL_WAIT_MILLIS = 1000;
+
+    /**
+     * Session attribute holding the address of the client that the last request came from.
+     */
+    public static final String CLIENT_ADDRESS = "CLIENT_ADDRESS";
+
     /**
      * The session attribute that holds the ReportObjectCache object for the session.
      */
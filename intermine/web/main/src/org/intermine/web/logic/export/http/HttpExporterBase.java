@@ -49,7 +49,7 @@ public abstract class HttpExporterBase
         executor = im.getPathQueryExecutor(profile);
         executor.setBatchSize(BATCH_SIZE);
         try {
-            return executor.execute(pathQuery);
+            return executor.stream(pathQuery);
         } catch (ObjectStoreException e) {
             throw new RuntimeException(e);
         }
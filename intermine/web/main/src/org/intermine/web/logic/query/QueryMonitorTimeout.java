@@ -83,8 +83,9 @@ public class QueryMonitorTimeout implements QueryMonitor
     /**
      * {@inheritDoc}
      */
-    public void queryCompleted() {
+    public synchronized void queryCompleted() {
         complete = true;
+        notifyAll();
     }
 
     /**
@@ -92,15 +93,16 @@ public class QueryMonitorTimeout implements QueryMonitor
      *
      * @return true when the query has completed
      */
-    public boolean isCompleted() {
+    public synchronized boolean isCompleted() {
         return complete;
     }
 
     /**
      * {@inheritDoc}
      */
-    public void queryCancelledWithError() {
+    public synchronized void queryCancelledWithError() {
         error = true;
+        notifyAll();
     }
 
     /**
@@ -108,7 +110,7 @@ public class QueryMonitorTimeout implements QueryMonitor
      *
      * @return true if an error occured, false if not
      */
-    public boolean isCancelledWithError() {
+    public synchronized boolean isCancelledWithError() {
         return error;
     }
 
@@ -117,15 +119,32 @@ public class QueryMonitorTimeout implements QueryMonitor
      *
      * @return true if query was cancelled, false if not
      */
-    public boolean isCancelled() {
+    public synchronized boolean isCancelled() {
         return cancelled;
     }
 
     /**
      * {@inheritDoc}
      */
-    public void queryCancelled() {
+    public synchronized void queryCancelled() {
         cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Wait until the query has completed, been cancelled or stopped with an error, or until the
+     * given time has passed, whichever comes first.
+     *
+     * @param millis the longest time to wait, in milliseconds
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void waitForCompletion(long millis) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while (!complete && !error && !cancelled && (remaining > 0)) {
+            wait(remaining);
+            remaining = end - System.currentTimeMillis();
+        }
     }
 
     private PathQuery query = null;
@@ -0,0 +1,418 @@
+package org.intermine.web.logic.session;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.intermine.web.logic.query.QueryMonitor;
+
+/**
+ * Runs the queries started by the webapp on a fixed number of threads, so that a burst of
+ * requests queues up rather than running hundreds of queries against the database at once.
+ *
+ * Queued queries are grouped by client - a logged-in user, or otherwise the address that the
+ * request came from - and the clients take turns, so one client starting many queries does not
+ * hold up everyone else. Queries that the ObjectStore estimates will finish within a configured
+ * time are run before the others, and expensive queries may only use all but one of the threads,
+ * so that a cheap query never waits for an expensive one to finish. The QueryMonitor of each
+ * queued or running query is checked every second, and the query is cancelled when its monitor
+ * asks for it. The threads run until the service is shut down when the webapp stops.
+ */
+final class QueryExecutionService
+{
+    private static final Logger LOG = Logger.getLogger(QueryExecutionService.class);
+    private static final int DEFAULT_THREADS = 8;
+    private static final long DEFAULT_CHEAP_TIME = 2000;
+    private static final long WATCH_PERIOD = 1000;
+
+    private static QueryExecutionService instance = null;
+
+    private final long cheapTime;
+    private final int maxExpensive;
+    private final Map<String, LinkedList<Job>> cheapQueue =
+        new LinkedHashMap<String, LinkedList<Job>>();
+    private final Map<String, LinkedList<Job>> expensiveQueue =
+        new LinkedHashMap<String, LinkedList<Job>>();
+    private final Set<Job> running = new HashSet<Job>();
+    private int runningExpensive = 0;
+    private boolean shutdown = false;
+    private final List<Thread> workers = new ArrayList<Thread>();
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Returns the service shared by the webapp, creating it the first time with the number of
+     * threads and the time below which queries are cheap set by the webapp.query.threads and
+     * webapp.query.cheapTime web properties.
+     *
+     * @param webProperties the web properties, or null to use the defaults
+     * @return a QueryExecutionService
+     */
+    static synchronized QueryExecutionService getInstance(Properties webProperties) {
+        if (instance == null) {
+            int threads = (int) getProperty(webProperties, "webapp.query.threads",
+                    DEFAULT_THREADS);
+            long cheapTime = getProperty(webProperties, "webapp.query.cheapTime",
+                    DEFAULT_CHEAP_TIME);
+            instance = new QueryExecutionService(Math.max(1, threads), cheapTime);
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts down the service shared by the webapp, if it was started.
+     */
+    static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    private static long getProperty(Properties webProperties, String name, long defaultValue) {
+        if (webProperties != null && webProperties.getProperty(name) != null) {
+            try {
+                return Long.parseLong(webProperties.getProperty(name).trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid value for " + name + ": " + webProperties.getProperty(name));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Constructor, which starts the threads of the service.
+     *
+     * @param threads the number of queries to run at once
+     * @param cheapTime the estimated time in milliseconds below which a query is cheap
+     */
+    QueryExecutionService(int threads, long cheapTime) {
+        this.cheapTime = cheapTime;
+        maxExpensive = Math.max(1, threads - 1);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread("Query runner " + (i + 1)) {
+                @Override
+                public void run() {
+                    work();
+                }
+            };
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Query watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    watch();
+                } catch (RuntimeException e) {
+                    LOG.error("Error while checking running queries", e);
+                }
+            }
+        }, WATCH_PERIOD, WATCH_PERIOD, TimeUnit.MILLISECONDS);
+        LOG.info("Running webapp queries on " + threads + " threads, queries estimated to take"
+                + " less than " + cheapTime + " ms first");
+    }
+
+    /**
+     * Adds a query to the queue. If the service has been shut down, the query is cancelled
+     * instead.
+     *
+     * @param job the query
+     */
+    void submit(Job job) {
+        synchronized (this) {
+            if (!shutdown) {
+                Map<String, LinkedList<Job>> queue = (isCheap(job) ? cheapQueue : expensiveQueue);
+                LinkedList<Job> jobs = queue.get(job.client);
+                if (jobs == null) {
+                    jobs = new LinkedList<Job>();
+                    queue.put(job.client, jobs);
+                }
+                jobs.add(job);
+                notifyAll();
+                return;
+            }
+        }
+        job.cancel(false);
+    }
+
+    /**
+     * Runs a task on the thread of the service that watches queries, after a delay. The task
+     * must be quick. Tasks scheduled after the service has been shut down are never run.
+     *
+     * @param task the task
+     * @param delay the delay in milliseconds
+     */
+    void schedule(Runnable task, long delay) {
+        try {
+            timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Not scheduling task, as the service has been shut down");
+        }
+    }
+
+    /**
+     * Stops the service. Queued queries are cancelled, queries that are running are allowed to
+     * finish, and the threads of the service then stop.
+     */
+    void shutdown() {
+        List<Job> queued = new ArrayList<Job>();
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            for (LinkedList<Job> jobs : cheapQueue.values()) {
+                queued.addAll(jobs);
+            }
+            for (LinkedList<Job> jobs : expensiveQueue.values()) {
+                queued.addAll(jobs);
+            }
+            cheapQueue.clear();
+            expensiveQueue.clear();
+            notifyAll();
+        }
+        for (Job job : queued) {
+            job.cancel(false);
+        }
+        timer.shutdownNow();
+        LOG.info("Shut down webapp query threads, cancelled " + queued.size()
+                + " queued queries");
+    }
+
+    /**
+     * Waits for the threads of the service to stop after it has been shut down.
+     *
+     * @param timeout the maximum time to wait for in milliseconds
+     * @return true if all the threads have stopped
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    boolean awaitTermination(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, end - System.currentTimeMillis()));
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return timer.awaitTermination(Math.max(0, end - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a description of the queries that are running and queued.
+     *
+     * @return a String
+     */
+    @Override
+    public synchronized String toString() {
+        int cheap = 0;
+        for (LinkedList<Job> jobs : cheapQueue.values()) {
+            cheap += jobs.size();
+        }
+        int expensive = 0;
+        for (LinkedList<Job> jobs : expensiveQueue.values()) {
+            expensive += jobs.size();
+        }
+        return "QueryExecutionService(running = " + running.size() + ", queued cheap = " + cheap
+            + ", queued expensive = " + expensive + ")";
+    }
+
+    private boolean isCheap(Job job) {
+        return (job.estimate >= 0) && (job.estimate < cheapTime);
+    }
+
+    private void work() {
+        while (true) {
+            Job job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == null) {
+                // Shut down
+                return;
+            }
+            try {
+                job.execute();
+            } catch (Throwable t) {
+                LOG.error("Query runner caught exception", t);
+            } finally {
+                synchronized (this) {
+                    running.remove(job);
+                    if (!isCheap(job)) {
+                        runningExpensive--;
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the next query to run, returning null once the service has been shut down.
+     */
+    private synchronized Job take() throws InterruptedException {
+        while (true) {
+            if (shutdown) {
+                return null;
+            }
+            Job job = poll(cheapQueue);
+            if ((job == null) && (runningExpensive < maxExpensive)) {
+                job = poll(expensiveQueue);
+                if (job != null) {
+                    runningExpensive++;
+                }
+            }
+            if (job != null) {
+                running.add(job);
+                return job;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Takes the first query of the client at the front of a queue, and moves the client to the
+     * back of the queue if it has more queries waiting.
+     */
+    private static Job poll(Map<String, LinkedList<Job>> queue) {
+        Iterator<Map.Entry<String, LinkedList<Job>>> iter = queue.entrySet().iterator();
+        if (!iter.hasNext()) {
+            return null;
+        }
+        Map.Entry<String, LinkedList<Job>> entry = iter.next();
+        iter.remove();
+        Job job = entry.getValue().removeFirst();
+        if (!entry.getValue().isEmpty()) {
+            queue.put(entry.getKey(), entry.getValue());
+        }
+        return job;
+    }
+
+    private synchronized boolean removeQueued(Job job) {
+        Map<String, LinkedList<Job>> queue = (isCheap(job) ? cheapQueue : expensiveQueue);
+        LinkedList<Job> jobs = queue.get(job.client);
+        if ((jobs != null) && jobs.remove(job)) {
+            if (jobs.isEmpty()) {
+                queue.remove(job.client);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void watch() {
+        List<Job> jobs = new ArrayList<Job>();
+        synchronized (this) {
+            for (LinkedList<Job> queued : cheapQueue.values()) {
+                jobs.addAll(queued);
+            }
+            for (LinkedList<Job> queued : expensiveQueue.values()) {
+                jobs.addAll(queued);
+            }
+            jobs.addAll(running);
+        }
+        for (Job job : jobs) {
+            if ((job.monitor != null) && !job.isCancelled() && job.monitor.shouldCancelQuery()) {
+                job.cancel(!removeQueued(job));
+            }
+        }
+    }
+
+    /**
+     * A query to be run by the service.
+     */
+    abstract static class Job
+    {
+        private final String client;
+        private final long estimate;
+        private final QueryMonitor monitor;
+        private boolean finished = false;
+        private boolean cancelled = false;
+
+        /**
+         * Constructor.
+         *
+         * @param client the user or address that the query was started by
+         * @param estimate the estimated time of the query in milliseconds, or -1 if unknown
+         * @param monitor the monitor asked whether to cancel the query, or null
+         */
+        Job(String client, long estimate, QueryMonitor monitor) {
+            this.client = client;
+            this.estimate = estimate;
+            this.monitor = monitor;
+        }
+
+        /**
+         * Runs the query, on one of the threads of the service.
+         */
+        protected abstract void run();
+
+        /**
+         * Called when the monitor of the query has asked for it to be cancelled.
+         *
+         * @param started true if the query is running, false if it was removed from the queue
+         * and will never be run
+         */
+        protected abstract void cancelled(boolean started);
+
+        /**
+         * Returns whether the query has been cancelled.
+         *
+         * @return a boolean
+         */
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void execute() {
+            try {
+                run();
+            } finally {
+                synchronized (this) {
+                    finished = true;
+                }
+            }
+        }
+
+        private void cancel(boolean started) {
+            synchronized (this) {
+                if (finished || cancelled) {
+                    return;
+                }
+                cancelled = true;
+            }
+            cancelled(started);
+        }
+    }
+}
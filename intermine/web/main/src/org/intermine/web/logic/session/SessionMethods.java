@@ -54,7 +54,6 @@ import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.ResultsInfo;
 import org.intermine.pathquery.PathException;
 import org.intermine.pathquery.PathQuery;
-import org.intermine.pathquery.PathQueryBinding;
 import org.intermine.template.TemplateQuery;
 import org.intermine.web.autocompletion.AutoCompleter;
 import org.intermine.web.logic.Constants;
@@ -94,145 +93,208 @@ public final class SessionMethods
     }
 
     protected static final Logger LOG = Logger.getLogger(SessionMethods.class);
+    // time in milliseconds for which the monitor of a finished query stays in the session
+    private static final long QUERY_MONITOR_LINGER = 20000;
     private static int topQueryId = 0;
     private static int index = 0;
 
     /**
-     * Base class for query thread runnable.
-     */
-    private abstract static class RunQueryThread implements Runnable
-    {
-        protected boolean done = false;
-        protected boolean error = false;
-
-        @SuppressWarnings("unused")
-        protected boolean isDone() {
-            return done;
-        }
-        protected boolean isError() {
-            return error;
-        }
-    }
-
-    /**
-     * Executes an action and call a callback when it completes successfully. If the
-     * query fails for some reason, this method returns false and ActionErrors are set on the
-     * request.
+     * Executes an action on the QueryExecutionService shared by the webapp, then returns. When
+     * the action completes successfully the callback is called. The QueryMonitor registered for
+     * the query id is told how the query concluded, and is removed from the session a while
+     * later so that the client has time to retrieve it and work out where to go next. If the
+     * query fails, errors are recorded in the session.
      *
      * @param session   the http session
      * @param resources message resources
      * @param qid       the query id
-     * @param action    the action/query to perform in a new thread
-     * @param completionCallBack sets the method to call when the action successfully completes
-     * @return  true if query ran successfully, false if an error occured
-     * @throws  Exception if getting results info from paged results fails
-     */
-    public static boolean runQuery(final HttpSession session,
-                                   final MessageResources resources,
-                                   final String qid,
-                                   final Action action,
-                                   final CompletionCallBack completionCallBack)
-        throws Exception {
+     * @param action    the action/query to perform
+     * @param completionCallBack the method to call when the action successfully completes, or
+     * null
+     * @param query     the query that the action runs, used to estimate how long it will take,
+     * or null if not known
+     */
+    private static void runQuery(final HttpSession session,
+                                 final MessageResources resources,
+                                 final String qid,
+                                 final Action action,
+                                 final CompletionCallBack completionCallBack,
+                                 final Query query) {
         final InterMineAPI im = getInterMineAPI(session);
         final ObjectStore os = im.getObjectStore();
 
-        final ObjectStoreInterMineImpl ios;
-        if (os instanceof ObjectStoreInterMineImpl) {
-            ios = (ObjectStoreInterMineImpl) os;
-        } else {
-            ios = null;
+        long estimate = -1;
+        if (query != null) {
+            try {
+                estimate = os.estimate(query).getComplete();
+            } catch (ObjectStoreException e) {
+                LOG.warn("Could not estimate time of query " + query, e);
+            }
         }
-        Map<String, QueryMonitor> queries = getRunningQueries(session);
-        QueryMonitor monitor = queries.get(qid);
-        // A reference to this runnable is used as a token for registering
-        // a cancelling the running query
+        QueryExecutionService service = QueryExecutionService.getInstance(
+                getWebProperties(session.getServletContext()));
+        service.submit(new RunQueryJob(service, session, resources, qid, action,
+                    completionCallBack, estimate));
+    }
 
-        RunQueryThread runnable = new RunQueryThread() {
-            @Override
-            public void run () {
-                try {
+    /**
+     * Stops the threads that run the queries of the webapp. Queued queries are cancelled. This
+     * is called when the webapp is shut down.
+     */
+    public static void shutdownQueryExecutionService() {
+        QueryExecutionService.shutdownInstance();
+    }
 
-                    // Register request id for query on this thread
-                    // We do this before setting r
-                    if (ios != null) {
-                        LOG.debug("Registering request id " + this);
-                        ios.registerRequestId(this);
-                    }
+    /**
+     * A query run by the QueryExecutionService for the webapp. A reference to the job is used
+     * as a token for registering and cancelling the running query.
+     */
+    private static class RunQueryJob extends QueryExecutionService.Job
+    {
+        private final QueryExecutionService service;
+        private final HttpSession session;
+        private final MessageResources resources;
+        private final String qid;
+        private final Action action;
+        private final CompletionCallBack completionCallBack;
+        private final QueryMonitor monitor;
+        private final ObjectStoreInterMineImpl ios;
+
+        RunQueryJob(QueryExecutionService service, HttpSession session,
+                MessageResources resources, String qid, Action action,
+                CompletionCallBack completionCallBack, long estimate) {
+            super(getQueryClient(session), estimate, getRunningQueries(session).get(qid));
+            this.service = service;
+            this.session = session;
+            this.resources = resources;
+            this.qid = qid;
+            this.action = action;
+            this.completionCallBack = completionCallBack;
+            monitor = getRunningQueries(session).get(qid);
+            ObjectStore os = getInterMineAPI(session).getObjectStore();
+            if (os instanceof ObjectStoreInterMineImpl) {
+                ios = (ObjectStoreInterMineImpl) os;
+            } else {
+                ios = null;
+            }
+        }
 
-                    // call this so that if an exception occurs we notice now rather than in the
-                    // JSP code
-                    try {
-                        action.process();
-                    } catch (IndexOutOfBoundsException err) {
-                        // no results - ignore
-                        // we don't call size() first to avoid this exception because that could be
-                        // very slow on a large results set
-                    } catch (RuntimeException e) {
-                        if (e.getCause() instanceof ObjectStoreException) {
-                            throw (ObjectStoreException) e.getCause();
-                        }
-                        throw e;
+        @Override
+        protected void run() {
+            boolean error = false;
+            try {
+                // Register request id for query on this thread
+                if (ios != null) {
+                    LOG.debug("Registering request id " + this);
+                    ios.registerRequestId(this);
+                }
+
+                // call this so that if an exception occurs we notice now rather than in the
+                // JSP code
+                try {
+                    action.process();
+                } catch (IndexOutOfBoundsException err) {
+                    // no results - ignore
+                    // we don't call size() first to avoid this exception because that could be
+                    // very slow on a large results set
+                } catch (RuntimeException e) {
+                    if (e.getCause() instanceof ObjectStoreException) {
+                        throw (ObjectStoreException) e.getCause();
                     }
-                } catch (ObjectStoreException e) {
-                    // put stack trace in the log
-                    LOG.error("Exception", e);
+                    throw e;
+                }
+                if (!isCancelled() && (completionCallBack != null)) {
+                    completionCallBack.complete();
+                }
+            } catch (ObjectStoreException e) {
+                // put stack trace in the log
+                LOG.error("Exception", e);
 
+                // a cancelled query fails because it was cancelled, which is not worth reporting
+                if (!isCancelled()) {
                     String key = (e instanceof ObjectStoreQueryDurationException)
                         ? "errors.query.estimatetimetoolong"
                         : "errors.query.objectstoreerror";
                     recordError(resources.getMessage(key), session);
-
-                    error = true;
-                } catch (Throwable err) {
-                    StringWriter sw = new StringWriter();
-                    err.printStackTrace(new PrintWriter(sw));
+                }
+                error = true;
+            } catch (Throwable err) {
+                StringWriter sw = new StringWriter();
+                err.printStackTrace(new PrintWriter(sw));
+                if (!isCancelled()) {
                     recordError(sw.toString(), session);
-                    LOG.error("Exception", err);
-                    error = true;
-                } finally {
+                }
+                LOG.error("Exception", err);
+                error = true;
+            } finally {
+                if (ios != null) {
                     try {
                         LOG.debug("Deregistering request id " + this);
-                        ((ObjectStoreInterMineImpl) os).deregisterRequestId(this);
+                        ios.deregisterRequestId(this);
                     } catch (ObjectStoreException e1) {
                         LOG.error("Exception", e1);
                         error = true;
                     }
                 }
             }
-        };
-        Thread thread = null;
-        thread = new Thread(runnable);
-        thread.start();
-
-        while (thread.isAlive()) {
-            Thread.sleep(1000);
-            if (monitor != null) {
-                boolean cancelled = monitor.shouldCancelQuery();
-                if (cancelled && ios != null) {
-                    LOG.debug("Cancelling request " + runnable);
-                    ios.cancelRequest(runnable);
-                    monitor.queryCancelled();
-                    return false;
+
+            if ((monitor != null) && !isCancelled()) {
+                if (error) {
+                    monitor.queryCancelledWithError();
+                } else {
+                    monitor.queryCompleted();
                 }
             }
+            forget();
         }
 
-        if (runnable.isError()) {
-            if (monitor != null) {
-                monitor.queryCancelledWithError();
+        @Override
+        protected void cancelled(boolean started) {
+            if (started && (ios != null)) {
+                LOG.debug("Cancelling request " + this);
+                try {
+                    ios.cancelRequest(this);
+                } catch (ObjectStoreException e) {
+                    LOG.error("Exception", e);
+                }
+            }
+            monitor.queryCancelled();
+            if (!started) {
+                forget();
             }
-            return false;
         }
 
-        if (completionCallBack != null) {
-            completionCallBack.complete();
+        /**
+         * Removes the monitor from the session once the client has had time to retrieve it.
+         */
+        private void forget() {
+            service.schedule(new Runnable() {
+                public void run() {
+                    LOG.debug("unregisterRunningQuery qid " + qid);
+                    synchronized (session) {
+                        getRunningQueries(session).remove(qid);
+                    }
+                }
+            }, QUERY_MONITOR_LINGER);
         }
+    }
 
-        if (monitor != null) {
-            monitor.queryCompleted();
+    /**
+     * Returns the name under which the queries of a session are queued, so that the users of
+     * the webapp take turns running queries. This is the user name when the user has logged in,
+     * and otherwise the address that the user's requests come from, so that anonymous clients
+     * starting many sessions take turns with everyone else.
+     */
+    private static String getQueryClient(HttpSession session) {
+        Profile profile = getProfile(session);
+        if ((profile != null) && profile.isLoggedIn()) {
+            return "user " + profile.getUsername();
         }
-
-        return true;
+        Object address = session.getAttribute(Constants.CLIENT_ADDRESS);
+        if (address != null) {
+            return "address " + address;
+        }
+        return "session " + session.getId();
     }
 
     /**
@@ -486,7 +548,8 @@ public final class SessionMethods
     /**
      * Start the current query running in the background, then return.  A new query id will be
      * created and added to the RUNNING_QUERIES session attribute.  That attribute is a Map from
-     * query id to QueryMonitor.  A Thread will be created to update the QueryMonitor.
+     * query id to QueryMonitor.  The query is run by the QueryExecutionService, which updates the
+     * QueryMonitor.
      * @param monitor the monitor for this query - controls cancelling and receives feedback
      *                about how the query concluded
      * @param session the current http session
@@ -501,69 +564,52 @@ public final class SessionMethods
                                     final MessageResources messages,
                                     final boolean saveQuery,
                                     final PathQuery pathQuery) {
+        final String qid;
         synchronized (session) {
-
             Map<String, QueryMonitor> queries = getRunningQueries(session);
-            final String qid = "" + topQueryId++;
+            qid = "" + topQueryId++;
             queries.put(qid, monitor);
+        }
 
-            new Thread(new Runnable() {
-                @Override
-                public void run () {
-                    final Profile profile = (Profile) session.getAttribute(Constants.PROFILE);
-                    final InterMineAPI im = getInterMineAPI(session);
-                    try {
-
-                        final PathQueryExecutor pqe = im.getPathQueryExecutor(profile);
-                        
-                        Action action = new Action() {
-                            @Override
-                            public void process() {
-                                try {
-                                    pqe.execute(pathQuery);
-                                } catch (ObjectStoreException e) {
-                                    throw new RuntimeException("Error running query.", e);
-                                }
-                            }
-                        };
-                        CompletionCallBack completionCallBack = new CompletionCallBack() {
-                            @Override
-                            public void complete() {
-                                // Do nothing...
-                            }
-                        };
-                        SessionMethods.runQuery(session, messages, qid, action, completionCallBack);
-
-                        if (saveQuery) {
-                            String queryName = NameUtil.findNewQueryName(
-                                    profile.getHistory().keySet());
-                            saveQueryToHistory(session, queryName, pathQuery);
-                        }
-
-                        // pause because we don't want to remove the monitor from the
-                        // session until client has retrieved it in order to work out
-                        // where to go next
-                        Thread.sleep(20000);
-                    } catch (Exception err) {
-                        StringWriter sw = new StringWriter();
-                        err.printStackTrace(new PrintWriter(sw));
-                        StringBuffer errorMessage = new StringBuffer("Error while running query");
-                        if (SessionMethods.isSuperUser(session)) {
-                            errorMessage.append(": " + err.getMessage());
-                        }
-                        recordError(errorMessage.toString(), session);
-                        LOG.error("Error while running query \""
-                                + PathQueryBinding.marshal(pathQuery, "",
-                                    im.getModel().getName(), 1), err);
-                    } finally {
-                        LOG.debug("unregisterRunningQuery qid " + qid);
-                        getRunningQueries(session).remove(qid);
-                    }
+        final Profile profile = (Profile) session.getAttribute(Constants.PROFILE);
+        final PathQueryExecutor pqe = getInterMineAPI(session).getPathQueryExecutor(profile);
+        Action action = new Action() {
+            @Override
+            public void process() {
+                try {
+                    pqe.execute(pathQuery);
+                } catch (ObjectStoreException e) {
+                    throw new RuntimeException("Error running query.", e);
                 }
-            }).start();
+            }
+        };
+        runQuery(session, messages, qid, action, null, makeQuery(session, pathQuery));
 
-            return qid;
+        if (saveQuery) {
+            String queryName = NameUtil.findNewQueryName(profile.getHistory().keySet());
+            saveQueryToHistory(session, queryName, pathQuery);
         }
+        return qid;
+    }
+
+    /**
+     * Makes the ObjectStore query for a PathQuery, for estimating how long it will take.
+     *
+     * @return a Query, or null if the query cannot be made
+     */
+    private static Query makeQuery(HttpSession session, PathQuery pathQuery) {
+        if (pathQuery == null) {
+            return null;
+        }
+        try {
+            return getInterMineAPI(session).getPathQueryExecutor(getProfile(session))
+                .makeQuery(pathQuery);
+        } catch (ObjectStoreException e) {
+            LOG.warn("Could not make query to estimate its time", e);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not make query to estimate its time", e);
+        }
+        return null;
     }
 
     /**
@@ -585,8 +631,8 @@ public final class SessionMethods
     /**
      * Start a query running in the background that will return the row count of the collection.
      * A new query id will be created and added to the RUNNING_QUERIES session attribute.
-     * That attribute is a Map from query id to QueryMonitor.  A Thread will be created to
-     * update the QueryMonitor.
+     * That attribute is a Map from query id to QueryMonitor.  The query is run by the
+     * QueryExecutionService, which updates the QueryMonitor.
      * @param monitor the monitor for this query - controls cancelling and receives feedback
      *                about how the query concluded
      * @param session the current http session
@@ -597,48 +643,22 @@ public final class SessionMethods
     public static String startPagedTableCount(final PageTableQueryMonitor monitor,
                                               final HttpSession session,
                                               final MessageResources messages) {
+        final String qid;
         synchronized (session) {
             Map<String, QueryMonitor> queries = getRunningQueries(session);
-            final String qid = "" + topQueryId++;
+            qid = "" + topQueryId++;
             queries.put(qid, monitor);
-
-            new Thread(new Runnable() {
-                @Override
-                public void run () {
-                    try {
-                        LOG.debug("startQuery qid " + qid + " thread started");
-
-                        class CountAction implements Action
-                        {
-                            @Override
-                            public void process() {
-                                monitor.getPagedTable().getExactSize();
-                            }
-                        }
-
-                        Action action = new CountAction();
-
-                        SessionMethods.runQuery(session, messages, qid, action, null);
-
-                        // pause because we don't want to remove the monitor from the
-                        // session until client has retrieved it in order to work out
-                        // where to go next
-                        Thread.sleep(20000);
-                    } catch (Exception err) {
-                        StringWriter sw = new StringWriter();
-                        err.printStackTrace(new PrintWriter(sw));
-                        recordError(sw.toString(), session);
-                        LOG.error(sw.toString());
-                    } finally {
-                        LOG.debug("unregisterRunningQuery qid " + qid);
-                        getRunningQueries(session).remove(qid);
-                    }
-                }
-            }).start();
-
-            return qid;
         }
 
+        Action action = new Action() {
+            @Override
+            public void process() {
+                monitor.getPagedTable().getExactSize();
+            }
+        };
+        runQuery(session, messages, qid, action, null,
+                makeQuery(session, monitor.getPagedTable().getPathQuery()));
+        return qid;
     }
 
     /**
@@ -658,8 +678,8 @@ public final class SessionMethods
     /**
      * Start a query running in the background that will return the row count of the query argument.
      * A new query id will be created and added to the RUNNING_QUERIES session attribute.
-     * That attribute is a Map from query id to QueryMonitor.  A Thread will be created to
-     * update the QueryMonitor.
+     * That attribute is a Map from query id to QueryMonitor.  The query is run by the
+     * QueryExecutionService, which updates the QueryMonitor.
      * @param monitor the monitor for this query - controls cancelling and receives feedback
      *                about how the query concluded
      * @param session the current http session
@@ -670,51 +690,27 @@ public final class SessionMethods
     public static String startQueryCount(final QueryCountQueryMonitor monitor,
                                          final HttpSession session,
                                          final MessageResources messages) {
+        final String qid;
         synchronized (session) {
             Map<String, QueryMonitor> queries = getRunningQueries(session);
-            final String qid = "" + topQueryId++;
+            qid = "" + topQueryId++;
             queries.put(qid, monitor);
+        }
 
-            final Query query = monitor.getQuery();
-            final InterMineAPI im = getInterMineAPI(session);
-            final ObjectStore os = im.getObjectStore();
-
-            new Thread(new Runnable() {
-                @Override
-                public void run () {
-                    try {
-                        LOG.debug("startQuery qid " + qid + " thread started");
-                        Action action = new Action() {
-                            @Override
-                            public void process() {
-                                try {
-                                    monitor.setCount(os.count(query, ObjectStore.SEQUENCE_IGNORE));
-                                } catch (ObjectStoreException e) {
-                                    throw new RuntimeException("failed to get count of: " + query,
-                                                               e);
-                                }
-                            }
-                        };
-                        SessionMethods.runQuery(session, messages, qid, action, null);
-
-                        // pause because we don't want to remove the monitor from the
-                        // session until client has retrieved it in order to work out
-                        // where to go next
-                        Thread.sleep(20000);
-                    } catch (Exception err) {
-                        StringWriter sw = new StringWriter();
-                        err.printStackTrace(new PrintWriter(sw));
-                        recordError(sw.toString(), session);
-                        LOG.error(sw.toString());
-                    } finally {
-                        LOG.debug("unregisterRunningQuery qid " + qid);
-                        getRunningQueries(session).remove(qid);
-                    }
+        final Query query = monitor.getQuery();
+        final ObjectStore os = getInterMineAPI(session).getObjectStore();
+        Action action = new Action() {
+            @Override
+            public void process() {
+                try {
+                    monitor.setCount(os.count(query, ObjectStore.SEQUENCE_IGNORE));
+                } catch (ObjectStoreException e) {
+                    throw new RuntimeException("failed to get count of: " + query, e);
                 }
-            }).start();
-
-            return qid;
-        }
+            }
+        };
+        runQuery(session, messages, qid, action, null, query);
+        return qid;
     }
 
     /**
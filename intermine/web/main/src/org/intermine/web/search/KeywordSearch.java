@@ -21,9 +21,11 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -31,9 +33,13 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.Vector;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
@@ -61,6 +67,7 @@ import org.apache.lucene.search.TermsFilter;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
 import org.intermine.api.InterMineAPI;
@@ -85,13 +92,17 @@ import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryCollectionReference;
 import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryFunction;
 import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.QueryValue;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.pathquery.PathException;
 import org.intermine.sql.Database;
 import org.intermine.util.DynamicUtil;
 import org.intermine.util.ObjectPipe;
+import org.intermine.util.TinyLfuObjectCache;
 import org.intermine.web.logic.config.WebConfig;
 import org.intermine.web.struts.KeywordSearchFacet;
 
@@ -183,7 +194,7 @@ class LuceneIndexContainer implements Serializable
 
     /**
      * get type of directory
-     * @return 'FSDirectory' or 'RAMDirectory'
+     * @return 'FSDirectory', 'RAMDirectory' or 'MMapDirectory'
      */
     public String getDirectoryType() {
         return directoryType;
@@ -336,6 +347,52 @@ class ObjectValueContainer
     }
 }
 
+/**
+ * a range of object ids, fetched and indexed separately from the other ranges so that several
+ * fetchers can work at once
+ */
+class IdRange
+{
+    final Integer min;
+    final Integer max;
+
+    /**
+     * create a range
+     * @param min
+     *            the lowest id in the range, or null for no lower limit
+     * @param max
+     *            the id after the end of the range, or null for no upper limit
+     */
+    public IdRange(Integer min, Integer max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * add constraints to a query that restrict an id field to this range
+     * @param constraints
+     *            the ConstraintSet of the query
+     * @param id
+     *            the id field to constrain
+     */
+    public void addConstraints(ConstraintSet constraints, QueryField id) {
+        if (min != null) {
+            constraints.addConstraint(new SimpleConstraint(id, ConstraintOp.GREATER_THAN_EQUALS,
+                    new QueryValue(min)));
+        }
+        if (max != null) {
+            constraints.addConstraint(new SimpleConstraint(id, ConstraintOp.LESS_THAN,
+                    new QueryValue(max)));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[" + (min == null ? "" : min.toString()) + ", "
+            + (max == null ? "" : max.toString()) + ")";
+    }
+}
+
 /**
  * thread to fetch all intermineobjects (with exceptions) from database, create
  * a lucene document for them, add references (if applicable) and put the final
@@ -349,6 +406,8 @@ class InterMineObjectFetcher extends Thread
     final ObjectStore os;
     final Map<String, List<FieldDescriptor>> classKeys;
     final ObjectPipe<Document> indexingQueue;
+    final Queue<IdRange> ranges;
+    final AtomicInteger runningFetchers;
     final Set<Class<? extends InterMineObject>> ignoredClasses;
     final Map<Class<? extends InterMineObject>, Set<String>> ignoredFields;
     final Map<Class<? extends InterMineObject>, String[]> specialReferences;
@@ -360,6 +419,7 @@ class InterMineObjectFetcher extends Thread
     private Set<String> normFields = new HashSet<String>();
     final Map<Class<?>, Vector<ClassAttributes>> decomposedClassesCache =
             new HashMap<Class<?>, Vector<ClassAttributes>>();
+    final Map<String, long[]> classStatistics = new HashMap<String, long[]>();
     private Map<String, String> attributePrefixes = null;
 
     Field idField = null;
@@ -374,6 +434,12 @@ class InterMineObjectFetcher extends Thread
      *            descriptors
      * @param indexingQueue
      *            queue shared with indexer
+     * @param ranges
+     *            queue of id ranges shared with the other fetchers, each range being fetched
+     *            by whichever fetcher takes it
+     * @param runningFetchers
+     *            number of fetchers that are still running, including this one - the last
+     *            fetcher to finish closes the indexing queue
      * @param ignoredClasses
      *            classes that should not be indexed (as specified in config +
      *            subclasses)
@@ -388,8 +454,8 @@ class InterMineObjectFetcher extends Thread
      *            addition to the normal indexing
      */
     public InterMineObjectFetcher(ObjectStore os, Map<String, List<FieldDescriptor>> classKeys,
-            ObjectPipe<Document> indexingQueue,
-            Set<Class<? extends InterMineObject>> ignoredClasses,
+            ObjectPipe<Document> indexingQueue, Queue<IdRange> ranges,
+            AtomicInteger runningFetchers, Set<Class<? extends InterMineObject>> ignoredClasses,
             Map<Class<? extends InterMineObject>, Set<String>> ignoredFields,
             Map<Class<? extends InterMineObject>, String[]> specialReferences,
             Map<ClassDescriptor, Float> classBoost, Vector<KeywordSearchFacetData> facets,
@@ -399,6 +465,8 @@ class InterMineObjectFetcher extends Thread
         this.os = os;
         this.classKeys = classKeys;
         this.indexingQueue = indexingQueue;
+        this.ranges = ranges;
+        this.runningFetchers = runningFetchers;
         this.ignoredClasses = ignoredClasses;
         this.ignoredFields = ignoredFields;
         this.specialReferences = specialReferences;
@@ -415,237 +483,279 @@ class InterMineObjectFetcher extends Thread
         return fieldNames;
     }
 
+    /**
+     * get the number of documents created for each class, and the time spent creating them
+     * @return map of unqualified class name to an array of document count and milliseconds
+     */
+    public Map<String, long[]> getClassStatistics() {
+        return classStatistics;
+    }
+
     /**
      * fetch objects from database, create documents and add them to the queue
      */
     @Override
-    @SuppressWarnings("unchecked")
     public void run() {
+        int total = 0;
         try {
-            long time = System.currentTimeMillis();
-            long objectParseTime = 0;
             LOG.info("Fetching all InterMineObjects...");
+            IdRange range;
+            while ((range = ranges.poll()) != null) {
+                total += fetchRange(range);
+            }
+            StringBuilder doneMessage = new StringBuilder();
+            for (String fieldName : fieldNames) {
+                if (doneMessage.length() > 0) {
+                    doneMessage.append(", ");
+                }
+                doneMessage.append(fieldName);
+                if (normFields.contains(fieldName)) {
+                    doneMessage.append(" NO_NORMS");
+                }
+            }
+            LOG.info("COMPLETED index with " + total + " records.  Fields: " + doneMessage);
+        } catch (Exception e) {
+            LOG.warn(null, e);
+        }
 
-            HashSet<Class<? extends InterMineObject>> seenClasses =
-                    new HashSet<Class<? extends InterMineObject>>();
-            HashMap<String, InterMineResultsContainer> referenceResults =
-                    new HashMap<String, InterMineResultsContainer>();
-
-            try {
-                //query all objects except the ones we are ignoring
-                Query q = new Query();
-                QueryClass qc = new QueryClass(InterMineObject.class);
-                q.addFrom(qc);
-                q.addToSelect(qc);
-
-                QueryField qf = new QueryField(qc, "class");
-                q.setConstraint(new BagConstraint(qf, ConstraintOp.NOT_IN, ignoredClasses));
-
-                LOG.info("QUERY: " + q.toString());
-
-                Results results = os.execute(q, 1000, true, false, true);
+        //notify main thread that we're done
+        if (runningFetchers.decrementAndGet() == 0) {
+            indexingQueue.finish();
+        }
+    }
 
-                ListIterator<ResultsRow<InterMineObject>> it = (ListIterator) results
-                    .listIterator();
-                int i = 0;
-                int size = results.size();
-                LOG.info("Query returned " + size + " results");
+    /**
+     * fetch the objects in one range of ids, create documents and add them to the queue
+     * @param range
+     *            the ids to fetch
+     * @return the number of objects fetched
+     * @throws Exception if something goes wrong
+     */
+    @SuppressWarnings("unchecked")
+    private int fetchRange(IdRange range) throws Exception {
+        long time = System.currentTimeMillis();
+        long objectParseTime = 0;
+        LOG.info("Fetching InterMineObjects with ids in " + range + "...");
 
-                //iterate over objects
-                while (it.hasNext()) {
-                    ResultsRow<InterMineObject> row = it.next();
+        HashSet<Class<? extends InterMineObject>> seenClasses =
+                new HashSet<Class<? extends InterMineObject>>();
+        HashMap<String, InterMineResultsContainer> referenceResults =
+                new HashMap<String, InterMineResultsContainer>();
 
-                    if (i % 10000 == 1) {
-                        LOG.info("IMOFetcher: fetched " + i + " of " + size + " in "
-                                + (System.currentTimeMillis() - time) + "ms total, "
-                                + (objectParseTime) + "ms spent on parsing");
-                    }
+        try {
+            //query all objects except the ones we are ignoring
+            Query q = new Query();
+            QueryClass qc = new QueryClass(InterMineObject.class);
+            q.addFrom(qc);
+            q.addToSelect(qc);
+
+            QueryField qf = new QueryField(qc, "class");
+            ConstraintSet constraints = new ConstraintSet(ConstraintOp.AND);
+            constraints.addConstraint(new BagConstraint(qf, ConstraintOp.NOT_IN, ignoredClasses));
+            range.addConstraints(constraints, new QueryField(qc, "id"));
+            q.setConstraint(constraints);
+
+            LOG.info("QUERY: " + q.toString());
+
+            Results results = os.execute(q, 1000, true, false, true);
+
+            ListIterator<ResultsRow<InterMineObject>> it = (ListIterator) results
+                .listIterator();
+            int i = 0;
+            int size = results.size();
+            LOG.info("Query returned " + size + " results");
+
+            //iterate over objects
+            while (it.hasNext()) {
+                ResultsRow<InterMineObject> row = it.next();
+
+                if (i % 10000 == 1) {
+                    LOG.info("IMOFetcher: fetched " + i + " of " + size + " in "
+                            + (System.currentTimeMillis() - time) + "ms total, "
+                            + (objectParseTime) + "ms spent on parsing");
+                }
 
-                    for (InterMineObject object : row) {
-                        long time2 = System.currentTimeMillis();
-
-                        Set<Class<?>> objectClasses = DynamicUtil.decomposeClass(object.getClass());
-                        Class objectTopClass = objectClasses.iterator().next();
-                        ClassDescriptor classDescriptor =
-                                os.getModel().getClassDescriptorByName(objectTopClass.getName());
-
-                        // create base doc for object
-                        Document doc = createDocument(object, classDescriptor);
-                        HashSet<String> references = new HashSet<String>();
-                        HashMap<String, KeywordSearchFacetData> referenceFacetFields =
-                                new HashMap<String, KeywordSearchFacetData>();
-
-                        // find all references associated with this object or
-                        // its superclasses
-                        for (Entry<Class<? extends InterMineObject>, String[]> specialClass
-                                : specialReferences.entrySet()) {
-                            for (Class<?> objectClass : objectClasses) {
-                                if (specialClass.getKey().isAssignableFrom(objectClass)) {
-                                    for (String reference : specialClass.getValue()) {
-                                        String fullReference =
-                                                classDescriptor.getUnqualifiedName() + "."
-                                                        + reference;
-                                        references.add(fullReference);
-
-                                        //check if this reference returns a field we are
-                                        //faceting by. if so, add it to referenceFacetFields
-                                        for (KeywordSearchFacetData facet : facets) {
-                                            for (String field : facet.getFields()) {
-                                                if (field.startsWith(reference + ".")
-                                                        && !field.substring(reference.length() + 1)
-                                                                .contains(".")) {
-                                                    referenceFacetFields.put(fullReference, facet);
-                                                }
+                for (InterMineObject object : row) {
+                    long time2 = System.currentTimeMillis();
+                    long objectStart = time2;
+
+                    Set<Class<?>> objectClasses = DynamicUtil.decomposeClass(object.getClass());
+                    Class objectTopClass = objectClasses.iterator().next();
+                    ClassDescriptor classDescriptor =
+                            os.getModel().getClassDescriptorByName(objectTopClass.getName());
+
+                    // create base doc for object
+                    Document doc = createDocument(object, classDescriptor);
+                    HashSet<String> references = new HashSet<String>();
+                    HashMap<String, KeywordSearchFacetData> referenceFacetFields =
+                            new HashMap<String, KeywordSearchFacetData>();
+
+                    // find all references associated with this object or
+                    // its superclasses
+                    for (Entry<Class<? extends InterMineObject>, String[]> specialClass
+                            : specialReferences.entrySet()) {
+                        for (Class<?> objectClass : objectClasses) {
+                            if (specialClass.getKey().isAssignableFrom(objectClass)) {
+                                for (String reference : specialClass.getValue()) {
+                                    String fullReference =
+                                            classDescriptor.getUnqualifiedName() + "."
+                                                    + reference;
+                                    references.add(fullReference);
+
+                                    //check if this reference returns a field we are
+                                    //faceting by. if so, add it to referenceFacetFields
+                                    for (KeywordSearchFacetData facet : facets) {
+                                        for (String field : facet.getFields()) {
+                                            if (field.startsWith(reference + ".")
+                                                    && !field.substring(reference.length() + 1)
+                                                            .contains(".")) {
+                                                referenceFacetFields.put(fullReference, facet);
                                             }
                                         }
                                     }
                                 }
                             }
                         }
+                    }
 
-                        // if we have not seen an object of this class before, query references
-                        if (!seenClasses.contains(object.getClass())) {
-                            LOG.info("Getting references for new class: " + object.getClass());
-
-                            // query all references that we need
-                            for (String reference : references) {
-                                // LOG.info("Querying reference " + reference);
+                    // if we have not seen an object of this class before, query references
+                    if (!seenClasses.contains(object.getClass())) {
+                        LOG.info("Getting references for new class: " + object.getClass());
 
-                                Query queryReference = getPathQuery(reference);
+                        // query all references that we need
+                        for (String reference : references) {
+                            // LOG.info("Querying reference " + reference);
 
-                                // do not count this towards objectParseTime
-                                objectParseTime += (System.currentTimeMillis() - time2);
+                            Query queryReference = getPathQuery(reference, range);
 
-                                Results resultsc = os.execute(queryReference, 1000, true, false,
-                                        true);
-                                ((ObjectStoreInterMineImpl) os).goFaster(queryReference);
-                                referenceResults.put(reference, new InterMineResultsContainer(
-                                        resultsc));
-                                LOG.info("Querying reference " + reference + " done -- "
-                                        + resultsc.size() + " results");
+                            // do not count this towards objectParseTime
+                            objectParseTime += (System.currentTimeMillis() - time2);
 
-                                // start counting objectParseTime again
-                                time2 = System.currentTimeMillis();
-                            }
+                            Results resultsc = os.execute(queryReference, 1000, true, false,
+                                    true);
+                            ((ObjectStoreInterMineImpl) os).goFaster(queryReference);
+                            referenceResults.put(reference, new InterMineResultsContainer(
+                                    resultsc));
+                            LOG.info("Querying reference " + reference + " done -- "
+                                    + resultsc.size() + " results");
 
-                            seenClasses.add(object.getClass());
+                            // start counting objectParseTime again
+                            time2 = System.currentTimeMillis();
                         }
 
-                        // find all references and add them
-                        for (String reference : references) {
-                            InterMineResultsContainer resultsContainer =
-                                    referenceResults.get(reference);
-                            //step through the reference results (ordered) while ref.id = obj.id
-                            while (resultsContainer.getIterator().hasNext()) {
-                                ResultsRow next = resultsContainer.getIterator().next();
-
-                                // It is possible that the inner loop iterator "lags behind" the
-                                // current object's id. See:
-                                // https://github.com/intermine/intermine/issues/473
-                                while(resultsContainer.getIterator().hasNext() && 
-                                		((Integer) next.get(0)).compareTo(object.getId()) == -1) {
-                                	next = resultsContainer.getIterator().next();
-                                }
-                                                                
-                                //reference is not for the current object?
-                                if (!next.get(0).equals(object.getId())) {
-                                    // go back one step
-                                    if (resultsContainer.getIterator().hasPrevious()) {
-                                        resultsContainer.getIterator().previous();
-                                    }
+                        seenClasses.add(object.getClass());
+                    }
 
-                                    break;
+                    // find all references and add them
+                    for (String reference : references) {
+                        InterMineResultsContainer resultsContainer =
+                                referenceResults.get(reference);
+                        //step through the reference results (ordered) while ref.id = obj.id
+                        while (resultsContainer.getIterator().hasNext()) {
+                            ResultsRow next = resultsContainer.getIterator().next();
+
+                            // It is possible that the inner loop iterator "lags behind" the
+                            // current object's id. See:
+                            // https://github.com/intermine/intermine/issues/473
+                            while(resultsContainer.getIterator().hasNext() && 
+                            		((Integer) next.get(0)).compareTo(object.getId()) == -1) {
+                            	next = resultsContainer.getIterator().next();
+                            }
+                                                            
+                            //reference is not for the current object?
+                            if (!next.get(0).equals(object.getId())) {
+                                // go back one step
+                                if (resultsContainer.getIterator().hasPrevious()) {
+                                    resultsContainer.getIterator().previous();
                                 }
 
-                                // add reference to doc
-                                addObjectToDocument((InterMineObject) next.get(1), null, doc);
-
-                                //check if this reference contains an attribute we need for a facet
-                                KeywordSearchFacetData referenceFacet =
-                                        referenceFacetFields.get(reference);
-                                if (referenceFacet != null) {
-                                    //handle PATH facets FIXME: UNTESTED!
-                                    if (referenceFacet.getType() == KeywordSearchFacetType.PATH) {
-                                        String virtualPathField =
-                                                "path_" + referenceFacet.getName().toLowerCase();
-                                        for (String field : referenceFacet.getFields()) {
-                                            if (field.startsWith(reference + ".")) {
-                                                String facetAttribute =
-                                                        field.substring(field.lastIndexOf('.') + 1);
-                                                Object facetValue = ((InterMineObject) next.get(1))
-                                                    .getFieldValue(facetAttribute);
-
-                                                if (facetValue instanceof String
-                                                        && !StringUtils
-                                                                .isBlank((String) facetValue)) {
-                                                    Field f = doc.getField(virtualPathField);
-
-                                                    if (f != null) {
-                                                        f.setValue(f.stringValue() + "/"
-                                                                + facetValue);
-                                                    } else {
-                                                        doc.add(new Field(virtualPathField,
-                                                                (String) facetValue,
-                                                                Field.Store.NO,
-                                                                Field.Index.NOT_ANALYZED_NO_NORMS));
-                                                    }
+                                break;
+                            }
+
+                            // add reference to doc
+                            addObjectToDocument((InterMineObject) next.get(1), null, doc);
+
+                            //check if this reference contains an attribute we need for a facet
+                            KeywordSearchFacetData referenceFacet =
+                                    referenceFacetFields.get(reference);
+                            if (referenceFacet != null) {
+                                //handle PATH facets FIXME: UNTESTED!
+                                if (referenceFacet.getType() == KeywordSearchFacetType.PATH) {
+                                    String virtualPathField =
+                                            "path_" + referenceFacet.getName().toLowerCase();
+                                    for (String field : referenceFacet.getFields()) {
+                                        if (field.startsWith(reference + ".")) {
+                                            String facetAttribute =
+                                                    field.substring(field.lastIndexOf('.') + 1);
+                                            Object facetValue = ((InterMineObject) next.get(1))
+                                                .getFieldValue(facetAttribute);
+
+                                            if (facetValue instanceof String
+                                                    && !StringUtils
+                                                            .isBlank((String) facetValue)) {
+                                                Field f = doc.getField(virtualPathField);
+
+                                                if (f != null) {
+                                                    f.setValue(f.stringValue() + "/"
+                                                            + facetValue);
+                                                } else {
+                                                    doc.add(new Field(virtualPathField,
+                                                            (String) facetValue,
+                                                            Field.Store.NO,
+                                                            Field.Index.NOT_ANALYZED_NO_NORMS));
                                                 }
                                             }
                                         }
-                                    } else {
-                                        //SINGLE/MULTI facet
-                                        //add attribute to document a second time, but unstemmed
-                                        //and with the field name corresponding to the facet name
-                                        String facetAttribute =
-                                                referenceFacet.getField()
-                                                        .substring(
-                                                                referenceFacet.getField()
-                                                                        .lastIndexOf('.') + 1);
-                                        Object facetValue = ((InterMineObject) next.get(1))
-                                            .getFieldValue(facetAttribute);
-
-                                        if (facetValue instanceof String
-                                                && !StringUtils.isBlank((String) facetValue)) {
-                                            doc.add(new Field(referenceFacet.getField(),
-                                                    (String) facetValue, Field.Store.NO,
-                                                    Field.Index.NOT_ANALYZED_NO_NORMS));
-                                        }
+                                    }
+                                } else {
+                                    //SINGLE/MULTI facet
+                                    //add attribute to document a second time, but unstemmed
+                                    //and with the field name corresponding to the facet name
+                                    String facetAttribute =
+                                            referenceFacet.getField()
+                                                    .substring(
+                                                            referenceFacet.getField()
+                                                                    .lastIndexOf('.') + 1);
+                                    Object facetValue = ((InterMineObject) next.get(1))
+                                        .getFieldValue(facetAttribute);
+
+                                    if (facetValue instanceof String
+                                            && !StringUtils.isBlank((String) facetValue)) {
+                                        doc.add(new Field(referenceFacet.getField(),
+                                                (String) facetValue, Field.Store.NO,
+                                                Field.Index.NOT_ANALYZED_NO_NORMS));
                                     }
                                 }
                             }
                         }
-
-                        // finally add doc to queue
-                        indexingQueue.put(doc);
-
-                        objectParseTime += (System.currentTimeMillis() - time2);
                     }
 
-                    i++;
-                }
-                StringBuilder doneMessage = new StringBuilder();
-                for (String fieldName : fieldNames) {
-                    if (doneMessage.length() > 0) {
-                        doneMessage.append(", ");
-                    }
-                    doneMessage.append(fieldName);
-                    if (normFields.contains(fieldName)) {
-                        doneMessage.append(" NO_NORMS");
+                    // finally add doc to queue
+                    indexingQueue.put(doc);
+
+                    long now = System.currentTimeMillis();
+                    objectParseTime += (now - time2);
+                    long[] classStats = classStatistics.get(classDescriptor.getUnqualifiedName());
+                    if (classStats == null) {
+                        classStats = new long[2];
+                        classStatistics.put(classDescriptor.getUnqualifiedName(), classStats);
                     }
+                    classStats[0]++;
+                    classStats[1] += now - objectStart;
                 }
-                LOG.info("COMPLETED index with " + i + " records.  Fields: " + doneMessage);
-            } finally {
-                for (InterMineResultsContainer resultsContainer : referenceResults.values()) {
-                    ((ObjectStoreInterMineImpl) os).releaseGoFaster(resultsContainer.getResults()
-                            .getQuery());
-                }
+
+                i++;
+            }
+            LOG.info("IMOFetcher: fetched " + i + " objects with ids in " + range + " in "
+                    + (System.currentTimeMillis() - time) + "ms total, " + objectParseTime
+                    + "ms spent on parsing");
+            return i;
+        } finally {
+            for (InterMineResultsContainer resultsContainer : referenceResults.values()) {
+                ((ObjectStoreInterMineImpl) os).releaseGoFaster(resultsContainer.getResults()
+                        .getQuery());
             }
-        } catch (Exception e) {
-            LOG.warn(null, e);
         }
-
-        //notify main thread that we're done
-        indexingQueue.finish();
     }
 
     private Document createDocument(InterMineObject object, ClassDescriptor classDescriptor) {
@@ -823,7 +933,7 @@ class InterMineObjectFetcher extends Thread
         return attributes;
     }
 
-    private Query getPathQuery(String pathString) throws PathException {
+    private Query getPathQuery(String pathString, IdRange range) throws PathException {
         Query q = new Query();
         ConstraintSet constraints = new ConstraintSet(ConstraintOp.AND);
 
@@ -847,7 +957,8 @@ class InterMineObjectFetcher extends Thread
                 // first class
                 QueryField topId = new QueryField(queryClass, "id");
                 q.addToSelect(topId);
-                q.addToOrderBy(topId); // important for optimization in run()
+                q.addToOrderBy(topId); // important for optimization in fetchRange()
+                range.addConstraints(constraints, topId);
             } else {
                 String fieldName = fields.get(i - 1);
 
@@ -897,6 +1008,11 @@ class InterMineObjectFetcher extends Thread
 public final class KeywordSearch
 {
     private static final String LUCENE_INDEX_DIR = "keyword_search_index";
+    private static final String CACHE_PREFIX = "search_index_";
+    private static final String CACHE_CONTAINER_FILE = "index_container.ser";
+    private static final int RANGES_PER_THREAD = 8;
+    private static final int DEFAULT_RESULT_CACHE_SIZE = 200;
+    private static final int DEFAULT_RESULT_CACHE_WARM_QUERIES = 20;
 
     /**
      * maximum number of hits returned
@@ -924,6 +1040,7 @@ public final class KeywordSearch
     private static Vector<KeywordSearchFacetData> facets;
     private static boolean debugOutput;
     private static Map<String, String> attributePrefixes = null;
+    private static TinyLfuObjectCache<String, BrowseResult> resultCache = null;
     
     private KeywordSearch() {
         //don't
@@ -1090,6 +1207,17 @@ public final class KeywordSearch
         LOG.info("Indexing - Temp Dir: " + tempDirectory);
     }
 
+    private static int getIntProperty(String name, int defaultValue) {
+        if (properties != null && properties.getProperty(name) != null) {
+            try {
+                return Integer.parseInt(properties.getProperty(name).trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid value for " + name + ": " + properties.getProperty(name));
+            }
+        }
+        return defaultValue;
+    }
+
     private static void addAttributePrefix(String classAndAttribute, String prefix) {
         if (StringUtils.isBlank(classAndAttribute) || classAndAttribute.indexOf(".") == -1
                 || StringUtils.isBlank(prefix)) {
@@ -1111,9 +1239,22 @@ public final class KeywordSearch
     public static synchronized void initKeywordSearch(InterMineAPI im, String path) {
         try {
 
+            if (properties == null) {
+                parseProperties(im.getObjectStore());
+            }
+
             if (index == null) {
-                // try to load index from database first
-                loadIndexFromDatabase(im.getObjectStore(), path);
+                // use the local copy of this release's index if there is one
+                String cacheDirectory = (properties == null ? null
+                        : properties.getProperty("index.cache.directory"));
+                if (!StringUtils.isBlank(cacheDirectory)) {
+                    loadIndexFromCache(im.getObjectStore(), new File(cacheDirectory.trim()));
+                }
+
+                if (index == null) {
+                    // otherwise load index from database
+                    loadIndexFromDatabase(im.getObjectStore(), path);
+                }
 
                 if (index == null) {
                     LOG.error("lucene index missing!");
@@ -1121,10 +1262,6 @@ public final class KeywordSearch
                 }
             }
 
-            if (properties == null) {
-                parseProperties(im.getObjectStore());
-            }
-
             if (reader == null) {
                 reader = IndexReader.open(index.getDirectory(), true);
             }
@@ -1146,6 +1283,12 @@ public final class KeywordSearch
 
                 boboIndexReader = BoboIndexReader.getInstance(reader, facetHandlers);
 
+                // results of the previous index must not be returned for this one
+                int cacheSize = getIntProperty("search.cache.size", DEFAULT_RESULT_CACHE_SIZE);
+                resultCache = (cacheSize > 0
+                        ? new TinyLfuObjectCache<String, BrowseResult>(cacheSize) : null);
+                warmResultCache(im);
+
                 LOG.debug("Fields:"
                         + Arrays.toString(boboIndexReader.getFieldNames(FieldOption.ALL)
                                 .toArray()));
@@ -1474,6 +1617,20 @@ public final class KeywordSearch
         long time = System.currentTimeMillis();
         String queryString = parseQueryString(searchString);
 
+        // searches restricted to a list are not repeated often enough to be worth caching, and
+        // unpaginated results of up to 10000 hits are too big to keep
+        TinyLfuObjectCache<String, BrowseResult> cache = resultCache;
+        String cacheKey = null;
+        if (cache != null && pagination && (ids == null || ids.isEmpty())) {
+            cacheKey = getResultCacheKey(queryString, offset, facetValues);
+            result = cache.get(cacheKey);
+            if (result != null) {
+                LOG.debug("Found cached result for '" + queryString + "', hit ratio "
+                        + getResultCacheHitRatio());
+                return result;
+            }
+        }
+
         try {
             Analyzer analyzer = new WhitespaceAnalyzer();
 
@@ -1546,6 +1703,9 @@ public final class KeywordSearch
             // execute query and return result
             Browsable browser = new BoboBrowser(boboIndexReader);
             result = browser.browse(browseRequest);
+            if (cacheKey != null) {
+                cache.put(cacheKey, result);
+            }
 
             if (debugOutput) {
                 for (int i = 0; i < result.getHits().length && i < 5; i++) {
@@ -1572,6 +1732,88 @@ public final class KeywordSearch
         return result;
     }
 
+    /**
+     * Returns the key of a search in the result cache. Queries that differ only in whitespace
+     * share a key, and facet selections are sorted by field so that the order in which they were
+     * made does not matter.
+     */
+    private static String getResultCacheKey(String queryString, int offset,
+            Map<String, String> facetValues) {
+        StringBuilder key = new StringBuilder(queryString.trim().replaceAll("\\s+", " "));
+        key.append('\u0000').append(offset);
+        for (Entry<String, String> facetValue
+                : new TreeMap<String, String>(facetValues).entrySet()) {
+            key.append('\u0000').append(facetValue.getKey()).append('=')
+                .append(facetValue.getValue());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Runs the overview search shown for an empty search box and the most frequent searches
+     * recorded by the keyword search tracker in the background, so that their results and facet
+     * counts are in the result cache before users ask for them.
+     */
+    private static void warmResultCache(final InterMineAPI im) {
+        final int warmQueries = getIntProperty("search.cache.warm",
+                DEFAULT_RESULT_CACHE_WARM_QUERIES);
+        if (resultCache == null || warmQueries < 0) {
+            return;
+        }
+        Thread warmer = new Thread("Keyword search cache warmer") {
+            @Override
+            public void run() {
+                long time = System.currentTimeMillis();
+                List<String> queries = new ArrayList<String>();
+                queries.add("*:*");
+                Map<String, Integer> searches = null;
+                if (im.getTrackerDelegate() != null) {
+                    searches = im.getTrackerDelegate().getKeywordSearches();
+                }
+                if (searches != null) {
+                    List<Entry<String, Integer>> entries =
+                        new ArrayList<Entry<String, Integer>>(searches.entrySet());
+                    Collections.sort(entries, new Comparator<Entry<String, Integer>>() {
+                        public int compare(Entry<String, Integer> a, Entry<String, Integer> b) {
+                            return b.getValue().compareTo(a.getValue());
+                        }
+                    });
+                    for (Entry<String, Integer> entry : entries) {
+                        if (queries.size() > warmQueries) {
+                            break;
+                        }
+                        if (!StringUtils.isBlank(entry.getKey())) {
+                            queries.add(entry.getKey());
+                        }
+                    }
+                }
+                Map<String, String> noFacets = Collections.emptyMap();
+                for (String query : queries) {
+                    runBrowseSearch(query, 0, noFacets, null);
+                }
+                LOG.info("Warmed keyword search result cache with " + queries.size()
+                        + " searches in " + (System.currentTimeMillis() - time) + " ms");
+            }
+        };
+        warmer.setDaemon(true);
+        warmer.start();
+    }
+
+    /**
+     * Returns the proportion of searches since the index was loaded that were answered from the
+     * result cache.
+     *
+     * @return a number between 0 and 1, or 0 if the cache is disabled or has not been used
+     */
+    public static double getResultCacheHitRatio() {
+        TinyLfuObjectCache<String, BrowseResult> cache = resultCache;
+        if (cache == null) {
+            return 0.0;
+        }
+        long lookups = cache.getHitCount() + cache.getMissCount();
+        return (lookups == 0 ? 0.0 : ((double) cache.getHitCount()) / lookups);
+    }
+
     private static String parseQueryString(String qs) {
         String queryString = qs;
         // keep strings separated by spaces together
@@ -1610,42 +1852,21 @@ public final class KeywordSearch
         if (os instanceof ObjectStoreInterMineImpl) {
             Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
             try {
-                InputStream is = MetadataManager.readLargeBinary(db, MetadataManager.SEARCH_INDEX);
-
-                if (is != null) {
-                    GZIPInputStream gzipInput = new GZIPInputStream(is);
-                    ObjectInputStream objectInput = new ObjectInputStream(gzipInput);
-
-                    try {
-                        Object object = objectInput.readObject();
-
-                        if (object instanceof LuceneIndexContainer) {
-                            index = (LuceneIndexContainer) object;
-
-                            LOG.info("Successfully restored search index information"
-                                    + " from database in " + (System.currentTimeMillis() - time)
-                                    + " ms");
-                            LOG.debug("Index: " + index);
-                        } else {
-                            LOG.warn("Object from DB has wrong class:"
-                                    + object.getClass().getName());
-                        }
-                    } finally {
-                        objectInput.close();
-                        gzipInput.close();
-                    }
-                } else {
-                    LOG.warn("IS is null");
-                }
+                index = readIndexContainer(db);
 
                 if (index != null) {
+                    LOG.info("Successfully restored search index information"
+                            + " from database in " + (System.currentTimeMillis() - time)
+                            + " ms");
+                    LOG.debug("Index: " + index);
+
                     time = System.currentTimeMillis();
                     LOG.debug("Attempting to restore search directory from database...");
-                    is = MetadataManager.readLargeBinary(db, MetadataManager.SEARCH_INDEX_DIRECTORY);
+                    InputStream is = MetadataManager.readLargeBinary(db,
+                            MetadataManager.SEARCH_INDEX_DIRECTORY);
 
                     if (is != null) {
                         if ("FSDirectory".equals(index.getDirectoryType())) {
-                            final int bufferSize = 2048;
                             File directoryPath = new File(path + File.separator + LUCENE_INDEX_DIR);
                             LOG.debug("Directory path: " + directoryPath);
 
@@ -1661,28 +1882,7 @@ public final class KeywordSearch
                                 directoryPath.mkdir();
                             }
 
-                            ZipInputStream zis = new ZipInputStream(is);
-                            ZipEntry entry;
-                            while ((entry = zis.getNextEntry()) != null) {
-                                LOG.info("Extracting: " + entry.getName() + " (" + entry.getSize()
-                                        + " MB)");
-
-                                FileOutputStream fos =
-                                        new FileOutputStream(directoryPath.getAbsolutePath()
-                                                + File.separator + entry.getName());
-                                BufferedOutputStream bos =
-                                        new BufferedOutputStream(fos, bufferSize);
-
-                                int count;
-                                byte[] data = new byte[bufferSize];
-
-                                while ((count = zis.read(data, 0, bufferSize)) != -1) {
-                                    bos.write(data, 0, count);
-                                }
-
-                                bos.flush();
-                                bos.close();
-                            }
+                            unzipDirectory(is, directoryPath);
 
                             FSDirectory directory = FSDirectory.open(directoryPath);
                             index.setDirectory(directory);
@@ -1691,23 +1891,14 @@ public final class KeywordSearch
                                     + (System.currentTimeMillis() - time) + " ms");
                             time = System.currentTimeMillis();
                         } else if ("RAMDirectory".equals(index.getDirectoryType())) {
-                            GZIPInputStream gzipInput = new GZIPInputStream(is);
-                            ObjectInputStream objectInput = new ObjectInputStream(gzipInput);
-
-                            try {
-                                Object object = objectInput.readObject();
+                            RAMDirectory directory = readRAMDirectory(is);
 
-                                if (object instanceof FSDirectory) {
-                                    RAMDirectory directory = (RAMDirectory) object;
-                                    index.setDirectory(directory);
+                            if (directory != null) {
+                                index.setDirectory(directory);
 
-                                    time = System.currentTimeMillis() - time;
-                                    LOG.info("Successfully restored RAM directory"
-                                            + " from database in " + time + " ms");
-                                }
-                            } finally {
-                                objectInput.close();
-                                gzipInput.close();
+                                time = System.currentTimeMillis() - time;
+                                LOG.info("Successfully restored RAM directory"
+                                        + " from database in " + time + " ms");
                             }
                         } else {
                             LOG.warn("Unknown directory type specified: "
@@ -1731,6 +1922,226 @@ public final class KeywordSearch
         }
     }
 
+    /**
+     * Opens the index of the current release from a local cache directory, unpacking it from the
+     * database into the cache first if it is not there yet. Each release is kept in a directory
+     * named after the serial number of the production database, so a restart on the same release
+     * does not read anything from the database. The index files are memory-mapped, so searching
+     * uses the operating system's page cache rather than the heap.
+     */
+    private static void loadIndexFromCache(ObjectStore os, File cacheDirectory) {
+        long time = System.currentTimeMillis();
+        if (!(os instanceof ObjectStoreInterMineImpl)) {
+            LOG.error("ObjectStore is of wrong type!");
+            return;
+        }
+        Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+        try {
+            String serialNumber = MetadataManager.retrieve(db, MetadataManager.SERIAL_NUMBER);
+            if (serialNumber == null) {
+                LOG.warn("No serial number in database, not using search index cache in "
+                        + cacheDirectory);
+                return;
+            }
+            File releaseDirectory = new File(cacheDirectory, CACHE_PREFIX + serialNumber);
+            File containerFile = new File(releaseDirectory, CACHE_CONTAINER_FILE);
+            if (containerFile.exists()) {
+                LOG.info("Found cached search index in " + releaseDirectory);
+            } else if (!unpackIndexToCache(db, cacheDirectory, releaseDirectory)) {
+                return;
+            }
+
+            ObjectInputStream objectInput = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(containerFile)));
+            try {
+                LuceneIndexContainer cached = (LuceneIndexContainer) objectInput.readObject();
+                cached.setDirectory(new MMapDirectory(new File(releaseDirectory,
+                                LUCENE_INDEX_DIR)));
+                cached.setDirectoryType("MMapDirectory");
+                index = cached;
+            } finally {
+                objectInput.close();
+            }
+            LOG.info("Opened memory-mapped search index in " + releaseDirectory + " in "
+                    + (System.currentTimeMillis() - time) + " ms");
+            LOG.debug("Index: " + index);
+
+            // indexes of earlier releases will not be used again
+            File[] files = cacheDirectory.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].getName().startsWith(CACHE_PREFIX)
+                        && !files[i].equals(releaseDirectory)
+                        && !files[i].getName().endsWith(".tmp")) {
+                    LOG.info("Deleting cached search index of earlier release: " + files[i]);
+                    deleteRecursively(files[i]);
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            LOG.error("Could not use search index cache in " + cacheDirectory, e);
+        } catch (SQLException e) {
+            LOG.error("Could not use search index cache in " + cacheDirectory, e);
+        } catch (IOException e) {
+            LOG.error("Could not use search index cache in " + cacheDirectory, e);
+        }
+    }
+
+    /**
+     * Unpacks the index stored in the database into a new directory in the cache directory and
+     * renames it to the release directory once it is complete, so that a webapp never opens an
+     * index that is still being unpacked by another webapp on the same machine.
+     *
+     * @return true if the release directory now holds a complete index
+     */
+    private static boolean unpackIndexToCache(Database db, File cacheDirectory,
+            File releaseDirectory) throws SQLException, IOException, ClassNotFoundException {
+        long time = System.currentTimeMillis();
+        LOG.info("Unpacking search index from database to " + releaseDirectory);
+        LuceneIndexContainer container = readIndexContainer(db);
+        if (container == null) {
+            return false;
+        }
+        InputStream is = MetadataManager.readLargeBinary(db,
+                MetadataManager.SEARCH_INDEX_DIRECTORY);
+        if (is == null) {
+            LOG.warn("No search directory in database");
+            return false;
+        }
+
+        if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            throw new IOException("Could not create search index cache directory "
+                    + cacheDirectory);
+        }
+        File unpackDirectory = File.createTempFile(releaseDirectory.getName() + ".", ".tmp",
+                cacheDirectory);
+        if (!unpackDirectory.delete() || !unpackDirectory.mkdir()) {
+            throw new IOException("Could not create directory " + unpackDirectory);
+        }
+        try {
+            File directoryPath = new File(unpackDirectory, LUCENE_INDEX_DIR);
+            directoryPath.mkdir();
+            if ("FSDirectory".equals(container.getDirectoryType())) {
+                unzipDirectory(is, directoryPath);
+            } else if ("RAMDirectory".equals(container.getDirectoryType())) {
+                RAMDirectory ramDirectory = readRAMDirectory(is);
+                if (ramDirectory == null) {
+                    return false;
+                }
+                FSDirectory directory = FSDirectory.open(directoryPath);
+                Directory.copy(ramDirectory, directory, true);
+                directory.close();
+            } else {
+                LOG.warn("Unknown directory type specified: " + container.getDirectoryType());
+                return false;
+            }
+
+            // the container is written last and marks the index as complete
+            ObjectOutputStream objectOutput = new ObjectOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(new File(unpackDirectory, CACHE_CONTAINER_FILE))));
+            try {
+                objectOutput.writeObject(container);
+            } finally {
+                objectOutput.close();
+            }
+
+            if (!unpackDirectory.renameTo(releaseDirectory)) {
+                if (!new File(releaseDirectory, CACHE_CONTAINER_FILE).exists()) {
+                    throw new IOException("Could not rename " + unpackDirectory + " to "
+                            + releaseDirectory);
+                }
+                LOG.info("Search index was unpacked to " + releaseDirectory
+                        + " by another process");
+            } else {
+                LOG.info("Unpacked search index to " + releaseDirectory + " in "
+                        + (System.currentTimeMillis() - time) + " ms");
+            }
+            return true;
+        } finally {
+            if (unpackDirectory.exists()) {
+                deleteRecursively(unpackDirectory);
+            }
+        }
+    }
+
+    private static LuceneIndexContainer readIndexContainer(Database db)
+        throws SQLException, IOException, ClassNotFoundException {
+        InputStream is = MetadataManager.readLargeBinary(db, MetadataManager.SEARCH_INDEX);
+
+        if (is == null) {
+            LOG.warn("IS is null");
+            return null;
+        }
+        GZIPInputStream gzipInput = new GZIPInputStream(is);
+        ObjectInputStream objectInput = new ObjectInputStream(gzipInput);
+
+        try {
+            Object object = objectInput.readObject();
+
+            if (object instanceof LuceneIndexContainer) {
+                return (LuceneIndexContainer) object;
+            }
+            LOG.warn("Object from DB has wrong class:" + object.getClass().getName());
+            return null;
+        } finally {
+            objectInput.close();
+            gzipInput.close();
+        }
+    }
+
+    private static void unzipDirectory(InputStream is, File directoryPath) throws IOException {
+        final int bufferSize = 2048;
+        ZipInputStream zis = new ZipInputStream(is);
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            LOG.info("Extracting: " + entry.getName() + " (" + entry.getSize() + " MB)");
+
+            FileOutputStream fos = new FileOutputStream(directoryPath.getAbsolutePath()
+                    + File.separator + entry.getName());
+            BufferedOutputStream bos = new BufferedOutputStream(fos, bufferSize);
+
+            int count;
+            byte[] data = new byte[bufferSize];
+
+            while ((count = zis.read(data, 0, bufferSize)) != -1) {
+                bos.write(data, 0, count);
+            }
+
+            bos.flush();
+            bos.close();
+        }
+        zis.close();
+    }
+
+    private static RAMDirectory readRAMDirectory(InputStream is)
+        throws IOException, ClassNotFoundException {
+        GZIPInputStream gzipInput = new GZIPInputStream(is);
+        ObjectInputStream objectInput = new ObjectInputStream(gzipInput);
+
+        try {
+            Object object = objectInput.readObject();
+
+            if (object instanceof RAMDirectory) {
+                return (RAMDirectory) object;
+            }
+            LOG.warn("Object from DB has wrong class:" + object.getClass().getName());
+            return null;
+        } finally {
+            objectInput.close();
+            gzipInput.close();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                deleteRecursively(files[i]);
+            }
+        }
+        if (!file.delete()) {
+            LOG.warn("Could not delete " + file);
+        }
+    }
+
     private static File createIndex(ObjectStore os, Map<String, List<FieldDescriptor>> classKeys)
         throws IOException {
         long time = System.currentTimeMillis();
@@ -1739,11 +2150,23 @@ public final class KeywordSearch
 
         parseProperties(os);
 
-        LOG.info("Starting fetcher thread...");
-        InterMineObjectFetcher fetchThread =
-                new InterMineObjectFetcher(os, classKeys, indexingQueue, ignoredClasses,
-                        ignoredFields, specialReferences, classBoost, facets, attributePrefixes);
-        fetchThread.start();
+        int threads = Math.max(1, getIntProperty("index.threads", 1));
+        Queue<IdRange> ranges = new ConcurrentLinkedQueue<IdRange>(getIdRanges(os,
+                    threads == 1 ? 1 : threads * RANGES_PER_THREAD));
+        AtomicInteger runningFetchers = new AtomicInteger(threads);
+
+        LOG.info("Starting " + threads + " fetcher threads for " + ranges.size()
+                + " id ranges...");
+        List<InterMineObjectFetcher> fetchThreads = new ArrayList<InterMineObjectFetcher>();
+        for (int i = 0; i < threads; i++) {
+            InterMineObjectFetcher fetchThread =
+                new InterMineObjectFetcher(os, classKeys, indexingQueue, ranges,
+                        runningFetchers, ignoredClasses, ignoredFields, specialReferences,
+                        classBoost, facets, attributePrefixes);
+            fetchThread.setName("IMOFetcher " + (i + 1));
+            fetchThread.start();
+            fetchThreads.add(fetchThread);
+        }
 
         // index the docs queued by the fetchers
         LOG.info("Preparing indexer...");
@@ -1770,26 +2193,101 @@ public final class KeywordSearch
         writer.setMergeFactor(10); //10 default, higher values = more parts
         writer.setRAMBufferSizeMB(64); //flush to disk when docs take up X MB
 
-        int indexed = 0;
-
-        // loop and index while we still have fetchers running
+        // loop and index while we still have fetchers running, with one indexing thread for
+        // each fetcher as IndexWriter can analyse documents concurrently
         LOG.debug("Starting to index...");
-        while (indexingQueue.hasNext()) {
-            Document doc = indexingQueue.next();
+        final IndexWriter sharedWriter = writer;
+        final AtomicInteger indexed = new AtomicInteger();
+        final AtomicInteger fetchers = runningFetchers;
+        final long startTime = time;
+        List<Thread> indexThreads = new ArrayList<Thread>();
+        for (int i = 1; i < threads; i++) {
+            Thread indexThread = new Thread("Indexer " + (i + 1)) {
+                @Override
+                public void run() {
+                    indexDocuments(sharedWriter, indexed, fetchers, startTime);
+                }
+            };
+            indexThread.start();
+            indexThreads.add(indexThread);
+        }
+        indexDocuments(writer, indexed, runningFetchers, time);
+        Map<String, long[]> classStatistics = new TreeMap<String, long[]>();
+        try {
+            for (Thread indexThread : indexThreads) {
+                indexThread.join();
+            }
+            for (InterMineObjectFetcher fetchThread : fetchThreads) {
+                fetchThread.join();
+                index.getFieldNames().addAll(fetchThread.getFieldNames());
+                for (Map.Entry<String, long[]> entry
+                        : fetchThread.getClassStatistics().entrySet()) {
+                    long[] stats = classStatistics.get(entry.getKey());
+                    if (stats == null) {
+                        stats = new long[2];
+                        classStatistics.put(entry.getKey(), stats);
+                    }
+                    stats[0] += entry.getValue()[0];
+                    stats[1] += entry.getValue()[1];
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while waiting for indexing threads");
+        }
+        for (Map.Entry<String, long[]> entry : classStatistics.entrySet()) {
+            long[] stats = entry.getValue();
+            LOG.info("Created " + stats[0] + " documents for " + entry.getKey() + " in "
+                    + stats[1] + "ms of fetcher time ("
+                    + (stats[1] == 0 ? "-" : "" + (stats[0] * 1000 / stats[1]))
+                    + " documents/s per fetcher)");
+        }
+        LOG.debug("Indexing done, optimizing index files...");
+        try {
+            writer.optimize();
+            writer.close();
+        } catch (IOException e) {
+            LOG.error("IOException while optimizing and closing IndexWriter", e);
+        }
+
+        time = System.currentTimeMillis() - time;
+        int seconds = (int) Math.floor(time / 1000);
+        LOG.info("Indexing of " + indexed.get() + " documents finished in "
+                + String.format("%02d:%02d.%03d", (int) Math.floor(seconds / 60), seconds % 60,
+                        time % 1000) + " minutes");
+        return tempFile;
+    }
+
+    /**
+     * Takes documents from the indexing queue and adds them to the index until the queue is
+     * finished. This may be run by several threads at once.
+     */
+    private static void indexDocuments(IndexWriter writer, AtomicInteger indexed,
+            AtomicInteger runningFetchers, long time) {
+        while (true) {
+            Document doc;
+            // hasNext() and next() must be atomic when there is more than one reader
+            synchronized (indexingQueue) {
+                if (!indexingQueue.hasNext()) {
+                    return;
+                }
+                doc = indexingQueue.next();
+            }
 
             // nothing in the queue?
             if (doc != null) {
+                int count;
                 try {
                     writer.addDocument(doc);
-                    indexed++;
+                    count = indexed.incrementAndGet();
                 } catch (IOException e) {
                     LOG.error("Failed to submit #" + doc.getFieldable("id") + " to the index",
                             e);
+                    continue;
                 }
 
-                if (indexed % 10000 == 1) {
-                    LOG.info("docs indexed=" + indexed + "; thread state="
-                            + fetchThread.getState() + "; docs/ms=" + indexed * 1.0F
+                if (count % 10000 == 1) {
+                    LOG.info("docs indexed=" + count + "; fetchers running="
+                            + runningFetchers.get() + "; docs/ms=" + count * 1.0F
                             / (System.currentTimeMillis() - time) + "; memory="
                             + Runtime.getRuntime().freeMemory() / 1024 + "k/"
                             + Runtime.getRuntime().maxMemory() / 1024 + "k" + "; time="
@@ -1797,21 +2295,43 @@ public final class KeywordSearch
                 }
             }
         }
-        index.getFieldNames().addAll(fetchThread.getFieldNames());
-        LOG.debug("Indexing done, optimizing index files...");
-        try {
-            writer.optimize();
-            writer.close();
-        } catch (IOException e) {
-            LOG.error("IOException while optimizing and closing IndexWriter", e);
-        }
+    }
 
-        time = System.currentTimeMillis() - time;
-        int seconds = (int) Math.floor(time / 1000);
-        LOG.info("Indexing of " + indexed + " documents finished in "
-                + String.format("%02d:%02d.%03d", (int) Math.floor(seconds / 60), seconds % 60,
-                        time % 1000) + " minutes");
-        return tempFile;
+    /**
+     * Splits the ids of the objects in the database into ranges of equal width.
+     */
+    private static List<IdRange> getIdRanges(ObjectStore os, int count) {
+        List<IdRange> retval = new ArrayList<IdRange>();
+        if (count > 1) {
+            try {
+                Query q = new Query();
+                QueryClass qc = new QueryClass(InterMineObject.class);
+                q.addFrom(qc);
+                q.addToSelect(new QueryFunction(new QueryField(qc, "id"), QueryFunction.MIN));
+                q.addToSelect(new QueryFunction(new QueryField(qc, "id"), QueryFunction.MAX));
+                List<?> results = os.execute(q, 0, 1, false, false, ObjectStore.SEQUENCE_IGNORE);
+                ResultsRow<?> row = (ResultsRow<?>) results.get(0);
+                if (row.get(0) != null) {
+                    long min = ((Number) row.get(0)).longValue();
+                    long max = ((Number) row.get(1)).longValue();
+                    Integer start = null;
+                    for (int i = 1; i < count; i++) {
+                        Integer end = new Integer((int) (min + (max - min + 1) * i / count));
+                        if ((start == null) || (end.intValue() > start.intValue())) {
+                            retval.add(new IdRange(start, end));
+                            start = end;
+                        }
+                    }
+                    retval.add(new IdRange(start, null));
+                    return retval;
+                }
+            } catch (ObjectStoreException e) {
+                LOG.warn("Could not find the range of ids to index - using one fetcher", e);
+            }
+        }
+        retval.clear();
+        retval.add(new IdRange(null, null));
+        return retval;
     }
 
     private static File makeTempFile(String tempDir) throws IOException {
@@ -1916,6 +2436,7 @@ public final class KeywordSearch
             }
 
             index = null;
+            resultCache = null;
         }
     }
 }
@@ -824,11 +824,12 @@ public class InitialiserPlugin implements PlugIn
     }
 
     /**
-     * Destroy method called at Servlet destroy. Close connection pools
-     * and the mail queue thread pool.
+     * Destroy method called at Servlet destroy. Close connection pools,
+     * the mail queue thread pool and the query threads.
      */
     public void destroy() {
         InterMineContext.shutdown();
+        SessionMethods.shutdownQueryExecutionService();
         if (profileManager != null) {
             ((ObjectStoreWriterInterMineImpl) profileManager.getProfileObjectStoreWriter())
                 .getDatabase().shutdown();
@@ -38,6 +38,7 @@ import org.intermine.api.profile.Profile;
 import org.intermine.api.profile.ProfileManager;
 import org.intermine.pathquery.PathQuery;
 import org.intermine.pathquery.PathQueryBinding;
+import org.intermine.web.logic.Constants;
 import org.intermine.web.logic.session.SessionMethods;
 
 /**
@@ -93,6 +94,9 @@ public class InterMineRequestProcessor extends TilesRequestProcessor
                 profile = SessionMethods.getProfile(session);
             }
 
+            // queries are queued by client address for anonymous users
+            session.setAttribute(Constants.CLIENT_ADDRESS, request.getRemoteAddr());
+
             if (userAgent != null && !profile.isLoggedIn()) {
                 for (String bot : bots) {
                     if (userAgent.contains(bot)) {
@@ -80,6 +80,9 @@ public class PollQueryAction extends InterMineAction
         // First tickle the controller to avoid timeout
         controller.tickle();
 
+        // answer as soon as the query finishes rather than at the client's next refresh
+        controller.waitForCompletion(Constants.POLL_WAIT_MILLIS);
+
         if (controller.isCancelledWithError()) {
             LOG.debug("query qid " + qid + " error");
             return mapping.findForward("failure");
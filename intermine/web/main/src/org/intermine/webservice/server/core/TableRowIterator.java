@@ -31,6 +31,7 @@ import org.intermine.objectstore.query.QueryCollectionPathExpression;
 import org.intermine.objectstore.query.QueryObjectPathExpression;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.pathquery.Path;
 import org.intermine.pathquery.PathException;
 import org.intermine.pathquery.PathQuery;
@@ -75,6 +76,8 @@ public class TableRowIterator implements
     private final Query query;
     /** The results returned from the object-store. MAY BE FROM CACHE **/
     private final Results results;
+    /** The rows streamed from the object-store, if there are no results. **/
+    private final ResultsStream stream;
     private final Map<String, QuerySelectable> nodeForPath = new HashMap<String, QuerySelectable>();
     private final List<Path> paths = new ArrayList<Path>();
     private final Page page;
@@ -140,10 +143,45 @@ public class TableRowIterator implements
             Map<String, QuerySelectable> nodeForPath,
             Page page,
             InterMineAPI im) {
+        this(pathQuery, query, results, null, nodeForPath, page, im);
+    }
+
+    /**
+     * Constructor for a TableRowIterator that reads the rows from a ResultsStream rather than a
+     * Results object, so that the whole result set is read with a single database query. Rows
+     * before the start of the page are read and thrown away. A stream can only be read once, so
+     * iterator() returns this object, and close() should be called if the rows are not read to
+     * the end.
+     * @param pathQuery The path-query these results represent an answer to.
+     * @param query The object-store query the stream was created from.
+     * @param stream The object-store stream.
+     * @param nodeForPath The map from selectable to the path it represents.
+     * @param page The section of the results required.
+     * @param im A reference to the API (MAY BE NULL!).
+     */
+    public TableRowIterator(
+            PathQuery pathQuery,
+            Query query,
+            ResultsStream stream,
+            Map<String, QuerySelectable> nodeForPath,
+            Page page,
+            InterMineAPI im) {
+        this(pathQuery, query, null, stream, nodeForPath, page, im);
+    }
+
+    private TableRowIterator(
+            PathQuery pathQuery,
+            Query query,
+            Results results,
+            ResultsStream stream,
+            Map<String, QuerySelectable> nodeForPath,
+            Page page,
+            InterMineAPI im) {
         this.page = page;
         this.query = query;
         this.pathQuery = pathQuery;
         this.results = results;
+        this.stream = stream;
         this.nodeForPath.putAll(nodeForPath);
         this.im = im; // Watch out, may be null!
         
@@ -159,9 +197,17 @@ public class TableRowIterator implements
      * constructor.
      * @throws PathException If the world has gone completely bonkers.
      */
+    @SuppressWarnings("unchecked")
     private void init() throws PathException {
 
-        osIter = results.iteratorFrom(page.getStart());
+        if (stream == null) {
+            osIter = results.iteratorFrom(page.getStart());
+        } else {
+            osIter = (Iterator) stream;
+            for (int i = 0; (i < page.getStart()) && osIter.hasNext(); i++) {
+                osIter.next();
+            }
+        }
         counter = page.getStart();
         root = pathQuery.makePath(pathQuery.getRootClass());
 
@@ -451,10 +497,24 @@ public class TableRowIterator implements
 
     @Override
     public Iterator<List<Either<TableCell, SubTable>>> iterator() {
+        if (stream != null) {
+            // A stream cannot be read again from the beginning.
+            return this;
+        }
         // Return a new iterator reset to the beginning of the results set.
         return new TableRowIterator(pathQuery, query, results, nodeForPath, page, im);
     }
 
+    /**
+     * Releases the database resources held by an iterator reading a stream. This does nothing
+     * if the rows are read from a Results object.
+     */
+    public void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
     @Override
     public boolean hasNext() {
         return page.withinRange(counter) && osIter.hasNext();
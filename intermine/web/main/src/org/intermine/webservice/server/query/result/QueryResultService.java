@@ -333,7 +333,13 @@ public class QueryResultService extends AbstractQueryService
             canGoFaster = firstResult > BATCH_SIZE || maxResults > BATCH_SIZE;
             executor.setBatchSize(BATCH_SIZE);
             try {
-                it = executor.execute(pq, firstResult, maxResults);
+                if (firstResult == 0 && maxResults > BATCH_SIZE) {
+                    // Large exports from the start read the whole result set in one query.
+                    // releaseGoFaster() below closes the stream.
+                    it = executor.stream(pq, firstResult, maxResults);
+                } else {
+                    it = executor.execute(pq, firstResult, maxResults);
+                }
             } catch (ObjectStoreQueryDurationException e) {
                 throw new ServiceException("Query would take too long to run");
             } catch (ObjectStoreException e) {
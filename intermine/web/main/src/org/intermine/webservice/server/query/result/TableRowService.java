@@ -19,6 +19,7 @@ import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.pathquery.PathQuery;
 import org.intermine.webservice.server.Format;
 import org.intermine.webservice.server.core.Either;
@@ -79,24 +80,41 @@ public class TableRowService extends QueryResultService
         } catch (ObjectStoreException e) {
             throw new InternalErrorException("Could not run query", e);
         }
-        final Results results = os.execute(q, QueryResultService.BATCH_SIZE, true, false, false);
         final Page page = new Page(firstResult, (maxResults == 0) ? null : maxResults);
         
-        TableRowIterator iter = new TableRowIterator(pathQuery, q, results, pathToQueryNode, page, im);
+        TableRowIterator iter;
+        if (firstResult == 0 && (maxResults == 0 || maxResults > QueryResultService.BATCH_SIZE)) {
+            // Large requests from the start read the whole result set in one query.
+            ResultsStream stream;
+            try {
+                stream = os.stream(q, QueryResultService.BATCH_SIZE, true);
+            } catch (ObjectStoreException e) {
+                throw new InternalErrorException("Could not run query", e);
+            }
+            iter = new TableRowIterator(pathQuery, q, stream, pathToQueryNode, page, im);
+        } else {
+            final Results results = os.execute(q, QueryResultService.BATCH_SIZE, true, false,
+                    false);
+            iter = new TableRowIterator(pathQuery, q, results, pathToQueryNode, page, im);
+        }
         
         final Processor processor = new Processor(im);
         
-        while (iter.hasNext()) {
-            List<Map<String, Object>> rowdata = new LinkedList<Map<String, Object>>();
-            for (Either<TableCell, SubTable> cell: iter.next()) {
-                rowdata.add(cell.accept(processor));
-            }
-            JSONArray ja = new JSONArray(rowdata);
-            if (iter.hasNext()) {
-                output.addResultItem(Arrays.asList(ja.toString(), ""));
-            } else {
-                output.addResultItem(Arrays.asList(ja.toString()));
+        try {
+            while (iter.hasNext()) {
+                List<Map<String, Object>> rowdata = new LinkedList<Map<String, Object>>();
+                for (Either<TableCell, SubTable> cell: iter.next()) {
+                    rowdata.add(cell.accept(processor));
+                }
+                JSONArray ja = new JSONArray(rowdata);
+                if (iter.hasNext()) {
+                    output.addResultItem(Arrays.asList(ja.toString(), ""));
+                } else {
+                    output.addResultItem(Arrays.asList(ja.toString()));
+                }
             }
+        } finally {
+            iter.close();
         }
     }
 
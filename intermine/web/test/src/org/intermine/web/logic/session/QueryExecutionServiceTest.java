@@ -0,0 +1,168 @@
+package org.intermine.web.logic.session;
+
+/*
+ * Copyright (C) 2002-2014 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.intermine.web.logic.query.QueryMonitorTimeout;
+
+public class QueryExecutionServiceTest extends TestCase
+{
+    private List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    public QueryExecutionServiceTest(String arg) {
+        super(arg);
+    }
+
+    public void testOrder() throws Exception {
+        QueryExecutionService service = new QueryExecutionService(1, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        service.submit(new BlockingJob("a", started, release));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        service.submit(new RecordingJob("a", 5000, "a1", done));
+        service.submit(new RecordingJob("a", 5000, "a2", done));
+        service.submit(new RecordingJob("b", -1, "b1", done));
+        service.submit(new RecordingJob("c", 10, "c1", done));
+        service.submit(new RecordingJob("c", 10, "c2", done));
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("c1", "c2", "a1", "b1", "a2"), order);
+    }
+
+    public void testCancelQueued() throws Exception {
+        QueryExecutionService service = new QueryExecutionService(1, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        service.submit(new BlockingJob("a", started, release));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final QueryMonitorTimeout monitor = new QueryMonitorTimeout(0);
+        Thread.sleep(5);
+        service.submit(new QueryExecutionService.Job("b", 10, monitor) {
+            @Override
+            protected void run() {
+                order.add("b1");
+            }
+
+            @Override
+            protected void cancelled(boolean started) {
+                order.add("cancelled " + started);
+                cancelled.countDown();
+            }
+        });
+        assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        CountDownLatch done = new CountDownLatch(1);
+        service.submit(new RecordingJob("b", 10, "b2", done));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("cancelled false", "b2"), order);
+    }
+
+    public void testShutdown() throws Exception {
+        QueryExecutionService service = new QueryExecutionService(3, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        service.submit(new BlockingJob("a", started, release));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CountDownLatch blocked = new CountDownLatch(1);
+        service.submit(new BlockingJob("b", blocked, release));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        // Expensive queries may only use two of the three threads, so this one is queued
+        service.submit(new CancelledJob("c", "queued"));
+        service.shutdown();
+        service.submit(new CancelledJob("d", "after shutdown"));
+        assertEquals(Arrays.asList("queued cancelled false", "after shutdown cancelled false"),
+                order);
+        // Running queries are allowed to finish
+        assertFalse(service.awaitTermination(100));
+        release.countDown();
+        assertTrue(service.awaitTermination(10000));
+    }
+
+    private class CancelledJob extends QueryExecutionService.Job
+    {
+        private final String name;
+
+        CancelledJob(String client, String name) {
+            super(client, -1, null);
+            this.name = name;
+        }
+
+        @Override
+        protected void run() {
+            fail("Should have been cancelled");
+        }
+
+        @Override
+        protected void cancelled(boolean started) {
+            order.add(name + " cancelled " + started);
+        }
+    }
+
+    private class RecordingJob extends QueryExecutionService.Job
+    {
+        private final String name;
+        private final CountDownLatch done;
+
+        RecordingJob(String client, long estimate, String name, CountDownLatch done) {
+            super(client, estimate, null);
+            this.name = name;
+            this.done = done;
+        }
+
+        @Override
+        protected void run() {
+            order.add(name);
+            done.countDown();
+        }
+
+        @Override
+        protected void cancelled(boolean started) {
+            fail("Not cancellable");
+        }
+    }
+
+    private static class BlockingJob extends QueryExecutionService.Job
+    {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingJob(String client, CountDownLatch started, CountDownLatch release) {
+            super(client, -1, null);
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        protected void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // finish
+            }
+        }
+
+        @Override
+        protected void cancelled(boolean started) {
+            fail("Not cancellable");
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.intermine.objectstore.ObjectStoreWriterFactory;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsStream;
 import org.intermine.pathquery.Constraints;
 import org.intermine.pathquery.OuterJoinStatus;
 import org.intermine.pathquery.Path;
@@ -508,6 +509,35 @@ public class TableRowIteratorTest
     }
 
     
+    @Test
+    public void streamedRowsMatchResults() throws ObjectStoreException {
+        PathQuery pq = getPQ("AllOuterJoinedCollections");
+        Page page = new Page(2, 3);
+        List<String> expected = toJSON(getResults(pq, page));
+
+        Map<String, QuerySelectable> p2qn = new HashMap<String, QuerySelectable>();
+        Query q = MainHelper.makeQuery(pq, new HashMap(), p2qn, null, new HashMap());
+        ResultsStream stream = osw.getObjectStore().stream(q, 2, true);
+        TableRowIterator iter = new TableRowIterator(pq, q, stream, p2qn, page, null);
+        try {
+            assertEquals(expected, toJSON(iter));
+        } finally {
+            iter.close();
+        }
+    }
+
+    private List<String> toJSON(TableRowIterator iter) {
+        List<String> rows = new ArrayList<String>();
+        for (List<Either<TableCell, SubTable>> row: iter) {
+            List<Map<String, Object>> data = new ArrayList<Map<String, Object>>();
+            for (Either<TableCell, SubTable> cell: row) {
+                data.add(cell.accept(jsonTransformer));
+            }
+            rows.add(new JSONArray(data).toString());
+        }
+        return rows;
+    }
+
     /* THE ACTUAL TEST RUNNING INFRASTRUCTURE */
 
     private static void puts(Object s) {